@@ -0,0 +1,270 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.filter.audio
+
+import android.media.AudioFormat
+import android.media.MediaCodec
+import android.media.MediaExtractor
+import android.media.MediaFormat
+import androidx.annotation.FloatRange
+import com.linkedin.android.litr.codec.Frame
+import com.linkedin.android.litr.filter.BufferFilter
+import com.linkedin.android.litr.render.AudioProcessor
+import com.linkedin.android.litr.render.AudioProcessorFactory
+import com.linkedin.android.litr.transcoder.TrackTranscoder
+import com.linkedin.android.litr.utils.ByteBufferPool
+import com.linkedin.android.litr.utils.MediaFormatUtils
+import com.linkedin.android.litr.utils.PcmUtils
+import kotlin.math.ceil
+
+private const val INPUT_BYTES_PER_SAMPLE = 2 // inputs are converted into 16 bit PCM
+private const val PCM_16_SCALE = 32768f
+private const val UNDEFINED_VALUE = -1
+private const val DECODER_TIMEOUT_US = 1_000L
+private const val INITIAL_RING_BUFFER_CAPACITY = 16 * 1024
+
+/**
+ * An audio filter which mixes any number of audio inputs into an audio track, e.g. background music, voice-over and sound effects.
+ *
+ * Each input is decoded and converted to target sample rate and channel count independently, into its own 16 bit PCM ring buffer.
+ * Conversion follows decoder output format, which can differ from input track format, e.g. HE-AAC decodes at twice the
+ * sample rate of the container, and decoders can output float PCM. Then all inputs are mixed into a track in one pass,
+ * in float domain. Track can have any PCM encoding supported by [PcmUtils]. Mixing saturates: integer samples are clipped
+ * instead of wrapping around.
+ *
+ * @param inputs audio inputs to mix
+ * @param gain linear gain applied to the track samples before mixing
+ */
+class AudioMixFilter @JvmOverloads constructor(
+    inputs: List<AudioMixInput>,
+    @FloatRange(from = 0.0) private val gain: Float = 1f
+) : BufferFilter {
+
+    private val mixInputs = inputs.map { MixInputState(it) }
+    private val audioProcessorFactory = AudioProcessorFactory()
+
+    private var channelCount = UNDEFINED_VALUE
+    private var sampleDurationUs = 0.0
+    private var pcmEncoding = AudioFormat.ENCODING_PCM_16BIT
+    private var bytesPerSample = PcmUtils.getBytesPerSample(pcmEncoding)
+    private var mixBuffer = FloatArray(0)
+
+    override fun init(mediaFormat: MediaFormat?) {
+        channelCount = mediaFormat?.let { MediaFormatUtils.getChannelCount(it, UNDEFINED_VALUE).toInt() } ?: UNDEFINED_VALUE
+        val sampleRate = mediaFormat?.let { MediaFormatUtils.getSampleRate(it, UNDEFINED_VALUE).toInt() } ?: UNDEFINED_VALUE
+        sampleDurationUs = 1_000_000.0 / sampleRate
+        pcmEncoding = PcmUtils.getPcmEncoding(mediaFormat)
+        bytesPerSample = PcmUtils.getBytesPerSample(pcmEncoding)
+
+        // inputs keep 16 bit encoding regardless of track encoding, which is sufficient for mixed in audio
+        val inputTargetFormat = if (channelCount > 0 && sampleRate > 0) {
+            MediaFormat.createAudioFormat(MediaFormat.MIMETYPE_AUDIO_RAW, sampleRate, channelCount)
+        } else {
+            null
+        }
+        mixInputs.forEach { it.init(inputTargetFormat, sampleRate) }
+    }
+
+    override fun apply(frame: Frame) {
+        val frameBuffer = frame.buffer ?: return
+        if (channelCount <= 0) {
+            return
+        }
+
+        val offset = frame.bufferInfo.offset
+        val valueCount = frame.bufferInfo.size / bytesPerSample
+        if (mixBuffer.size < valueCount) {
+            mixBuffer = FloatArray(valueCount)
+        }
+
+        PcmUtils.readSamples(frameBuffer, offset, pcmEncoding, mixBuffer, valueCount)
+        if (gain != 1f) {
+            for (index in 0 until valueCount) {
+                mixBuffer[index] *= gain
+            }
+        }
+
+        for (mixInput in mixInputs) {
+            mixInput.mix(frame.bufferInfo.presentationTimeUs, valueCount)
+        }
+
+        PcmUtils.writeSamples(mixBuffer, valueCount, frameBuffer, offset, pcmEncoding)
+    }
+
+    override fun release() {
+        mixInputs.forEach { it.release() }
+    }
+
+    /**
+     * Decoding and buffering state of an individual input.
+     */
+    private inner class MixInputState(private val input: AudioMixInput) {
+
+        private val decoder = input.decoder
+        private val mediaSource = input.mediaSource
+        private val ringBuffer = ShortRingBuffer(INITIAL_RING_BUFFER_CAPACITY)
+        private val bufferPool = ByteBufferPool(true)
+
+        private var track = input.track
+        private lateinit var trackFormat: MediaFormat
+        private var targetMediaFormat: MediaFormat? = null
+        private var targetSampleRate = UNDEFINED_VALUE
+        private var audioProcessor: AudioProcessor? = null
+        private var sourceChannelCount = UNDEFINED_VALUE
+        private var sourceBytesPerSample = INPUT_BYTES_PER_SAMPLE
+        private var samplingRatio = 1.0
+
+        private var inputEndOfStream = false
+        private var outputEndOfStream = false
+        // looping stops if a whole pass over input produced no samples, otherwise it would never end
+        private var hasOutputSinceRestart = false
+
+        fun init(targetMediaFormat: MediaFormat?, targetSampleRate: Int) {
+            if (track < 0) {
+                track = (0 until mediaSource.trackCount).firstOrNull { track ->
+                    mediaSource.getTrackFormat(track).getString(MediaFormat.KEY_MIME)?.startsWith("audio") == true
+                } ?: throw IllegalArgumentException("Audio mix input does not have an audio track")
+            }
+
+            trackFormat = mediaSource.getTrackFormat(track)
+            this.targetMediaFormat = targetMediaFormat
+            this.targetSampleRate = targetSampleRate
+            require(MediaFormatUtils.getChannelCount(trackFormat, UNDEFINED_VALUE).toInt() > 0 &&
+                    MediaFormatUtils.getSampleRate(trackFormat, UNDEFINED_VALUE).toInt() > 0) {
+                "Audio mix input track must have channel count and sample rate in MediaFormat"
+            }
+            // until decoder reports its output format, assume it matches the track
+            initAudioProcessor(trackFormat)
+
+            mediaSource.selectTrack(track)
+            decoder.init(trackFormat, null)
+            decoder.start()
+        }
+
+        /**
+         * Adds samples of this input to [mixBuffer], starting at its start offset.
+         */
+        fun mix(presentationTimeUs: Long, valueCount: Int) {
+            val startSampleIndex = ceil((input.startOffsetUs - presentationTimeUs) / sampleDurationUs).toInt().coerceAtLeast(0)
+            val startIndex = startSampleIndex.toLong() * channelCount
+            if (startIndex >= valueCount) {
+                return
+            }
+
+            val neededValueCount = valueCount - startIndex.toInt()
+            fillRingBuffer(neededValueCount)
+
+            val mixedValueCount = minOf(neededValueCount, ringBuffer.size)
+            val inputGain = input.gain / PCM_16_SCALE
+            var index = startIndex.toInt()
+            repeat(mixedValueCount) {
+                mixBuffer[index++] += ringBuffer.read() * inputGain
+            }
+        }
+
+        fun release() {
+            audioProcessor?.release()
+            decoder.stop()
+            decoder.release()
+            mediaSource.release()
+            bufferPool.clear()
+        }
+
+        private fun initAudioProcessor(sourceMediaFormat: MediaFormat) {
+            // decoder output format may not have all keys, those come from the track
+            sourceChannelCount = MediaFormatUtils.getChannelCount(sourceMediaFormat, UNDEFINED_VALUE).toInt()
+                .takeIf { it > 0 }
+                ?: MediaFormatUtils.getChannelCount(trackFormat, UNDEFINED_VALUE).toInt()
+            val sourceSampleRate = MediaFormatUtils.getSampleRate(sourceMediaFormat, UNDEFINED_VALUE).toInt()
+                .takeIf { it > 0 }
+                ?: MediaFormatUtils.getSampleRate(trackFormat, UNDEFINED_VALUE).toInt()
+            sourceBytesPerSample = PcmUtils.getBytesPerSample(PcmUtils.getPcmEncoding(sourceMediaFormat))
+            samplingRatio = targetSampleRate.toDouble() / sourceSampleRate
+
+            audioProcessor?.release()
+            audioProcessor = audioProcessorFactory.createAudioProcessor(sourceMediaFormat, targetMediaFormat)
+        }
+
+        private fun fillRingBuffer(valueCount: Int) {
+            while (ringBuffer.size < valueCount && !outputEndOfStream) {
+                if (!inputEndOfStream) {
+                    queueDecoderInput()
+                }
+                dequeueDecoderOutput()
+
+                if (outputEndOfStream && input.loop && hasOutputSinceRestart) {
+                    restart()
+                }
+            }
+        }
+
+        private fun queueDecoderInput() {
+            val tag = decoder.dequeueInputFrame(0)
+            if (tag < 0) {
+                return
+            }
+            val inputFrame = decoder.getInputFrame(tag) ?: return
+
+            while (mediaSource.sampleTrackIndex != track && mediaSource.sampleTrackIndex != TrackTranscoder.NO_SELECTED_TRACK) {
+                // if source contains multiple tracks, skip samples for other tracks
+                mediaSource.advance()
+            }
+
+            val bytesRead = inputFrame.buffer?.let { mediaSource.readSampleData(it, 0) } ?: -1
+            if (bytesRead < 0 || mediaSource.sampleTrackIndex == TrackTranscoder.NO_SELECTED_TRACK) {
+                inputFrame.bufferInfo.set(0, 0, -1L, MediaCodec.BUFFER_FLAG_END_OF_STREAM)
+                inputEndOfStream = true
+            } else {
+                inputFrame.bufferInfo.set(0, bytesRead, mediaSource.sampleTime, mediaSource.sampleFlags)
+                mediaSource.advance()
+            }
+            decoder.queueInputFrame(inputFrame)
+        }
+
+        private fun dequeueDecoderOutput() {
+            val tag = decoder.dequeueOutputFrame(DECODER_TIMEOUT_US)
+            if (tag == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                initAudioProcessor(decoder.outputFormat)
+                return
+            }
+            if (tag < 0) {
+                return
+            }
+            val outputFrame = decoder.getOutputFrame(tag) ?: return
+
+            if (outputFrame.bufferInfo.size > 0) {
+                val sourceSampleCount = outputFrame.bufferInfo.size / (sourceBytesPerSample * sourceChannelCount)
+                val targetBufferCapacity = ceil(sourceSampleCount * samplingRatio).toInt() * channelCount * INPUT_BYTES_PER_SAMPLE
+                val processedFrame = Frame(tag, bufferPool.get(targetBufferCapacity), MediaCodec.BufferInfo())
+                audioProcessor?.processFrame(outputFrame, processedFrame)
+
+                processedFrame.buffer?.let {
+                    if (it.hasRemaining()) {
+                        hasOutputSinceRestart = true
+                    }
+                    ringBuffer.write(it)
+                    bufferPool.put(it)
+                }
+            }
+
+            if (outputFrame.bufferInfo.flags and MediaCodec.BUFFER_FLAG_END_OF_STREAM != 0) {
+                outputEndOfStream = true
+            }
+            decoder.releaseOutputFrame(tag, false)
+        }
+
+        private fun restart() {
+            mediaSource.seekTo(0, MediaExtractor.SEEK_TO_PREVIOUS_SYNC)
+            // flushing lets decoder accept input again after reaching end of stream, keeping its output format
+            decoder.flush()
+            inputEndOfStream = false
+            outputEndOfStream = false
+            hasOutputSinceRestart = false
+        }
+    }
+}
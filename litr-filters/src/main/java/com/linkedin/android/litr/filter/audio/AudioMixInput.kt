@@ -0,0 +1,45 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.filter.audio
+
+import android.content.Context
+import android.net.Uri
+import androidx.annotation.FloatRange
+import com.linkedin.android.litr.codec.Decoder
+import com.linkedin.android.litr.codec.MediaCodecDecoder
+import com.linkedin.android.litr.io.MediaExtractorMediaSource
+import com.linkedin.android.litr.io.MediaSource
+
+/**
+ * An audio input of an [AudioMixFilter].
+ *
+ * @param mediaSource source of audio input
+ * @param decoder decoder to use for audio input
+ * @param gain linear gain applied to audio input samples
+ * @param startOffsetUs presentation time of a mixed track, at which this input starts playing
+ * @param loop whether input should loop back to its beginning when it ends
+ * @param track audio track of a [mediaSource], or -1 to use first audio track
+ */
+class AudioMixInput @JvmOverloads constructor(
+    val mediaSource: MediaSource,
+    val decoder: Decoder = MediaCodecDecoder(),
+    @FloatRange(from = 0.0) val gain: Float = 1f,
+    val startOffsetUs: Long = 0,
+    val loop: Boolean = false,
+    val track: Int = -1
+) {
+
+    @JvmOverloads
+    constructor(
+        context: Context,
+        uri: Uri,
+        @FloatRange(from = 0.0) gain: Float = 1f,
+        startOffsetUs: Long = 0,
+        loop: Boolean = false
+    ) : this(MediaExtractorMediaSource(context, uri), MediaCodecDecoder(), gain, startOffsetUs, loop)
+}
@@ -1,6 +1,7 @@
 package com.linkedin.android.litr.filter.audio
 
 import android.content.Context
+import android.media.AudioFormat
 import android.media.MediaCodec
 import android.media.MediaFormat
 import android.net.Uri
@@ -15,12 +16,13 @@ import com.linkedin.android.litr.render.AudioProcessor
 import com.linkedin.android.litr.render.AudioProcessorFactory
 import com.linkedin.android.litr.transcoder.TrackTranscoder
 import com.linkedin.android.litr.utils.ByteBufferPool
+import com.linkedin.android.litr.utils.PcmUtils
 import java.nio.ByteBuffer
 import java.util.concurrent.LinkedBlockingDeque
 import kotlin.math.ceil
 import kotlin.math.min
 
-private const val BYTES_PER_SAMPLE = 2 // android uses 2 bytes per audio sample
+private const val MIX_BLOCK_SIZE = 1024
 private const val UNDEFINED_VALUE = -1
 
 private const val TAG = "AudioOverlayFilter"
@@ -46,12 +48,18 @@ class AudioOverlayFilter(
     private val overlaySampleRate: Int
 
     private val renderQueue = LinkedBlockingDeque<ByteBuffer>()
+    private var bytesInRenderQueue = 0
     private val bufferPool = ByteBufferPool(true)
     private val audioProcessorFactory = AudioProcessorFactory()
     private var audioProcessor: AudioProcessor? = null
 
     private var channelCount = UNDEFINED_VALUE
     private var sampleRate = UNDEFINED_VALUE
+    private var pcmEncoding = AudioFormat.ENCODING_PCM_16BIT
+    private var bytesPerSample = PcmUtils.getBytesPerSample(pcmEncoding)
+    private var overlayBytesPerSample = bytesPerSample
+    private var frameSamples: FloatArray? = null
+    private var overlaySamples: FloatArray? = null
     private var samplingRatio = 1.0
     private var allOverlayFramesRead: Boolean = false
 
@@ -102,6 +110,11 @@ class AudioOverlayFilter(
 
         samplingRatio = sampleRate.toDouble() / overlaySampleRate.toDouble()
 
+        // overlay is converted to target format, including its PCM encoding, so that it can be mixed sample by sample
+        pcmEncoding = PcmUtils.getPcmEncoding(mediaFormat)
+        bytesPerSample = PcmUtils.getBytesPerSample(pcmEncoding)
+        overlayBytesPerSample = PcmUtils.getBytesPerSample(PcmUtils.getPcmEncoding(mediaSource.getTrackFormat(overlayTrack)))
+
         audioProcessor?.release()
         audioProcessor = audioProcessorFactory.createAudioProcessor(
             mediaSource.getTrackFormat(overlayTrack),
@@ -118,7 +131,10 @@ class AudioOverlayFilter(
         frame.buffer?.let { frameBuffer ->
             while (!sufficientOverlayFramesInQueue(frameBuffer) && !allOverlayFramesRead) {
                 // if we don't have enough overlay frames to apply to incoming audio frame, read more
-                getNextOverlayFrame()?.let { renderQueue.add(it.buffer) } ?: break
+                getNextOverlayFrame()?.buffer?.let {
+                    renderQueue.add(it)
+                    bytesInRenderQueue += it.remaining()
+                } ?: break
             }
 
             renderOverlay(frameBuffer)
@@ -133,10 +149,6 @@ class AudioOverlayFilter(
     }
 
     private fun sufficientOverlayFramesInQueue(frameBuffer: ByteBuffer): Boolean {
-        val bytesInRenderQueue = renderQueue.sumOf { overlayBuffer ->
-            overlayBuffer?.let { it.limit() - it.position() } ?: 0
-        }
-
         return frameBuffer.remaining() <= bytesInRenderQueue
     }
 
@@ -181,9 +193,9 @@ class AudioOverlayFilter(
             ?: throw TrackTranscoderException(TrackTranscoderException.Error.NO_FRAME_AVAILABLE)
 
         // resize decoded overlay frame to match the target frame it will be applied to
-        val sourceSampleCount = decoderOutputFrame.bufferInfo.size / (BYTES_PER_SAMPLE * overlayChannelCount)
+        val sourceSampleCount = decoderOutputFrame.bufferInfo.size / (overlayBytesPerSample * overlayChannelCount)
         val estimatedTargetSampleCount = ceil(sourceSampleCount * samplingRatio).toInt()
-        val targetBufferCapacity = estimatedTargetSampleCount * channelCount * BYTES_PER_SAMPLE
+        val targetBufferCapacity = estimatedTargetSampleCount * channelCount * bytesPerSample
 
         val processedBuffer = bufferPool.get(targetBufferCapacity)
         val processedFrame = Frame(outputTag, processedBuffer, MediaCodec.BufferInfo())
@@ -219,9 +231,41 @@ class AudioOverlayFilter(
     }
 
     private fun applyOverlaySample(frameBuffer: ByteBuffer, overlayBuffer: ByteBuffer, byteCount: Int) {
-        repeat(byteCount / 2) {
-            val mixedValue = frameBuffer.short + overlayBuffer.short
-            frameBuffer.putShort(frameBuffer.position() - 2, mixedValue.toShort())
+        val sampleCount = byteCount / bytesPerSample
+        when (pcmEncoding) {
+            AudioFormat.ENCODING_PCM_16BIT -> repeat(sampleCount) {
+                // saturate instead of letting the sum wrap around, which produces loud clicks
+                val mixedValue = (frameBuffer.short + overlayBuffer.short).coerceIn(Short.MIN_VALUE.toInt(), Short.MAX_VALUE.toInt())
+                frameBuffer.putShort(frameBuffer.position() - 2, mixedValue.toShort())
+            }
+            AudioFormat.ENCODING_PCM_FLOAT -> repeat(sampleCount) {
+                val mixedValue = frameBuffer.float + overlayBuffer.float
+                frameBuffer.putFloat(frameBuffer.position() - 4, mixedValue)
+            }
+            else -> applyOverlaySamples(frameBuffer, overlayBuffer, sampleCount)
+        }
+        bytesInRenderQueue -= sampleCount * bytesPerSample
+    }
+
+    private fun applyOverlaySamples(frameBuffer: ByteBuffer, overlayBuffer: ByteBuffer, sampleCount: Int) {
+        // less common encodings are converted to float, mixed and converted back, in blocks
+        val frameSamples = this.frameSamples ?: FloatArray(MIX_BLOCK_SIZE).also { this.frameSamples = it }
+        val overlaySamples = this.overlaySamples ?: FloatArray(MIX_BLOCK_SIZE).also { this.overlaySamples = it }
+
+        var samplesLeft = sampleCount
+        while (samplesLeft > 0) {
+            val blockSampleCount = min(samplesLeft, MIX_BLOCK_SIZE)
+            PcmUtils.readSamples(frameBuffer, frameBuffer.position(), pcmEncoding, frameSamples, blockSampleCount)
+            PcmUtils.readSamples(overlayBuffer, overlayBuffer.position(), pcmEncoding, overlaySamples, blockSampleCount)
+            for (index in 0 until blockSampleCount) {
+                frameSamples[index] += overlaySamples[index]
+            }
+            PcmUtils.writeSamples(frameSamples, blockSampleCount, frameBuffer, frameBuffer.position(), pcmEncoding)
+
+            val blockByteCount = blockSampleCount * bytesPerSample
+            frameBuffer.position(frameBuffer.position() + blockByteCount)
+            overlayBuffer.position(overlayBuffer.position() + blockByteCount)
+            samplesLeft -= blockSampleCount
         }
     }
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.filter.audio
+
+import java.nio.ByteBuffer
+
+/**
+ * A growable ring buffer of 16 bit PCM samples, which tracks its fill level in constant time.
+ */
+internal class ShortRingBuffer(initialCapacity: Int) {
+
+    private var samples = ShortArray(initialCapacity)
+    private var readIndex = 0
+
+    /**
+     * Number of samples available for reading.
+     */
+    var size = 0
+        private set
+
+    /**
+     * Writes all remaining samples from a buffer, growing capacity if necessary.
+     */
+    fun write(buffer: ByteBuffer) {
+        val sampleCount = buffer.remaining() / 2
+        ensureCapacity(size + sampleCount)
+
+        var writeIndex = (readIndex + size) % samples.size
+        repeat(sampleCount) {
+            samples[writeIndex] = buffer.short
+            writeIndex++
+            if (writeIndex == samples.size) {
+                writeIndex = 0
+            }
+        }
+        size += sampleCount
+    }
+
+    /**
+     * Reads next sample. Must only be called when [size] is positive.
+     */
+    fun read(): Short {
+        val sample = samples[readIndex]
+        readIndex++
+        if (readIndex == samples.size) {
+            readIndex = 0
+        }
+        size--
+        return sample
+    }
+
+    fun clear() {
+        readIndex = 0
+        size = 0
+    }
+
+    private fun ensureCapacity(capacity: Int) {
+        if (capacity <= samples.size) {
+            return
+        }
+
+        val newSamples = ShortArray(maxOf(capacity, samples.size * 2))
+        repeat(size) { index ->
+            newSamples[index] = samples[(readIndex + index) % samples.size]
+        }
+        samples = newSamples
+        readIndex = 0
+    }
+}
@@ -7,14 +7,19 @@
  */
 package com.linkedin.android.litr.filter.audio
 
+import android.media.AudioFormat
 import android.media.MediaFormat
 import androidx.annotation.FloatRange
 import com.linkedin.android.litr.codec.Frame
 import com.linkedin.android.litr.filter.BufferFilter
+import com.linkedin.android.litr.filter.FloatBufferFilter
+import com.linkedin.android.litr.utils.PcmUtils
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
 import kotlin.math.pow
 
-private const val SAMPLE_SIZE = 2 // audio sample size on Android is 2 bytes per channel
 private const val BASE = 10.0 // volume is logarithmic, we will use base 10
+private const val CONVERSION_BLOCK_SIZE = 1024
 
 /**
  * An audio filter that changes the audio track volume:
@@ -22,23 +27,80 @@ private const val BASE = 10.0 // volume is logarithmic, we will use base 10
  * - 0 will silence the track
  * - value <1 will lower the volume
  * - value >1 will increase it. One has to be careful with these, since large values may result in distortion.
+ *
+ * Can be used either as a [BufferFilter], or as a [FloatBufferFilter] within a [FloatAudioFilterChain].
  */
-class VolumeFilter(@FloatRange(from = 0.0) private val volume: Double) : BufferFilter{
+class VolumeFilter(@FloatRange(from = 0.0) private val volume: Double) : BufferFilter, FloatBufferFilter {
+
+    private val gain = (BASE.pow(volume) - 1) / (BASE - 1)
+    private val floatGain = gain.toFloat()
 
-    override fun init(mediaFormat: MediaFormat?) {}
+    private var pcmEncoding = AudioFormat.ENCODING_PCM_16BIT
+    private var samples: FloatArray? = null
+
+    override fun init(mediaFormat: MediaFormat?) {
+        pcmEncoding = PcmUtils.getPcmEncoding(mediaFormat)
+    }
 
     override fun apply(frame: Frame) {
-        frame.buffer?.asShortBuffer()?.let { buffer ->
-            val sampleCount = frame.bufferInfo.size / SAMPLE_SIZE
-            repeat(sampleCount) { index ->
-                // replace sample at index with volume adjusted value
-                buffer.put(
-                    index,
-                    (buffer.get(index) * (BASE.pow(volume) -1 ) / (BASE - 1)).toInt().toShort()
-                )
+        val buffer = frame.buffer ?: return
+        val byteOrder = buffer.order()
+        buffer.order(ByteOrder.LITTLE_ENDIAN)
+
+        val startPosition = frame.bufferInfo.offset
+        val sampleCount = frame.bufferInfo.size / PcmUtils.getBytesPerSample(pcmEncoding)
+        when (pcmEncoding) {
+            AudioFormat.ENCODING_PCM_16BIT -> applyToPcm16(buffer, startPosition, sampleCount)
+            AudioFormat.ENCODING_PCM_FLOAT -> applyToPcmFloat(buffer, startPosition, sampleCount)
+            else -> applyToPcm(buffer, startPosition, sampleCount)
+        }
+
+        buffer.order(byteOrder)
+    }
+
+    override fun apply(samples: Array<FloatArray>, sampleCount: Int, presentationTimeUs: Long) {
+        for (channelSamples in samples) {
+            for (index in 0 until sampleCount) {
+                channelSamples[index] *= floatGain
             }
         }
     }
 
     override fun release() {}
+
+    private fun applyToPcm16(buffer: ByteBuffer, startPosition: Int, sampleCount: Int) {
+        var position = startPosition
+        repeat(sampleCount) {
+            // replace sample with volume adjusted value, clipped to avoid wrapping around
+            val value = (buffer.getShort(position) * gain).toInt().coerceIn(Short.MIN_VALUE.toInt(), Short.MAX_VALUE.toInt())
+            buffer.putShort(position, value.toShort())
+            position += 2
+        }
+    }
+
+    private fun applyToPcmFloat(buffer: ByteBuffer, startPosition: Int, sampleCount: Int) {
+        var position = startPosition
+        repeat(sampleCount) {
+            buffer.putFloat(position, buffer.getFloat(position) * floatGain)
+            position += 4
+        }
+    }
+
+    private fun applyToPcm(buffer: ByteBuffer, startPosition: Int, sampleCount: Int) {
+        // less common encodings are converted to float and back, in blocks
+        val samples = this.samples ?: FloatArray(CONVERSION_BLOCK_SIZE).also { this.samples = it }
+        val bytesPerSample = PcmUtils.getBytesPerSample(pcmEncoding)
+        var position = startPosition
+        var samplesLeft = sampleCount
+        while (samplesLeft > 0) {
+            val blockSampleCount = minOf(samplesLeft, CONVERSION_BLOCK_SIZE)
+            PcmUtils.readSamples(buffer, position, pcmEncoding, samples, blockSampleCount)
+            for (index in 0 until blockSampleCount) {
+                samples[index] *= floatGain
+            }
+            PcmUtils.writeSamples(samples, blockSampleCount, buffer, position, pcmEncoding)
+            position += blockSampleCount * bytesPerSample
+            samplesLeft -= blockSampleCount
+        }
+    }
 }
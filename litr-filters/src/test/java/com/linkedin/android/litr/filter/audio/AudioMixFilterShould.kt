@@ -0,0 +1,232 @@
+package com.linkedin.android.litr.filter.audio
+
+import android.media.AudioFormat
+import android.media.MediaCodec
+import android.media.MediaFormat
+import android.view.Surface
+import com.linkedin.android.litr.codec.Decoder
+import com.linkedin.android.litr.codec.Frame
+import com.linkedin.android.litr.io.MediaSource
+import org.junit.Test
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.mock
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import kotlin.test.assertEquals
+
+private const val SAMPLE_RATE = 1000
+private const val SAMPLE_DURATION_US = 1_000_000L / SAMPLE_RATE
+private const val TRACK_SAMPLE_COUNT = 100
+private const val TRACK_SAMPLE = 1000
+private const val INPUT_FRAME_SAMPLE_COUNT = 30
+
+class AudioMixFilterShould {
+
+    private val trackFormat = createFormat()
+
+    @Test
+    fun `mix input samples into track`() {
+        val filter = AudioMixFilter(listOf(createInput(2000, gain = 0.5f)))
+
+        val samples = mix(filter)
+
+        assertEquals(List(TRACK_SAMPLE_COUNT) { TRACK_SAMPLE + 1000 }, samples)
+    }
+
+    @Test
+    fun `saturate mixed samples`() {
+        val loudFilter = AudioMixFilter(listOf(createInput(20_000), createInput(20_000)))
+        val quietFilter = AudioMixFilter(listOf(createInput(-20_000), createInput(-20_000)))
+
+        assertEquals(List(TRACK_SAMPLE_COUNT) { Short.MAX_VALUE.toInt() }, mix(loudFilter))
+        assertEquals(List(TRACK_SAMPLE_COUNT) { Short.MIN_VALUE.toInt() }, mix(quietFilter))
+    }
+
+    @Test
+    fun `start input at its start offset`() {
+        val startSampleCount = 10
+        val filter = AudioMixFilter(listOf(createInput(2000, startOffsetUs = startSampleCount * SAMPLE_DURATION_US)))
+
+        val samples = mix(filter)
+
+        assertEquals(List(startSampleCount) { TRACK_SAMPLE }, samples.take(startSampleCount))
+        assertEquals(List(TRACK_SAMPLE_COUNT - startSampleCount) { TRACK_SAMPLE + 2000 }, samples.drop(startSampleCount))
+    }
+
+    @Test
+    fun `loop input only when requested`() {
+        val loopingFilter = AudioMixFilter(listOf(createInput(2000, frameCount = 1, loop = true)))
+        val filter = AudioMixFilter(listOf(createInput(2000, frameCount = 1, loop = false)))
+
+        assertEquals(List(TRACK_SAMPLE_COUNT) { TRACK_SAMPLE + 2000 }, mix(loopingFilter))
+        val samples = mix(filter)
+        assertEquals(List(INPUT_FRAME_SAMPLE_COUNT) { TRACK_SAMPLE + 2000 }, samples.take(INPUT_FRAME_SAMPLE_COUNT))
+        assertEquals(List(TRACK_SAMPLE_COUNT - INPUT_FRAME_SAMPLE_COUNT) { TRACK_SAMPLE }, samples.drop(INPUT_FRAME_SAMPLE_COUNT))
+    }
+
+    @Test
+    fun `reuse decoder when looping input`() {
+        val decoder = ConstantDecoder(2000, 1)
+        val filter = AudioMixFilter(listOf(createInput(decoder, loop = true)))
+
+        assertEquals(List(TRACK_SAMPLE_COUNT) { TRACK_SAMPLE + 2000 }, mix(filter))
+        assertEquals(1, decoder.initCount)
+        assertEquals(TRACK_SAMPLE_COUNT / INPUT_FRAME_SAMPLE_COUNT, decoder.flushCount)
+    }
+
+    @Test
+    fun `stop looping input which decodes to no samples`() {
+        val decoder = ConstantDecoder(2000, 0)
+        val filter = AudioMixFilter(listOf(createInput(decoder, loop = true)))
+
+        assertEquals(List(TRACK_SAMPLE_COUNT) { TRACK_SAMPLE }, mix(filter))
+        assertEquals(0, decoder.flushCount)
+    }
+
+    @Test
+    fun `convert input from decoder output format`() {
+        // decoder reports float output, while track format does not specify encoding
+        val filter = AudioMixFilter(listOf(createInput(ConstantDecoder(2000, Int.MAX_VALUE, AudioFormat.ENCODING_PCM_FLOAT))))
+
+        assertEquals(List(TRACK_SAMPLE_COUNT) { TRACK_SAMPLE + 2000 }, mix(filter))
+    }
+
+    private fun mix(filter: AudioMixFilter): List<Int> {
+        val buffer = ByteBuffer.allocate(TRACK_SAMPLE_COUNT * 2).order(ByteOrder.LITTLE_ENDIAN)
+        repeat(TRACK_SAMPLE_COUNT) { buffer.putShort(TRACK_SAMPLE.toShort()) }
+        buffer.flip()
+        val bufferInfo = MediaCodec.BufferInfo().apply {
+            offset = 0
+            size = buffer.limit()
+            presentationTimeUs = 0
+        }
+
+        filter.init(trackFormat)
+        filter.apply(Frame(0, buffer, bufferInfo))
+        filter.release()
+
+        return List(TRACK_SAMPLE_COUNT) { buffer.getShort(it * 2).toInt() }
+    }
+
+    private fun createInput(
+        sample: Int,
+        gain: Float = 1f,
+        startOffsetUs: Long = 0,
+        frameCount: Int = Int.MAX_VALUE,
+        loop: Boolean = false
+    ) = createInput(ConstantDecoder(sample, frameCount), gain, startOffsetUs, loop)
+
+    private fun createInput(
+        decoder: Decoder,
+        gain: Float = 1f,
+        startOffsetUs: Long = 0,
+        loop: Boolean = false
+    ): AudioMixInput {
+        val inputFormat = createFormat()
+        val mediaSource = mock<MediaSource> {
+            on { trackCount } doReturn 1
+            on { getTrackFormat(0) } doReturn inputFormat
+        }
+        return AudioMixInput(mediaSource, decoder, gain, startOffsetUs, loop)
+    }
+
+    private fun createFormat(pcmEncoding: Int? = null) = mock<MediaFormat> {
+        on { getString(MediaFormat.KEY_MIME) } doReturn MediaFormat.MIMETYPE_AUDIO_RAW
+        on { containsKey(MediaFormat.KEY_SAMPLE_RATE) } doReturn true
+        on { getInteger(MediaFormat.KEY_SAMPLE_RATE) } doReturn SAMPLE_RATE
+        on { containsKey(MediaFormat.KEY_CHANNEL_COUNT) } doReturn true
+        on { getInteger(MediaFormat.KEY_CHANNEL_COUNT) } doReturn 1
+        if (pcmEncoding != null) {
+            on { containsKey(MediaFormat.KEY_PCM_ENCODING) } doReturn true
+            on { getInteger(MediaFormat.KEY_PCM_ENCODING) } doReturn pcmEncoding
+        }
+    }
+
+    /**
+     * Decoder of mono audio, which outputs [frameCount] frames with constant samples for queued input frames, then end of stream.
+     * Output format is reported before the first frame when it is not 16 bit PCM.
+     */
+    private inner class ConstantDecoder(
+        private val sample: Int,
+        private val frameCount: Int,
+        private val pcmEncoding: Int = AudioFormat.ENCODING_PCM_16BIT
+    ) : Decoder {
+        private val inputFrame = Frame(0, ByteBuffer.allocate(INPUT_FRAME_SAMPLE_COUNT * 2), null)
+        private val outputFormat = createFormat(pcmEncoding)
+        private var pendingFrameCount = 0
+        private var outputFrameCount = 0
+        private var outputFrame: Frame? = null
+        private var isOutputFormatChanged = pcmEncoding != AudioFormat.ENCODING_PCM_16BIT
+        var initCount = 0
+        var flushCount = 0
+
+        override fun init(mediaFormat: MediaFormat, surface: Surface?) {
+            pendingFrameCount = 0
+            outputFrameCount = 0
+            initCount++
+        }
+
+        override fun start() {}
+
+        override fun isRunning() = true
+
+        override fun dequeueInputFrame(timeout: Long) = 0
+
+        override fun getInputFrame(tag: Int) = inputFrame
+
+        override fun queueInputFrame(frame: Frame) {
+            pendingFrameCount++
+        }
+
+        override fun dequeueOutputFrame(timeout: Long): Int {
+            if (isOutputFormatChanged) {
+                isOutputFormatChanged = false
+                return MediaCodec.INFO_OUTPUT_FORMAT_CHANGED
+            }
+            if (pendingFrameCount == 0) {
+                return MediaCodec.INFO_TRY_AGAIN_LATER
+            }
+            pendingFrameCount--
+
+            val bufferInfo = MediaCodec.BufferInfo()
+            val buffer = ByteBuffer.allocate(INPUT_FRAME_SAMPLE_COUNT * 4).order(ByteOrder.LITTLE_ENDIAN)
+            if (outputFrameCount < frameCount) {
+                repeat(INPUT_FRAME_SAMPLE_COUNT) {
+                    if (pcmEncoding == AudioFormat.ENCODING_PCM_FLOAT) {
+                        buffer.putFloat(sample / 32768f)
+                    } else {
+                        buffer.putShort(sample.toShort())
+                    }
+                }
+                bufferInfo.size = buffer.position()
+                outputFrameCount++
+            } else {
+                bufferInfo.flags = MediaCodec.BUFFER_FLAG_END_OF_STREAM
+            }
+            buffer.flip()
+            outputFrame = Frame(1, buffer, bufferInfo)
+            return 1
+        }
+
+        override fun getOutputFrame(tag: Int) = outputFrame
+
+        override fun releaseOutputFrame(tag: Int, render: Boolean) {
+            outputFrame = null
+        }
+
+        override fun getOutputFormat() = outputFormat
+
+        override fun flush() {
+            pendingFrameCount = 0
+            outputFrameCount = 0
+            outputFrame = null
+            flushCount++
+        }
+
+        override fun stop() {}
+
+        override fun release() {}
+
+        override fun getName() = "ConstantDecoder"
+    }
+}
@@ -0,0 +1,54 @@
+package com.linkedin.android.litr.filter.audio
+
+import org.junit.Test
+import java.nio.ByteBuffer
+import kotlin.test.assertEquals
+
+class ShortRingBufferShould {
+
+    @Test
+    fun `read samples in order they were written`() {
+        val ringBuffer = ShortRingBuffer(8)
+
+        ringBuffer.write(createBuffer(0 until 5))
+        assertEquals(5, ringBuffer.size)
+        assertEquals((0 until 3).toList(), List(3) { ringBuffer.read().toInt() })
+
+        // wraps around the end of its storage
+        ringBuffer.write(createBuffer(5 until 10))
+        assertEquals(7, ringBuffer.size)
+        assertEquals((3 until 10).toList(), List(7) { ringBuffer.read().toInt() })
+        assertEquals(0, ringBuffer.size)
+    }
+
+    @Test
+    fun `grow keeping unread samples`() {
+        val ringBuffer = ShortRingBuffer(4)
+
+        ringBuffer.write(createBuffer(0 until 3))
+        ringBuffer.read()
+        ringBuffer.write(createBuffer(3 until 20))
+
+        assertEquals(19, ringBuffer.size)
+        assertEquals((1 until 20).toList(), List(19) { ringBuffer.read().toInt() })
+    }
+
+    @Test
+    fun `drop unread samples when cleared`() {
+        val ringBuffer = ShortRingBuffer(4)
+        ringBuffer.write(createBuffer(0 until 3))
+
+        ringBuffer.clear()
+        ringBuffer.write(createBuffer(10 until 12))
+
+        assertEquals(2, ringBuffer.size)
+        assertEquals(listOf(10, 11), List(2) { ringBuffer.read().toInt() })
+    }
+
+    private fun createBuffer(values: IntRange): ByteBuffer {
+        val buffer = ByteBuffer.allocate(values.count() * 2)
+        values.forEach { buffer.putShort(it.toShort()) }
+        buffer.flip()
+        return buffer
+    }
+}
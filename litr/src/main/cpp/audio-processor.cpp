@@ -6,18 +6,33 @@
  * license information.
  */
 #include <jni.h>
+#include <cstdint>
+#include <cstring>
 #include "oboe_resampler/MultiChannelResampler.h"
 
 using namespace resampler;
 
+// PCM encoding values, as defined in android.media.AudioFormat
+const int ENCODING_PCM_16BIT = 2;
+const int ENCODING_PCM_8BIT = 3;
+const int ENCODING_PCM_FLOAT = 4;
+const int ENCODING_PCM_24BIT_PACKED = 21;
+const int ENCODING_PCM_32BIT = 22;
+
 MultiChannelResampler* oboeResampler = nullptr;
 int inputChannelCount = -1;
 int outputChannelCount = -1;
+int inputPcmEncoding = ENCODING_PCM_16BIT;
+int outputPcmEncoding = ENCODING_PCM_16BIT;
+int inputBytesPerSample = 2;
+int outputBytesPerSample = 2;
 
 float* resamplerInputBuffer = nullptr;
 float* resamplerOutputBuffer = nullptr;
 
+int getBytesPerSample(int pcmEncoding);
 void populateInputBuffer(const jbyte *sourceBuffer, int sourceSample, float* inputBuffer, int sourceChannelCount, int targetChannelCount);
+void putTargetValue(jbyte *targetBuffer, int index, float value);
 
 extern "C" JNIEXPORT void JNICALL
 Java_com_linkedin_android_litr_render_OboeAudioProcessor_initProcessor(
@@ -25,8 +40,10 @@ Java_com_linkedin_android_litr_render_OboeAudioProcessor_initProcessor(
         jobject /* this */,
         jint sourceChannelCount,
         jint sourceSampleRate,
+        jint sourcePcmEncoding,
         jint targetChannelCount,
-        jint targetSampleRate) {
+        jint targetSampleRate,
+        jint targetPcmEncoding) {
     oboeResampler = MultiChannelResampler::make(
             targetChannelCount,
             sourceSampleRate,
@@ -41,6 +58,10 @@ Java_com_linkedin_android_litr_render_OboeAudioProcessor_initProcessor(
 
     inputChannelCount = sourceChannelCount;
     outputChannelCount = targetChannelCount;
+    inputPcmEncoding = sourcePcmEncoding;
+    outputPcmEncoding = targetPcmEncoding;
+    inputBytesPerSample = getBytesPerSample(sourcePcmEncoding);
+    outputBytesPerSample = getBytesPerSample(targetPcmEncoding);
 
     resamplerInputBuffer = new float[outputChannelCount];
     resamplerOutputBuffer = new float[outputChannelCount];
@@ -69,16 +90,9 @@ Java_com_linkedin_android_litr_render_OboeAudioProcessor_processAudioFrame(
             } else {
                 oboeResampler->readNextFrame(resamplerOutputBuffer);
                 for (int channel = 0; channel < outputChannelCount; channel++) {
-                    float value = resamplerOutputBuffer[channel];
-                    if (value < -32768) {
-                        value = -32768;
-                    } else if (value > 32767) {
-                        value = 32767;
-                    }
                     int index = framesProcessed * outputChannelCount + channel;
-                    if((index * 2 + 1) < jtargetBufferSize) {
-                        targetBuffer[index * 2 + 0] = ((short) value) & 0xFF;
-                        targetBuffer[index * 2 + 1] = ((short) value >> 8) & 0xFF;
+                    if ((index + 1) * outputBytesPerSample <= jtargetBufferSize) {
+                        putTargetValue(targetBuffer, index, resamplerOutputBuffer[channel]);
                     }
                 }
                 framesProcessed++;
@@ -110,10 +124,80 @@ Java_com_linkedin_android_litr_render_OboeAudioProcessor_releaseProcessor(
     }
 }
 
+int getBytesPerSample(int pcmEncoding) {
+    switch (pcmEncoding) {
+        case ENCODING_PCM_8BIT:
+            return 1;
+        case ENCODING_PCM_24BIT_PACKED:
+            return 3;
+        case ENCODING_PCM_32BIT:
+        case ENCODING_PCM_FLOAT:
+            return 4;
+        default:
+            return 2;
+    }
+}
+
 float getSourceValue(const jbyte *sourceBuffer, int index) {
-    // bytes contained in audio buffer produced by MediaCodec make up little endian shorts
-    // first we recreate short values, then cast them to floats, expected by Oboe resampler
-    return (float) ((short) (((sourceBuffer[index * 2 + 1] & 0xFF) << 8) | sourceBuffer[index * 2] & 0xFF));
+    // bytes contained in audio buffer produced by MediaCodec make up little endian samples
+    // we recreate sample values, then convert them to floats in 16 bit range, which resampler works with
+    const jbyte *sample = sourceBuffer + index * inputBytesPerSample;
+    switch (inputPcmEncoding) {
+        case ENCODING_PCM_8BIT:
+            // 8 bit PCM is unsigned
+            return (float) ((sample[0] & 0xFF) - 128) * 256.0f;
+        case ENCODING_PCM_24BIT_PACKED:
+            return (float) ((sample[2] << 16) | ((sample[1] & 0xFF) << 8) | (sample[0] & 0xFF)) / 256.0f;
+        case ENCODING_PCM_32BIT: {
+            int32_t value;
+            memcpy(&value, sample, sizeof(value));
+            return (float) value / 65536.0f;
+        }
+        case ENCODING_PCM_FLOAT: {
+            float value;
+            memcpy(&value, sample, sizeof(value));
+            return value * 32768.0f;
+        }
+        default:
+            return (float) ((short) (((sample[1] & 0xFF) << 8) | sample[0] & 0xFF));
+    }
+}
+
+void putTargetValue(jbyte *targetBuffer, int index, float value) {
+    jbyte *sample = targetBuffer + index * outputBytesPerSample;
+    if (outputPcmEncoding == ENCODING_PCM_FLOAT) {
+        // float samples have headroom, so they are not clipped
+        float floatValue = value / 32768.0f;
+        memcpy(sample, &floatValue, sizeof(floatValue));
+        return;
+    }
+
+    if (value < -32768) {
+        value = -32768;
+    } else if (value > 32767) {
+        value = 32767;
+    }
+    switch (outputPcmEncoding) {
+        case ENCODING_PCM_8BIT:
+            sample[0] = (jbyte) (((int) value >> 8) + 128);
+            break;
+        case ENCODING_PCM_24BIT_PACKED: {
+            auto intValue = (int32_t) (value * 256.0f);
+            sample[0] = intValue & 0xFF;
+            sample[1] = (intValue >> 8) & 0xFF;
+            sample[2] = (intValue >> 16) & 0xFF;
+            break;
+        }
+        case ENCODING_PCM_32BIT: {
+            auto intValue = (int32_t) (value * 65536.0f);
+            memcpy(sample, &intValue, sizeof(intValue));
+            break;
+        }
+        default:
+            sample[0] = ((short) value) & 0xFF;
+            sample[1] = ((short) value >> 8) & 0xFF;
+            break;
+    }
 }
 
 void populateInputBuffer(const jbyte *sourceBuffer, int sourceSample, float* inputBuffer, int sourceChannelCount, int targetChannelCount) {
@@ -7,19 +7,28 @@
  */
 package com.linkedin.android.litr;
 
-import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
 import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import com.linkedin.android.litr.analytics.TrackTransformationInfo;
+import com.linkedin.android.litr.io.ContentManifest;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Delivers transformation events of a single job to a {@link TransformationListener}, on a thread of provided {@link Looper}.
+ * Progress updates are coalesced: only the latest progress is kept, and at most one progress message per job is pending
+ * in looper's queue at any time, so listener traffic stays bounded no matter how frequently progress is reported.
+ * Lifecycle events use preallocated event objects, since each of them is reported at most once per job.
+ */
 class MarshallingTransformationListener {
     private static final String TAG = MarshallingTransformationListener.class.getSimpleName();
 
@@ -29,14 +38,17 @@ class MarshallingTransformationListener {
     private static final int EVENT_PROGRESS = 3;
     private static final int EVENT_CANCELLED = 4;
 
-    private static final String KEY_JOB_ID = "jobId";
-    private static final String KEY_PROGRESS = "progress";
-    private static final String KEY_THROWABLE = "throwable";
-
     private final Map<String, Future<?>> futureMap;
     private final TransformationListener listener;
 
-    private final Bundle data = new Bundle();
+    private final Event startedEvent = new Event(EVENT_STARTED);
+    private final Event completedEvent = new Event(EVENT_COMPLETED);
+    private final Event cancelledEvent = new Event(EVENT_CANCELLED);
+    private final Event errorEvent = new Event(EVENT_ERROR);
+    private final Event progressEvent = new Event(EVENT_PROGRESS);
+    // latest progress which was not yet delivered, non-null only while a progress message is pending
+    private final AtomicReference<TransformationProgress> pendingProgress = new AtomicReference<>();
+
     private MarshallingHandler handler;
 
     MarshallingTransformationListener(@NonNull Map<String, Future<?>> futureMap,
@@ -46,7 +58,7 @@ class MarshallingTransformationListener {
         this.listener = listener;
 
         if (looper != null) {
-            handler = new MarshallingHandler(looper, listener);
+            handler = new MarshallingHandler(looper);
         }
     }
 
@@ -54,26 +66,20 @@ class MarshallingTransformationListener {
         if (handler == null) {
             listener.onStarted(jobId);
         } else {
-            Message msg = Message.obtain(handler, EVENT_STARTED);
-            msg.obj = null;
-            data.putString(KEY_JOB_ID, jobId);
-            msg.setData(data);
-            msg.sendToTarget();
+            sendEvent(startedEvent.set(jobId, null, null));
         }
     }
 
     void onCompleted(@NonNull String jobId,
-                     @NonNull final List<TrackTransformationInfo> trackTransformationInfos) {
+                     @NonNull final List<TrackTransformationInfo> trackTransformationInfos,
+                     @NonNull final List<ContentManifest> contentManifests) {
         futureMap.remove(jobId);
 
         if (handler == null) {
-            listener.onCompleted(jobId, trackTransformationInfos);
+            listener.onCompleted(jobId, trackTransformationInfos, contentManifests);
         } else {
-            Message msg = Message.obtain(handler, EVENT_COMPLETED);
-            msg.obj = trackTransformationInfos;
-            data.putString(KEY_JOB_ID, jobId);
-            msg.setData(data);
-            msg.sendToTarget();
+            completedEvent.contentManifests = contentManifests;
+            sendEvent(completedEvent.set(jobId, trackTransformationInfos, null));
         }
     }
 
@@ -84,11 +90,7 @@ class MarshallingTransformationListener {
         if (handler == null) {
             listener.onCancelled(jobId, trackTransformationInfos);
         } else {
-            Message msg = Message.obtain(handler, EVENT_CANCELLED);
-            msg.obj = trackTransformationInfos;
-            data.putString(KEY_JOB_ID, jobId);
-            msg.setData(data);
-            msg.sendToTarget();
+            sendEvent(cancelledEvent.set(jobId, trackTransformationInfos, null));
         }
     }
 
@@ -100,75 +102,104 @@ class MarshallingTransformationListener {
         if (handler == null) {
             listener.onError(jobId, cause, trackTransformationInfos);
         } else {
-            Message msg = Message.obtain(handler, EVENT_ERROR);
-            msg.obj = trackTransformationInfos;
-            data.putString(KEY_JOB_ID, jobId);
-            data.putSerializable(KEY_THROWABLE, cause);
-            msg.setData(data);
-            msg.sendToTarget();
+            sendEvent(errorEvent.set(jobId, trackTransformationInfos, cause));
         }
     }
 
     void onProgress(@NonNull String jobId,
-                    float progress) {
+                    @NonNull TransformationProgress progress) {
         if (handler == null) {
+            listener.onProgress(jobId, progress.getProgress());
             listener.onProgress(jobId, progress);
         } else {
-            Message msg = Message.obtain(handler, EVENT_PROGRESS);
-            msg.obj = null;
-            data.putString(KEY_JOB_ID, jobId);
-            data.putFloat(KEY_PROGRESS, progress);
-            msg.setData(data);
-            msg.sendToTarget();
+            progressEvent.jobId = jobId;
+            if (pendingProgress.getAndSet(progress) == null) {
+                // no progress message is pending, post one, otherwise pending message will pick up the latest progress
+                sendEvent(progressEvent);
+            }
+        }
+    }
+
+    @VisibleForTesting
+    void sendEvent(@NonNull Event event) {
+        Message.obtain(handler, event.type, event).sendToTarget();
+    }
+
+    /**
+     * Deliver an event to listener. Called on looper thread.
+     */
+    @VisibleForTesting
+    void deliverEvent(@NonNull Event event) {
+        switch (event.type) {
+            case EVENT_STARTED: {
+                listener.onStarted(event.jobId);
+                break;
+            }
+            case EVENT_COMPLETED: {
+                listener.onCompleted(event.jobId, event.trackTransformationInfos, event.contentManifests);
+                break;
+            }
+            case EVENT_CANCELLED: {
+                listener.onCancelled(event.jobId, event.trackTransformationInfos);
+                break;
+            }
+            case EVENT_ERROR: {
+                listener.onError(event.jobId, event.cause, event.trackTransformationInfos);
+                break;
+            }
+            case EVENT_PROGRESS: {
+                TransformationProgress progress = pendingProgress.getAndSet(null);
+                if (progress != null) {
+                    listener.onProgress(event.jobId, progress.getProgress());
+                    listener.onProgress(event.jobId, progress);
+                }
+                break;
+            }
+            default:
+                Log.e(TAG, "Unknown event received: " + event.type);
         }
     }
 
-    private static class MarshallingHandler extends Handler {
+    /**
+     * A transformation event, passed to looper thread as message object. Fields are written before a message is sent
+     * and read after it is received, so message queue provides the necessary happens-before ordering.
+     */
+    @VisibleForTesting
+    static class Event {
+        private final int type;
+
+        private String jobId;
+        @Nullable private List<TrackTransformationInfo> trackTransformationInfos;
+        @Nullable private Throwable cause;
+        @NonNull private List<ContentManifest> contentManifests = Collections.emptyList();
+
+        private Event(int type) {
+            this.type = type;
+        }
 
-        private final TransformationListener listener;
+        @NonNull
+        private Event set(@NonNull String jobId,
+                          @Nullable List<TrackTransformationInfo> trackTransformationInfos,
+                          @Nullable Throwable cause) {
+            this.jobId = jobId;
+            this.trackTransformationInfos = trackTransformationInfos;
+            this.cause = cause;
+            return this;
+        }
+    }
+
+    private class MarshallingHandler extends Handler {
 
-        private MarshallingHandler(@NonNull Looper looper, @NonNull TransformationListener listener) {
+        private MarshallingHandler(@NonNull Looper looper) {
             super(looper);
-            this.listener = listener;
         }
 
         @Override
         public void handleMessage(@NonNull Message message) {
-            @SuppressWarnings("unchecked")
-            List<TrackTransformationInfo> trackTransformationInfos = message.obj == null ? null : (List<TrackTransformationInfo>) message.obj;
-
-            Bundle data = message.getData();
-            String jobId = data.getString(KEY_JOB_ID);
-            if (jobId == null) {
-                throw new IllegalArgumentException("Handler message doesn't contain an id!");
-            }
-
-            switch (message.what) {
-                case EVENT_STARTED: {
-                    listener.onStarted(jobId);
-                    break;
-                }
-                case EVENT_COMPLETED: {
-                    listener.onCompleted(jobId, trackTransformationInfos);
-                    break;
-                }
-                case EVENT_CANCELLED: {
-                    listener.onCancelled(jobId, trackTransformationInfos);
-                    break;
-                }
-                case EVENT_ERROR: {
-                    Throwable cause = (Throwable) data.getSerializable(KEY_THROWABLE);
-                    listener.onError(jobId, cause, trackTransformationInfos);
-                    break;
-                }
-                case EVENT_PROGRESS: {
-                    float progress = data.getFloat(KEY_PROGRESS);
-                    listener.onProgress(jobId, progress);
-                    break;
-                }
-                default:
-                    Log.e(TAG, "Unknown event received: " + message.what);
+            if (!(message.obj instanceof Event)) {
+                throw new IllegalArgumentException("Handler message doesn't contain an event!");
             }
+            deliverEvent((Event) message.obj);
         }
     }
 }
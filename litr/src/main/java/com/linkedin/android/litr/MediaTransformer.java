@@ -25,12 +25,20 @@ import com.linkedin.android.litr.codec.MediaCodecDecoder;
 import com.linkedin.android.litr.codec.MediaCodecEncoder;
 import com.linkedin.android.litr.exception.MediaSourceException;
 import com.linkedin.android.litr.exception.MediaTargetException;
+import com.linkedin.android.litr.io.DigestingMediaTarget;
 import com.linkedin.android.litr.io.MediaExtractorMediaSource;
 import com.linkedin.android.litr.io.MediaMuxerMediaTarget;
 import com.linkedin.android.litr.io.MediaSource;
+import com.linkedin.android.litr.io.MediaRange;
 import com.linkedin.android.litr.io.MediaTarget;
+import com.linkedin.android.litr.io.VerifyingMediaTarget;
+import com.linkedin.android.litr.probe.MediaProbe;
+import com.linkedin.android.litr.probe.MediaProbeResult;
+import com.linkedin.android.litr.probe.SampleIndex;
+import com.linkedin.android.litr.probe.SampleIndexCache;
 import com.linkedin.android.litr.render.AudioRenderer;
 import com.linkedin.android.litr.render.GlVideoRenderer;
+import com.linkedin.android.litr.utils.CodecFailureBlacklist;
 import com.linkedin.android.litr.utils.MediaFormatUtils;
 import com.linkedin.android.litr.utils.TranscoderUtils;
 
@@ -52,6 +60,9 @@ import java.util.concurrent.Future;
  *  - release when you no longer need it
  */
 public class MediaTransformer {
+    /**
+     * Progress is reported whenever it changes, but not more often than once every 100 milliseconds.
+     */
     public static final int GRANULARITY_NONE = 0;
     public static final int GRANULARITY_DEFAULT = 100;
 
@@ -61,6 +72,8 @@ public class MediaTransformer {
     private static final int DEFAULT_FRAME_RATE = 30;
 
     private static final String TAG = MediaTransformer.class.getSimpleName();
+    private static final String REASON_HAS_FILTERS = "track has filters";
+    private static final String REASON_INCOMPATIBLE_AUDIO = "audio codec is not compatible with target container";
     private static final int DEFAULT_FUTURE_MAP_SIZE = 10;
 
     private final Context context;
@@ -69,6 +82,8 @@ public class MediaTransformer {
     private final Looper looper;
 
     private final Map<String, Future<?>> futureMap;
+    private final MediaProbe mediaProbe;
+    private final SampleIndexCache sampleIndexCache;
 
     /**
      * Instantiate MediaTransformer. Listener callbacks will be done on main UI thread.
@@ -89,8 +104,16 @@ public class MediaTransformer {
         this.context = context.getApplicationContext();
 
         futureMap = new HashMap<>(DEFAULT_FUTURE_MAP_SIZE);
+        mediaProbe = new MediaProbe(this.context);
+        sampleIndexCache = new SampleIndexCache(this.context);
         this.looper = looper;
         this.executorService = executorService;
+
+        if (executorService != null) {
+            // load codecs known to fail on this device off the calling thread, before first job looks for codecs
+            final Context applicationContext = this.context;
+            executorService.execute(() -> CodecFailureBlacklist.init(applicationContext));
+        }
     }
 
     /**
@@ -153,7 +176,10 @@ public class MediaTransformer {
                 : transformationOptions;
 
         try {
-            MediaSource mediaSource = new MediaExtractorMediaSource(context, inputUri, options.sourceMediaRange);
+            SampleIndex sampleIndex = options.useSampleIndex
+                    ? getSampleIndexQuietly(inputUri)
+                    : null;
+            MediaSource mediaSource = new MediaExtractorMediaSource(context, inputUri, options.sourceMediaRange, sampleIndex);
 
             int targetTrackCount = 0;
             for (int track = 0; track < mediaSource.getTrackCount(); track++) {
@@ -179,6 +205,22 @@ public class MediaTransformer {
                         targetTrackCount,
                         mediaSource.getOrientationHint(),
                         outputFormat);
+                if (options.verifyOutput && outputFormat == MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4) {
+                    mediaTarget = new VerifyingMediaTarget(context, outputUri, mediaTarget);
+                }
+                if (options.contentManifestChunkSize > 0) {
+                    mediaTarget = new DigestingMediaTarget(context, outputUri, mediaTarget, options.contentManifestChunkSize);
+                }
+
+                MediaProbeResult probeResult = options.passthroughConstraints != null
+                        ? probeQuietly(inputUri)
+                        : null;
+                // trimmed track can be passed through only when selection starts on a sync sample
+                SampleIndex planningSampleIndex = sampleIndex == null
+                        && options.passthroughConstraints != null
+                        && options.sourceMediaRange.getStart() > 0
+                        ? getSampleIndexQuietly(inputUri)
+                        : sampleIndex;
 
                 int trackCount = mediaSource.getTrackCount();
                 List<TrackTransform> trackTransforms = new ArrayList<>(trackCount);
@@ -198,16 +240,30 @@ public class MediaTransformer {
                             .setTargetTrack(trackTransforms.size());
 
                     if (mimeType.startsWith("video")) {
-                        trackTransformBuilder.setDecoder(new MediaCodecDecoder())
+                        trackTransformBuilder.setDecoder(new MediaCodecDecoder(options.codecPool))
                                 .setRenderer(new GlVideoRenderer(options.videoFilters))
-                                .setEncoder(new MediaCodecEncoder())
-                                .setTargetFormat(targetVideoFormat);
+                                .setEncoder(new MediaCodecEncoder(options.codecPool));
+                        planTrack(trackTransformBuilder,
+                                  mediaSource,
+                                  track,
+                                  probeResult,
+                                  planningSampleIndex,
+                                  targetVideoFormat,
+                                  options.videoFilters,
+                                  options.passthroughConstraints);
                     } else if (mimeType.startsWith("audio")) {
-                        Encoder encoder = new MediaCodecEncoder();
-                        trackTransformBuilder.setDecoder(new MediaCodecDecoder())
+                        Encoder encoder = new MediaCodecEncoder(options.codecPool);
+                        trackTransformBuilder.setDecoder(new MediaCodecDecoder(options.codecPool))
                                 .setEncoder(encoder)
-                                .setRenderer(new AudioRenderer(encoder, options.audioFilters))
-                                .setTargetFormat(targetAudioFormat);
+                                .setRenderer(new AudioRenderer(encoder, options.audioFilters));
+                        planTrack(trackTransformBuilder,
+                                  mediaSource,
+                                  track,
+                                  probeResult,
+                                  planningSampleIndex,
+                                  targetAudioFormat,
+                                  options.audioFilters,
+                                  options.passthroughConstraints);
                     } else {
                         trackTransformBuilder.setTargetFormat(null);
                     }
@@ -238,8 +294,9 @@ public class MediaTransformer {
      * @param requestId client defined unique id for a transformation request. If not unique, {@link IllegalArgumentException} will be thrown.
      * @param trackTransforms list of track transformation instructions
      * @param listener {@link TransformationListener} implementation, to get updates on transformation status/result/progress
-     * @param granularity progress reporting granularity. NO_GRANULARITY for per-frame progress reporting,
-     *                    or positive integer value for number of times transformation progress should be reported
+     * @param granularity progress reporting granularity. {@link #GRANULARITY_NONE} to report every change of progress,
+     *                    or positive integer value for number of times transformation progress should be reported.
+     *                    Regardless of granularity, progress is reported at most once every 100 milliseconds
      */
     public void transform(@NonNull String requestId,
                           List<TrackTransform> trackTransforms,
@@ -278,6 +335,9 @@ public class MediaTransformer {
                 MediaFormat targetFormat = createTargetMediaFormat(trackTransform.getMediaSource(),
                                                                    trackTransform.getSourceTrack(),
                                                                    targetVideoMimeType);
+                String planReason = trackTransform.getRenderer() != null && trackTransform.getRenderer().hasFilters()
+                        ? REASON_HAS_FILTERS
+                        : REASON_INCOMPATIBLE_AUDIO;
                 TrackTransform updatedTrackTransform = new TrackTransform.Builder(trackTransform.getMediaSource(),
                                                                                   trackTransform.getSourceTrack(),
                                                                                   trackTransform.getMediaTarget())
@@ -286,6 +346,7 @@ public class MediaTransformer {
                     .setEncoder(trackTransform.getEncoder())
                     .setRenderer(trackTransform.getRenderer())
                     .setTargetFormat(targetFormat)
+                    .setPlanReason(planReason)
                     .build();
 
                 trackTransforms.set(trackIndex, updatedTrackTransform);
@@ -334,15 +395,41 @@ public class MediaTransformer {
                                             @Nullable MediaFormat targetAudioFormat,
                                             @Nullable TransformationOptions transformationOptions) {
         try {
-            MediaSource mediaSource = transformationOptions == null
-            ? new MediaExtractorMediaSource(context, inputUri)
-            : new MediaExtractorMediaSource(context, inputUri, transformationOptions.sourceMediaRange);
-            return TranscoderUtils.getEstimatedTargetVideoFileSize(mediaSource, targetVideoFormat, targetAudioFormat);
+            MediaProbeResult probeResult = mediaProbe.probe(inputUri);
+            MediaRange selection = transformationOptions == null
+                    ? new MediaRange(0, Long.MAX_VALUE)
+                    : transformationOptions.sourceMediaRange;
+            return TranscoderUtils.getEstimatedTargetVideoFileSize(probeResult, selection, targetVideoFormat, targetAudioFormat);
         } catch (MediaSourceException ex) {
             return -1;
         }
     }
 
+    /**
+     * Get a summary of media (tracks, formats, rotation, duration, size, key frame interval), read from container headers
+     * where possible. Results are cached, so probing the same unchanged media again is cheap. Should not be called on UI thread.
+     * @param inputUri {@link Uri} of media
+     * @return media summary
+     * @throws MediaSourceException if media cannot be read
+     */
+    @NonNull
+    public MediaProbeResult probe(@NonNull Uri inputUri) throws MediaSourceException {
+        return mediaProbe.probe(inputUri);
+    }
+
+    /**
+     * Get an index of media samples (timestamps, sizes, offsets and sync flags), for planning seeks and cuts. Index is
+     * built from container sample tables where possible, by scanning entire media otherwise, and is cached on disk, so
+     * indexing the same unchanged media again is cheap. Should not be called on UI thread.
+     * @param inputUri {@link Uri} of media
+     * @return sample index
+     * @throws MediaSourceException if media cannot be read
+     */
+    @NonNull
+    public SampleIndex getSampleIndex(@NonNull Uri inputUri) throws MediaSourceException {
+        return sampleIndexCache.scan(inputUri);
+    }
+
     /**
      * Estimates target size of a target video based on track transformations. If no target audio format is specified,
      * uses 320 Kbps bitrate to estimate audio track size, if cannot extract audio bitrate. If track duration is not available,
@@ -353,6 +440,104 @@ public class MediaTransformer {
         return TranscoderUtils.getEstimatedTargetFileSize(trackTransforms);
     }
 
+    /**
+     * Set target format of a track. In compliance check mode, a source track which satisfies passthrough constraints
+     * gets no target format, so that it is written as is.
+     */
+    private void planTrack(@NonNull TrackTransform.Builder trackTransformBuilder,
+                           @NonNull MediaSource mediaSource,
+                           int sourceTrack,
+                           @Nullable MediaProbeResult probeResult,
+                           @Nullable SampleIndex sampleIndex,
+                           @Nullable MediaFormat targetFormat,
+                           @Nullable List<?> filters,
+                           @Nullable PassthroughConstraints passthroughConstraints) {
+        if (targetFormat == null || passthroughConstraints == null) {
+            trackTransformBuilder.setTargetFormat(targetFormat);
+            return;
+        }
+
+        String violation = filters != null && !filters.isEmpty()
+                ? REASON_HAS_FILTERS
+                : passthroughConstraints.getViolation(getSourceTrack(mediaSource, sourceTrack, probeResult),
+                                                      targetFormat,
+                                                      mediaSource.getSelection(),
+                                                      getTrackIndex(mediaSource, sourceTrack, sampleIndex));
+        if (violation == null) {
+            trackTransformBuilder.setTargetFormat(null)
+                    .setPlanReason(PassthroughConstraints.REASON_COMPLIANT);
+        } else {
+            trackTransformBuilder.setTargetFormat(targetFormat)
+                    .setPlanReason(violation);
+        }
+    }
+
+    /**
+     * Get summary of a source track. Container headers describe a track better than {@link MediaFormat} (bitrate,
+     * key frame interval), so a probed track of the same type and order is used when available.
+     */
+    @NonNull
+    private MediaProbeResult.Track getSourceTrack(@NonNull MediaSource mediaSource,
+                                                  int sourceTrack,
+                                                  @Nullable MediaProbeResult probeResult) {
+        MediaProbeResult.Track track = MediaProbeResult.Track.fromMediaFormat(mediaSource.getTrackFormat(sourceTrack));
+        if (probeResult == null || track.getMimeType() == null) {
+            return track;
+        }
+
+        int sameTypeTrackIndex = 0;
+        for (int index = 0; index < sourceTrack; index++) {
+            if (isSameType(MediaProbeResult.Track.fromMediaFormat(mediaSource.getTrackFormat(index)), track)) {
+                sameTypeTrackIndex++;
+            }
+        }
+        for (MediaProbeResult.Track probedTrack : probeResult.getTracks()) {
+            if (isSameType(probedTrack, track)) {
+                if (sameTypeTrackIndex == 0) {
+                    return track.getMimeType().equals(probedTrack.getMimeType()) ? probedTrack : track;
+                }
+                sameTypeTrackIndex--;
+            }
+        }
+        return track;
+    }
+
+    /**
+     * Get sample index of a source track, null if there is no index or it does not match source tracks
+     */
+    @Nullable
+    private static SampleIndex.Track getTrackIndex(@NonNull MediaSource mediaSource,
+                                                   int sourceTrack,
+                                                   @Nullable SampleIndex sampleIndex) {
+        return sampleIndex != null && sampleIndex.getTrackCount() == mediaSource.getTrackCount()
+                ? sampleIndex.getTrack(sourceTrack)
+                : null;
+    }
+
+    private static boolean isSameType(@NonNull MediaProbeResult.Track track1, @NonNull MediaProbeResult.Track track2) {
+        return track1.isVideo() && track2.isVideo() || track1.isAudio() && track2.isAudio();
+    }
+
+    @Nullable
+    private MediaProbeResult probeQuietly(@NonNull Uri inputUri) {
+        try {
+            return mediaProbe.probe(inputUri);
+        } catch (MediaSourceException ex) {
+            Log.w(TAG, "Failed to probe " + inputUri + ", using source track formats to check passthrough constraints", ex);
+            return null;
+        }
+    }
+
+    @Nullable
+    private SampleIndex getSampleIndexQuietly(@NonNull Uri inputUri) {
+        try {
+            return sampleIndexCache.getSampleIndex(inputUri);
+        } catch (MediaSourceException ex) {
+            Log.w(TAG, "Failed to index " + inputUri + ", seeking without sample index", ex);
+            return null;
+        }
+    }
+
     private boolean shouldIncludeTrack(@NonNull MediaFormat sourceMediaFormat, boolean removeAudio, boolean removeMetadata) {
         String mimeType = null;
         if (sourceMediaFormat.containsKey(MediaFormat.KEY_MIME)) {
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr;
+
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.linkedin.android.litr.io.MediaRange;
+import com.linkedin.android.litr.probe.MediaProbeResult;
+import com.linkedin.android.litr.probe.SampleIndex;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Constraints which a source track must satisfy to be written to target "as is", without transcoding.
+ * When set in {@link TransformationOptions}, each audio and video track which has a target format is checked against them,
+ * and a compliant track is passed through instead of being decoded and re-encoded. Audio track must also match target
+ * sample rate and channel count, when target format sets them, and a trimmed selection must start on a sync sample.
+ * Values which cannot be determined from source (for example, bitrate of some containers) fail the check, so that
+ * a track is never passed through by mistake.
+ * Must be constructed using a {@link Builder}.
+ */
+public class PassthroughConstraints {
+
+    public static final String REASON_COMPLIANT = "source track satisfies passthrough constraints";
+
+    private final int maxWidth;
+    private final int maxHeight;
+    private final int maxVideoBitrate;
+    private final int maxAudioBitrate;
+    private final float maxKeyFrameInterval;
+    @NonNull private final Map<String, Set<Integer>> allowedCodecs;
+
+    private PassthroughConstraints(int maxWidth,
+                                   int maxHeight,
+                                   int maxVideoBitrate,
+                                   int maxAudioBitrate,
+                                   float maxKeyFrameInterval,
+                                   @NonNull Map<String, Set<Integer>> allowedCodecs) {
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+        this.maxVideoBitrate = maxVideoBitrate;
+        this.maxAudioBitrate = maxAudioBitrate;
+        this.maxKeyFrameInterval = maxKeyFrameInterval;
+        this.allowedCodecs = Collections.unmodifiableMap(allowedCodecs);
+    }
+
+    /**
+     * Check if a whole source track can be passed through
+     * @param sourceTrack summary of a source track
+     * @param targetFormat target format of a track, its codec is the only one allowed if no codecs of the same
+     *                     type (audio or video) were explicitly allowed
+     * @return human readable reason why track must be transcoded, null if track can be passed through
+     */
+    @Nullable
+    public String getViolation(@NonNull MediaProbeResult.Track sourceTrack, @NonNull MediaFormat targetFormat) {
+        return getViolation(sourceTrack, targetFormat, new MediaRange(0, Long.MAX_VALUE), null);
+    }
+
+    /**
+     * Check if a selected range of a source track can be passed through. Passed through track starts with the first
+     * sample at or after selection start, so when selection is trimmed, that sample must be a sync sample.
+     * @param sourceTrack summary of a source track
+     * @param targetFormat target format of a track, its codec is the only one allowed if no codecs of the same
+     *                     type (audio or video) were explicitly allowed
+     * @param selection selected range of source
+     * @param trackIndex sample index of a source track, required to pass through a track with non sync samples
+     *                   when selection does not start at the beginning
+     * @return human readable reason why track must be transcoded, null if track can be passed through
+     */
+    @Nullable
+    public String getViolation(@NonNull MediaProbeResult.Track sourceTrack,
+                               @NonNull MediaFormat targetFormat,
+                               @NonNull MediaRange selection,
+                               @Nullable SampleIndex.Track trackIndex) {
+        String mimeType = sourceTrack.getMimeType();
+        if (mimeType == null) {
+            return "source codec is unknown";
+        }
+
+        String violation = getCodecViolation(sourceTrack, mimeType, targetFormat);
+        if (violation != null) {
+            return violation;
+        }
+
+        if (sourceTrack.isVideo()) {
+            if (maxWidth > 0 && maxHeight > 0) {
+                if (sourceTrack.getWidth() <= 0 || sourceTrack.getHeight() <= 0) {
+                    return "video dimensions are unknown";
+                }
+                // compare orientation agnostic, so that portrait video fits landscape constraints
+                if (Math.max(sourceTrack.getWidth(), sourceTrack.getHeight()) > Math.max(maxWidth, maxHeight)
+                        || Math.min(sourceTrack.getWidth(), sourceTrack.getHeight()) > Math.min(maxWidth, maxHeight)) {
+                    return "video dimensions " + sourceTrack.getWidth() + "x" + sourceTrack.getHeight()
+                            + " exceed " + maxWidth + "x" + maxHeight;
+                }
+            }
+            violation = getBitrateViolation(sourceTrack, maxVideoBitrate);
+            if (violation != null) {
+                return violation;
+            }
+            if (maxKeyFrameInterval > 0) {
+                long keyFrameIntervalUs = sourceTrack.getMaxKeyFrameIntervalUs();
+                if (keyFrameIntervalUs < 0) {
+                    return "key frame interval is unknown";
+                }
+                if (keyFrameIntervalUs > maxKeyFrameInterval * 1_000_000) {
+                    return "key frame interval " + keyFrameIntervalUs / 1_000_000f + "s exceeds " + maxKeyFrameInterval + "s";
+                }
+            }
+        } else if (sourceTrack.isAudio()) {
+            violation = getBitrateViolation(sourceTrack, maxAudioBitrate);
+            if (violation != null) {
+                return violation;
+            }
+            violation = getTargetValueViolation("sample rate", sourceTrack.getSampleRate(), targetFormat, MediaFormat.KEY_SAMPLE_RATE);
+            if (violation != null) {
+                return violation;
+            }
+            violation = getTargetValueViolation("channel count", sourceTrack.getChannelCount(), targetFormat, MediaFormat.KEY_CHANNEL_COUNT);
+            if (violation != null) {
+                return violation;
+            }
+        }
+
+        return getSelectionViolation(selection, trackIndex);
+    }
+
+    @Nullable
+    private String getCodecViolation(@NonNull MediaProbeResult.Track sourceTrack,
+                                     @NonNull String mimeType,
+                                     @NonNull MediaFormat targetFormat) {
+        boolean hasAllowedCodecs = false;
+        for (String allowedMimeType : allowedCodecs.keySet()) {
+            if (MimeType.isVideo(allowedMimeType) && sourceTrack.isVideo()
+                    || MimeType.isAudio(allowedMimeType) && sourceTrack.isAudio()) {
+                hasAllowedCodecs = true;
+                break;
+            }
+        }
+
+        if (!hasAllowedCodecs) {
+            String targetMimeType = targetFormat.containsKey(MediaFormat.KEY_MIME)
+                    ? targetFormat.getString(MediaFormat.KEY_MIME)
+                    : null;
+            return mimeType.equals(targetMimeType) ? null : "codec " + mimeType + " does not match target codec " + targetMimeType;
+        }
+
+        Set<Integer> allowedProfiles = allowedCodecs.get(mimeType);
+        if (allowedProfiles == null) {
+            return "codec " + mimeType + " is not allowed";
+        }
+        if (!allowedProfiles.isEmpty()) {
+            if (sourceTrack.getProfile() < 0) {
+                return "codec profile is unknown";
+            }
+            if (!allowedProfiles.contains(sourceTrack.getProfile())) {
+                return "codec profile " + sourceTrack.getProfile() + " is not allowed";
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private static String getTargetValueViolation(@NonNull String name,
+                                                  int sourceValue,
+                                                  @NonNull MediaFormat targetFormat,
+                                                  @NonNull String key) {
+        if (!targetFormat.containsKey(key)) {
+            return null;
+        }
+        if (sourceValue <= 0) {
+            return name + " is unknown";
+        }
+        int targetValue = targetFormat.getInteger(key);
+        return sourceValue == targetValue ? null : name + " " + sourceValue + " does not match target " + name + " " + targetValue;
+    }
+
+    @Nullable
+    private static String getSelectionViolation(@NonNull MediaRange selection, @Nullable SampleIndex.Track trackIndex) {
+        if (selection.getStart() <= 0) {
+            return null;
+        }
+        if (trackIndex == null) {
+            return "sync samples are unknown, selection starts at " + selection.getStart() + "us";
+        }
+        // when every sample is a sync sample (usually audio), any sample can start a track
+        if (trackIndex.getSampleCount() > 0 && trackIndex.getSyncSampleCount() == trackIndex.getSampleCount()) {
+            return null;
+        }
+        long syncSampleTimeUs = trackIndex.findSyncSampleTimeUs(selection.getStart(), MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+        return syncSampleTimeUs == selection.getStart()
+                ? null
+                : "selection start " + selection.getStart() + "us is not on a sync sample";
+    }
+
+    @Nullable
+    private static String getBitrateViolation(@NonNull MediaProbeResult.Track sourceTrack, int maxBitrate) {
+        if (maxBitrate > 0) {
+            if (sourceTrack.getBitrate() <= 0) {
+                return "bitrate is unknown";
+            }
+            if (sourceTrack.getBitrate() > maxBitrate) {
+                return "bitrate " + sourceTrack.getBitrate() + " exceeds " + maxBitrate;
+            }
+        }
+        return null;
+    }
+
+    public static class Builder {
+        private int maxWidth;
+        private int maxHeight;
+        private int maxVideoBitrate;
+        private int maxAudioBitrate;
+        private float maxKeyFrameInterval;
+        private final Map<String, Set<Integer>> allowedCodecs = new HashMap<>();
+
+        /**
+         * Set maximum video dimensions. Comparison is orientation agnostic: longer source side is compared to longer
+         * maximum side, shorter to shorter. Not limited by default.
+         */
+        @NonNull
+        public Builder setMaxDimensions(int width, int height) {
+            this.maxWidth = width;
+            this.maxHeight = height;
+            return this;
+        }
+
+        /**
+         * Set maximum video bitrate, in bits per second. Not limited by default.
+         */
+        @NonNull
+        public Builder setMaxVideoBitrate(int maxVideoBitrate) {
+            this.maxVideoBitrate = maxVideoBitrate;
+            return this;
+        }
+
+        /**
+         * Set maximum audio bitrate, in bits per second. Not limited by default.
+         */
+        @NonNull
+        public Builder setMaxAudioBitrate(int maxAudioBitrate) {
+            this.maxAudioBitrate = maxAudioBitrate;
+            return this;
+        }
+
+        /**
+         * Set maximum interval between two consecutive video key frames, in seconds. Not limited by default.
+         */
+        @NonNull
+        public Builder setMaxKeyFrameInterval(float maxKeyFrameInterval) {
+            this.maxKeyFrameInterval = maxKeyFrameInterval;
+            return this;
+        }
+
+        /**
+         * Allow a codec. Once any audio (or video) codec is allowed, only explicitly allowed audio (or video) codecs
+         * can be passed through. Otherwise, only target format codec can be.
+         * @param mimeType codec mime type
+         * @param profiles allowed {@link android.media.MediaCodecInfo.CodecProfileLevel} profiles, none to allow any profile
+         */
+        @NonNull
+        public Builder addAllowedCodec(@NonNull String mimeType, int... profiles) {
+            Set<Integer> allowedProfiles = new HashSet<>();
+            for (int profile : profiles) {
+                allowedProfiles.add(profile);
+            }
+            allowedCodecs.put(mimeType, allowedProfiles);
+            return this;
+        }
+
+        @NonNull
+        public PassthroughConstraints build() {
+            return new PassthroughConstraints(maxWidth,
+                                              maxHeight,
+                                              maxVideoBitrate,
+                                              maxAudioBitrate,
+                                              maxKeyFrameInterval,
+                                              new HashMap<>(allowedCodecs));
+        }
+    }
+}
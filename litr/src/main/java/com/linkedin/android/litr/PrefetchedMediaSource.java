@@ -0,0 +1,123 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr;
+
+import android.media.MediaFormat;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.linkedin.android.litr.io.MediaRange;
+import com.linkedin.android.litr.io.MediaSource;
+import com.linkedin.android.litr.io.SampleBatch;
+import com.linkedin.android.litr.probe.SampleIndex;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Media source which reads track format and selection of a source track on creation, and delegates everything else
+ * to a wrapped source. Media sources are not thread safe, so track transcoders which are set up on a setup thread
+ * get one of these, created on job thread, and do not touch wrapped source until they are handed back to job thread.
+ */
+class PrefetchedMediaSource implements MediaSource {
+
+    @NonNull private final MediaSource mediaSource;
+    private final int sourceTrack;
+    @NonNull private final MediaFormat sourceTrackFormat;
+    @NonNull private final MediaRange selection;
+
+    PrefetchedMediaSource(@NonNull MediaSource mediaSource, int sourceTrack) {
+        this.mediaSource = mediaSource;
+        this.sourceTrack = sourceTrack;
+        this.sourceTrackFormat = mediaSource.getTrackFormat(sourceTrack);
+        this.selection = mediaSource.getSelection();
+    }
+
+    @Override
+    public int getOrientationHint() {
+        return mediaSource.getOrientationHint();
+    }
+
+    @Override
+    public int getTrackCount() {
+        return mediaSource.getTrackCount();
+    }
+
+    @NonNull
+    @Override
+    public MediaFormat getTrackFormat(int track) {
+        return track == sourceTrack ? sourceTrackFormat : mediaSource.getTrackFormat(track);
+    }
+
+    @Override
+    public void selectTrack(int track) {
+        mediaSource.selectTrack(track);
+    }
+
+    @Override
+    public void seekTo(long position, int mode) {
+        mediaSource.seekTo(position, mode);
+    }
+
+    @Override
+    public int getSampleTrackIndex() {
+        return mediaSource.getSampleTrackIndex();
+    }
+
+    @Override
+    public int readSampleData(@NonNull ByteBuffer buffer, int offset) {
+        return mediaSource.readSampleData(buffer, offset);
+    }
+
+    @Override
+    public long getSampleTime() {
+        return mediaSource.getSampleTime();
+    }
+
+    @Override
+    public int getSampleFlags() {
+        return mediaSource.getSampleFlags();
+    }
+
+    @Override
+    public void advance() {
+        mediaSource.advance();
+    }
+
+    @Override
+    public int readSamples(int track, @NonNull SampleBatch batch) {
+        return mediaSource.readSamples(track, batch);
+    }
+
+    @Override
+    public void release() {
+        mediaSource.release();
+    }
+
+    @Override
+    public long getSize() {
+        return mediaSource.getSize();
+    }
+
+    @NonNull
+    @Override
+    public MediaRange getSelection() {
+        return selection;
+    }
+
+    @Override
+    public long getDuration() {
+        return mediaSource.getDuration();
+    }
+
+    @Nullable
+    @Override
+    public SampleIndex getSampleIndex() {
+        return mediaSource.getSampleIndex();
+    }
+}
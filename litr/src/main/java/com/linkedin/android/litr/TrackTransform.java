@@ -29,6 +29,7 @@ public class TrackTransform {
     private final MediaFormat targetFormat;
     private final int sourceTrack;
     private final int targetTrack;
+    private final String planReason;
 
     private TrackTransform(@NonNull MediaSource mediaSource,
                            @Nullable Decoder decoder,
@@ -37,7 +38,8 @@ public class TrackTransform {
                            @NonNull MediaTarget mediaTarget,
                            @Nullable MediaFormat targetFormat,
                            int sourceTrack,
-                           int targetTrack) {
+                           int targetTrack,
+                           @Nullable String planReason) {
         this.mediaSource = mediaSource;
         this.decoder = decoder;
         this.renderer = renderer;
@@ -46,6 +48,7 @@ public class TrackTransform {
         this.targetFormat = targetFormat;
         this.sourceTrack = sourceTrack;
         this.targetTrack = targetTrack;
+        this.planReason = planReason;
     }
 
     /**
@@ -118,6 +121,15 @@ public class TrackTransform {
         return targetTrack;
     }
 
+    /**
+     * Get a reason why track is transcoded or passed through, if a decision was made by {@link MediaTransformer}
+     * @return human readable reason, null if none
+     */
+    @Nullable
+    public String getPlanReason() {
+        return planReason;
+    }
+
     public static class Builder {
 
         private final MediaSource mediaSource;
@@ -129,6 +141,7 @@ public class TrackTransform {
         private Encoder encoder;
         private MediaFormat targetFormat;
         private int targetTrack;
+        private String planReason;
 
         public Builder(@NonNull MediaSource mediaSource,
                        int sourceTrack,
@@ -171,6 +184,12 @@ public class TrackTransform {
             return this;
         }
 
+        @NonNull
+        public Builder setPlanReason(@Nullable String planReason) {
+            this.planReason = planReason;
+            return this;
+        }
+
         @NonNull
         public TrackTransform build() {
             return new TrackTransform(mediaSource,
@@ -180,7 +199,8 @@ public class TrackTransform {
                                       mediaTarget,
                                       targetFormat,
                                       sourceTrack,
-                                      targetTrack);
+                                      targetTrack,
+                                      planReason);
         }
     }
 }
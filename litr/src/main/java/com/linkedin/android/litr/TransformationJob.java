@@ -8,6 +8,7 @@
 package com.linkedin.android.litr;
 
 import android.media.MediaExtractor;
+import android.media.MediaFormat;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -16,21 +17,41 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
+import com.linkedin.android.litr.analytics.TrackTransformationInfo;
+import com.linkedin.android.litr.analytics.Tracing;
 import com.linkedin.android.litr.analytics.TransformationStatsCollector;
+import com.linkedin.android.litr.exception.ContentManifestException;
 import com.linkedin.android.litr.exception.InsufficientDiskSpaceException;
 import com.linkedin.android.litr.exception.MediaTransformationException;
+import com.linkedin.android.litr.exception.OutputVerificationException;
 import com.linkedin.android.litr.exception.TrackTranscoderException;
+import com.linkedin.android.litr.io.ContentManifest;
+import com.linkedin.android.litr.io.DigestingMediaTarget;
+import com.linkedin.android.litr.io.MediaMuxerMediaTarget;
+import com.linkedin.android.litr.io.MediaRange;
 import com.linkedin.android.litr.io.MediaSource;
 import com.linkedin.android.litr.io.MediaTarget;
+import com.linkedin.android.litr.io.VerifyingMediaTarget;
 import com.linkedin.android.litr.transcoder.TrackTranscoder;
 import com.linkedin.android.litr.transcoder.TrackTranscoderFactory;
 import com.linkedin.android.litr.utils.DiskUtil;
 import com.linkedin.android.litr.utils.TranscoderUtils;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 import static com.linkedin.android.litr.MediaTransformer.GRANULARITY_NONE;
 
@@ -39,6 +60,15 @@ class TransformationJob implements Runnable {
     private static final String TAG = TransformationJob.class.getSimpleName();
 
     private static final float DEFAULT_SIZE_PADDING = 0.10f; // 10% padding
+    // minimum wall clock time between progress updates, regardless of granularity
+    private static final long MIN_PROGRESS_UPDATE_INTERVAL_NS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    // shared by all jobs, threads are only alive while tracks are being set up
+    private static final ExecutorService TRACK_SETUP_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "LiTrTrackSetup");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     @VisibleForTesting List<TrackTranscoder> trackTranscoders;
     @VisibleForTesting float lastProgress;
@@ -48,6 +78,14 @@ class TransformationJob implements Runnable {
     @VisibleForTesting DiskUtil diskUtil;
 
     @VisibleForTesting TransformationStatsCollector statsCollector;
+    @VisibleForTesting TransformationProgressTracker progressTracker;
+    @VisibleForTesting Executor trackSetupExecutor;
+
+    // track transcoders being created on setup threads, by track index, null for tracks created on job thread
+    @Nullable private List<FutureTask<TrackTranscoder>> pendingTrackTranscoders;
+
+    private long lastProgressCheckTimeNs;
+    private boolean progressChecked;
 
     private final List<TrackTransform> trackTransforms;
 
@@ -69,6 +107,8 @@ class TransformationJob implements Runnable {
         trackTranscoderFactory = new TrackTranscoderFactory();
         diskUtil = new DiskUtil();
         statsCollector = new TransformationStatsCollector();
+        progressTracker = new TransformationProgressTracker();
+        trackSetupExecutor = TRACK_SETUP_EXECUTOR;
     }
 
     @Override
@@ -93,6 +133,8 @@ class TransformationJob implements Runnable {
     @VisibleForTesting
     void transform() throws MediaTransformationException {
         initStatsCollector();
+        // codecs of some tracks are configured on setup threads while we check disk space and set up the rest
+        startTrackTranscoderSetup();
         verifyAvailableDiskSpace();
         createTrackTranscoders();
         startTrackTranscoders();
@@ -102,6 +144,7 @@ class TransformationJob implements Runnable {
 
         marshallingTransformationListener.onStarted(jobId);
         lastProgress = 0;
+        progressTracker.start(System.nanoTime(), trackTranscoders.size());
 
         // process a frame from active track transcoder, until EoS (end of stream) is reached on each track
         do {
@@ -116,8 +159,32 @@ class TransformationJob implements Runnable {
 
         if (completed) {
             updateTargetFormatStats();
+            Map<VerifyingMediaTarget, long[]> expectedTrackDurations = getExpectedTrackDurations();
             release();
-            marshallingTransformationListener.onCompleted(jobId, statsCollector.getStats());
+            try {
+                // outputs are final only after targets are released
+                for (Map.Entry<VerifyingMediaTarget, long[]> entry : expectedTrackDurations.entrySet()) {
+                    entry.getKey().verify(entry.getValue());
+                }
+            } catch (OutputVerificationException exception) {
+                // resources are already released, so output is only deleted
+                Log.e(TAG, "Transformation job error", exception);
+                exception.setJobId(jobId);
+                deleteOutputFiles();
+                marshallingTransformationListener.onError(jobId, exception, statsCollector.getStats());
+                return;
+            }
+            List<ContentManifest> contentManifests;
+            try {
+                contentManifests = getContentManifests();
+            } catch (ContentManifestException exception) {
+                // output is valid, so it is kept, but manifest client asked for is missing
+                Log.e(TAG, "Transformation job error", exception);
+                exception.setJobId(jobId);
+                marshallingTransformationListener.onError(jobId, exception, statsCollector.getStats());
+                return;
+            }
+            marshallingTransformationListener.onCompleted(jobId, statsCollector.getStats(), contentManifests);
         }
     }
 
@@ -154,6 +221,11 @@ class TransformationJob implements Runnable {
             TrackTransform trackTransform = trackTransforms.get(track);
             statsCollector.addSourceTrack(trackTransform.getMediaSource().getTrackFormat(trackTransform.getSourceTrack()));
             statsCollector.setTargetFormat(track, trackTransform.getTargetFormat());
+            statsCollector.setTrackPlan(track,
+                                        trackTransform.getTargetFormat() == null
+                                                ? TrackTransformationInfo.PLAN_PASSTHROUGH
+                                                : TrackTransformationInfo.PLAN_TRANSCODE,
+                                        trackTransform.getPlanReason());
         }
     }
 
@@ -180,6 +252,27 @@ class TransformationJob implements Runnable {
         }
     }
 
+    /**
+     * Start creating track transcoders which can be set up on any thread. Video track setup creates EGL context which is
+     * later used for rendering, so it must stay on job thread. Audio codecs do not depend on it and are configured concurrently.
+     * Media sources are not thread safe, so source track format and selection are read here, on job thread, and setup
+     * threads get them from a {@link PrefetchedMediaSource} without touching the source.
+     */
+    @VisibleForTesting
+    void startTrackTranscoderSetup() {
+        pendingTrackTranscoders = new ArrayList<>(Collections.nCopies(trackTransforms.size(), null));
+        for (int track = 0; track < trackTransforms.size(); track++) {
+            TrackTransform trackTransform = trackTransforms.get(track);
+            if (canSetUpOffJobThread(trackTransform)) {
+                MediaSource mediaSource = new PrefetchedMediaSource(trackTransform.getMediaSource(),
+                                                                    trackTransform.getSourceTrack());
+                FutureTask<TrackTranscoder> setupTask = new FutureTask<>(() -> createTrackTranscoder(trackTransform, mediaSource));
+                pendingTrackTranscoders.set(track, setupTask);
+                trackSetupExecutor.execute(setupTask);
+            }
+        }
+    }
+
     @VisibleForTesting
     void createTrackTranscoders() throws TrackTranscoderException {
         int trackCount = trackTransforms.size();
@@ -189,22 +282,117 @@ class TransformationJob implements Runnable {
             throw new TrackTranscoderException(TrackTranscoderException.Error.NO_TRACKS_FOUND);
         }
 
+        if (pendingTrackTranscoders == null) {
+            startTrackTranscoderSetup();
+        }
+
+        TrackTranscoder[] createdTrackTranscoders = new TrackTranscoder[trackCount];
+        TrackTranscoderException setupException = null;
+        for (int track = 0; track < trackCount && setupException == null; track++) {
+            if (pendingTrackTranscoders.get(track) == null) {
+                try {
+                    TrackTransform trackTransform = trackTransforms.get(track);
+                    createdTrackTranscoders[track] = createTrackTranscoder(trackTransform, trackTransform.getMediaSource());
+                } catch (TrackTranscoderException e) {
+                    setupException = e;
+                }
+            }
+        }
+        // always wait for setup threads, so that anything they created is released if setup fails
         for (int track = 0; track < trackCount; track++) {
-            TrackTransform trackTransform = trackTransforms.get(track);
+            FutureTask<TrackTranscoder> setupTask = pendingTrackTranscoders.get(track);
+            if (setupTask != null) {
+                try {
+                    createdTrackTranscoders[track] = awaitTrackTranscoder(setupTask);
+                } catch (TrackTranscoderException e) {
+                    if (setupException == null) {
+                        setupException = e;
+                    }
+                }
+            }
+        }
+        pendingTrackTranscoders = null;
+
+        if (setupException != null) {
+            // keep created transcoders, so that they are released along with the job
+            for (TrackTranscoder trackTranscoder : createdTrackTranscoders) {
+                if (trackTranscoder != null) {
+                    trackTranscoders.add(trackTranscoder);
+                }
+            }
+            throw setupException;
+        }
 
-            TrackTranscoder trackTranscoder = trackTranscoderFactory.create(trackTransform.getSourceTrack(),
-                                                                            trackTransform.getTargetTrack(),
-                                                                            trackTransform.getMediaSource(),
-                                                                            trackTransform.getDecoder(),
-                                                                            trackTransform.getRenderer(),
-                                                                            trackTransform.getEncoder(),
-                                                                            trackTransform.getMediaTarget(),
-                                                                            trackTransform.getTargetFormat());
+        for (int track = 0; track < trackCount; track++) {
+            TrackTranscoder trackTranscoder = createdTrackTranscoders[track];
+            trackTranscoder.setStats(statsCollector.getTrackTransformationInfo(track));
+            trackTranscoder.setJobId(jobId);
+            MediaMuxerMediaTarget mediaMuxerMediaTarget =
+                    findMediaTarget(trackTransforms.get(track).getMediaTarget(), MediaMuxerMediaTarget.class);
+            if (mediaMuxerMediaTarget != null) {
+                mediaMuxerMediaTarget.setJobId(jobId);
+            }
             trackTranscoders.add(trackTranscoder);
             statsCollector.setTrackCodecs(track, trackTranscoder.getDecoderName(), trackTranscoder.getEncoderName());
         }
     }
 
+    @NonNull
+    private TrackTranscoder createTrackTranscoder(@NonNull TrackTransform trackTransform,
+                                                  @NonNull MediaSource mediaSource) throws TrackTranscoderException {
+        return trackTranscoderFactory.create(trackTransform.getSourceTrack(),
+                                             trackTransform.getTargetTrack(),
+                                             mediaSource,
+                                             trackTransform.getDecoder(),
+                                             trackTransform.getRenderer(),
+                                             trackTransform.getEncoder(),
+                                             trackTransform.getMediaTarget(),
+                                             trackTransform.getTargetFormat());
+    }
+
+    private static boolean canSetUpOffJobThread(@NonNull TrackTransform trackTransform) {
+        MediaFormat targetFormat = trackTransform.getTargetFormat();
+        if (targetFormat == null || !targetFormat.containsKey(MediaFormat.KEY_MIME)) {
+            // passthrough, nothing expensive to set up
+            return false;
+        }
+        String mimeType = targetFormat.getString(MediaFormat.KEY_MIME);
+        return mimeType != null && mimeType.startsWith("audio");
+    }
+
+    /**
+     * Wait for a track transcoder created on a setup thread. Codec setup takes bounded time, so we wait uninterruptibly
+     * and let job cancellation be handled after setup is done, to make sure created codecs are not leaked.
+     */
+    @NonNull
+    private static TrackTranscoder awaitTrackTranscoder(@NonNull FutureTask<TrackTranscoder> setupTask)
+            throws TrackTranscoderException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return setupTask.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof TrackTranscoderException) {
+                throw (TrackTranscoderException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     @VisibleForTesting
     void startTrackTranscoders() throws TrackTranscoderException {
         for (TrackTranscoder trackTranscoder : trackTranscoders) {
@@ -227,12 +415,26 @@ class TransformationJob implements Runnable {
         for (int track = 0; track < trackTranscoders.size(); track++) {
             TrackTranscoder trackTranscoder = trackTranscoders.get(track);
 
-            long frameStartTime = System.currentTimeMillis();
-            int result = trackTranscoder.processNextFrame();
+            long frameStartTimeNs = System.nanoTime();
+            int result;
+            Tracing.beginSection(Tracing.SECTION_PROCESS_FRAME);
+            try {
+                result = trackTranscoder.processNextFrame();
+            } finally {
+                Tracing.endSection();
+            }
             completed &= result == TrackTranscoder.RESULT_EOS_REACHED;
 
-            statsCollector.increaseTrackProcessingDuration(track, System.currentTimeMillis() - frameStartTime);
+            statsCollector.increaseTrackProcessingDuration(track, System.nanoTime() - frameStartTimeNs);
+        }
+
+        // progress is checked at most once per update interval, unless transformation is completed
+        long currentTimeNs = System.nanoTime();
+        if (!completed && progressChecked && currentTimeNs - lastProgressCheckTimeNs < MIN_PROGRESS_UPDATE_INTERVAL_NS) {
+            return completed;
         }
+        lastProgressCheckTimeNs = currentTimeNs;
+        progressChecked = true;
 
         float totalProgress = 0;
         for (TrackTranscoder trackTranscoder : trackTranscoders) {
@@ -242,7 +444,8 @@ class TransformationJob implements Runnable {
 
         if ((granularity == GRANULARITY_NONE && totalProgress != lastProgress)
             || (granularity != GRANULARITY_NONE && totalProgress >= lastProgress + 1.0f / granularity)) {
-            marshallingTransformationListener.onProgress(jobId, totalProgress);
+            TransformationProgress progress = progressTracker.update(currentTimeNs, totalProgress, trackTranscoders);
+            marshallingTransformationListener.onProgress(jobId, progress);
             lastProgress = totalProgress;
         }
 
@@ -251,6 +454,20 @@ class TransformationJob implements Runnable {
 
     @VisibleForTesting
     void release() {
+        if (pendingTrackTranscoders != null) {
+            // job failed before track setup was done, stop whatever setup threads have created
+            for (FutureTask<TrackTranscoder> setupTask : pendingTrackTranscoders) {
+                if (setupTask != null) {
+                    try {
+                        awaitTrackTranscoder(setupTask).stop();
+                    } catch (Exception ex) {
+                        Log.e(TAG, "release: Exception when stopping track transcoder: ", ex);
+                    }
+                }
+            }
+            pendingTrackTranscoders = null;
+        }
+
         if (trackTranscoders != null) {
             // Stop transcoders
             for (int track = 0; track < trackTranscoders.size(); track++) {
@@ -301,6 +518,90 @@ class TransformationJob implements Runnable {
         }
     }
 
+    /**
+     * Collect expected track durations of outputs written by verifying targets, each track is expected to last
+     * as long as its source selection. Must be called before sources are released.
+     */
+    @NonNull
+    private Map<VerifyingMediaTarget, long[]> getExpectedTrackDurations() {
+        Map<VerifyingMediaTarget, long[]> expectedTrackDurations = new LinkedHashMap<>();
+        for (TrackTransform trackTransform : trackTransforms) {
+            VerifyingMediaTarget verifyingMediaTarget = findMediaTarget(trackTransform.getMediaTarget(), VerifyingMediaTarget.class);
+            if (verifyingMediaTarget == null) {
+                continue;
+            }
+
+            long[] expectedTrackDurationsUs = expectedTrackDurations.get(verifyingMediaTarget);
+            if (expectedTrackDurationsUs == null) {
+                expectedTrackDurationsUs = new long[0];
+            }
+            int targetTrack = trackTransform.getTargetTrack();
+            if (targetTrack >= expectedTrackDurationsUs.length) {
+                int trackCount = expectedTrackDurationsUs.length;
+                expectedTrackDurationsUs = Arrays.copyOf(expectedTrackDurationsUs, targetTrack + 1);
+                Arrays.fill(expectedTrackDurationsUs, trackCount, targetTrack + 1, -1);
+            }
+            expectedTrackDurationsUs[targetTrack] = getExpectedDuration(trackTransform);
+            expectedTrackDurations.put(verifyingMediaTarget, expectedTrackDurationsUs);
+        }
+        return expectedTrackDurations;
+    }
+
+    private static long getExpectedDuration(@NonNull TrackTransform trackTransform) {
+        MediaSource mediaSource = trackTransform.getMediaSource();
+        MediaFormat sourceMediaFormat = mediaSource.getTrackFormat(trackTransform.getSourceTrack());
+        if (!sourceMediaFormat.containsKey(MediaFormat.KEY_DURATION)) {
+            return -1;
+        }
+        long durationUs = sourceMediaFormat.getLong(MediaFormat.KEY_DURATION);
+        if (durationUs < 0) {
+            return -1;
+        }
+        MediaRange selection = mediaSource.getSelection();
+        return Math.max(0, Math.min(durationUs, selection.getEnd()) - selection.getStart());
+    }
+
+    /**
+     * Find a target of given type among a target and targets wrapped by it
+     */
+    @Nullable
+    private static <T extends MediaTarget> T findMediaTarget(@NonNull MediaTarget mediaTarget, @NonNull Class<T> type) {
+        MediaTarget target = mediaTarget;
+        while (!type.isInstance(target)) {
+            if (target instanceof VerifyingMediaTarget) {
+                target = ((VerifyingMediaTarget) target).getMediaTarget();
+            } else if (target instanceof DigestingMediaTarget) {
+                target = ((DigestingMediaTarget) target).getMediaTarget();
+            } else {
+                return null;
+            }
+        }
+        return type.cast(target);
+    }
+
+    /**
+     * Compute manifests of outputs written by digesting targets. Must be called after targets are released, when outputs
+     * are final.
+     * @throws ContentManifestException if a manifest cannot be computed
+     */
+    @NonNull
+    private List<ContentManifest> getContentManifests() throws ContentManifestException {
+        List<ContentManifest> contentManifests = new ArrayList<>();
+        HashSet<MediaTarget> mediaTargets = new HashSet<>();
+        for (TrackTransform trackTransform : trackTransforms) {
+            MediaTarget mediaTarget = trackTransform.getMediaTarget();
+            DigestingMediaTarget digestingMediaTarget = findMediaTarget(mediaTarget, DigestingMediaTarget.class);
+            if (digestingMediaTarget != null && mediaTargets.add(mediaTarget)) {
+                try {
+                    contentManifests.add(digestingMediaTarget.getContentManifest());
+                } catch (IOException | RuntimeException ex) {
+                    throw new ContentManifestException(mediaTarget.getOutputFilePath(), ex);
+                }
+            }
+        }
+        return contentManifests;
+    }
+
     private void updateTargetFormatStats() {
         if (trackTranscoders != null) {
             for (int track = 0; track < trackTranscoders.size(); track++) {
@@ -11,6 +11,8 @@ import androidx.annotation.FloatRange;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import com.linkedin.android.litr.analytics.TrackTransformationInfo;
+import com.linkedin.android.litr.io.ContentManifest;
+import com.linkedin.android.litr.io.DigestingMediaTarget;
 
 import java.util.List;
 
@@ -33,12 +35,32 @@ public interface TransformationListener {
      */
     void onProgress(@NonNull String id, @FloatRange(from = 0, to = 1) float progress);
 
+    /**
+     * Detailed transformation progress update, which includes throughput and estimated time remaining.
+     * Called after {@link #onProgress(String, float)}, with the same frequency. Default implementation does nothing.
+     * @param id request id
+     * @param progress progress details
+     */
+    default void onProgress(@NonNull String id, @NonNull TransformationProgress progress) {}
+
     /**
      * Transformation completed
      * @param id request id
      */
     void onCompleted(@NonNull String id, @Nullable List<TrackTransformationInfo> trackTransformationInfos);
 
+    /**
+     * Transformation completed, with manifests of outputs written by {@link DigestingMediaTarget}s.
+     * This is the callback which is made on completion, default implementation calls {@link #onCompleted(String, List)}.
+     * @param id request id
+     * @param contentManifests manifests of outputs, in order of first track which writes them, empty if none were requested
+     */
+    default void onCompleted(@NonNull String id,
+                             @Nullable List<TrackTransformationInfo> trackTransformationInfos,
+                             @NonNull List<ContentManifest> contentManifests) {
+        onCompleted(id, trackTransformationInfos);
+    }
+
     /**
      * Transformation was cancelled
      * @param id request id
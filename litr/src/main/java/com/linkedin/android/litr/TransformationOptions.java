@@ -14,6 +14,7 @@ import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.linkedin.android.litr.codec.MediaCodecPool;
 import com.linkedin.android.litr.filter.BufferFilter;
 import com.linkedin.android.litr.filter.GlFilter;
 import com.linkedin.android.litr.io.MediaRange;
@@ -26,6 +27,11 @@ import java.util.List;
  *  - video filters, in order they must be applied
  *  - source media range, if only part of {@link com.linkedin.android.litr.io.MediaSource} should be used
  *  - ability to mute video by removing audio track(s)
+ *  - optional pool of warm codecs, reused across transformations
+ *  - optional constraints, which allow tracks already satisfying them to be passed through without transcoding
+ *  - optional chunk size of output {@link com.linkedin.android.litr.io.ContentManifest}, if one should be computed
+ *  - optional structural verification of MP4 output
+ *  - optional use of cached {@link com.linkedin.android.litr.probe.SampleIndex} of source
  */
 public class TransformationOptions {
     @IntRange(from = GRANULARITY_NONE) public final int granularity;
@@ -34,19 +40,34 @@ public class TransformationOptions {
     @NonNull public final MediaRange sourceMediaRange;
     public final boolean removeAudio;
     public final boolean removeMetadata;
+    @Nullable public final MediaCodecPool codecPool;
+    @Nullable public final PassthroughConstraints passthroughConstraints;
+    @IntRange(from = 0) public final int contentManifestChunkSize;
+    public final boolean verifyOutput;
+    public final boolean useSampleIndex;
 
     private TransformationOptions(@IntRange(from = GRANULARITY_NONE) int granularity,
                                   @Nullable List<GlFilter> videoFilters,
                                   @Nullable List<BufferFilter> audioFilters,
                                   @Nullable MediaRange sourceMediaRange,
                                   boolean removeAudio,
-                                  boolean removeMetadata) {
+                                  boolean removeMetadata,
+                                  @Nullable MediaCodecPool codecPool,
+                                  @Nullable PassthroughConstraints passthroughConstraints,
+                                  @IntRange(from = 0) int contentManifestChunkSize,
+                                  boolean verifyOutput,
+                                  boolean useSampleIndex) {
         this.granularity = granularity;
         this.videoFilters = videoFilters;
         this.audioFilters = audioFilters;
         this.sourceMediaRange = sourceMediaRange == null ? new MediaRange(0, Long.MAX_VALUE) : sourceMediaRange;
         this.removeAudio = removeAudio;
         this.removeMetadata = removeMetadata;
+        this.codecPool = codecPool;
+        this.passthroughConstraints = passthroughConstraints;
+        this.contentManifestChunkSize = contentManifestChunkSize;
+        this.verifyOutput = verifyOutput;
+        this.useSampleIndex = useSampleIndex;
     }
 
     public static class Builder {
@@ -56,6 +77,11 @@ public class TransformationOptions {
         private MediaRange sourceMediaRange;
         private boolean removeAudio;
         private boolean removeMetadata;
+        private MediaCodecPool codecPool;
+        private PassthroughConstraints passthroughConstraints;
+        private int contentManifestChunkSize;
+        private boolean verifyOutput;
+        private boolean useSampleIndex;
 
         @NonNull
         public Builder setGranularity(@IntRange(from = GRANULARITY_NONE) int granularity) {
@@ -93,9 +119,69 @@ public class TransformationOptions {
             return this;
         }
 
+        @NonNull
+        public Builder setCodecPool(@Nullable MediaCodecPool codecPool) {
+            this.codecPool = codecPool;
+            return this;
+        }
+
+        /**
+         * Set constraints which enable compliance check mode: tracks of a source which already satisfies them are passed
+         * through instead of being transcoded. Only applies to transformations which use target formats, not track transforms.
+         */
+        @NonNull
+        public Builder setPassthroughConstraints(@Nullable PassthroughConstraints passthroughConstraints) {
+            this.passthroughConstraints = passthroughConstraints;
+            return this;
+        }
+
+        /**
+         * Request a manifest of output, with whole file and chunk digests, delivered to
+         * {@link TransformationListener#onCompleted(String, List, List)}. If manifest cannot be computed,
+         * {@link com.linkedin.android.litr.exception.ContentManifestException} is reported to
+         * {@link TransformationListener#onError(String, Throwable, List)} instead, and output is kept. Not computed by default.
+         * @param contentManifestChunkSize manifest chunk size in bytes, 0 to not compute a manifest
+         */
+        @NonNull
+        public Builder setContentManifestChunkSize(@IntRange(from = 0) int contentManifestChunkSize) {
+            this.contentManifestChunkSize = contentManifestChunkSize;
+            return this;
+        }
+
+        /**
+         * Verify structure of MP4 output before reporting completion: sample tables, timestamps, sync samples, chunk offsets
+         * and track durations. Invalid output is reported as an error. Only container headers are read. Off by default.
+         */
+        @NonNull
+        public Builder setVerifyOutput(boolean verifyOutput) {
+            this.verifyOutput = verifyOutput;
+            return this;
+        }
+
+        /**
+         * Use a {@link com.linkedin.android.litr.probe.SampleIndex} of source, to seek exactly to sync samples and to size
+         * passed through tracks. Index is built from MP4 sample tables when source is first used and is cached on disk,
+         * so this pays off when the same source is transformed repeatedly, for example trimmed differently. Off by default.
+         */
+        @NonNull
+        public Builder setUseSampleIndex(boolean useSampleIndex) {
+            this.useSampleIndex = useSampleIndex;
+            return this;
+        }
+
         @NonNull
         public TransformationOptions build() {
-            return new TransformationOptions(granularity, videoFilters, audioFilters, sourceMediaRange, removeAudio, removeMetadata);
+            return new TransformationOptions(granularity,
+                                             videoFilters,
+                                             audioFilters,
+                                             sourceMediaRange,
+                                             removeAudio,
+                                             removeMetadata,
+                                             codecPool,
+                                             passthroughConstraints,
+                                             contentManifestChunkSize,
+                                             verifyOutput,
+                                             useSampleIndex);
         }
     }
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr;
+
+import androidx.annotation.FloatRange;
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+
+/**
+ * A snapshot of transformation progress, reported to {@link TransformationListener}. In addition to overall progress,
+ * contains processing throughput, estimated time to completion and amount of data written so far.
+ */
+public final class TransformationProgress {
+    public static final long UNKNOWN_VALUE = -1;
+
+    private final float progress;
+    private final long elapsedTimeMs;
+    @NonNull private final float[] trackFramesPerSecond;
+    private final float speedFactor;
+    private final long bytesWritten;
+    private final long estimatedTimeRemainingMs;
+
+    TransformationProgress(@FloatRange(from = 0, to = 1) float progress,
+                           long elapsedTimeMs,
+                           @NonNull float[] trackFramesPerSecond,
+                           float speedFactor,
+                           long bytesWritten,
+                           long estimatedTimeRemainingMs) {
+        this.progress = progress;
+        this.elapsedTimeMs = elapsedTimeMs;
+        this.trackFramesPerSecond = trackFramesPerSecond;
+        this.speedFactor = speedFactor;
+        this.bytesWritten = bytesWritten;
+        this.estimatedTimeRemainingMs = estimatedTimeRemainingMs;
+    }
+
+    /**
+     * Get overall progress, averaged over all tracks, from 0 to 1
+     */
+    @FloatRange(from = 0, to = 1)
+    public float getProgress() {
+        return progress;
+    }
+
+    /**
+     * Get wall clock time since transformation start, in milliseconds
+     */
+    public long getElapsedTimeMs() {
+        return elapsedTimeMs;
+    }
+
+    /**
+     * Get number of tracks being transformed
+     */
+    public int getTrackCount() {
+        return trackFramesPerSecond.length;
+    }
+
+    /**
+     * Get number of frames per second written into target track, measured since previous progress update
+     * @param track track index, as in transformation's track list
+     */
+    public float getFramesPerSecond(@IntRange(from = 0) int track) {
+        return trackFramesPerSecond[track];
+    }
+
+    /**
+     * Get real time speed factor, which is duration of media processed per second of wall clock time, averaged over tracks.
+     * For example, 2.0 means that media is being processed twice as fast as it plays back.
+     */
+    public float getSpeedFactor() {
+        return speedFactor;
+    }
+
+    /**
+     * Get number of bytes of media samples written into targets
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Get estimated time until transformation completes, in milliseconds, smoothed across progress updates
+     * @return estimated time remaining, or {@link #UNKNOWN_VALUE} if it cannot be estimated yet
+     */
+    public long getEstimatedTimeRemainingMs() {
+        return estimatedTimeRemainingMs;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr;
+
+import androidx.annotation.NonNull;
+import com.linkedin.android.litr.transcoder.TrackTranscoder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Computes throughput and ETA of a transformation incrementally, from counters of track transcoders sampled
+ * at each progress update. ETA is derived from progress rate smoothed with an exponentially weighted moving average.
+ */
+class TransformationProgressTracker {
+
+    // weight of latest progress rate in a moving average, higher values react faster but are less stable
+    private static final float RATE_SMOOTHING_FACTOR = 0.3f;
+
+    private long startTimeNs;
+    private long lastUpdateTimeNs;
+    private float lastProgress;
+    private float smoothedProgressRate;
+    private boolean hasProgressRate;
+
+    private long[] lastFramesWritten;
+    private long[] lastMediaTimeUs;
+
+    void start(long timeNs, int trackCount) {
+        startTimeNs = timeNs;
+        lastUpdateTimeNs = timeNs;
+        lastProgress = 0;
+        smoothedProgressRate = 0;
+        hasProgressRate = false;
+        lastFramesWritten = new long[trackCount];
+        lastMediaTimeUs = new long[trackCount];
+    }
+
+    @NonNull
+    TransformationProgress update(long timeNs, float progress, @NonNull List<TrackTranscoder> trackTranscoders) {
+        int trackCount = trackTranscoders.size();
+        if (lastFramesWritten == null || lastFramesWritten.length != trackCount) {
+            start(timeNs, trackCount);
+        }
+
+        long intervalNs = timeNs - lastUpdateTimeNs;
+        float intervalSec = intervalNs / (float) TimeUnit.SECONDS.toNanos(1);
+
+        float[] trackFramesPerSecond = new float[trackCount];
+        long bytesWritten = 0;
+        long mediaTimeProcessedUs = 0;
+        for (int track = 0; track < trackCount; track++) {
+            TrackTranscoder trackTranscoder = trackTranscoders.get(track);
+            long framesWritten = trackTranscoder.getFramesWritten();
+            long mediaTimeUs = trackTranscoder.getDuration() > 0
+                    ? (long) (trackTranscoder.getProgress() * trackTranscoder.getDuration())
+                    : 0;
+
+            if (intervalSec > 0) {
+                trackFramesPerSecond[track] = (framesWritten - lastFramesWritten[track]) / intervalSec;
+            }
+            mediaTimeProcessedUs += mediaTimeUs - lastMediaTimeUs[track];
+            bytesWritten += trackTranscoder.getBytesWritten();
+
+            lastFramesWritten[track] = framesWritten;
+            lastMediaTimeUs[track] = mediaTimeUs;
+        }
+
+        float speedFactor = 0;
+        if (intervalNs > 0 && trackCount > 0) {
+            speedFactor = TimeUnit.MICROSECONDS.toNanos(mediaTimeProcessedUs) / (float) (intervalNs * trackCount);
+
+            float progressRate = (progress - lastProgress) / intervalSec;
+            smoothedProgressRate = hasProgressRate
+                    ? RATE_SMOOTHING_FACTOR * progressRate + (1 - RATE_SMOOTHING_FACTOR) * smoothedProgressRate
+                    : progressRate;
+            hasProgressRate = true;
+        }
+
+        long estimatedTimeRemainingMs = TransformationProgress.UNKNOWN_VALUE;
+        if (progress >= 1) {
+            estimatedTimeRemainingMs = 0;
+        } else if (smoothedProgressRate > 0) {
+            estimatedTimeRemainingMs = Math.round((1 - progress) / smoothedProgressRate * 1000);
+        }
+
+        lastUpdateTimeNs = timeNs;
+        lastProgress = progress;
+
+        return new TransformationProgress(progress,
+                                          TimeUnit.NANOSECONDS.toMillis(timeNs - startTimeNs),
+                                          trackFramesPerSecond,
+                                          speedFactor,
+                                          bytesWritten,
+                                          estimatedTimeRemainingMs);
+    }
+}
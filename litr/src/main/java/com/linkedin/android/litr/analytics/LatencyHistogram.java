@@ -0,0 +1,114 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.analytics;
+
+import androidx.annotation.FloatRange;
+import androidx.annotation.IntRange;
+import androidx.annotation.RestrictTo;
+
+/**
+ * A fixed size histogram of latency values in nanoseconds. Buckets are logarithmic, with four linear sub buckets per power of two,
+ * which keeps relative error of reported percentiles within 25% from 1 microsecond to over a minute. Recording a value does not allocate.
+ */
+public final class LatencyHistogram {
+
+    private static final int MIN_EXPONENT = 10; // ~1 microsecond
+    private static final int MAX_EXPONENT = 36; // ~68 seconds
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    // first bucket holds all values below 2^MIN_EXPONENT, last bucket holds all values of 2^(MAX_EXPONENT + 1) and above
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - MIN_EXPONENT + 1) * SUB_BUCKET_COUNT + 2;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long totalCount;
+    private long maxValue;
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public void record(long valueNs) {
+        counts[getBucketIndex(valueNs)]++;
+        totalCount++;
+        if (valueNs > maxValue) {
+            maxValue = valueNs;
+        }
+    }
+
+    /**
+     * Get total number of recorded values
+     */
+    public long getCount() {
+        return totalCount;
+    }
+
+    /**
+     * Get largest recorded value, in nanoseconds
+     */
+    public long getMaxValue() {
+        return maxValue;
+    }
+
+    /**
+     * Get an upper bound of a percentile of recorded values
+     * @param percentile percentile, for example 50 for median or 99 for 99th percentile
+     * @return upper bound of a bucket containing requested percentile, in nanoseconds, or 0 if no values were recorded
+     */
+    public long getPercentile(@FloatRange(from = 0, to = 100) double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+
+        long targetCount = Math.max(1, (long) Math.ceil(totalCount * percentile / 100));
+        long count = 0;
+        for (int index = 0; index < BUCKET_COUNT; index++) {
+            count += counts[index];
+            if (count >= targetCount) {
+                return Math.min(getBucketUpperBound(index), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    /**
+     * Get number of histogram buckets
+     */
+    public int getBucketCount() {
+        return BUCKET_COUNT;
+    }
+
+    /**
+     * Get number of values recorded in a bucket
+     */
+    public long getBucketValueCount(@IntRange(from = 0) int bucket) {
+        return counts[bucket];
+    }
+
+    /**
+     * Get exclusive upper bound of values in a bucket, in nanoseconds. Last bucket is unbounded.
+     */
+    public long getBucketUpperBound(@IntRange(from = 0) int bucket) {
+        if (bucket == 0) {
+            return 1L << MIN_EXPONENT;
+        } else if (bucket == BUCKET_COUNT - 1) {
+            return Long.MAX_VALUE;
+        }
+        int exponent = MIN_EXPONENT + (bucket - 1) / SUB_BUCKET_COUNT;
+        int subBucket = (bucket - 1) % SUB_BUCKET_COUNT;
+        return (long) (SUB_BUCKET_COUNT + subBucket + 1) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    private static int getBucketIndex(long valueNs) {
+        if (valueNs < (1L << MIN_EXPONENT)) {
+            return 0;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(valueNs);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int subBucket = (int) (valueNs >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return 1 + (exponent - MIN_EXPONENT) * SUB_BUCKET_COUNT + subBucket;
+    }
+}
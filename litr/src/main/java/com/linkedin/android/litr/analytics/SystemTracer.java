@@ -0,0 +1,37 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.analytics;
+
+import android.os.Build;
+import android.os.Trace;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Implementation of {@link Tracer} which emits sections and counters into system trace using {@link Trace}, so that they
+ * can be captured by Perfetto or systrace. Counters are only emitted on Android Q and above.
+ */
+public class SystemTracer implements Tracer {
+
+    @Override
+    public void beginSection(@NonNull String sectionName) {
+        Trace.beginSection(sectionName);
+    }
+
+    @Override
+    public void endSection() {
+        Trace.endSection();
+    }
+
+    @Override
+    public void setCounter(@NonNull String counterName, long value) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.setCounter(counterName, value);
+        }
+    }
+}
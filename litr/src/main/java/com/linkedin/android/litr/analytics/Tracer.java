@@ -0,0 +1,37 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.analytics;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Receives trace sections and counters from transformation hot path: codec buffer dequeue and queue, frame rendering,
+ * filter application and muxer writes. Sections are begun and ended on the same thread and are properly nested.
+ * Section names are constant strings and counter names are built once per job, so tracing does not allocate memory.
+ * Implementations are called on transformation threads and must be thread safe.
+ */
+public interface Tracer {
+
+    /**
+     * Begin a named section on a current thread
+     * @param sectionName name of a section
+     */
+    void beginSection(@NonNull String sectionName);
+
+    /**
+     * End a section most recently begun on a current thread
+     */
+    void endSection();
+
+    /**
+     * Update value of a named counter
+     * @param counterName name of a counter
+     * @param value new counter value
+     */
+    void setCounter(@NonNull String counterName, long value);
+}
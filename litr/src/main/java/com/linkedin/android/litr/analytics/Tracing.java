@@ -0,0 +1,96 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.analytics;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+/**
+ * Holds a {@link Tracer} used by all transformations. Tracing is disabled by default, when each trace point costs
+ * a single field read. It can be enabled by setting a tracer, e.g. {@link SystemTracer} to capture system traces.
+ */
+public final class Tracing {
+
+    public static final String SECTION_PROCESS_FRAME = "LiTr:processNextFrame";
+    public static final String SECTION_EXTRACT = "LiTr:extract";
+    public static final String SECTION_DECODER_DEQUEUE_INPUT = "LiTr:decoder.dequeueInput";
+    public static final String SECTION_DECODER_QUEUE_INPUT = "LiTr:decoder.queueInput";
+    public static final String SECTION_DECODER_DEQUEUE_OUTPUT = "LiTr:decoder.dequeueOutput";
+    public static final String SECTION_RENDER = "LiTr:render";
+    public static final String SECTION_APPLY_FILTERS = "LiTr:applyFilters";
+    public static final String SECTION_ENCODER_QUEUE_INPUT = "LiTr:encoder.queueInput";
+    public static final String SECTION_ENCODER_DEQUEUE_OUTPUT = "LiTr:encoder.dequeueOutput";
+    public static final String SECTION_MUXER_WRITE = "LiTr:muxer.write";
+    public static final String SECTION_MEDIA_MUXER_WRITE = "LiTr:MediaMuxer.writeSampleData";
+
+    public static final String COUNTER_MUXER_QUEUED_SAMPLES = "muxer queued samples";
+    public static final String COUNTER_DECODER_FRAMES_IN_FLIGHT = "decoder frames in flight";
+    public static final String COUNTER_ENCODER_FRAMES_IN_FLIGHT = "encoder frames in flight";
+
+    @Nullable private static volatile Tracer tracer;
+
+    private Tracing() {}
+
+    /**
+     * Set a tracer to be used by all transformations. Should be set while no transformations are running, so that
+     * every section is ended by the same tracer which began it.
+     * @param tracer tracer, or null to disable tracing
+     */
+    public static void setTracer(@Nullable Tracer tracer) {
+        Tracing.tracer = tracer;
+    }
+
+    @Nullable
+    public static Tracer getTracer() {
+        return tracer;
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public static void beginSection(@NonNull String sectionName) {
+        Tracer currentTracer = tracer;
+        if (currentTracer != null) {
+            currentTracer.beginSection(sectionName);
+        }
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public static void endSection() {
+        Tracer currentTracer = tracer;
+        if (currentTracer != null) {
+            currentTracer.endSection();
+        }
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public static void setCounter(@NonNull String counterName, long value) {
+        Tracer currentTracer = tracer;
+        if (currentTracer != null) {
+            currentTracer.setCounter(counterName, value);
+        }
+    }
+
+    /**
+     * Get name of a per job counter, so that counters of concurrent jobs are kept apart.
+     * Intended to be called once per job, outside of hot path.
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    @NonNull
+    public static String getJobCounterName(@NonNull String jobId, @NonNull String counterName) {
+        return "LiTr:" + jobId + " " + counterName;
+    }
+
+    /**
+     * Get name of a per track counter of a job. Intended to be called once per track, outside of hot path.
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    @NonNull
+    public static String getTrackCounterName(@NonNull String jobId, int track, @NonNull String counterName) {
+        return getJobCounterName(jobId, "track " + track + " " + counterName);
+    }
+}
@@ -8,20 +8,65 @@
 package com.linkedin.android.litr.analytics;
 
 import android.media.MediaFormat;
+import androidx.annotation.FloatRange;
+import androidx.annotation.IntDef;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
 
 /**
- * A class which stores information about transformation for a particular track
+ * A class which stores information about transformation for a particular track.
+ * In addition to track formats and codecs, it collects cumulative time spent in each processing stage, number of frames
+ * passed through each codec, number of times a codec had no buffer available (stalls), maximum number of frames in flight
+ * inside each codec and a histogram of frame processing latency. Metrics are collected without allocating memory.
  */
 public class TrackTransformationInfo {
     public static final long UNKNOWN_VALUE = -1;
 
+    public static final int STAGE_EXTRACT = 0;
+    public static final int STAGE_DECODE = 1;
+    public static final int STAGE_RENDER = 2;
+    public static final int STAGE_ENCODE = 3;
+    public static final int STAGE_MUX = 4;
+    private static final int STAGE_COUNT = 5;
+
+    public static final int CODEC_DECODER = 0;
+    public static final int CODEC_ENCODER = 1;
+    private static final int CODEC_COUNT = 2;
+
+    public static final int PLAN_TRANSCODE = 0;
+    public static final int PLAN_PASSTHROUGH = 1;
+
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({STAGE_EXTRACT, STAGE_DECODE, STAGE_RENDER, STAGE_ENCODE, STAGE_MUX})
+    public @interface Stage {}
+
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({CODEC_DECODER, CODEC_ENCODER})
+    public @interface Codec {}
+
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({PLAN_TRANSCODE, PLAN_PASSTHROUGH})
+    public @interface Plan {}
+
     @NonNull private MediaFormat sourceFormat;
     @Nullable private MediaFormat targetFormat;
     @Nullable private String decoderCodec;
     @Nullable private String encoderCodec;
     private long duration = UNKNOWN_VALUE;
+    @Plan private int plan = PLAN_TRANSCODE;
+    @Nullable private String planReason;
+    private long durationNs;
+
+    private final long[] stageDurationsNs = new long[STAGE_COUNT];
+    private final long[] queuedFrameCounts = new long[CODEC_COUNT];
+    private final long[] frameCounts = new long[CODEC_COUNT];
+    private final long[] tryAgainLaterCounts = new long[CODEC_COUNT];
+    private final long[] maxQueueDepths = new long[CODEC_COUNT];
+    @NonNull private final LatencyHistogram frameLatencyHistogram = new LatencyHistogram();
 
     @NonNull
     public MediaFormat getSourceFormat() {
@@ -47,6 +92,77 @@ public class TrackTransformationInfo {
         return duration;
     }
 
+    /**
+     * Get how a track is transformed
+     * @return {@link #PLAN_TRANSCODE} or {@link #PLAN_PASSTHROUGH}
+     */
+    @Plan
+    public int getPlan() {
+        return plan;
+    }
+
+    /**
+     * Get a human readable reason of a plan, such as a passthrough constraint which source track violates
+     * @return plan reason, null if not known
+     */
+    @Nullable
+    public String getPlanReason() {
+        return planReason;
+    }
+
+    /**
+     * Get cumulative time spent processing frames of this track, in nanoseconds
+     */
+    public long getDurationNs() {
+        return durationNs;
+    }
+
+    /**
+     * Get cumulative time spent in a processing stage, in nanoseconds
+     * @param stage one of {@link #STAGE_EXTRACT}, {@link #STAGE_DECODE}, {@link #STAGE_RENDER}, {@link #STAGE_ENCODE}, {@link #STAGE_MUX}
+     */
+    public long getStageDurationNs(@Stage int stage) {
+        return stageDurationsNs[stage];
+    }
+
+    /**
+     * Get number of frames which came out of a codec
+     * @param codec {@link #CODEC_DECODER} or {@link #CODEC_ENCODER}
+     */
+    public long getFrameCount(@Codec int codec) {
+        return frameCounts[codec];
+    }
+
+    /**
+     * Get number of times a codec did not have an input or output buffer available (returned "try again later")
+     * @param codec {@link #CODEC_DECODER} or {@link #CODEC_ENCODER}
+     */
+    public long getTryAgainLaterCount(@Codec int codec) {
+        return tryAgainLaterCounts[codec];
+    }
+
+    /**
+     * Get maximum number of frames which were queued into a codec but did not come out of it yet
+     * @param codec {@link #CODEC_DECODER} or {@link #CODEC_ENCODER}
+     */
+    public long getMaxQueueDepth(@Codec int codec) {
+        return maxQueueDepths[codec];
+    }
+
+    /**
+     * Get a percentile of frame processing latency, which is time taken by a single processing step of a track transcoder
+     * @param percentile percentile, for example 50, 95 or 99
+     * @return latency in nanoseconds, or 0 if no frames were processed
+     */
+    public long getFrameLatencyPercentileNs(@FloatRange(from = 0, to = 100) double percentile) {
+        return frameLatencyHistogram.getPercentile(percentile);
+    }
+
+    @NonNull
+    public LatencyHistogram getFrameLatencyHistogram() {
+        return frameLatencyHistogram;
+    }
+
     public void setSourceFormat(@NonNull MediaFormat sourceFormat) {
         this.sourceFormat = sourceFormat;
     }
@@ -66,4 +182,40 @@ public class TrackTransformationInfo {
     public void setDuration(long duration) {
         this.duration = duration;
     }
+
+    public void setPlan(@Plan int plan, @Nullable String planReason) {
+        this.plan = plan;
+        this.planReason = planReason;
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public void addFrameProcessingDuration(long durationNs) {
+        this.durationNs += durationNs;
+        this.duration = this.durationNs / 1_000_000;
+        frameLatencyHistogram.record(durationNs);
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public void addStageDuration(@Stage int stage, long durationNs) {
+        stageDurationsNs[stage] += durationNs;
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public void onFrameQueued(@Codec int codec) {
+        queuedFrameCounts[codec]++;
+        long queueDepth = queuedFrameCounts[codec] - frameCounts[codec];
+        if (queueDepth > maxQueueDepths[codec]) {
+            maxQueueDepths[codec] = queueDepth;
+        }
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public void onFrameDequeued(@Codec int codec) {
+        frameCounts[codec]++;
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public void onTryAgainLater(@Codec int codec) {
+        tryAgainLaterCounts[codec]++;
+    }
 }
@@ -45,9 +45,16 @@ public class TransformationStatsCollector {
         trackTransformationInfos.get(track).setTargetFormat(mediaFormat);
     }
 
-    public void increaseTrackProcessingDuration(int track, long frameProcessingDuration) {
-        TrackTransformationInfo trackTransformationInfo = trackTransformationInfos.get(track);
-        long duration = trackTransformationInfo.getDuration();
-        trackTransformationInfo.setDuration(duration + frameProcessingDuration);
+    public void setTrackPlan(int track, @TrackTransformationInfo.Plan int plan, @Nullable String planReason) {
+        trackTransformationInfos.get(track).setPlan(plan, planReason);
+    }
+
+    @Nullable
+    public TrackTransformationInfo getTrackTransformationInfo(int track) {
+        return track >= 0 && track < trackTransformationInfos.size() ? trackTransformationInfos.get(track) : null;
+    }
+
+    public void increaseTrackProcessingDuration(int track, long frameProcessingDurationNs) {
+        trackTransformationInfos.get(track).addFrameProcessingDuration(frameProcessingDurationNs);
     }
 }
@@ -90,6 +90,16 @@ public interface Decoder {
     @NonNull
     MediaFormat getOutputFormat();
 
+    /**
+     * Flush the decoder, dropping all pending input and output frames, so that it can continue decoding from a new
+     * position, including after it reached end of stream. Frames dequeued before flushing must not be used afterwards.
+     * Decoders which cannot be flushed throw {@link UnsupportedOperationException}, which is what default
+     * implementation does.
+     */
+    default void flush() {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot be flushed");
+    }
+
     /**
      * Stop the decoder
      */
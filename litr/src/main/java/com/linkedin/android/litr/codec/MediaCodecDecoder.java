@@ -29,15 +29,39 @@ public final class MediaCodecDecoder implements Decoder {
     private boolean isReleased;
     private final MediaCodec.BufferInfo outputBufferInfo = new MediaCodec.BufferInfo();
 
+    @Nullable private final MediaCodecPool codecPool;
+
+    public MediaCodecDecoder() {
+        this(null);
+    }
+
+    /**
+     * Create a decoder
+     * @param codecPool optional pool to take warm codecs from and return them to when decoder is released
+     */
+    public MediaCodecDecoder(@Nullable MediaCodecPool codecPool) {
+        this.codecPool = codecPool;
+    }
+
     @Override
     public void init(@NonNull MediaFormat mediaFormat, @Nullable Surface surface) throws TrackTranscoderException {
-        mediaCodec = CodecUtils.getAndConfigureCodec(
-                mediaFormat,
-                surface,
-                false,
-                TrackTranscoderException.Error.DECODER_NOT_FOUND,
-                TrackTranscoderException.Error.DECODER_FORMAT_NOT_FOUND,
-                TrackTranscoderException.Error.DECODER_CONFIGURATION_ERROR);
+        if (codecPool != null) {
+            mediaCodec = codecPool.getAndConfigureCodec(
+                    mediaFormat,
+                    surface,
+                    false,
+                    TrackTranscoderException.Error.DECODER_NOT_FOUND,
+                    TrackTranscoderException.Error.DECODER_FORMAT_NOT_FOUND,
+                    TrackTranscoderException.Error.DECODER_CONFIGURATION_ERROR);
+        } else {
+            mediaCodec = CodecUtils.getAndConfigureCodec(
+                    mediaFormat,
+                    surface,
+                    false,
+                    TrackTranscoderException.Error.DECODER_NOT_FOUND,
+                    TrackTranscoderException.Error.DECODER_FORMAT_NOT_FOUND,
+                    TrackTranscoderException.Error.DECODER_CONFIGURATION_ERROR);
+        }
         isReleased = mediaCodec == null;
     }
 
@@ -125,6 +149,11 @@ public final class MediaCodecDecoder implements Decoder {
         return mediaCodec.getOutputFormat();
     }
 
+    @Override
+    public void flush() {
+        mediaCodec.flush();
+    }
+
     @Override
     public void stop() {
         if (isRunning) {
@@ -136,7 +165,11 @@ public final class MediaCodecDecoder implements Decoder {
     @Override
     public void release() {
         if (!isReleased) {
-            mediaCodec.release();
+            if (codecPool != null) {
+                codecPool.recycle(mediaCodec);
+            } else {
+                mediaCodec.release();
+            }
             isReleased = true;
         }
     }
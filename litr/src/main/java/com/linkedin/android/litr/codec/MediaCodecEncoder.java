@@ -33,6 +33,20 @@ public class MediaCodecEncoder implements Encoder {
 
     private final MediaCodec.BufferInfo encoderOutputBufferInfo = new MediaCodec.BufferInfo();
 
+    @Nullable private final MediaCodecPool codecPool;
+
+    public MediaCodecEncoder() {
+        this(null);
+    }
+
+    /**
+     * Create an encoder
+     * @param codecPool optional pool to take warm codecs from and return them to when encoder is released
+     */
+    public MediaCodecEncoder(@Nullable MediaCodecPool codecPool) {
+        this.codecPool = codecPool;
+    }
+
     @Override
     public void init(@NonNull MediaFormat targetFormat) throws TrackTranscoderException {
         if (targetFormat.containsKey(MediaFormat.KEY_MIME) && targetFormat.getString(MediaFormat.KEY_MIME).startsWith("video")) {
@@ -46,13 +60,23 @@ public class MediaCodecEncoder implements Encoder {
             }
         }
 
-        mediaCodec = CodecUtils.getAndConfigureCodec(
-                targetFormat,
-                null,
-                true,
-                TrackTranscoderException.Error.ENCODER_NOT_FOUND,
-                TrackTranscoderException.Error.ENCODER_FORMAT_NOT_FOUND,
-                TrackTranscoderException.Error.ENCODER_CONFIGURATION_ERROR);
+        if (codecPool != null) {
+            mediaCodec = codecPool.getAndConfigureCodec(
+                    targetFormat,
+                    null,
+                    true,
+                    TrackTranscoderException.Error.ENCODER_NOT_FOUND,
+                    TrackTranscoderException.Error.ENCODER_FORMAT_NOT_FOUND,
+                    TrackTranscoderException.Error.ENCODER_CONFIGURATION_ERROR);
+        } else {
+            mediaCodec = CodecUtils.getAndConfigureCodec(
+                    targetFormat,
+                    null,
+                    true,
+                    TrackTranscoderException.Error.ENCODER_NOT_FOUND,
+                    TrackTranscoderException.Error.ENCODER_FORMAT_NOT_FOUND,
+                    TrackTranscoderException.Error.ENCODER_CONFIGURATION_ERROR);
+        }
         isReleased = mediaCodec == null;
     }
 
@@ -154,7 +178,11 @@ public class MediaCodecEncoder implements Encoder {
     @Override
     public void release() {
         if (!isReleased) {
-            mediaCodec.release();
+            if (codecPool != null) {
+                codecPool.recycle(mediaCodec);
+            } else {
+                mediaCodec.release();
+            }
             isReleased = true;
         }
     }
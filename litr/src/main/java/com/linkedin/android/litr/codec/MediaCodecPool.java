@@ -0,0 +1,364 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.codec;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Surface;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import androidx.annotation.VisibleForTesting;
+
+import com.linkedin.android.litr.exception.TrackTranscoderException;
+import com.linkedin.android.litr.utils.CodecCapabilityIndex;
+import com.linkedin.android.litr.utils.CodecUtils;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A pool of warm {@link MediaCodec} instances, shared between transformation jobs. Creating and allocating a hardware
+ * codec is expensive, so when a job is done with a codec, it is reset and kept idle, to be configured again by the next job
+ * which needs a codec of the same direction, MIME type and configuration shape (resolution or audio layout and profile).
+ *
+ * Idle codecs are released when they are not used for a while, when system reports memory pressure, when pool is full,
+ * or when a new codec instance is needed and keeping idle ones would exceed a number of concurrent instances supported by device.
+ *
+ * Pool is opt-in: pass it to {@link MediaCodecDecoder} and {@link MediaCodecEncoder}, or to
+ * {@link com.linkedin.android.litr.TransformationOptions.Builder#setCodecPool(MediaCodecPool)}.
+ * Call {@link #release()} when pool is no longer needed.
+ */
+public class MediaCodecPool implements ComponentCallbacks2 {
+
+    private static final String TAG = MediaCodecPool.class.getSimpleName();
+
+    public static final int DEFAULT_MAX_IDLE_CODECS = 4;
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 30_000;
+
+    private final Context context;
+    private final int maxIdleCodecs;
+    private final long idleTimeoutMs;
+    private final Handler handler;
+    private final Runnable idleEvictionRunnable = this::releaseExpiredCodecs;
+
+    // idle codecs, least recently used first
+    private final LinkedList<PooledCodec> idleCodecs = new LinkedList<>();
+    private final Map<MediaCodec, PooledCodec> activeCodecs = new IdentityHashMap<>();
+
+    public MediaCodecPool(@NonNull Context context) {
+        this(context, DEFAULT_MAX_IDLE_CODECS, DEFAULT_IDLE_TIMEOUT_MS);
+    }
+
+    /**
+     * Create a pool
+     * @param context context, used to listen to memory pressure events
+     * @param maxIdleCodecs maximum number of idle codecs to keep
+     * @param idleTimeoutMs time after which an idle codec is released, in milliseconds
+     */
+    public MediaCodecPool(@NonNull Context context,
+                          @IntRange(from = 0) int maxIdleCodecs,
+                          @IntRange(from = 0) long idleTimeoutMs) {
+        this.context = context.getApplicationContext();
+        this.maxIdleCodecs = maxIdleCodecs;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.handler = new Handler(Looper.getMainLooper());
+
+        this.context.registerComponentCallbacks(this);
+    }
+
+    /**
+     * Get a codec configured for a media format, reusing an idle codec when possible
+     * @param mediaFormat {@link MediaFormat} to configure the codec with
+     * @param surface optional {@link Surface} codec will work with
+     * @param isEncoder true if encoder is requested, false if decoder
+     * @param codecNotFoundError error to report if codec could not be found
+     * @param codecFormatNotFoundError error to report if codec could not be found by format
+     * @param codecConfigurationError error to report if codec could not be configured
+     * @return configured codec, which should be returned to the pool using {@link #recycle(MediaCodec)}
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    @NonNull
+    public MediaCodec getAndConfigureCodec(@NonNull MediaFormat mediaFormat,
+                                           @Nullable Surface surface,
+                                           boolean isEncoder,
+                                           @NonNull TrackTranscoderException.Error codecNotFoundError,
+                                           @NonNull TrackTranscoderException.Error codecFormatNotFoundError,
+                                           @NonNull TrackTranscoderException.Error codecConfigurationError) throws TrackTranscoderException {
+        String shape = CodecUtils.getFormatShape(mediaFormat, isEncoder);
+
+        PooledCodec pooledCodec;
+        while ((pooledCodec = takeIdleCodec(shape)) != null) {
+            try {
+                CodecUtils.configureMediaFormat(pooledCodec.codec, mediaFormat, surface, isEncoder);
+                onCodecActive(pooledCodec);
+                return pooledCodec.codec;
+            } catch (Exception e) {
+                // codec may be in a bad state after a reset, do not reuse it
+                Log.w(TAG, "Failed to reconfigure pooled codec " + pooledCodec.name, e);
+                releaseCodec(pooledCodec);
+            }
+        }
+
+        String mimeType = mediaFormat.getString(MediaFormat.KEY_MIME);
+        if (mimeType != null) {
+            releaseIdleCodecsOverInstanceLimit(mimeType, isEncoder);
+        }
+
+        MediaCodec mediaCodec = createAndConfigureCodec(
+                mediaFormat,
+                surface,
+                isEncoder,
+                codecNotFoundError,
+                codecFormatNotFoundError,
+                codecConfigurationError);
+        onCodecActive(new PooledCodec(mediaCodec, shape, mimeType, isEncoder));
+        return mediaCodec;
+    }
+
+    /**
+     * Return a codec obtained from {@link #getAndConfigureCodec} to the pool. Codec can be in any state, it will be reset.
+     * Codecs which did not come from this pool, or cannot be reset, are released.
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public void recycle(@NonNull MediaCodec mediaCodec) {
+        PooledCodec pooledCodec;
+        synchronized (this) {
+            pooledCodec = activeCodecs.remove(mediaCodec);
+        }
+        if (pooledCodec == null || maxIdleCodecs == 0) {
+            mediaCodec.release();
+            return;
+        }
+
+        try {
+            mediaCodec.reset();
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to reset codec " + pooledCodec.name + ", releasing it", e);
+            mediaCodec.release();
+            return;
+        }
+
+        List<PooledCodec> evictedCodecs = new ArrayList<>();
+        synchronized (this) {
+            pooledCodec.idleSinceMs = SystemClock.elapsedRealtime();
+            idleCodecs.addLast(pooledCodec);
+            while (idleCodecs.size() > maxIdleCodecs) {
+                evictedCodecs.add(idleCodecs.removeFirst());
+            }
+        }
+        releaseCodecs(evictedCodecs);
+
+        handler.removeCallbacks(idleEvictionRunnable);
+        handler.postDelayed(idleEvictionRunnable, idleTimeoutMs);
+    }
+
+    /**
+     * Release all idle codecs. Codecs currently in use are not affected and will be pooled when recycled.
+     */
+    public void clear() {
+        List<PooledCodec> evictedCodecs;
+        synchronized (this) {
+            evictedCodecs = new ArrayList<>(idleCodecs);
+            idleCodecs.clear();
+        }
+        releaseCodecs(evictedCodecs);
+        handler.removeCallbacks(idleEvictionRunnable);
+    }
+
+    /**
+     * Release all idle codecs and stop listening to memory pressure events. Codecs in use will be released when recycled.
+     */
+    public void release() {
+        context.unregisterComponentCallbacks(this);
+        synchronized (this) {
+            activeCodecs.clear();
+        }
+        clear();
+    }
+
+    /**
+     * Get number of idle codecs in the pool
+     */
+    public synchronized int getIdleCodecCount() {
+        return idleCodecs.size();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            clear();
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        clear();
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {}
+
+    @Nullable
+    private synchronized PooledCodec takeIdleCodec(@NonNull String shape) {
+        // most recently used codec first, it is least likely to have been trimmed by the platform
+        Iterator<PooledCodec> iterator = idleCodecs.descendingIterator();
+        while (iterator.hasNext()) {
+            PooledCodec pooledCodec = iterator.next();
+            if (pooledCodec.shape.equals(shape)) {
+                iterator.remove();
+                return pooledCodec;
+            }
+        }
+        return null;
+    }
+
+    private synchronized void onCodecActive(@NonNull PooledCodec pooledCodec) {
+        activeCodecs.put(pooledCodec.codec, pooledCodec);
+    }
+
+    /**
+     * Idle codecs of the same type hold on to codec instances a new codec may need. When device limits
+     * a number of concurrent instances (or we do not know the limit), idle codecs which would push us over it are released.
+     */
+    private void releaseIdleCodecsOverInstanceLimit(@NonNull String mimeType, boolean isEncoder) {
+        int maxInstances = getMaxSupportedInstances(mimeType, isEncoder);
+
+        List<PooledCodec> evictedCodecs = new ArrayList<>();
+        synchronized (this) {
+            int instanceCount = 0;
+            for (PooledCodec pooledCodec : activeCodecs.values()) {
+                if (pooledCodec.isSameType(mimeType, isEncoder)) {
+                    instanceCount++;
+                }
+            }
+            for (PooledCodec pooledCodec : idleCodecs) {
+                if (pooledCodec.isSameType(mimeType, isEncoder)) {
+                    instanceCount++;
+                }
+            }
+
+            // leave room for a new instance, releasing least recently used idle codecs first
+            Iterator<PooledCodec> iterator = idleCodecs.iterator();
+            while (instanceCount >= maxInstances && iterator.hasNext()) {
+                PooledCodec pooledCodec = iterator.next();
+                if (pooledCodec.isSameType(mimeType, isEncoder)) {
+                    iterator.remove();
+                    evictedCodecs.add(pooledCodec);
+                    instanceCount--;
+                }
+            }
+        }
+        releaseCodecs(evictedCodecs);
+    }
+
+    @VisibleForTesting
+    @NonNull
+    MediaCodec createAndConfigureCodec(@NonNull MediaFormat mediaFormat,
+                                       @Nullable Surface surface,
+                                       boolean isEncoder,
+                                       @NonNull TrackTranscoderException.Error codecNotFoundError,
+                                       @NonNull TrackTranscoderException.Error codecFormatNotFoundError,
+                                       @NonNull TrackTranscoderException.Error codecConfigurationError) throws TrackTranscoderException {
+        return CodecUtils.getAndConfigureCodec(
+                mediaFormat,
+                surface,
+                isEncoder,
+                codecNotFoundError,
+                codecFormatNotFoundError,
+                codecConfigurationError);
+    }
+
+    /**
+     * Get a number of concurrent codec instances of a type supported by device. Before Android M the limit is unknown
+     * and 0 is returned, so that no idle codecs of the type are kept when a new instance is created.
+     */
+    @VisibleForTesting
+    int getMaxSupportedInstances(@NonNull String mimeType, boolean isEncoder) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return 0;
+        }
+        List<CodecCapabilityIndex.CodecEntry> codecs = CodecCapabilityIndex.getInstance().getCodecs(mimeType, isEncoder);
+        if (!codecs.isEmpty() && codecs.get(0).getMaxSupportedInstances() > 0) {
+            return codecs.get(0).getMaxSupportedInstances();
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    private void releaseExpiredCodecs() {
+        List<PooledCodec> evictedCodecs = new ArrayList<>();
+        long nextExpirationMs = Long.MAX_VALUE;
+        synchronized (this) {
+            long nowMs = SystemClock.elapsedRealtime();
+            Iterator<PooledCodec> iterator = idleCodecs.iterator();
+            while (iterator.hasNext()) {
+                PooledCodec pooledCodec = iterator.next();
+                long expirationMs = pooledCodec.idleSinceMs + idleTimeoutMs;
+                if (expirationMs <= nowMs) {
+                    iterator.remove();
+                    evictedCodecs.add(pooledCodec);
+                } else {
+                    nextExpirationMs = Math.min(nextExpirationMs, expirationMs);
+                }
+            }
+            if (nextExpirationMs != Long.MAX_VALUE) {
+                handler.postDelayed(idleEvictionRunnable, nextExpirationMs - nowMs);
+            }
+        }
+        releaseCodecs(evictedCodecs);
+    }
+
+    private static void releaseCodecs(@NonNull List<PooledCodec> pooledCodecs) {
+        for (PooledCodec pooledCodec : pooledCodecs) {
+            releaseCodec(pooledCodec);
+        }
+    }
+
+    private static void releaseCodec(@NonNull PooledCodec pooledCodec) {
+        try {
+            pooledCodec.codec.release();
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to release codec " + pooledCodec.name, e);
+        }
+    }
+
+    private static final class PooledCodec {
+        @NonNull private final MediaCodec codec;
+        @NonNull private final String name;
+        @NonNull private final String shape;
+        @Nullable private final String mimeType;
+        private final boolean isEncoder;
+        private long idleSinceMs;
+
+        private PooledCodec(@NonNull MediaCodec codec, @NonNull String shape, @Nullable String mimeType, boolean isEncoder) {
+            this.codec = codec;
+            this.name = codec.getName();
+            this.shape = shape;
+            this.mimeType = mimeType;
+            this.isEncoder = isEncoder;
+        }
+
+        private boolean isSameType(@NonNull String mimeType, boolean isEncoder) {
+            return this.isEncoder == isEncoder && mimeType.equals(this.mimeType);
+        }
+    }
+}
@@ -97,6 +97,14 @@ class PassthroughDecoder(
         return mediaFormat
     }
 
+    override fun flush() {
+        availableFrames.addAll(dequeuedInputFrames.values)
+        availableFrames.addAll(decodedFrames.values)
+        dequeuedInputFrames.clear()
+        decodedFrames.clear()
+        decodeQueue.clear()
+    }
+
     override fun stop() {
         isRunning = false
     }
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.exception;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Content manifest of transformation output could not be computed. Output itself was written successfully and is kept.
+ */
+public class ContentManifestException extends MediaTransformationException {
+    @NonNull private final String outputFilePath;
+
+    public ContentManifestException(@NonNull String outputFilePath, @NonNull Throwable cause) {
+        super(cause);
+        this.outputFilePath = outputFilePath;
+    }
+
+    /**
+     * Get path or {@link android.net.Uri} string of output which manifest could not be computed for
+     */
+    @NonNull
+    public String getOutputFilePath() {
+        return outputFilePath;
+    }
+
+    @Override
+    @NonNull
+    public String getMessage() {
+        return "Failed to compute content manifest of " + outputFilePath;
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.exception;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Transformation output failed structural verification
+ */
+public class OutputVerificationException extends MediaTransformationException {
+    @NonNull private final String reason;
+
+    public OutputVerificationException(@NonNull String reason) {
+        this(reason, new Throwable());
+    }
+
+    public OutputVerificationException(@NonNull String reason, @NonNull Throwable cause) {
+        super(cause);
+        this.reason = reason;
+    }
+
+    /**
+     * Get reason why output is invalid
+     */
+    @NonNull
+    public String getReason() {
+        return reason;
+    }
+
+    @Override
+    @NonNull
+    public String getMessage() {
+        return "Output verification failed: " + reason;
+    }
+}
@@ -17,8 +17,8 @@ interface BufferFilter {
     /**
      * Apply a filter to a [Frame]. Frame.bufferInfo will provide necessary metadata.
      * Frame.buffer is expected to be modified. Buffer contents are in target format.
-     * For example, for audio buffer those will be Short (2 byte LE) values with target
-     * sample rate and channel count.
+     * For example, for audio buffer those will be little endian PCM values with target
+     * sample rate, channel count and PCM encoding ([MediaFormat.KEY_PCM_ENCODING], 16 bit if not specified).
      */
     fun apply(frame: Frame)
 
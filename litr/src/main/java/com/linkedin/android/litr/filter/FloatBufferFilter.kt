@@ -0,0 +1,36 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.filter
+
+import android.media.MediaFormat
+
+/**
+ * An audio filter operating on planar float samples, used within a [com.linkedin.android.litr.filter.audio.FloatAudioFilterChain].
+ * Samples are converted from PCM once for an entire chain, so filters avoid repeated parsing and quantization of PCM data.
+ */
+interface FloatBufferFilter {
+
+    /**
+     * Initialize the filter
+     * @param mediaFormat renderer's target [MediaFormat]
+     */
+    fun init(mediaFormat: MediaFormat?)
+
+    /**
+     * Apply a filter to a block of samples, in place. Samples are planar, one array per channel, with values normally in [-1, 1] range.
+     * @param samples sample arrays, one per channel
+     * @param sampleCount number of samples per channel in this block, starting at index 0
+     * @param presentationTimeUs presentation time of the first sample in this block
+     */
+    fun apply(samples: Array<FloatArray>, sampleCount: Int, presentationTimeUs: Long)
+
+    /**
+     * Release the filter.
+     */
+    fun release()
+}
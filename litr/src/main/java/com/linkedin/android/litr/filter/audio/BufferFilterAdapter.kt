@@ -0,0 +1,80 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.filter.audio
+
+import android.media.AudioFormat
+import android.media.MediaCodec
+import android.media.MediaFormat
+import com.linkedin.android.litr.codec.Frame
+import com.linkedin.android.litr.filter.BufferFilter
+import com.linkedin.android.litr.filter.FloatBufferFilter
+import com.linkedin.android.litr.utils.PcmUtils
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+/**
+ * Allows using an existing PCM [BufferFilter] within a [FloatAudioFilterChain]. Each block of samples is converted to PCM in target
+ * encoding, passed to wrapped filter and converted back, so filters implementing [FloatBufferFilter] directly should be preferred.
+ */
+class BufferFilterAdapter(private val bufferFilter: BufferFilter) : FloatBufferFilter {
+
+    private var pcmEncoding = AudioFormat.ENCODING_PCM_16BIT
+    private var bytesPerSample = PcmUtils.getBytesPerSample(pcmEncoding)
+    private var buffer: ByteBuffer = ByteBuffer.allocateDirect(0)
+    private var interleavedSamples = FloatArray(0)
+    // frame is reused for every block, and replaced only when buffer grows
+    private val bufferInfo = MediaCodec.BufferInfo()
+    private var frame = Frame(0, buffer, bufferInfo)
+
+    override fun init(mediaFormat: MediaFormat?) {
+        pcmEncoding = PcmUtils.getPcmEncoding(mediaFormat)
+        bytesPerSample = PcmUtils.getBytesPerSample(pcmEncoding)
+        bufferFilter.init(mediaFormat)
+    }
+
+    override fun apply(samples: Array<FloatArray>, sampleCount: Int, presentationTimeUs: Long) {
+        val channelCount = samples.size
+        val valueCount = sampleCount * channelCount
+        val size = valueCount * bytesPerSample
+        if (buffer.capacity() < size) {
+            buffer = ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN)
+            frame = Frame(0, buffer, bufferInfo)
+        }
+        if (interleavedSamples.size < valueCount) {
+            interleavedSamples = FloatArray(valueCount)
+        }
+
+        var valueIndex = 0
+        for (index in 0 until sampleCount) {
+            for (channel in 0 until channelCount) {
+                interleavedSamples[valueIndex++] = samples[channel][index]
+            }
+        }
+        PcmUtils.writeSamples(interleavedSamples, valueCount, buffer, 0, pcmEncoding)
+        buffer.clear()
+        buffer.limit(size)
+
+        bufferInfo.offset = 0
+        bufferInfo.size = size
+        bufferInfo.presentationTimeUs = presentationTimeUs
+        bufferInfo.flags = 0
+        bufferFilter.apply(frame)
+
+        PcmUtils.readSamples(buffer, 0, pcmEncoding, interleavedSamples, valueCount)
+        valueIndex = 0
+        for (index in 0 until sampleCount) {
+            for (channel in 0 until channelCount) {
+                samples[channel][index] = interleavedSamples[valueIndex++]
+            }
+        }
+    }
+
+    override fun release() {
+        bufferFilter.release()
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.filter.audio
+
+import android.media.AudioFormat
+import android.media.MediaFormat
+import com.linkedin.android.litr.codec.Frame
+import com.linkedin.android.litr.filter.BufferFilter
+import com.linkedin.android.litr.filter.FloatBufferFilter
+import com.linkedin.android.litr.utils.MediaFormatUtils
+import com.linkedin.android.litr.utils.PcmUtils
+
+private const val DEFAULT_BLOCK_SIZE = 256
+private const val PCM_16_SCALE = 32768f
+private const val UNDEFINED_VALUE = -1
+
+/**
+ * A [BufferFilter] which runs a chain of [FloatBufferFilter]s over PCM audio, in any encoding supported by [PcmUtils].
+ *
+ * PCM samples are converted to planar float samples once, all filters are applied to them block by block, so that each block stays in cache
+ * while it passes through the entire chain, and then samples are converted back to PCM once. Compared to a list of [BufferFilter]s, this
+ * avoids repeated quantization noise and repeated passes over memory. When target encoding is 16 bit PCM, samples are dithered before
+ * quantization. Existing [BufferFilter]s can be used in a chain by wrapping them into a [BufferFilterAdapter].
+ *
+ * @param filters filters to apply, in order
+ * @param blockSize number of samples per channel processed by each filter at once
+ */
+class FloatAudioFilterChain @JvmOverloads constructor(
+    private val filters: List<FloatBufferFilter>,
+    private val blockSize: Int = DEFAULT_BLOCK_SIZE
+) : BufferFilter {
+
+    private var channelCount = UNDEFINED_VALUE
+    private var sampleDurationUs = 0.0
+    private var pcmEncoding = AudioFormat.ENCODING_PCM_16BIT
+    private var bytesPerSample = 0
+    private var samples: Array<FloatArray> = emptyArray()
+    private var interleavedSamples = FloatArray(0)
+
+    // state of a pseudo random generator used for dithering
+    private var ditherSeed = 1
+
+    override fun init(mediaFormat: MediaFormat?) {
+        channelCount = mediaFormat?.let { MediaFormatUtils.getChannelCount(it, UNDEFINED_VALUE).toInt() } ?: UNDEFINED_VALUE
+        val sampleRate = mediaFormat?.let { MediaFormatUtils.getSampleRate(it, UNDEFINED_VALUE).toInt() } ?: UNDEFINED_VALUE
+        sampleDurationUs = if (sampleRate > 0) 1_000_000.0 / sampleRate else 0.0
+        pcmEncoding = PcmUtils.getPcmEncoding(mediaFormat)
+        bytesPerSample = PcmUtils.getBytesPerSample(pcmEncoding)
+        samples = Array(maxOf(channelCount, 0)) { FloatArray(blockSize) }
+        interleavedSamples = FloatArray(maxOf(channelCount, 0) * blockSize)
+
+        filters.forEach { it.init(mediaFormat) }
+    }
+
+    override fun apply(frame: Frame) {
+        val buffer = frame.buffer ?: return
+        if (channelCount <= 0 || filters.isEmpty()) {
+            return
+        }
+
+        val startPosition = frame.bufferInfo.offset
+        val totalSampleCount = frame.bufferInfo.size / (bytesPerSample * channelCount)
+        var sampleIndex = 0
+        while (sampleIndex < totalSampleCount) {
+            val blockSampleCount = minOf(blockSize, totalSampleCount - sampleIndex)
+            val blockValueCount = blockSampleCount * channelCount
+            val blockPosition = startPosition + sampleIndex * channelCount * bytesPerSample
+
+            // convert to float and de-interleave
+            PcmUtils.readSamples(buffer, blockPosition, pcmEncoding, interleavedSamples, blockValueCount)
+            var valueIndex = 0
+            for (index in 0 until blockSampleCount) {
+                for (channel in 0 until channelCount) {
+                    samples[channel][index] = interleavedSamples[valueIndex++]
+                }
+            }
+
+            val presentationTimeUs = frame.bufferInfo.presentationTimeUs + (sampleIndex * sampleDurationUs).toLong()
+            for (filter in filters) {
+                filter.apply(samples, blockSampleCount, presentationTimeUs)
+            }
+
+            // interleave back, dither and convert to PCM
+            valueIndex = 0
+            for (index in 0 until blockSampleCount) {
+                for (channel in 0 until channelCount) {
+                    interleavedSamples[valueIndex++] = samples[channel][index]
+                }
+            }
+            if (pcmEncoding == AudioFormat.ENCODING_PCM_16BIT) {
+                dither(blockValueCount)
+            }
+            PcmUtils.writeSamples(interleavedSamples, blockValueCount, buffer, blockPosition, pcmEncoding)
+
+            sampleIndex += blockSampleCount
+        }
+    }
+
+    override fun release() {
+        filters.forEach { it.release() }
+    }
+
+    /**
+     * Adds triangular probability density function dither of one 16 bit least significant bit to interleaved samples.
+     */
+    private fun dither(valueCount: Int) {
+        for (index in 0 until valueCount) {
+            interleavedSamples[index] += (nextDitherValue() - nextDitherValue()) / PCM_16_SCALE
+        }
+    }
+
+    /**
+     * Returns a uniformly distributed pseudo random value in [0, 1) range, using a xorshift generator, which is much cheaper than [java.util.Random].
+     */
+    private fun nextDitherValue(): Float {
+        var seed = ditherSeed
+        seed = seed xor (seed shl 13)
+        seed = seed xor (seed ushr 17)
+        seed = seed xor (seed shl 5)
+        ditherSeed = seed
+        return (seed ushr 8) / 16777216f
+    }
+}
@@ -8,38 +8,78 @@
 package com.linkedin.android.litr.frameextract
 
 import android.graphics.Bitmap
+import android.graphics.Canvas
+import android.graphics.Matrix
+import android.graphics.Paint
+import android.graphics.PorterDuff
+import android.graphics.PorterDuffXfermode
 import android.media.ThumbnailUtils
 import android.util.Log
 import com.linkedin.android.litr.ExperimentalFrameExtractorApi
 import com.linkedin.android.litr.frameextract.behaviors.FrameExtractBehavior
+import com.linkedin.android.litr.frameextract.behaviors.FrameExtractBehaviorBatchListener
 import com.linkedin.android.litr.frameextract.behaviors.FrameExtractBehaviorFrameListener
+import com.linkedin.android.litr.frameextract.cache.FrameCache
+import com.linkedin.android.litr.frameextract.cache.FrameCacheKey
+import com.linkedin.android.litr.utils.BitmapPool
+import kotlin.math.max
 
 /**
  * Provides the request lifecycle for extracting video frames. The specifics of extraction work are delegated to [FrameExtractBehavior]s.
+ *
+ * A job extracts either a single frame, or a batch of frames from the same media, sorted by timestamp.
  */
 @ExperimentalFrameExtractorApi
 internal class FrameExtractJob constructor(
     private val jobId: String,
-    private val params: FrameExtractParameters,
+    private val batchParams: List<FrameExtractParameters>,
     private val behavior: FrameExtractBehavior,
-    private val listener: FrameExtractListener?
+    private val listener: FrameExtractListener?,
+    private val frameCache: FrameCache? = null,
+    private val bitmapPool: BitmapPool? = null
 ) : Runnable {
 
+    constructor(
+        jobId: String,
+        params: FrameExtractParameters,
+        behavior: FrameExtractBehavior,
+        listener: FrameExtractListener?,
+        frameCache: FrameCache? = null,
+        bitmapPool: BitmapPool? = null
+    ) : this(jobId, listOf(params), behavior, listener, frameCache, bitmapPool)
+
+    private val params = batchParams.first()
+
     var isStarted: Boolean = false
         private set
 
+    private val resizePaint = Paint(Paint.FILTER_BITMAP_FLAG).apply {
+        xfermode = PorterDuffXfermode(PorterDuff.Mode.SRC)
+    }
+
     private val behaviorFrameListener = object: FrameExtractBehaviorFrameListener {
         override fun onFrameExtracted(bitmap: Bitmap) {
-            val renderedBitmap = renderExtractedFrame(bitmap)
+            behaviorBatchListener.onFrameExtracted(params, bitmap)
+        }
+
+        override fun onFrameFailed() {
+            behaviorBatchListener.onFrameFailed(params)
+        }
+    }
+
+    private val behaviorBatchListener = object: FrameExtractBehaviorBatchListener {
+        override fun onFrameExtracted(params: FrameExtractParameters, bitmap: Bitmap) {
+            val renderedBitmap = renderExtractedFrame(params, bitmap)
 
             if (renderedBitmap != null) {
+                frameCache?.put(FrameCacheKey.from(params), renderedBitmap)
                 listener?.onExtracted(jobId, params.timestampUs, renderedBitmap)
             } else {
                 listener?.onError(jobId, params.timestampUs, null)
             }
         }
 
-        override fun onFrameFailed() {
+        override fun onFrameFailed(params: FrameExtractParameters) {
             listener?.onError(jobId, params.timestampUs, null)
         }
     }
@@ -59,17 +99,20 @@ internal class FrameExtractJob constructor(
         }
     }
 
-    private fun renderExtractedFrame(bitmap: Bitmap): Bitmap? {
+    private fun renderExtractedFrame(params: FrameExtractParameters, bitmap: Bitmap): Bitmap? {
         if (Thread.interrupted()) {
             listener?.onCancelled(jobId, params.timestampUs)
             return null
         }
 
         val resizedBitmap = if (params.destSize != null) {
-            ThumbnailUtils.extractThumbnail(bitmap, params.destSize.x, params.destSize.y)
+            resize(bitmap, params.destSize.x, params.destSize.y)
         } else {
             bitmap
         }
+        if (resizedBitmap !== bitmap) {
+            bitmapPool?.put(bitmap)
+        }
 
         if (Thread.interrupted()) {
             listener?.onCancelled(jobId, params.timestampUs)
@@ -77,7 +120,31 @@ internal class FrameExtractJob constructor(
         }
 
         val renderer = params.renderer
-        return renderer.renderFrame(resizedBitmap, params.timestampUs * 1000L)
+        val renderedBitmap = renderer.renderFrame(resizedBitmap, params.timestampUs * 1000L)
+        if (renderedBitmap !== resizedBitmap) {
+            bitmapPool?.put(resizedBitmap)
+        }
+        return renderedBitmap
+    }
+
+    /**
+     * Scales a bitmap to fill destination size, preserving its aspect ratio and cropping it at the center, same as [ThumbnailUtils.extractThumbnail].
+     * Destination bitmap is taken from [bitmapPool], when one is available.
+     */
+    private fun resize(bitmap: Bitmap, width: Int, height: Int): Bitmap {
+        val pool = bitmapPool ?: return ThumbnailUtils.extractThumbnail(bitmap, width, height)
+        if (bitmap.width == width && bitmap.height == height) {
+            return bitmap
+        }
+
+        val scale = max(width.toFloat() / bitmap.width, height.toFloat() / bitmap.height)
+        val matrix = Matrix().apply {
+            setScale(scale, scale)
+            postTranslate((width - bitmap.width * scale) / 2, (height - bitmap.height * scale) / 2)
+        }
+        val resizedBitmap = pool.get(width, height, Bitmap.Config.ARGB_8888)
+        Canvas(resizedBitmap).drawBitmap(bitmap, matrix, resizePaint)
+        return resizedBitmap
     }
 
     private fun extract() {
@@ -94,7 +161,19 @@ internal class FrameExtractJob constructor(
                 return
             }
 
-            val completed = behavior.extract(params, behaviorFrameListener)
+            if (batchParams.size == 1) {
+                val cachedBitmap = frameCache?.get(FrameCacheKey.from(params))
+                if (cachedBitmap != null) {
+                    listener?.onExtracted(jobId, params.timestampUs, cachedBitmap)
+                    return
+                }
+            }
+
+            val completed = if (batchParams.size == 1) {
+                behavior.extract(params, behaviorFrameListener)
+            } else {
+                behavior.extract(batchParams, behaviorBatchListener)
+            }
 
             if (!completed) {
                 listener?.onCancelled(jobId, params.timestampUs)
@@ -22,6 +22,9 @@ interface FrameExtractListener {
 
     /**
      * Occurs when a frame is extracted. This method is not guaranteed to be called if there is an error.
+     *
+     * When [VideoFrameExtractor] uses a bitmap pool, [bitmap] should be returned to it by calling [VideoFrameExtractor.releaseBitmap]
+     * once it is no longer displayed.
      */
     fun onExtracted(id: String, timestampUs: Long, bitmap: Bitmap) {}
 
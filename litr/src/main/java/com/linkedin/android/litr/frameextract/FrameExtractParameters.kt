@@ -45,6 +45,11 @@ data class FrameExtractParameters @JvmOverloads constructor(
         /**
          * The optional priority of the request. Lower value indicates higher priority. Requests with equal priority will be handled in FIFO order.
          */
-        val priority: Long = 0L
+        val priority: Long = 0L,
+        /**
+         * Optional key which identifies the [renderer] and its configuration across process restarts, e.g. its class name and filter settings.
+         * Renderers with equal keys must produce identical frames. Extracted frames are cached on disk only when this key is provided.
+         */
+        val rendererKey: String? = null
 )
 
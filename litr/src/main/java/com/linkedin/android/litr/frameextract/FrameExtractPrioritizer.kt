@@ -0,0 +1,26 @@
+/*
+ * Copyright 2021 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.frameextract
+
+import com.linkedin.android.litr.ExperimentalFrameExtractorApi
+
+/**
+ * Computes new priorities of pending frame extract requests, for example when the visible part of a timeline changes.
+ * Used with [VideoFrameExtractor.updatePriorities].
+ */
+@ExperimentalFrameExtractorApi
+fun interface FrameExtractPrioritizer {
+    /**
+     * Returns a new priority for a pending request. Lower value indicates higher priority.
+     *
+     * @param params parameters of a pending request
+     * @param currentPriority current priority of a request
+     * @return new priority, or null if request is stale and should be dropped
+     */
+    fun getPriority(params: FrameExtractParameters, currentPriority: Long): Long?
+}
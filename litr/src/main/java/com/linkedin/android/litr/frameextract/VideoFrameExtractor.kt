@@ -12,35 +12,54 @@ import android.graphics.Bitmap
 import android.os.Handler
 import android.os.Looper
 import android.util.Log
+import androidx.annotation.VisibleForTesting
 import com.linkedin.android.litr.ExperimentalFrameExtractorApi
 import com.linkedin.android.litr.frameextract.behaviors.FrameExtractBehavior
 import com.linkedin.android.litr.frameextract.behaviors.MediaMetadataExtractBehavior
+import com.linkedin.android.litr.frameextract.cache.FrameCache
+import com.linkedin.android.litr.frameextract.cache.FrameCacheKey
+import com.linkedin.android.litr.frameextract.queue.AffinityPriorityExecutor
 import com.linkedin.android.litr.frameextract.queue.ComparableFutureTask
-import com.linkedin.android.litr.frameextract.queue.PriorityExecutorUtil
+import com.linkedin.android.litr.utils.BitmapPool
 
 /**
  * Provides the entry point for single frame extraction.
  *
- * This class uses a single, dedicated thread to schedule jobs. The priority of each job can be specified within [FrameExtractParameters].
+ * This class uses dedicated worker threads to schedule jobs, a single one by default. The priority of each job can be specified within
+ * [FrameExtractParameters]. When several workers are used, jobs for the same media URI are preferably scheduled on the worker which
+ * extracted frames from that media last, so that [FrameExtractBehavior] can reuse resources it keeps open for that media.
+ *
+ * When a [frameCache] is provided, extracted frames are cached, and identical requests (see [FrameCacheKey]) which arrive while a frame is being
+ * extracted share one extraction job, with all their listeners notified. In that case bitmaps are shared between requests, and must not be modified.
  *
  * @param context The application context.
  * @param listenerLooper The looper on which [extract] listener events will be processed.
  * @param extractBehavior The behavior to use for extracting frames from media.
+ * @param frameCache Optional cache of extracted frames.
+ * @param workerCount Number of worker threads extracting frames concurrently.
+ * @param bitmapPool Optional pool of bitmaps used for intermediate and resulting frames. Bitmaps which are no longer displayed should be
+ * returned to it by calling [releaseBitmap]. The same pool should be passed to [FrameExtractBehavior] and renderers, when they support it.
  */
 @ExperimentalFrameExtractorApi
 class VideoFrameExtractor @JvmOverloads constructor(
     context: Context,
     private val listenerLooper: Looper = Looper.getMainLooper(),
-    private var extractBehavior: FrameExtractBehavior = MediaMetadataExtractBehavior(context)
+    private var extractBehavior: FrameExtractBehavior = MediaMetadataExtractBehavior(context),
+    private val frameCache: FrameCache? = null,
+    workerCount: Int = 1,
+    private val bitmapPool: BitmapPool? = null
 ) {
 
+    // request ID to a job serving that request, several requests may be served by one job
     private val activeJobMap = mutableMapOf<String, ActiveExtractJob>()
+    private val runningJobMap = mutableMapOf<String, ActiveExtractJob>()
+    private val inFlightJobMap = mutableMapOf<FrameCacheKey, ActiveExtractJob>()
+    private var jobSequence = 0L
 
-    private val listenerHandler by lazy {
-        Handler(listenerLooper)
-    }
+    @VisibleForTesting
+    internal var listenerHandler = Handler(listenerLooper)
 
-    private val executorService = PriorityExecutorUtil.newSingleThreadPoolPriorityExecutor()
+    private val executorService = AffinityPriorityExecutor(workerCount, MAX_AFFINITY_URI_COUNT)
 
     /**
      * Starts a new frame extract job with the specified parameters. The [listener] will be updated with the job status.
@@ -54,10 +73,57 @@ class VideoFrameExtractor @JvmOverloads constructor(
             Log.w(TAG, "Request with ID $requestId already exists")
             return
         }
-        val task = FrameExtractJob(requestId, params, extractBehavior, rootListener)
-        val futureTask = ComparableFutureTask(task, null, params.priority)
-        executorService.execute(futureTask)
-        activeJobMap[requestId] = ActiveExtractJob(futureTask, listener)
+
+        val cacheKey = frameCache?.let { FrameCacheKey.from(params) }
+        if (cacheKey != null) {
+            val cachedBitmap = frameCache?.getFromMemory(cacheKey)
+            if (cachedBitmap != null) {
+                listener?.let {
+                    listenerHandler.post {
+                        it.onStarted(requestId, params.timestampUs)
+                        it.onExtracted(requestId, params.timestampUs, cachedBitmap)
+                    }
+                }
+                return
+            }
+
+            val inFlightJob = inFlightJobMap[cacheKey]
+            if (inFlightJob != null) {
+                inFlightJob.subscribers[requestId] = listener
+                activeJobMap[requestId] = inFlightJob
+                // otherwise, pending start notification is delivered to all subscribers, including this one
+                if (inFlightJob.isStartDelivered && listener != null) {
+                    listenerHandler.post { listener.onStarted(requestId, params.timestampUs) }
+                }
+                return
+            }
+        }
+
+        submit(requestId, listOf(params), params.priority, cacheKey, listener)
+    }
+
+    /**
+     * Starts a new frame extract job for a batch of frames from the same media. Frames are extracted in the order of their timestamps, which allows
+     * [FrameExtractBehavior]s to decode media only once for an entire batch (e.g. when generating a timeline strip). The [listener] will be notified
+     * for each frame in the batch, the request completes when all frames have been either extracted or failed.
+     *
+     * @param requestId The ID of this request. Only one request per ID can be active. This ID is used to then refer to the request when calling [stop].
+     * @param params Specifies extraction options and other parameters for each frame. All frames must be extracted from the same media URI,
+     * using the same [FrameExtractMode].
+     * The batch is scheduled using the highest priority (lowest value) of all frames.
+     * @param listener The listener to notify about the job status, such as success/error.
+     */
+    fun extract(requestId: String, params: List<FrameExtractParameters>, listener: FrameExtractListener?) {
+        require(params.isNotEmpty()) { "Batch must contain at least one frame" }
+        require(params.all { it.mediaUri == params[0].mediaUri }) { "All frames in a batch must be extracted from the same media" }
+        require(params.all { it.mode == params[0].mode }) { "All frames in a batch must be extracted with the same mode" }
+
+        if (activeJobMap.containsKey(requestId)) {
+            Log.w(TAG, "Request with ID $requestId already exists")
+            return
+        }
+        val sortedParams = params.sortedBy { it.timestampUs }
+        submit(requestId, sortedParams, sortedParams.minOf { it.priority }, null, listener)
     }
 
     /**
@@ -66,13 +132,19 @@ class VideoFrameExtractor @JvmOverloads constructor(
      */
     fun stop(requestId: String) {
         activeJobMap[requestId]?.let {
+            if (it.subscribers.size > 1) {
+                // job is shared with other requests, so only detach this one
+                detach(it, requestId)
+                return
+            }
+
             if (!it.future.isCancelled && !it.future.isDone) {
                 it.future.cancel(true)
             }
             if (!it.future.isStarted) {
                 // If the job hasn't started, it won't probably even start, but it will remain in the activeJobMap,
                 // we must remove it from there.
-                activeJobMap.remove(requestId)
+                onCompleteJob(it)
             }
         }
     }
@@ -81,7 +153,7 @@ class VideoFrameExtractor @JvmOverloads constructor(
      * Cancels all started extract jobs. [FrameExtractListener.onCancelled] will be called for jobs that have been started.
      */
     fun stopAll() {
-        val iterator = activeJobMap.iterator()
+        val iterator = runningJobMap.iterator()
         while (iterator.hasNext()) {
             val job = iterator.next().value
             if (!job.future.isCancelled && !job.future.isDone) {
@@ -91,10 +163,63 @@ class VideoFrameExtractor @JvmOverloads constructor(
                 // If the job hasn't started, it won't probably even start, but it will remain in the activeJobMap,
                 // we must remove it from there.
                 iterator.remove()
+                removeRequests(job)
+            }
+        }
+    }
+
+    /**
+     * Changes priority of a pending request. Has no effect if request has already started. If request shares a job with other
+     * identical requests, priority of the entire job is changed.
+     *
+     * @param requestId The ID of a pending request.
+     * @param priority New priority of a request. Lower value indicates higher priority.
+     */
+    fun updatePriority(requestId: String, priority: Long) {
+        activeJobMap[requestId]?.let {
+            executorService.updatePriority(it.future, priority)
+        }
+    }
+
+    /**
+     * Changes priorities of all pending requests in bulk, e.g. when visible part of a timeline changes, without cancelling and re-submitting them.
+     * Requests which [prioritizer] considers stale are dropped, and [FrameExtractListener.onCancelled] is called for them.
+     * Batch requests get the highest priority computed for any of their frames, and are dropped only if all of their frames are stale.
+     *
+     * @param prioritizer Computes new priority for each pending request.
+     */
+    fun updatePriorities(prioritizer: FrameExtractPrioritizer) {
+        val pendingJobs = runningJobMap.values.associateBy { it.future }
+        val droppedTasks = executorService.updatePriorities { task ->
+            val job = pendingJobs[task]
+            if (job != null) {
+                job.params.mapNotNull { prioritizer.getPriority(it, task.priority) }.minOrNull()
+            } else {
+                task.priority
+            }
+        }
+
+        droppedTasks.forEach { task ->
+            val job = pendingJobs[task] ?: return@forEach
+            task.cancel(false)
+            onCompleteJob(job)
+            job.subscribers.forEach { (requestId, listener) ->
+                listener?.let { listenerHandler.post { it.onCancelled(requestId, job.timestampUs) } }
             }
         }
     }
 
+    /**
+     * Returns a bitmap delivered by [FrameExtractListener.onExtracted] to the [bitmapPool], so that it can be reused for extracting other frames.
+     * Caller must not use the bitmap after calling this method. Has no effect when there is no pool, or when frames are cached in [frameCache],
+     * since cached bitmaps are shared between requests.
+     */
+    fun releaseBitmap(bitmap: Bitmap) {
+        if (frameCache == null) {
+            bitmapPool?.put(bitmap)
+        }
+    }
+
     /**
      * Stops all extract jobs immediately and frees resources.
      */
@@ -102,51 +227,109 @@ class VideoFrameExtractor @JvmOverloads constructor(
         executorService.shutdownNow()
         extractBehavior.release()
         activeJobMap.clear()
+        runningJobMap.clear()
+        inFlightJobMap.clear()
+    }
+
+    private fun submit(
+        requestId: String,
+        params: List<FrameExtractParameters>,
+        priority: Long,
+        cacheKey: FrameCacheKey?,
+        listener: FrameExtractListener?
+    ) {
+        val jobId = "$requestId#${jobSequence++}"
+        val task = FrameExtractJob(jobId, params, extractBehavior, rootListener, frameCache, bitmapPool)
+        val futureTask = ComparableFutureTask(task, null, priority)
+        val job = ActiveExtractJob(jobId, futureTask, params, cacheKey, params.size, linkedMapOf(requestId to listener))
+
+        activeJobMap[requestId] = job
+        runningJobMap[jobId] = job
+        cacheKey?.let { inFlightJobMap[it] = job }
+        executorService.execute(params[0].mediaUri, futureTask)
+    }
+
+    private fun detach(job: ActiveExtractJob, requestId: String) {
+        activeJobMap.remove(requestId)
+        val listener = job.subscribers.remove(requestId)
+        if (listener != null && job.future.isStarted) {
+            listenerHandler.post { listener.onCancelled(requestId, job.timestampUs) }
+        }
+    }
+
+    private fun onCompleteJob(job: ActiveExtractJob) {
+        runningJobMap.remove(job.jobId)
+        removeRequests(job)
+    }
+
+    private fun removeRequests(job: ActiveExtractJob) {
+        job.subscribers.keys.forEach { activeJobMap.remove(it) }
+        job.cacheKey?.let {
+            if (inFlightJobMap[it] === job) {
+                inFlightJobMap.remove(it)
+            }
+        }
     }
 
-    private fun onCompleteJob(jobId: String) {
-        activeJobMap.remove(jobId)
+    private fun onCompleteFrame(job: ActiveExtractJob) {
+        job.pendingFrameCount--
+        if (job.pendingFrameCount <= 0) {
+            onCompleteJob(job)
+        }
     }
 
     private val rootListener = object : FrameExtractListener {
 
         override fun onStarted(id: String, timestampUs: Long) {
-            runOnListenerHandler(activeJobMap[id]?.listener) { it.onStarted(id, timestampUs) }
+            runOnListenerHandler(id, { it.isStartDelivered = true }) { requestId, listener -> listener.onStarted(requestId, timestampUs) }
         }
 
         override fun onExtracted(id: String, timestampUs: Long, bitmap: Bitmap) {
-            runOnListenerHandler(activeJobMap[id]?.listener) {
-                onCompleteJob(id)
-                it.onExtracted(id, timestampUs, bitmap)
-            }
+            runOnListenerHandler(id, { onCompleteFrame(it) }) { requestId, listener -> listener.onExtracted(requestId, timestampUs, bitmap) }
         }
 
         override fun onCancelled(id: String, timestampUs: Long) {
-            runOnListenerHandler(activeJobMap[id]?.listener) {
-                onCompleteJob(id)
-                it.onCancelled(id, timestampUs)
-            }
+            runOnListenerHandler(id, { onCompleteJob(it) }) { requestId, listener -> listener.onCancelled(requestId, timestampUs) }
         }
 
         override fun onError(id: String, timestampUs: Long, cause: Throwable?) {
-            runOnListenerHandler(activeJobMap[id]?.listener) {
-                onCompleteJob(id)
-                it.onError(id, timestampUs, cause)
-            }
+            runOnListenerHandler(id, { onCompleteFrame(it) }) { requestId, listener -> listener.onError(requestId, timestampUs, cause) }
         }
 
-        private fun runOnListenerHandler(listener: FrameExtractListener?, func: (FrameExtractListener) -> Unit) {
-            if (listener != null) {
-                listenerHandler.post {
-                    func(listener)
+        private fun runOnListenerHandler(
+            jobId: String,
+            onComplete: ((ActiveExtractJob) -> Unit)? = null,
+            func: (String, FrameExtractListener) -> Unit
+        ) {
+            listenerHandler.post {
+                runningJobMap[jobId]?.let { job ->
+                    onComplete?.invoke(job)
+                    job.subscribers.forEach { (requestId, listener) ->
+                        if (listener != null) {
+                            func(requestId, listener)
+                        }
+                    }
                 }
             }
         }
     }
 
-    private data class ActiveExtractJob(val future: ComparableFutureTask<*>, val listener: FrameExtractListener?)
+    private class ActiveExtractJob(
+        val jobId: String,
+        val future: ComparableFutureTask<*>,
+        val params: List<FrameExtractParameters>,
+        val cacheKey: FrameCacheKey?,
+        var pendingFrameCount: Int,
+        val subscribers: MutableMap<String, FrameExtractListener?>
+    ) {
+        var isStartDelivered = false
+
+        val timestampUs: Long
+            get() = params[0].timestampUs
+    }
 
     companion object {
         private const val TAG = "VideoThumbnailExtractor"
+        private const val MAX_AFFINITY_URI_COUNT = 64
     }
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2021 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.frameextract
+
+import android.net.Uri
+import com.linkedin.android.litr.ExperimentalFrameExtractorApi
+import kotlin.math.max
+
+/**
+ * Prioritizes frames by their distance from a visible time range of a media: visible frames are extracted first,
+ * followed by frames closest to visible range. Frames too far from visible range are dropped.
+ *
+ * @param mediaUri media, whose frames are being prioritized. Requests for frames of other media keep their priority.
+ * @param visibleStartUs start of the visible time range, in microseconds
+ * @param visibleEndUs end of the visible time range, in microseconds
+ * @param maxDistanceUs frames which are further than that from visible range are dropped
+ */
+@ExperimentalFrameExtractorApi
+class VisibleRangePrioritizer @JvmOverloads constructor(
+    private val mediaUri: Uri,
+    private val visibleStartUs: Long,
+    private val visibleEndUs: Long,
+    private val maxDistanceUs: Long = Long.MAX_VALUE
+) : FrameExtractPrioritizer {
+
+    override fun getPriority(params: FrameExtractParameters, currentPriority: Long): Long? {
+        if (params.mediaUri != mediaUri) {
+            return currentPriority
+        }
+
+        val distanceUs = max(visibleStartUs - params.timestampUs, params.timestampUs - visibleEndUs)
+        return when {
+            distanceUs <= 0 -> 0L
+            distanceUs > maxDistanceUs -> null
+            else -> distanceUs
+        }
+    }
+}
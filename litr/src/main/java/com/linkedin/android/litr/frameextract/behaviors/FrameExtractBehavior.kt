@@ -19,10 +19,19 @@ interface FrameExtractBehaviorFrameListener {
     fun onFrameFailed()
 }
 
+/**
+ * An interface used by [FrameExtractBehavior] to notify the job of the status of individual frames extracted within a batch.
+ */
+interface FrameExtractBehaviorBatchListener {
+    fun onFrameExtracted(params: FrameExtractParameters, bitmap: Bitmap)
+    fun onFrameFailed(params: FrameExtractParameters)
+}
+
 /**
  * Provides a way to customize frame extraction behavior.
  *
- * All methods are guaranteed to be called on the same thread, but the thread will not be the main thread.
+ * Methods will not be called on the main thread. When [com.linkedin.android.litr.frameextract.VideoFrameExtractor] uses more than one worker,
+ * [extract] may be called concurrently from several worker threads, so implementations must be thread safe.
  */
 @ExperimentalFrameExtractorApi
 interface FrameExtractBehavior {
@@ -35,6 +44,38 @@ interface FrameExtractBehavior {
      */
     fun extract(params: FrameExtractParameters, listener: FrameExtractBehaviorFrameListener): Boolean
 
+    /**
+     * Perform frame extraction work for a batch of frames from the same media, and notify [listener] for each frame extracted.
+     * Parameters are sorted by their timestamp. Default implementation extracts each frame individually, behaviors that can do better
+     * (e.g. by decoding media only once) should override it.
+     *
+     * For long-running operations, [Thread.isInterrupted] should be checked periodically. If interrupted, implementation should return false from this method.
+     *
+     * @return Return true if extraction is completed/scheduled, false if it was canceled.
+     */
+    fun extract(params: List<FrameExtractParameters>, listener: FrameExtractBehaviorBatchListener): Boolean {
+        for (frameParams in params) {
+            if (Thread.currentThread().isInterrupted) {
+                return false
+            }
+
+            val completed = extract(frameParams, object : FrameExtractBehaviorFrameListener {
+                override fun onFrameExtracted(bitmap: Bitmap) {
+                    listener.onFrameExtracted(frameParams, bitmap)
+                }
+
+                override fun onFrameFailed() {
+                    listener.onFrameFailed(frameParams)
+                }
+            })
+
+            if (!completed) {
+                return false
+            }
+        }
+        return true
+    }
+
     /**
      * Called when this behavior should clean up any associated resources.
      */
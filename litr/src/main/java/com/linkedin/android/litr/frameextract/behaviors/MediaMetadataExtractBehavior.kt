@@ -14,28 +14,20 @@ import com.linkedin.android.litr.ExperimentalFrameExtractorApi
 import com.linkedin.android.litr.frameextract.FrameExtractMode
 import com.linkedin.android.litr.frameextract.FrameExtractParameters
 
+/**
+ * Extracts frames using [MediaMetadataRetriever]s. Retrievers are kept open in a pool, keyed by media URI,
+ * so that frames from several media can be extracted concurrently, without re-opening each media for every frame.
+ *
+ * @param context The application context.
+ * @param maxIdleRetrieverCount Maximum number of idle retrievers kept open, least recently used ones are released first.
+ */
 @ExperimentalFrameExtractorApi
-class MediaMetadataExtractBehavior(private val context: Context) : FrameExtractBehavior {
-    private var retrieverToMediaUri: RetrieverToMediaUri? = null
+class MediaMetadataExtractBehavior @JvmOverloads constructor(
+    context: Context,
+    maxIdleRetrieverCount: Int = DEFAULT_MAX_IDLE_RETRIEVER_COUNT
+) : FrameExtractBehavior {
 
-    @Synchronized
-    private fun setupRetriever(mediaUri: Uri): MediaMetadataRetriever {
-        val currentRetrieverToMediaUri = retrieverToMediaUri
-
-        return if (currentRetrieverToMediaUri == null || currentRetrieverToMediaUri.mediaUri != mediaUri) {
-            currentRetrieverToMediaUri?.retriever?.release()
-
-            val newRetriever = MediaMetadataRetriever().apply {
-                setDataSource(context, mediaUri)
-            }
-
-            retrieverToMediaUri = RetrieverToMediaUri(newRetriever, mediaUri)
-
-            newRetriever
-        } else {
-            currentRetrieverToMediaUri.retriever
-        }
-    }
+    private val retrieverPool = MediaMetadataRetrieverPool(context, maxIdleRetrieverCount)
 
     override fun extract(params: FrameExtractParameters, listener: FrameExtractBehaviorFrameListener): Boolean {
 
@@ -51,12 +43,16 @@ class MediaMetadataExtractBehavior(private val context: Context) : FrameExtractB
     }
 
     override fun release() {
-        retrieverToMediaUri?.retriever?.release()
+        retrieverPool.releaseAll()
     }
 
     private fun retrieveFrame(params: FrameExtractParameters, retrieverOptions: Int, listener: FrameExtractBehaviorFrameListener): Boolean {
-        val retriever = setupRetriever(params.mediaUri)
-        val extractedBitmap = retriever.getFrameAtTime(params.timestampUs, retrieverOptions)
+        val retriever = retrieverPool.acquire(params.mediaUri)
+        val extractedBitmap = try {
+            retriever.getFrameAtTime(params.timestampUs, retrieverOptions)
+        } finally {
+            retrieverPool.release(params.mediaUri, retriever)
+        }
 
         if (extractedBitmap != null) {
             listener.onFrameExtracted(extractedBitmap)
@@ -67,4 +63,8 @@ class MediaMetadataExtractBehavior(private val context: Context) : FrameExtractB
     }
 
     data class RetrieverToMediaUri(val retriever: MediaMetadataRetriever, val mediaUri: Uri)
+
+    companion object {
+        private const val DEFAULT_MAX_IDLE_RETRIEVER_COUNT = 4
+    }
 }
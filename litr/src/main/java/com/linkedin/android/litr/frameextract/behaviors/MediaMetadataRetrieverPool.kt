@@ -0,0 +1,69 @@
+/*
+ * Copyright 2021 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.frameextract.behaviors
+
+import android.content.Context
+import android.media.MediaMetadataRetriever
+import android.net.Uri
+import com.linkedin.android.litr.ExperimentalFrameExtractorApi
+import java.util.LinkedList
+
+/**
+ * A bounded pool of [MediaMetadataRetriever]s, each with a data source already set to some media URI.
+ *
+ * A retriever is exclusively owned by a caller between [acquire] and [release], so that it is never used by several threads at once.
+ * Idle retrievers are kept open, up to [maxIdleCount], and least recently used ones are released first.
+ */
+@ExperimentalFrameExtractorApi
+internal class MediaMetadataRetrieverPool(private val context: Context, private val maxIdleCount: Int) {
+
+    // idle retrievers, from least to most recently used
+    private val idleRetrievers = LinkedList<MediaMetadataExtractBehavior.RetrieverToMediaUri>()
+    private var isReleased = false
+
+    fun acquire(mediaUri: Uri): MediaMetadataRetriever {
+        synchronized(this) {
+            val iterator = idleRetrievers.descendingIterator()
+            while (iterator.hasNext()) {
+                val retrieverToMediaUri = iterator.next()
+                if (retrieverToMediaUri.mediaUri == mediaUri) {
+                    iterator.remove()
+                    return retrieverToMediaUri.retriever
+                }
+            }
+        }
+
+        // setting a data source may be slow, so do it outside of the lock
+        return MediaMetadataRetriever().apply {
+            setDataSource(context, mediaUri)
+        }
+    }
+
+    fun release(mediaUri: Uri, retriever: MediaMetadataRetriever) {
+        val evictedRetrievers = mutableListOf<MediaMetadataRetriever>()
+        synchronized(this) {
+            if (isReleased) {
+                evictedRetrievers.add(retriever)
+            } else {
+                idleRetrievers.add(MediaMetadataExtractBehavior.RetrieverToMediaUri(retriever, mediaUri))
+                while (idleRetrievers.size > maxIdleCount) {
+                    evictedRetrievers.add(idleRetrievers.removeFirst().retriever)
+                }
+            }
+        }
+        evictedRetrievers.forEach { it.release() }
+    }
+
+    fun releaseAll() {
+        val evictedRetrievers = synchronized(this) {
+            isReleased = true
+            idleRetrievers.map { it.retriever }.also { idleRetrievers.clear() }
+        }
+        evictedRetrievers.forEach { it.release() }
+    }
+}
@@ -0,0 +1,401 @@
+/*
+ * Copyright 2021 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.frameextract.behaviors
+
+import android.content.Context
+import android.graphics.Bitmap
+import android.graphics.Canvas
+import android.graphics.Matrix
+import android.media.MediaCodec
+import android.media.MediaExtractor
+import android.media.MediaFormat
+import android.os.Build
+import com.linkedin.android.litr.ExperimentalFrameExtractorApi
+import com.linkedin.android.litr.codec.Decoder
+import com.linkedin.android.litr.codec.Frame
+import com.linkedin.android.litr.codec.MediaCodecDecoder
+import com.linkedin.android.litr.frameextract.FrameExtractMode
+import com.linkedin.android.litr.frameextract.FrameExtractParameters
+import com.linkedin.android.litr.render.GlSingleFrameRenderer
+import com.linkedin.android.litr.utils.BitmapPool
+import java.util.ArrayDeque
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+
+/**
+ * Extracts frames by decoding media forward with a [MediaCodecDecoder], onto a surface of a [GlSingleFrameRenderer].
+ *
+ * Batches of frames are extracted in a single forward decoding pass: groups of pictures which do not contain any requested timestamps
+ * are skipped, and decoded frames which are not needed are released without being rendered. This makes generating a strip of N frames
+ * cost proportional to the media length, rather than to N times the size of a group of pictures.
+ *
+ * In [FrameExtractMode.Fast] mode only sync frames closest to requested timestamps are decoded. In [FrameExtractMode.Exact] mode
+ * the first frame at or after each requested timestamp is returned, or the last frame of the media if timestamp is past it.
+ *
+ * @param context The application context.
+ * @param bitmapPool Optional pool from which extracted bitmaps are taken.
+ */
+@ExperimentalFrameExtractorApi
+class SequentialDecodeExtractBehavior @JvmOverloads constructor(
+    private val context: Context,
+    private val bitmapPool: BitmapPool? = null
+) : FrameExtractBehavior {
+
+    // GL context is bound to a thread, so each worker thread renders with its own renderer, on a dedicated render thread
+    private val renderThreads = mutableListOf<RenderThread>()
+    private val workerRenderThread = ThreadLocal<RenderThread>()
+
+    override fun extract(params: FrameExtractParameters, listener: FrameExtractBehaviorFrameListener): Boolean {
+        return extract(listOf(params), object : FrameExtractBehaviorBatchListener {
+            override fun onFrameExtracted(params: FrameExtractParameters, bitmap: Bitmap) {
+                listener.onFrameExtracted(bitmap)
+            }
+
+            override fun onFrameFailed(params: FrameExtractParameters) {
+                listener.onFrameFailed()
+            }
+        })
+    }
+
+    override fun extract(params: List<FrameExtractParameters>, listener: FrameExtractBehaviorBatchListener): Boolean {
+        // a decode pass either renders closest sync frames or decodes up to exact frames, it cannot mix the two
+        require(params.all { it.mode == params[0].mode }) { "All frames in a batch must be extracted with the same mode" }
+
+        val mediaExtractor = MediaExtractor()
+        val renderThread = getRenderThread()
+        var decoder: Decoder? = null
+        try {
+            mediaExtractor.setDataSource(context, params[0].mediaUri, null)
+
+            val trackIndex = (0 until mediaExtractor.trackCount).firstOrNull { track ->
+                mediaExtractor.getTrackFormat(track).getString(MediaFormat.KEY_MIME)?.startsWith("video") == true
+            }
+            if (trackIndex == null) {
+                params.forEach { listener.onFrameFailed(it) }
+                return true
+            }
+
+            val mediaFormat = mediaExtractor.getTrackFormat(trackIndex)
+            mediaExtractor.selectTrack(trackIndex)
+
+            val width = mediaFormat.getInteger(MediaFormat.KEY_WIDTH)
+            val height = mediaFormat.getInteger(MediaFormat.KEY_HEIGHT)
+            val rotation = if (mediaFormat.containsKey(KEY_ROTATION)) mediaFormat.getInteger(KEY_ROTATION) else 0
+            // rotation is applied to extracted bitmap, to keep decoder output matching the size of renderer's input surface
+            mediaFormat.setInteger(KEY_ROTATION, 0)
+
+            val inputSurface = renderThread.call { it.getInputSurface(width, height) }
+            decoder = MediaCodecDecoder().apply {
+                init(mediaFormat, inputSurface)
+                start()
+            }
+
+            val renderFrame = { presentationTimeNs: Long -> renderThread.call { it.renderInputSurfaceFrame(presentationTimeNs) } }
+            val decodePass = if (params[0].mode == FrameExtractMode.Fast) {
+                SyncFrameDecodePass(mediaExtractor, decoder, renderFrame, params, listener, rotation, bitmapPool)
+            } else {
+                ExactFrameDecodePass(mediaExtractor, decoder, renderFrame, params, listener, rotation, bitmapPool)
+            }
+            return decodePass.run()
+        } catch (ex: InterruptedException) {
+            Thread.currentThread().interrupt()
+            return false
+        } finally {
+            decoder?.stop()
+            decoder?.release()
+            mediaExtractor.release()
+        }
+    }
+
+    /**
+     * Releases renderers on their own render threads, waiting for each of them to be released, and stops render threads.
+     */
+    override fun release() {
+        val releasedRenderThreads = synchronized(renderThreads) {
+            renderThreads.toList().also { renderThreads.clear() }
+        }
+        releasedRenderThreads.forEach { it.release() }
+    }
+
+    private fun getRenderThread(): RenderThread {
+        synchronized(renderThreads) {
+            // render thread of this worker may have been released, since behavior is still usable after release
+            workerRenderThread.get()?.takeIf { renderThreads.contains(it) }?.let { return it }
+            return RenderThread(bitmapPool).also {
+                renderThreads.add(it)
+                workerRenderThread.set(it)
+            }
+        }
+    }
+
+    /**
+     * Owns a [GlSingleFrameRenderer] and a thread to which renderer's GL context is bound. All renderer calls are made on that thread,
+     * so that renderer can be safely released from any thread, including after the worker thread which used it is gone.
+     */
+    private class RenderThread(bitmapPool: BitmapPool?) {
+        private val renderer = GlSingleFrameRenderer(null, bitmapPool)
+        private val executor = Executors.newSingleThreadExecutor { runnable ->
+            // render threads outlive their workers until behavior is released, so they must not keep the process alive
+            Thread(runnable, "LiTrFrameRender").apply { isDaemon = true }
+        }
+
+        /**
+         * Runs [block] with a renderer on render thread, and waits for its result.
+         */
+        fun <T> call(block: (GlSingleFrameRenderer) -> T): T {
+            try {
+                return executor.submit(Callable { block(renderer) }).get()
+            } catch (ex: ExecutionException) {
+                throw ex.cause ?: ex
+            }
+        }
+
+        fun release() {
+            try {
+                call { it.release() }
+            } catch (ex: InterruptedException) {
+                Thread.currentThread().interrupt()
+            } finally {
+                executor.shutdown()
+            }
+        }
+    }
+
+    /**
+     * Drives decoder input and output until all requested frames are delivered, or media ends.
+     *
+     * @param renderFrame Reads back the frame decoder has just rendered to its output surface, takes presentation time in nanoseconds.
+     */
+    internal abstract class DecodePass(
+        protected val mediaExtractor: MediaExtractor,
+        private val decoder: Decoder,
+        private val renderFrame: (Long) -> Bitmap,
+        protected val params: List<FrameExtractParameters>,
+        private val listener: FrameExtractBehaviorBatchListener,
+        private val rotation: Int,
+        private val bitmapPool: BitmapPool?
+    ) {
+        protected var inputEndOfStream = false
+        protected var outputFrameIndex = 0
+
+        /**
+         * Queues the next needed sample into a decoder input frame, or an end of stream flag if no more samples are needed.
+         */
+        protected abstract fun queueNextSample(frame: Frame)
+
+        /**
+         * Returns the number of pending frames, starting at [outputFrameIndex], which should be delivered using decoded frame.
+         */
+        protected abstract fun getMatchingFrameCount(presentationTimeUs: Long): Int
+
+        fun run(): Boolean {
+            while (outputFrameIndex < params.size) {
+                if (Thread.currentThread().isInterrupted) {
+                    return false
+                }
+
+                if (!inputEndOfStream) {
+                    val tag = decoder.dequeueInputFrame(0)
+                    if (tag >= 0) {
+                        decoder.getInputFrame(tag)?.let {
+                            queueNextSample(it)
+                            decoder.queueInputFrame(it)
+                        }
+                    }
+                }
+
+                val tag = decoder.dequeueOutputFrame(DECODER_TIMEOUT_US)
+                if (tag >= 0) {
+                    val frame = decoder.getOutputFrame(tag) ?: continue
+                    val isEndOfStream = frame.bufferInfo.flags and MediaCodec.BUFFER_FLAG_END_OF_STREAM != 0
+                    val presentationTimeUs = frame.bufferInfo.presentationTimeUs
+                    val matchingFrameCount = if (frame.bufferInfo.size > 0) getMatchingFrameCount(presentationTimeUs) else 0
+
+                    decoder.releaseOutputFrame(tag, matchingFrameCount > 0)
+                    if (matchingFrameCount > 0) {
+                        val bitmap = rotate(renderFrame(presentationTimeUs * 1000L))
+                        // each extracted bitmap is owned by its receiver, so a frame matching several timestamps is copied
+                        repeat(matchingFrameCount - 1) {
+                            listener.onFrameExtracted(params[outputFrameIndex++], copy(bitmap))
+                        }
+                        listener.onFrameExtracted(params[outputFrameIndex++], bitmap)
+                    }
+
+                    if (isEndOfStream) {
+                        while (outputFrameIndex < params.size) {
+                            listener.onFrameFailed(params[outputFrameIndex++])
+                        }
+                    }
+                }
+            }
+            return true
+        }
+
+        protected fun queueSample(frame: Frame): Long {
+            val buffer = frame.buffer
+            if (buffer == null) {
+                queueEndOfStream(frame)
+                return -1L
+            }
+            val sampleSize = mediaExtractor.readSampleData(buffer, 0)
+            val sampleTime = mediaExtractor.sampleTime
+            if (sampleSize < 0 || sampleTime < 0) {
+                queueEndOfStream(frame)
+                return -1L
+            }
+            frame.bufferInfo.set(0, sampleSize, sampleTime, mediaExtractor.sampleFlags)
+            return sampleTime
+        }
+
+        protected fun queueEndOfStream(frame: Frame) {
+            frame.bufferInfo.set(0, 0, -1L, MediaCodec.BUFFER_FLAG_END_OF_STREAM)
+            inputEndOfStream = true
+        }
+
+        private fun rotate(bitmap: Bitmap): Bitmap {
+            if (rotation == 0) {
+                return bitmap
+            }
+            val pool = bitmapPool
+                ?: return Bitmap.createBitmap(bitmap, 0, 0, bitmap.width, bitmap.height, Matrix().apply { postRotate(rotation.toFloat()) }, true)
+
+            val isTransposed = rotation % 180 != 0
+            val width = if (isTransposed) bitmap.height else bitmap.width
+            val height = if (isTransposed) bitmap.width else bitmap.height
+            val matrix = Matrix().apply {
+                postRotate(rotation.toFloat(), bitmap.width / 2f, bitmap.height / 2f)
+                postTranslate((width - bitmap.width) / 2f, (height - bitmap.height) / 2f)
+            }
+            val rotatedBitmap = pool.get(width, height, Bitmap.Config.ARGB_8888)
+            Canvas(rotatedBitmap).drawBitmap(bitmap, matrix, null)
+            pool.put(bitmap)
+            return rotatedBitmap
+        }
+
+        private fun copy(bitmap: Bitmap): Bitmap {
+            return bitmapPool?.copy(bitmap) ?: bitmap.copy(bitmap.config, true)
+        }
+    }
+
+    /**
+     * Decodes only sync frames, closest to requested timestamps. Each sync frame is decoded once, even if it is the closest one to several timestamps.
+     */
+    internal class SyncFrameDecodePass(
+        mediaExtractor: MediaExtractor,
+        decoder: Decoder,
+        renderFrame: (Long) -> Bitmap,
+        params: List<FrameExtractParameters>,
+        listener: FrameExtractBehaviorBatchListener,
+        rotation: Int,
+        bitmapPool: BitmapPool?
+    ) : DecodePass(mediaExtractor, decoder, renderFrame, params, listener, rotation, bitmapPool) {
+
+        // number of requested frames each queued sync frame will be delivered for, in decoding order
+        private val queuedFrameCounts = ArrayDeque<Int>()
+        private var inputFrameIndex = 0
+
+        override fun queueNextSample(frame: Frame) {
+            if (inputFrameIndex >= params.size) {
+                queueEndOfStream(frame)
+                return
+            }
+
+            mediaExtractor.seekTo(params[inputFrameIndex].timestampUs, MediaExtractor.SEEK_TO_CLOSEST_SYNC)
+            val syncFrameTime = mediaExtractor.sampleTime
+            var frameCount = 1
+            while (inputFrameIndex + frameCount < params.size) {
+                mediaExtractor.seekTo(params[inputFrameIndex + frameCount].timestampUs, MediaExtractor.SEEK_TO_CLOSEST_SYNC)
+                if (mediaExtractor.sampleTime != syncFrameTime) {
+                    break
+                }
+                frameCount++
+            }
+            mediaExtractor.seekTo(syncFrameTime, MediaExtractor.SEEK_TO_CLOSEST_SYNC)
+
+            if (queueSample(frame) >= 0) {
+                queuedFrameCounts.add(frameCount)
+                inputFrameIndex += frameCount
+            }
+        }
+
+        override fun getMatchingFrameCount(presentationTimeUs: Long): Int {
+            return queuedFrameCounts.poll() ?: 0
+        }
+    }
+
+    /**
+     * Decodes all frames of groups of pictures which contain requested timestamps, skipping over the rest of the media.
+     */
+    internal class ExactFrameDecodePass(
+        mediaExtractor: MediaExtractor,
+        decoder: Decoder,
+        renderFrame: (Long) -> Bitmap,
+        params: List<FrameExtractParameters>,
+        listener: FrameExtractBehaviorBatchListener,
+        rotation: Int,
+        bitmapPool: BitmapPool?
+    ) : DecodePass(mediaExtractor, decoder, renderFrame, params, listener, rotation, bitmapPool) {
+
+        // index of a first requested frame which is not yet guaranteed to be covered by queued samples
+        private var inputFrameIndex = 0
+        private var lastQueuedSampleTime = -1L
+        private var maxQueuedSampleTime = -1L
+        private var isLastSampleQueued = false
+
+        init {
+            mediaExtractor.seekTo(params[0].timestampUs, MediaExtractor.SEEK_TO_PREVIOUS_SYNC)
+        }
+
+        override fun queueNextSample(frame: Frame) {
+            val sampleTime = mediaExtractor.sampleTime
+            val isSyncSample = mediaExtractor.sampleFlags and MediaExtractor.SAMPLE_FLAG_SYNC != 0
+            if (sampleTime >= 0 && isSyncSample && lastQueuedSampleTime >= 0) {
+                // all frames preceding a sync sample in presentation order have been queued
+                while (inputFrameIndex < params.size && params[inputFrameIndex].timestampUs < sampleTime) {
+                    inputFrameIndex++
+                }
+                if (inputFrameIndex >= params.size) {
+                    queueEndOfStream(frame)
+                    return
+                }
+
+                // skip over groups of pictures which don't contain any requested timestamps
+                mediaExtractor.seekTo(params[inputFrameIndex].timestampUs, MediaExtractor.SEEK_TO_PREVIOUS_SYNC)
+                if (mediaExtractor.sampleTime < sampleTime) {
+                    mediaExtractor.seekTo(sampleTime, MediaExtractor.SEEK_TO_PREVIOUS_SYNC)
+                }
+            }
+
+            lastQueuedSampleTime = queueSample(frame)
+            maxQueuedSampleTime = maxOf(maxQueuedSampleTime, lastQueuedSampleTime)
+            mediaExtractor.advance()
+            // decoder may output the last frame before end of stream is queued, so it must be recognized as the last one already
+            isLastSampleQueued = mediaExtractor.sampleTime < 0
+        }
+
+        override fun getMatchingFrameCount(presentationTimeUs: Long): Int {
+            if ((inputEndOfStream || isLastSampleQueued) && presentationTimeUs >= maxQueuedSampleTime) {
+                // last frame of the media, use it for all remaining timestamps
+                return params.size - outputFrameIndex
+            }
+
+            var frameCount = 0
+            while (outputFrameIndex + frameCount < params.size && params[outputFrameIndex + frameCount].timestampUs <= presentationTimeUs) {
+                frameCount++
+            }
+            return frameCount
+        }
+    }
+
+    companion object {
+        private const val DECODER_TIMEOUT_US = 10_000L
+
+        private val KEY_ROTATION = if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) MediaFormat.KEY_ROTATION else "rotation-degrees"
+    }
+}
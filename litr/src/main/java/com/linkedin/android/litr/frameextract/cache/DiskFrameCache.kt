@@ -0,0 +1,204 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.frameextract.cache
+
+import android.content.Context
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import android.net.Uri
+import android.os.Build
+import android.system.ErrnoException
+import android.system.Os
+import android.system.OsConstants
+import android.util.Log
+import androidx.annotation.VisibleForTesting
+import com.linkedin.android.litr.ExperimentalFrameExtractorApi
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.security.MessageDigest
+
+/**
+ * A bounded on-disk cache of extracted frames, stored as compressed images in a dedicated [directory].
+ * Least recently used frames are deleted when total size exceeds [maxSizeBytes].
+ *
+ * Frames are stored only for keys which are stable across process restarts (see [FrameCacheKey.isPersistable]), other keys are ignored.
+ * Stored frames are also keyed by identity of media file: device, inode, size and modification time, so that frames of media overwritten
+ * at the same URI are not served. Frames of media which is not a regular file are not stored.
+ * Methods perform file I/O and must not be called on the main thread.
+ */
+@ExperimentalFrameExtractorApi
+class DiskFrameCache @VisibleForTesting internal constructor(
+    private val directory: File,
+    private val maxSizeBytes: Long,
+    private val compressFormat: Bitmap.CompressFormat,
+    private val compressQuality: Int,
+    private val mediaIdentityProvider: (Uri) -> String?,
+    private val bitmapDecoder: (File) -> Bitmap?
+) {
+
+    @JvmOverloads constructor(
+        context: Context,
+        directory: File,
+        maxSizeBytes: Long,
+        compressFormat: Bitmap.CompressFormat = Bitmap.CompressFormat.JPEG,
+        compressQuality: Int = DEFAULT_COMPRESS_QUALITY
+    ) : this(
+        directory,
+        maxSizeBytes,
+        compressFormat,
+        compressQuality,
+        context.applicationContext.let { applicationContext -> { uri: Uri -> getMediaIdentity(applicationContext, uri) } },
+        { file: File -> BitmapFactory.decodeFile(file.absolutePath) }
+    )
+
+    // file name to file size, in access order
+    private val entries = LinkedHashMap<String, Long>(0, 0.75f, true)
+    private var sizeBytes = 0L
+    private var isInitialized = false
+
+    @Synchronized
+    fun get(key: FrameCacheKey): Bitmap? {
+        if (!key.isPersistable) {
+            return null
+        }
+        initialize()
+
+        val fileName = getFileName(key) ?: return null
+        if (entries[fileName] == null) {
+            return null
+        }
+
+        val file = File(directory, fileName)
+        val bitmap = bitmapDecoder(file)
+        if (bitmap == null) {
+            remove(fileName)
+        } else {
+            file.setLastModified(System.currentTimeMillis())
+        }
+        return bitmap
+    }
+
+    @Synchronized
+    fun put(key: FrameCacheKey, bitmap: Bitmap) {
+        if (!key.isPersistable) {
+            return
+        }
+        initialize()
+
+        val fileName = getFileName(key) ?: return
+        val file = File(directory, fileName)
+        val tempFile = File(directory, "$fileName$TEMP_FILE_SUFFIX")
+        try {
+            FileOutputStream(tempFile).use { outputStream ->
+                bitmap.compress(compressFormat, compressQuality, outputStream)
+            }
+            remove(fileName)
+            if (!tempFile.renameTo(file)) {
+                tempFile.delete()
+                return
+            }
+        } catch (ex: IOException) {
+            Log.w(TAG, "Failed to write frame to disk cache", ex)
+            tempFile.delete()
+            return
+        }
+
+        entries[fileName] = file.length()
+        sizeBytes += file.length()
+        trimToSize()
+    }
+
+    @Synchronized
+    fun clear() {
+        initialize()
+        entries.keys.toList().forEach { remove(it) }
+    }
+
+    private fun initialize() {
+        if (isInitialized) {
+            return
+        }
+        isInitialized = true
+
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.w(TAG, "Failed to create disk cache directory ${directory.absolutePath}")
+            return
+        }
+
+        directory.listFiles()
+            ?.sortedBy { it.lastModified() }
+            ?.forEach { file ->
+                if (file.name.endsWith(TEMP_FILE_SUFFIX)) {
+                    file.delete()
+                } else {
+                    entries[file.name] = file.length()
+                    sizeBytes += file.length()
+                }
+            }
+        trimToSize()
+    }
+
+    private fun trimToSize() {
+        val iterator = entries.entries.iterator()
+        while (sizeBytes > maxSizeBytes && iterator.hasNext()) {
+            val entry = iterator.next()
+            iterator.remove()
+            File(directory, entry.key).delete()
+            sizeBytes -= entry.value
+        }
+    }
+
+    private fun remove(fileName: String) {
+        entries.remove(fileName)?.let { sizeBytes -= it }
+        File(directory, fileName).delete()
+    }
+
+    private fun getFileName(key: FrameCacheKey): String? {
+        val mediaIdentity = mediaIdentityProvider(key.mediaUri) ?: return null
+        val digest = MessageDigest.getInstance("SHA-1").digest(key.toCacheString(mediaIdentity).toByteArray())
+        return digest.joinToString("") { String.format("%02x", it) }
+    }
+
+    companion object {
+        private val TAG: String = DiskFrameCache::class.java.simpleName
+
+        private const val TEMP_FILE_SUFFIX = ".tmp"
+        private const val DEFAULT_COMPRESS_QUALITY = 90
+
+        /**
+         * Returns identity of media file, or null if media is not a regular file, or its identity can't be read.
+         */
+        private fun getMediaIdentity(context: Context, uri: Uri): String? {
+            return try {
+                context.contentResolver.openFileDescriptor(uri, "r")?.use { parcelFileDescriptor ->
+                    val stat = Os.fstat(parcelFileDescriptor.fileDescriptor)
+                    if (OsConstants.S_ISREG(stat.st_mode)) {
+                        val modificationTimeNs = if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+                            stat.st_mtim.tv_sec * 1_000_000_000L + stat.st_mtim.tv_nsec
+                        } else {
+                            stat.st_mtime * 1_000_000_000L
+                        }
+                        "${stat.st_dev}-${stat.st_ino}-${stat.st_size}-$modificationTimeNs"
+                    } else {
+                        null
+                    }
+                }
+            } catch (ex: IOException) {
+                Log.w(TAG, "Failed to read identity of $uri", ex)
+                null
+            } catch (ex: ErrnoException) {
+                Log.w(TAG, "Failed to read identity of $uri", ex)
+                null
+            } catch (ex: SecurityException) {
+                Log.w(TAG, "Failed to read identity of $uri", ex)
+                null
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.frameextract.cache
+
+import android.graphics.Bitmap
+import androidx.collection.LruCache
+import com.linkedin.android.litr.ExperimentalFrameExtractorApi
+
+/**
+ * Two level cache of extracted frames: a bounded in-memory LRU cache of bitmaps, sized by bytes, backed by an optional [DiskFrameCache].
+ *
+ * Bitmaps returned from cache are shared between requests, so clients must not modify or recycle them.
+ *
+ * @param memoryCacheSizeBytes Maximum total size of bitmaps kept in memory.
+ * @param diskCache Optional disk cache, used when a frame is not found in memory. Only frames with a persistable key
+ * (see [FrameCacheKey.isPersistable]) are cached on disk.
+ */
+@ExperimentalFrameExtractorApi
+class FrameCache @JvmOverloads constructor(
+    memoryCacheSizeBytes: Int,
+    private val diskCache: DiskFrameCache? = null
+) {
+
+    private val memoryCache = object : LruCache<FrameCacheKey, Bitmap>(memoryCacheSizeBytes) {
+        override fun sizeOf(key: FrameCacheKey, value: Bitmap): Int {
+            return value.allocationByteCount
+        }
+    }
+
+    /**
+     * Returns a frame from memory cache only. Safe to call on any thread.
+     */
+    fun getFromMemory(key: FrameCacheKey): Bitmap? {
+        return memoryCache.get(key)
+    }
+
+    /**
+     * Returns a frame from memory cache, or from disk cache if not found in memory. Frames found on disk are promoted to memory cache.
+     * May perform file I/O, so must not be called on the main thread.
+     */
+    fun get(key: FrameCacheKey): Bitmap? {
+        memoryCache.get(key)?.let { return it }
+
+        if (!key.isPersistable) {
+            return null
+        }
+        return diskCache?.get(key)?.also { memoryCache.put(key, it) }
+    }
+
+    /**
+     * Puts a frame into memory cache and disk cache. May perform file I/O, so must not be called on the main thread.
+     */
+    fun put(key: FrameCacheKey, bitmap: Bitmap) {
+        memoryCache.put(key, bitmap)
+        if (key.isPersistable) {
+            diskCache?.put(key, bitmap)
+        }
+    }
+
+    /**
+     * Evicts all frames from memory cache. Disk cache is left intact.
+     */
+    fun evictAll() {
+        memoryCache.evictAll()
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.frameextract.cache
+
+import android.graphics.Point
+import android.net.Uri
+import com.linkedin.android.litr.ExperimentalFrameExtractorApi
+import com.linkedin.android.litr.frameextract.FrameExtractMode
+import com.linkedin.android.litr.frameextract.FrameExtractParameters
+import com.linkedin.android.litr.render.SingleFrameRenderer
+
+/**
+ * Identifies an extracted frame, as it is returned to the client. Two requests with equal keys produce identical bitmaps.
+ *
+ * Renderers may carry arbitrary state (e.g. filters) which affects the rendered frame, so they are identified by a [rendererKey] provided by the
+ * client in [FrameExtractParameters.rendererKey]. Without one, a key is identified by the renderer instance, and is valid only in memory.
+ */
+@ExperimentalFrameExtractorApi
+data class FrameCacheKey(
+    val mediaUri: Uri,
+    val timestampUs: Long,
+    val mode: FrameExtractMode,
+    val destSize: Point?,
+    val rendererKey: String?,
+    private val renderer: SingleFrameRenderer? = null
+) {
+
+    /**
+     * True if this key is stable across process restarts, and can be used for persistent storage lookups.
+     */
+    val isPersistable: Boolean
+        get() = rendererKey != null
+
+    /**
+     * Returns a string representation of this key, which is safe to use for persistent storage lookups.
+     *
+     * @param mediaIdentity Identity of media content at [mediaUri], e.g. its size and modification time, so that frames of media which was
+     * overwritten at the same URI are not served from persistent storage.
+     */
+    fun toCacheString(mediaIdentity: String): String {
+        check(isPersistable) { "Key without a renderer key can't be persisted" }
+        val size = destSize?.let { "${it.x}x${it.y}" } ?: "original"
+        return "$mediaUri|$mediaIdentity|$timestampUs|$mode|$size|$rendererKey"
+    }
+
+    companion object {
+        @JvmStatic
+        fun from(params: FrameExtractParameters): FrameCacheKey {
+            return if (params.rendererKey != null) {
+                FrameCacheKey(params.mediaUri, params.timestampUs, params.mode, params.destSize, params.rendererKey)
+            } else {
+                FrameCacheKey(params.mediaUri, params.timestampUs, params.mode, params.destSize, null, params.renderer)
+            }
+        }
+    }
+}
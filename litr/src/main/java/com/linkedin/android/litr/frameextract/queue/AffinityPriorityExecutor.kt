@@ -0,0 +1,110 @@
+/*
+ * Copyright 2021 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.frameextract.queue
+
+import java.util.concurrent.ThreadPoolExecutor
+
+/**
+ * Schedules prioritized tasks on a set of single threaded workers, each with its own priority queue.
+ *
+ * Tasks are scheduled with an affinity key (e.g. media URI): tasks with the same key are sent to the worker which last ran a task with that key,
+ * so that resources associated with a key (e.g. an open media retriever) can be reused. New keys, or keys whose worker is much busier than others,
+ * are assigned to the least loaded worker.
+ *
+ * @param workerCount number of worker threads
+ * @param maxAffinityKeys maximum number of remembered key to worker assignments, least recently used assignments are forgotten first
+ */
+internal class AffinityPriorityExecutor(workerCount: Int, private val maxAffinityKeys: Int) {
+
+    val workers: List<ThreadPoolExecutor> = List(workerCount) { PriorityExecutorUtil.newSingleThreadPoolPriorityExecutor() }
+
+    private val affinityMap = object : LinkedHashMap<Any, Int>(0, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Any, Int>?): Boolean {
+            return size > maxAffinityKeys
+        }
+    }
+
+    init {
+        require(workerCount > 0) { "Worker count must be positive" }
+    }
+
+    @Synchronized
+    fun execute(affinityKey: Any, task: Runnable) {
+        val leastLoadedWorker = workers.indices.minByOrNull { getLoad(it) } ?: 0
+        var worker = affinityMap[affinityKey] ?: leastLoadedWorker
+        if (getLoad(worker) > getLoad(leastLoadedWorker) + MAX_AFFINITY_IMBALANCE) {
+            worker = leastLoadedWorker
+        }
+        affinityMap[affinityKey] = worker
+        workers[worker].execute(task)
+    }
+
+    /**
+     * Changes priority of a pending task, re-ordering its worker's queue. Has no effect if task is no longer pending.
+     */
+    @Synchronized
+    fun updatePriority(task: ComparableFutureTask<*>, priority: Long) {
+        for (worker in workers) {
+            if (reinsert(worker, task, priority)) {
+                return
+            }
+        }
+    }
+
+    /**
+     * Changes priorities of all pending tasks in bulk, without cancelling and re-submitting them. Only tasks whose priority changes are
+     * re-inserted into their worker's queue, other tasks remain available to workers while priorities are updated.
+     *
+     * @param prioritize returns a new priority for a pending task, or null if task is stale and should be dropped from the queue
+     * @return tasks which were dropped from the queue, they will not run unless submitted again
+     */
+    @Synchronized
+    fun updatePriorities(prioritize: (ComparableFutureTask<*>) -> Long?): List<ComparableFutureTask<*>> {
+        val droppedTasks = mutableListOf<ComparableFutureTask<*>>()
+        for (worker in workers) {
+            for (task in worker.queue.toTypedArray()) {
+                val comparableTask = task as? ComparableFutureTask<*> ?: continue
+                val priority = prioritize(comparableTask)
+                if (priority == null) {
+                    // task may have been taken by worker in the meantime, then it is no longer pending
+                    if (worker.queue.remove(comparableTask)) {
+                        droppedTasks.add(comparableTask)
+                    }
+                } else if (priority != comparableTask.priority) {
+                    reinsert(worker, comparableTask, priority)
+                }
+            }
+        }
+        return droppedTasks
+    }
+
+    fun shutdownNow() {
+        workers.forEach { it.shutdownNow() }
+    }
+
+    /**
+     * Changes priority of a task which is pending in worker's queue. Task is taken out of the queue while its priority changes,
+     * since priority queue would not re-order it otherwise.
+     */
+    private fun reinsert(worker: ThreadPoolExecutor, task: ComparableFutureTask<*>, priority: Long): Boolean {
+        if (!worker.queue.remove(task)) {
+            return false
+        }
+        task.priority = priority
+        worker.queue.add(task)
+        return true
+    }
+
+    private fun getLoad(worker: Int): Int {
+        return workers[worker].queue.size + workers[worker].activeCount
+    }
+
+    companion object {
+        private const val MAX_AFFINITY_IMBALANCE = 4
+    }
+}
@@ -18,10 +18,15 @@ import java.util.concurrent.atomic.AtomicLong
  * This task maintains a FIFO order for priority.
  */
 @ExperimentalFrameExtractorApi
-internal class ComparableFutureTask<T>(private val job: FrameExtractJob?, result: T, private var priority: Long) : FutureTask<T>(job, result),
+internal class ComparableFutureTask<T>(private val job: FrameExtractJob?, result: T, priority: Long) : FutureTask<T>(job, result),
     Comparable<ComparableFutureTask<T>> {
     private val sequenceNumber = sharedSequence.getAndIncrement()
 
+    /**
+     * Priority of this task. Must not be modified while the task is in a priority queue, since queue would not be re-ordered.
+     */
+    var priority: Long = priority
+
     val isStarted: Boolean
         get() = job?.isStarted ?: false
 
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.io;
+
+import android.content.Context;
+import android.media.MediaDataSource;
+import android.net.Uri;
+import android.os.Build;
+import android.os.ParcelFileDescriptor;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+import androidx.annotation.VisibleForTesting;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A {@link MediaDataSource} which opens a {@link Uri} once and serves positioned reads from a cache of fixed size blocks.
+ * When reads are sequential, several blocks are read ahead in a single call. This greatly reduces number of reads
+ * (and IPC round trips) for document providers backed by remote storage, where every small read is expensive.
+ *
+ * A single instance can be shared by {@link android.media.MediaExtractor} and {@link android.media.MediaMetadataRetriever},
+ * so that source is only opened once, see {@link MediaExtractorMediaSource#MediaExtractorMediaSource(MediaDataSource, MediaRange)}.
+ */
+@RequiresApi(Build.VERSION_CODES.M)
+public class BufferedMediaDataSource extends MediaDataSource {
+
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    public static final int DEFAULT_MAX_CACHED_BLOCKS = 64;
+    public static final int DEFAULT_READ_AHEAD_BLOCKS = 8;
+
+    @NonNull private final Closeable source;
+    @NonNull private final FileChannel fileChannel;
+    private final long size;
+
+    private final int blockSize;
+    private final int readAheadBlocks;
+    @NonNull private final Map<Long, ByteBuffer> cachedBlocks;
+    // evicted blocks, reused for new reads
+    @NonNull private final ArrayDeque<ByteBuffer> freeBlocks = new ArrayDeque<>();
+    @NonNull private final ByteBuffer[] readBlocks;
+
+    private long lastReadEnd = -1;
+
+    private long cacheHitCount;
+    private long cacheMissCount;
+    private long sourceReadCount;
+    private long sourceBytesRead;
+
+    public BufferedMediaDataSource(@NonNull Context context, @NonNull Uri uri) throws IOException {
+        this(context, uri, DEFAULT_BLOCK_SIZE, DEFAULT_MAX_CACHED_BLOCKS, DEFAULT_READ_AHEAD_BLOCKS);
+    }
+
+    /**
+     * Create a data source
+     * @param context context to open {@link Uri} with
+     * @param uri source {@link Uri}, must be openable as a seekable file descriptor
+     * @param blockSize size of a cached block, in bytes
+     * @param maxCachedBlocks maximum number of cached blocks, least recently used blocks are evicted first
+     * @param readAheadBlocks number of blocks to read at once when reads are sequential
+     */
+    public BufferedMediaDataSource(@NonNull Context context,
+                                   @NonNull Uri uri,
+                                   @IntRange(from = 1) int blockSize,
+                                   @IntRange(from = 1) int maxCachedBlocks,
+                                   @IntRange(from = 1) int readAheadBlocks) throws IOException {
+        this(openFileDescriptor(context, uri), blockSize, maxCachedBlocks, readAheadBlocks);
+    }
+
+    private BufferedMediaDataSource(@NonNull ParcelFileDescriptor parcelFileDescriptor,
+                                    int blockSize,
+                                    int maxCachedBlocks,
+                                    int readAheadBlocks) throws IOException {
+        this(parcelFileDescriptor,
+                new FileInputStream(parcelFileDescriptor.getFileDescriptor()).getChannel(),
+                parcelFileDescriptor.getStatSize(),
+                blockSize,
+                maxCachedBlocks,
+                readAheadBlocks);
+    }
+
+    /**
+     * Create a data source reading from a file channel
+     * @param source owner of file channel, closed after channel when data source is closed
+     * @param statSize size of source, negative if unknown, in which case file channel size is used
+     */
+    @VisibleForTesting
+    BufferedMediaDataSource(@NonNull Closeable source,
+                            @NonNull FileChannel fileChannel,
+                            long statSize,
+                            int blockSize,
+                            int maxCachedBlocks,
+                            int readAheadBlocks) throws IOException {
+        this.source = source;
+        this.fileChannel = fileChannel;
+        size = statSize >= 0 ? statSize : fileChannel.size();
+
+        this.blockSize = blockSize;
+        this.readAheadBlocks = Math.min(readAheadBlocks, maxCachedBlocks);
+        readBlocks = new ByteBuffer[this.readAheadBlocks];
+        cachedBlocks = new LinkedHashMap<Long, ByteBuffer>(maxCachedBlocks, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, ByteBuffer> eldest) {
+                if (size() > maxCachedBlocks) {
+                    freeBlocks.addLast(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public synchronized int readAt(long position, byte[] buffer, int offset, int size) throws IOException {
+        if (position >= this.size) {
+            return -1;
+        }
+        if (size == 0) {
+            return 0;
+        }
+
+        int bytesRead = 0;
+        while (bytesRead < size && position < this.size) {
+            long blockIndex = position / blockSize;
+            // a read spanning multiple blocks, or continuing where previous read ended, is sequential
+            ByteBuffer block = getBlock(blockIndex, bytesRead > 0 || position == lastReadEnd);
+            int blockOffset = (int) (position - blockIndex * blockSize);
+            int length = Math.min(size - bytesRead, block.limit() - blockOffset);
+            if (length <= 0) {
+                // file is shorter than reported
+                break;
+            }
+
+            block.position(blockOffset);
+            block.get(buffer, offset + bytesRead, length);
+            position += length;
+            bytesRead += length;
+        }
+
+        lastReadEnd = position;
+        return bytesRead > 0 ? bytesRead : -1;
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        cachedBlocks.clear();
+        freeBlocks.clear();
+        try {
+            fileChannel.close();
+        } finally {
+            source.close();
+        }
+    }
+
+    /**
+     * Get number of block lookups served from cache
+     */
+    public synchronized long getCacheHitCount() {
+        return cacheHitCount;
+    }
+
+    /**
+     * Get number of block lookups which had to read from source
+     */
+    public synchronized long getCacheMissCount() {
+        return cacheMissCount;
+    }
+
+    /**
+     * Get number of reads from source
+     */
+    public synchronized long getSourceReadCount() {
+        return sourceReadCount;
+    }
+
+    /**
+     * Get number of bytes read from source
+     */
+    public synchronized long getSourceBytesRead() {
+        return sourceBytesRead;
+    }
+
+    @NonNull
+    private static ParcelFileDescriptor openFileDescriptor(@NonNull Context context, @NonNull Uri uri) throws IOException {
+        ParcelFileDescriptor parcelFileDescriptor = context.getContentResolver().openFileDescriptor(uri, "r");
+        if (parcelFileDescriptor == null) {
+            throw new IOException("Cannot open " + uri);
+        }
+        return parcelFileDescriptor;
+    }
+
+    @NonNull
+    private ByteBuffer getBlock(long blockIndex, boolean isSequential) throws IOException {
+        ByteBuffer block = cachedBlocks.get(blockIndex);
+        if (block != null) {
+            cacheHitCount++;
+            return block;
+        }
+        cacheMissCount++;
+
+        // read ahead only when reading sequentially, and only until the next cached block
+        long blockCount = (size + blockSize - 1) / blockSize;
+        int readBlockCount = 0;
+        do {
+            readBlocks[readBlockCount++] = obtainBlock();
+        } while (isSequential
+                && readBlockCount < readAheadBlocks
+                && blockIndex + readBlockCount < blockCount
+                && !cachedBlocks.containsKey(blockIndex + readBlockCount));
+
+        // scattering read fills all blocks with a single call, unless source returns less data
+        fileChannel.position(blockIndex * blockSize);
+        long endPosition = Math.min(size, (blockIndex + readBlockCount) * blockSize);
+        long position = blockIndex * blockSize;
+        while (position < endPosition) {
+            long bytesRead = fileChannel.read(readBlocks, 0, readBlockCount);
+            sourceReadCount++;
+            if (bytesRead < 0) {
+                break;
+            }
+            sourceBytesRead += bytesRead;
+            position += bytesRead;
+        }
+
+        for (int index = 0; index < readBlockCount; index++) {
+            ByteBuffer readBlock = readBlocks[index];
+            readBlock.flip();
+            readBlocks[index] = null;
+            cachedBlocks.put(blockIndex + index, readBlock);
+        }
+        // first block is the one requested, make it most recently used
+        return cachedBlocks.get(blockIndex);
+    }
+
+    @NonNull
+    private ByteBuffer obtainBlock() {
+        ByteBuffer block = freeBlocks.pollFirst();
+        if (block == null) {
+            block = ByteBuffer.allocate(blockSize);
+        }
+        block.clear();
+        return block;
+    }
+}
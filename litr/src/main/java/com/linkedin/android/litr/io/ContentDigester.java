@@ -0,0 +1,223 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.io;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.RestrictTo;
+import androidx.annotation.VisibleForTesting;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Incremental builder of a {@link ContentManifest}. Targets which write their output from Java report written bytes
+ * as they write them, so that content is digested without being read back. Bytes appended at the end of observed
+ * content are digested right away, while bytes which overwrite already observed content (such as container headers
+ * patched when target is released) invalidate digests of chunks they belong to. When manifest is built, only content
+ * which was not observed, and chunks which were invalidated, are read from output.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY)
+public final class ContentDigester {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final int chunkSize;
+    // digests of complete chunks, null for chunks which were changed or skipped after they were digested
+    @NonNull private final List<byte[]> chunkDigests = new ArrayList<>();
+    @NonNull private final MessageDigest chunkDigest = createMessageDigest();
+    private boolean isChunkDigestValid = true;
+    // size of content observed from the start, current chunk ends at the next chunk boundary
+    private long digestedSize;
+    private long readSize;
+
+    public ContentDigester(@IntRange(from = 1) int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Observe bytes written to content
+     * @param position position of bytes in content
+     * @param data bytes, from buffer position to its limit. Buffer position is not changed.
+     */
+    public void update(long position, @NonNull ByteBuffer data) {
+        long end = position + data.remaining();
+        if (position < digestedSize) {
+            invalidate(position, Math.min(end, digestedSize));
+        } else if (position > digestedSize) {
+            skip(position - digestedSize);
+        }
+        if (end <= digestedSize) {
+            return;
+        }
+
+        ByteBuffer appendedData = data.duplicate();
+        appendedData.position(appendedData.position() + (int) (digestedSize - position));
+        while (appendedData.hasRemaining()) {
+            int length = (int) Math.min(appendedData.remaining(), getChunkRemaining());
+            int limit = appendedData.limit();
+            appendedData.limit(appendedData.position() + length);
+            chunkDigest.update(appendedData);
+            appendedData.limit(limit);
+            advance(length);
+        }
+    }
+
+    /**
+     * Build manifest of content, reading parts which were not observed or were invalidated. Digester cannot be
+     * updated after that.
+     * @param channel channel to read content from, must be seekable
+     * @throws IOException if reading content fails
+     */
+    @NonNull
+    public ContentManifest build(@NonNull FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < digestedSize) {
+            truncate(size);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(READ_BUFFER_SIZE, chunkSize));
+        while (digestedSize < size) {
+            long length = Math.min(size - digestedSize, getChunkRemaining());
+            if (isChunkDigestValid) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), length));
+                read(channel, buffer, digestedSize);
+                update(digestedSize, buffer);
+            } else {
+                // chunk is read again as a whole anyway
+                skip(length);
+            }
+        }
+        if (hasPartialChunk()) {
+            finishChunk();
+        }
+
+        for (int chunk = 0; chunk < chunkDigests.size(); chunk++) {
+            if (chunkDigests.get(chunk) == null) {
+                long offset = (long) chunk * chunkSize;
+                long chunkEnd = Math.min(size, offset + chunkSize);
+                for (long position = offset; position < chunkEnd; position += buffer.limit()) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), chunkEnd - position));
+                    read(channel, buffer, position);
+                    chunkDigest.update(buffer);
+                }
+                chunkDigests.set(chunk, chunkDigest.digest());
+            }
+        }
+
+        return build();
+    }
+
+    /**
+     * Build manifest of observed content, which must have been written sequentially, from its start
+     */
+    @NonNull
+    ContentManifest build() {
+        if (hasPartialChunk()) {
+            finishChunk();
+        }
+
+        MessageDigest digest = createMessageDigest();
+        List<ContentManifest.Chunk> chunks = new ArrayList<>(chunkDigests.size());
+        for (int chunk = 0; chunk < chunkDigests.size(); chunk++) {
+            byte[] chunkDigest = chunkDigests.get(chunk);
+            if (chunkDigest == null) {
+                throw new IllegalStateException("Chunk " + chunk + " was not digested");
+            }
+            long offset = (long) chunk * chunkSize;
+            chunks.add(new ContentManifest.Chunk(offset, (int) Math.min(chunkSize, digestedSize - offset), chunkDigest));
+            digest.update(chunkDigest);
+        }
+        return new ContentManifest(digestedSize, chunkSize, digest.digest(), chunks);
+    }
+
+    /**
+     * Get number of bytes read from output when building a manifest
+     */
+    @VisibleForTesting
+    long getReadSize() {
+        return readSize;
+    }
+
+    @NonNull
+    static MessageDigest createMessageDigest() {
+        try {
+            return MessageDigest.getInstance(ContentManifest.ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void invalidate(long start, long end) {
+        for (long chunk = start / chunkSize; chunk <= (end - 1) / chunkSize; chunk++) {
+            if (chunk < chunkDigests.size()) {
+                chunkDigests.set((int) chunk, null);
+            } else {
+                isChunkDigestValid = false;
+            }
+        }
+    }
+
+    private void skip(long length) {
+        while (length > 0) {
+            long skipLength = Math.min(length, getChunkRemaining());
+            isChunkDigestValid = false;
+            advance(skipLength);
+            length -= skipLength;
+        }
+    }
+
+    private void truncate(long size) {
+        chunkDigests.subList((int) (size / chunkSize), chunkDigests.size()).clear();
+        chunkDigest.reset();
+        // truncated chunk is read again, unless it is empty
+        isChunkDigestValid = size % chunkSize == 0;
+        digestedSize = size;
+    }
+
+    private void advance(long length) {
+        digestedSize += length;
+        if (digestedSize % chunkSize == 0) {
+            finishChunk();
+        }
+    }
+
+    private void finishChunk() {
+        byte[] digest = chunkDigest.digest();
+        chunkDigests.add(isChunkDigestValid ? digest : null);
+        isChunkDigestValid = true;
+    }
+
+    private boolean hasPartialChunk() {
+        return (long) chunkDigests.size() * chunkSize < digestedSize;
+    }
+
+    private long getChunkRemaining() {
+        return chunkSize - digestedSize % chunkSize;
+    }
+
+    private void read(@NonNull FileChannel channel, @NonNull ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int bytesRead = channel.read(buffer, position + buffer.position());
+            if (bytesRead < 0) {
+                throw new EOFException("Content ended at " + (position + buffer.position()) + " bytes");
+            }
+            readSize += bytesRead;
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.io;
+
+import androidx.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Content digest of a transformation output: SHA-256 digests of its fixed size chunks, along with chunk offsets, and
+ * a digest of the whole file computed from chunk digests. Useful for verifying and resuming uploads without reading
+ * the output again.
+ */
+public final class ContentManifest {
+
+    public static final String ALGORITHM = "SHA-256";
+
+    private final long size;
+    private final int chunkSize;
+    @NonNull private final byte[] digest;
+    @NonNull private final List<Chunk> chunks;
+
+    ContentManifest(long size, int chunkSize, @NonNull byte[] digest, @NonNull List<Chunk> chunks) {
+        this.size = size;
+        this.chunkSize = chunkSize;
+        this.digest = digest;
+        this.chunks = Collections.unmodifiableList(chunks);
+    }
+
+    /**
+     * Get content size
+     * @return size in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Get chunk size content was split into. Last chunk can be smaller.
+     * @return chunk size in bytes
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Get digest of the whole content: SHA-256 digest of chunk digests, concatenated in order of chunks, like composite
+     * checksums of multipart uploads. Unlike a plain digest of content, it does not require hashing content in order
+     * in a single pass, so chunks can be digested as they are written, and only patched chunks are read again.
+     * @return SHA-256 digest of chunk digests
+     */
+    @NonNull
+    public byte[] getDigest() {
+        return digest.clone();
+    }
+
+    /**
+     * Get content chunks, in order of their offsets
+     */
+    @NonNull
+    public List<Chunk> getChunks() {
+        return chunks;
+    }
+
+    /**
+     * A fixed size chunk of content
+     */
+    public static final class Chunk {
+        private final long offset;
+        private final int size;
+        @NonNull private final byte[] digest;
+
+        Chunk(long offset, int size, @NonNull byte[] digest) {
+            this.offset = offset;
+            this.size = size;
+            this.digest = digest;
+        }
+
+        /**
+         * Get chunk offset in content
+         * @return offset in bytes
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * Get chunk size
+         * @return size in bytes
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * Get digest of chunk content
+         * @return SHA-256 digest
+         */
+        @NonNull
+        public byte[] getDigest() {
+            return digest.clone();
+        }
+    }
+}
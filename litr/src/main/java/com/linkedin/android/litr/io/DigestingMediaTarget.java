@@ -0,0 +1,138 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.io;
+
+import android.content.Context;
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link MediaTarget} decorator which produces a {@link ContentManifest} of the output written by a wrapped target.
+ *
+ * Containers are not final until their target is released, since headers are patched when target is released.
+ * {@link WavMediaTarget} reports bytes it writes to a {@link ContentDigester}, so its output is digested as it is
+ * written, and only chunks with patched header are read again after it is released. {@link android.media.MediaMuxer}
+ * writes from native code, preallocating file space and writing MP4 movie box in place when it is stopped, so its output
+ * cannot be observed safely while it is written, and is read once, after target is released, while the output is still
+ * likely to be in page cache. {@link com.linkedin.android.litr.MediaTransformer} does this right before reporting
+ * completion, and delivers the manifest to {@link com.linkedin.android.litr.TransformationListener}, so that output
+ * does not need to be read again to checksum it. Manifest is not computed for failed or cancelled transformations.
+ */
+public class DigestingMediaTarget implements MediaTarget {
+
+    public static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    @NonNull private final Context context;
+    @NonNull private final Uri outputUri;
+    @NonNull private final MediaTarget mediaTarget;
+    @NonNull private final ContentDigester contentDigester;
+
+    private boolean isReleased;
+    @Nullable private ContentManifest contentManifest;
+
+    public DigestingMediaTarget(@NonNull Context context, @NonNull Uri outputUri, @NonNull MediaTarget mediaTarget) {
+        this(context, outputUri, mediaTarget, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Create a digesting target
+     * @param context context to read output with
+     * @param outputUri {@link Uri} of output wrapped target writes to, readable by provided context
+     * @param mediaTarget target to wrap
+     * @param chunkSize size of manifest chunks, in bytes
+     */
+    public DigestingMediaTarget(@NonNull Context context,
+                                @NonNull Uri outputUri,
+                                @NonNull MediaTarget mediaTarget,
+                                @IntRange(from = 1) int chunkSize) {
+        this.context = context.getApplicationContext();
+        this.outputUri = outputUri;
+        this.mediaTarget = mediaTarget;
+        this.contentDigester = new ContentDigester(chunkSize);
+        if (mediaTarget instanceof WavMediaTarget) {
+            ((WavMediaTarget) mediaTarget).setContentDigester(contentDigester);
+        }
+    }
+
+    /**
+     * Get wrapped target
+     */
+    @NonNull
+    public MediaTarget getMediaTarget() {
+        return mediaTarget;
+    }
+
+    @Override
+    public int addTrack(@NonNull MediaFormat mediaFormat, @IntRange(from = 0) int targetTrack) {
+        return mediaTarget.addTrack(mediaFormat, targetTrack);
+    }
+
+    @Override
+    public void writeSampleData(int targetTrack, @NonNull ByteBuffer buffer, @NonNull MediaCodec.BufferInfo info) {
+        mediaTarget.writeSampleData(targetTrack, buffer, info);
+    }
+
+    @Override
+    public void writeSamples(int targetTrack,
+                             @NonNull SampleBatch batch,
+                             @IntRange(from = 0) int fromSample,
+                             @IntRange(from = 0) int toSample) {
+        mediaTarget.writeSamples(targetTrack, batch, fromSample, toSample);
+    }
+
+    @Override
+    public void release() {
+        mediaTarget.release();
+        isReleased = true;
+    }
+
+    @NonNull
+    @Override
+    public String getOutputFilePath() {
+        return mediaTarget.getOutputFilePath();
+    }
+
+    /**
+     * Get manifest of the output. Reads parts of the output which were not digested as they were written, when called
+     * for the first time, so should not be called on UI thread.
+     * @return manifest of the output
+     * @throws IllegalStateException if target is not released yet, so its output is not final
+     * @throws IOException if output cannot be read
+     */
+    @NonNull
+    public ContentManifest getContentManifest() throws IOException {
+        if (!isReleased) {
+            throw new IllegalStateException("Output is not final until target is released");
+        }
+        if (contentManifest == null) {
+            ParcelFileDescriptor parcelFileDescriptor = context.getContentResolver().openFileDescriptor(outputUri, "r");
+            if (parcelFileDescriptor == null) {
+                throw new FileNotFoundException("Cannot open " + outputUri);
+            }
+            FileInputStream inputStream = new FileInputStream(parcelFileDescriptor.getFileDescriptor());
+            try {
+                contentManifest = contentDigester.build(inputStream.getChannel());
+            } finally {
+                inputStream.close();
+                parcelFileDescriptor.close();
+            }
+        }
+        return contentManifest;
+    }
+}
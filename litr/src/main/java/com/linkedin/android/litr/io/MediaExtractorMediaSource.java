@@ -8,12 +8,18 @@
 package com.linkedin.android.litr.io;
 
 import android.content.Context;
+import android.media.MediaDataSource;
 import android.media.MediaExtractor;
 import android.media.MediaFormat;
 import android.media.MediaMetadataRetriever;
 import android.net.Uri;
+import android.os.Build;
+import android.util.Log;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
 import com.linkedin.android.litr.exception.MediaSourceException;
+import com.linkedin.android.litr.probe.SampleIndex;
 import com.linkedin.android.litr.utils.TranscoderUtils;
 
 import java.io.IOException;
@@ -26,19 +32,37 @@ import static com.linkedin.android.litr.exception.MediaSourceException.Error.DAT
  */
 public class MediaExtractorMediaSource implements MediaSource {
 
+    private static final String TAG = MediaExtractorMediaSource.class.getSimpleName();
+
     private final MediaExtractor mediaExtractor;
     private final MediaRange mediaRange;
+    @Nullable private final MediaDataSource mediaDataSource;
+    @Nullable private final SampleIndex sampleIndex;
+    @Nullable private final boolean[] selectedTracks;
 
     private int orientationHint;
     private long size;
-    private final long duration;
+    private long duration;
 
     public MediaExtractorMediaSource(@NonNull Context context, @NonNull Uri uri) throws MediaSourceException {
         this(context, uri, new MediaRange(0, Long.MAX_VALUE));
     }
 
     public MediaExtractorMediaSource(@NonNull Context context, @NonNull Uri uri, @NonNull MediaRange mediaRange) throws MediaSourceException {
+        this(context, uri, mediaRange, null);
+    }
+
+    /**
+     * Create a media source with a {@link SampleIndex} of media, usually obtained from
+     * {@link com.linkedin.android.litr.probe.SampleIndexCache}. Index is used to seek exactly to sync samples and is
+     * exposed to consumers for planning, it is ignored if its tracks do not match extractor tracks.
+     */
+    public MediaExtractorMediaSource(@NonNull Context context,
+                                     @NonNull Uri uri,
+                                     @NonNull MediaRange mediaRange,
+                                     @Nullable SampleIndex sampleIndex) throws MediaSourceException {
         this.mediaRange = mediaRange;
+        this.mediaDataSource = null;
 
         mediaExtractor = new MediaExtractor();
         MediaMetadataRetriever mediaMetadataRetriever = new MediaMetadataRetriever();
@@ -49,15 +73,44 @@ public class MediaExtractorMediaSource implements MediaSource {
             releaseQuietly(mediaMetadataRetriever);
             throw new MediaSourceException(DATA_SOURCE, uri, ex);
         }
-        String rotation = mediaMetadataRetriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION);
-        if (rotation != null) {
-            orientationHint = Integer.parseInt(rotation);
-        }
-        String durationStr = mediaMetadataRetriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
-        duration =  (durationStr != null) ? Long.parseLong(durationStr) : -1L;
         size = TranscoderUtils.getSize(context, uri);
-        // Release unused anymore MediaMetadataRetriever instance
-        releaseQuietly(mediaMetadataRetriever);
+        extractMetadata(mediaMetadataRetriever);
+
+        if (sampleIndex != null && sampleIndex.getTrackCount() != mediaExtractor.getTrackCount()) {
+            Log.w(TAG, "Ignoring sample index of " + sampleIndex.getTrackCount() + " tracks, media has "
+                    + mediaExtractor.getTrackCount());
+            sampleIndex = null;
+        }
+        this.sampleIndex = sampleIndex;
+        selectedTracks = sampleIndex != null ? new boolean[sampleIndex.getTrackCount()] : null;
+    }
+
+    /**
+     * Create a media source reading from a {@link MediaDataSource}. Data source is opened only once and is shared
+     * by extractor and metadata retriever, which is especially useful with {@link BufferedMediaDataSource}.
+     * Data source is closed when media source is released.
+     */
+    @RequiresApi(Build.VERSION_CODES.M)
+    public MediaExtractorMediaSource(@NonNull MediaDataSource mediaDataSource, @NonNull MediaRange mediaRange) throws MediaSourceException {
+        this.mediaRange = mediaRange;
+        this.mediaDataSource = mediaDataSource;
+        this.sampleIndex = null;
+        this.selectedTracks = null;
+
+        mediaExtractor = new MediaExtractor();
+        MediaMetadataRetriever mediaMetadataRetriever = new MediaMetadataRetriever();
+        try {
+            // platform closes a data source when extractor or retriever is released, so neither is allowed to
+            MediaDataSource sharedMediaDataSource = new SharedMediaDataSource(mediaDataSource);
+            mediaExtractor.setDataSource(sharedMediaDataSource);
+            mediaMetadataRetriever.setDataSource(sharedMediaDataSource);
+            size = mediaDataSource.getSize();
+        } catch (IOException | IllegalArgumentException ex) {
+            releaseQuietly(mediaMetadataRetriever);
+            mediaExtractor.release();
+            throw new MediaSourceException(DATA_SOURCE, null, ex);
+        }
+        extractMetadata(mediaMetadataRetriever);
     }
 
     @Override
@@ -79,11 +132,20 @@ public class MediaExtractorMediaSource implements MediaSource {
     @Override
     public void selectTrack(int track) {
         mediaExtractor.selectTrack(track);
+        if (selectedTracks != null) {
+            selectedTracks[track] = true;
+        }
     }
 
     @Override
     public void seekTo(long position, int mode) {
-        mediaExtractor.seekTo(position, mode);
+        long syncSampleTime = findSyncSampleTime(position, mode);
+        if (syncSampleTime >= 0) {
+            // seeking to exact sync sample time lands on it in any mode, regardless of how extractor searches for it
+            mediaExtractor.seekTo(syncSampleTime, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+        } else {
+            mediaExtractor.seekTo(position, mode);
+        }
     }
 
     @Override
@@ -111,9 +173,38 @@ public class MediaExtractorMediaSource implements MediaSource {
         mediaExtractor.advance();
     }
 
+    @Override
+    public int readSamples(int track, @NonNull SampleBatch batch) {
+        batch.clear();
+        ByteBuffer data = batch.getData();
+        while (batch.getSampleCount() < batch.getMaxSampleCount() && mediaExtractor.getSampleTrackIndex() == track) {
+            // when sample size is known, pack as many samples as fit instead of reserving max sample size for each
+            long sampleSize = Build.VERSION.SDK_INT >= Build.VERSION_CODES.P
+                    ? mediaExtractor.getSampleSize()
+                    : batch.getMaxSampleSize();
+            if (batch.getSampleCount() > 0 && !batch.hasSpaceFor(sampleSize)) {
+                break;
+            }
+            int size = mediaExtractor.readSampleData(data, batch.getNextOffset());
+            if (size < 0) {
+                break;
+            }
+            batch.add(size, mediaExtractor.getSampleTime(), mediaExtractor.getSampleFlags());
+            mediaExtractor.advance();
+        }
+        return batch.getSampleCount();
+    }
+
     @Override
     public void release() {
         mediaExtractor.release();
+        if (mediaDataSource != null) {
+            try {
+                mediaDataSource.close();
+            } catch (IOException ex) {
+                // Nothing to do.
+            }
+        }
     }
 
     @Override
@@ -132,6 +223,43 @@ public class MediaExtractorMediaSource implements MediaSource {
         return duration;
     }
 
+    @Nullable
+    @Override
+    public SampleIndex getSampleIndex() {
+        return sampleIndex;
+    }
+
+    /**
+     * Find a sync sample seek would land on, in the first selected track which has non sync samples (usually video),
+     * since that is the track extractor seeks by
+     * @return sync sample time in microseconds, -1 if there is no index or it has no such sample
+     */
+    private long findSyncSampleTime(long position, int mode) {
+        if (sampleIndex == null || selectedTracks == null) {
+            return -1;
+        }
+        for (int track = 0; track < selectedTracks.length; track++) {
+            SampleIndex.Track trackIndex = sampleIndex.getTrack(track);
+            if (selectedTracks[track] && trackIndex.getSyncSampleCount() < trackIndex.getSampleCount()) {
+                return trackIndex.findSyncSampleTimeUs(position, mode);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Read orientation hint and duration, then release unused anymore {@link MediaMetadataRetriever} instance
+     */
+    private void extractMetadata(@NonNull MediaMetadataRetriever mediaMetadataRetriever) {
+        String rotation = mediaMetadataRetriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION);
+        if (rotation != null) {
+            orientationHint = Integer.parseInt(rotation);
+        }
+        String durationStr = mediaMetadataRetriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+        duration = (durationStr != null) ? Long.parseLong(durationStr) : -1L;
+        releaseQuietly(mediaMetadataRetriever);
+    }
+
     private void releaseQuietly(MediaMetadataRetriever mediaMetadataRetriever) {
         try {
             mediaMetadataRetriever.release();
@@ -139,4 +267,31 @@ public class MediaExtractorMediaSource implements MediaSource {
             // Nothing to do.
         }
     }
+
+    /**
+     * Data source which ignores close requests, so that it can be used by multiple platform components
+     */
+    @RequiresApi(Build.VERSION_CODES.M)
+    private static final class SharedMediaDataSource extends MediaDataSource {
+        private final MediaDataSource mediaDataSource;
+
+        private SharedMediaDataSource(@NonNull MediaDataSource mediaDataSource) {
+            this.mediaDataSource = mediaDataSource;
+        }
+
+        @Override
+        public int readAt(long position, byte[] buffer, int offset, int size) throws IOException {
+            return mediaDataSource.readAt(position, buffer, offset, size);
+        }
+
+        @Override
+        public long getSize() throws IOException {
+            return mediaDataSource.getSize();
+        }
+
+        @Override
+        public void close() {
+            // closed by owner
+        }
+    }
 }
@@ -17,7 +17,10 @@ import android.os.ParcelFileDescriptor;
 import android.util.Log;
 import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
 import androidx.annotation.VisibleForTesting;
+import com.linkedin.android.litr.analytics.Tracing;
 import com.linkedin.android.litr.exception.MediaTargetException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -42,12 +45,15 @@ public class MediaMuxerMediaTarget implements MediaTarget {
     @VisibleForTesting boolean isStarted;
     @VisibleForTesting MediaMuxer mediaMuxer;
 
+    private final MediaCodec.BufferInfo batchSampleInfo = new MediaCodec.BufferInfo();
+
     private MediaFormat[] mediaFormatsToAdd;
 
     private ParcelFileDescriptor parcelFileDescriptor;
     private String outputFilePath;
     private int numberOfTracksToAdd;
     private int trackCount;
+    @Nullable private String queuedSamplesCounterName;
 
     /**
      * Create an instance using input URI. On Android Oreo (API level 26) and above it can be any URI writeable by the
@@ -124,6 +130,7 @@ public class MediaMuxerMediaTarget implements MediaTarget {
                 MediaTargetSample mediaSample = queue.removeFirst();
                 mediaMuxer.writeSampleData(mediaSample.getTargetTrack(), mediaSample.getBuffer(), mediaSample.getInfo());
             }
+            traceQueuedSamples();
         }
 
         return targetTrack;
@@ -135,15 +142,53 @@ public class MediaMuxerMediaTarget implements MediaTarget {
             if (buffer == null) {
                 Log.e(TAG, "Trying to write a null buffer, skipping");
             } else {
-                mediaMuxer.writeSampleData(targetTrack, buffer, info);
+                Tracing.beginSection(Tracing.SECTION_MEDIA_MUXER_WRITE);
+                try {
+                    mediaMuxer.writeSampleData(targetTrack, buffer, info);
+                } finally {
+                    Tracing.endSection();
+                }
             }
         } else {
             // media muxer is not started yet, so queue up incoming buffers to write them out later
             MediaTargetSample mediaSample = new MediaTargetSample(targetTrack, buffer, info);
             queue.addLast(mediaSample);
+            traceQueuedSamples();
+        }
+    }
+
+    @Override
+    public void writeSamples(int targetTrack,
+                             @NonNull SampleBatch batch,
+                             @IntRange(from = 0) int fromSample,
+                             @IntRange(from = 0) int toSample) {
+        if (!isStarted) {
+            // samples will be copied into a queue one by one
+            MediaTarget.super.writeSamples(targetTrack, batch, fromSample, toSample);
+            return;
+        }
+
+        // MediaMuxer only looks at info offset and size, so all samples can be written from the same buffer
+        ByteBuffer buffer = batch.getData();
+        Tracing.beginSection(Tracing.SECTION_MEDIA_MUXER_WRITE);
+        try {
+            for (int sample = fromSample; sample < toSample; sample++) {
+                batchSampleInfo.set(batch.getOffset(sample), batch.getSize(sample), batch.getTime(sample), batch.getFlags(sample));
+                mediaMuxer.writeSampleData(targetTrack, buffer, batchSampleInfo);
+            }
+        } finally {
+            Tracing.endSection();
         }
     }
 
+    /**
+     * Set id of a job writing into this target. Samples queued before muxer is started are traced in a counter named after it.
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public void setJobId(@NonNull String jobId) {
+        queuedSamplesCounterName = Tracing.getJobCounterName(jobId, Tracing.COUNTER_MUXER_QUEUED_SAMPLES);
+    }
+
     @Override
     public void release() {
         try {
@@ -168,4 +213,10 @@ public class MediaMuxerMediaTarget implements MediaTarget {
         } catch (IOException ignored) {
         }
     }
+
+    private void traceQueuedSamples() {
+        if (queuedSamplesCounterName != null) {
+            Tracing.setCounter(queuedSamplesCounterName, queue.size());
+        }
+    }
 }
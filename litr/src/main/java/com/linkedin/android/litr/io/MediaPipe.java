@@ -0,0 +1,416 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.io;
+
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.linkedin.android.litr.MimeType;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * An in-memory pipe, which chains two transformation jobs without writing an intermediate file. Encoded samples, written
+ * by an upstream job into pipe's {@link MediaTarget}, are read by a downstream job from pipe's {@link MediaSource},
+ * and track formats added to the target become track formats of the source.
+ *
+ * Samples are buffered up to a byte budget, after which the upstream job is blocked until the downstream job catches up.
+ * Samples written before all tracks are added are buffered regardless of the budget, just like {@link MediaMuxerMediaTarget}
+ * does, because downstream job cannot start reading before it knows all track formats. Therefore, jobs must run
+ * concurrently, on an {@link java.util.concurrent.ExecutorService} with at least two threads, and upstream job should be
+ * started first: {@link MediaSource#getTrackFormat(int)} blocks until upstream job adds a track.
+ *
+ * Pipe is sequential, so its source can only seek forward: samples before seek position are dropped, and each track
+ * resumes at its first sync sample at or after seek position, regardless of seek mode. Once the source is released,
+ * for example when downstream job ends early, samples written into the target are discarded. If the target is released
+ * before every selected track reaches end of stream, upstream job is assumed to have failed and reading from the source
+ * throws an {@link IllegalStateException}.
+ */
+public class MediaPipe {
+
+    public static final long DEFAULT_BYTE_BUDGET = 8L * 1024 * 1024;
+
+    private final int trackCount;
+    private final int orientationHint;
+    private final long byteBudget;
+
+    @NonNull private final MediaTarget mediaTarget = new PipedMediaTarget();
+    @NonNull private final MediaSource mediaSource = new PipedMediaSource();
+
+    private final Object lock = new Object();
+    private final ArrayDeque<Sample> samples = new ArrayDeque<>();
+    private final ArrayDeque<Sample> freeSamples = new ArrayDeque<>();
+
+    // all fields below are guarded by lock
+    @NonNull private final MediaFormat[] trackFormats;
+    @NonNull private final boolean[] videoTracks;
+    @NonNull private final boolean[] endOfStreamTracks;
+    @NonNull private final boolean[] selectedTracks;
+    @NonNull private final boolean[] syncSampleRequired;
+    private int addedTrackCount;
+    private long bufferedBytes;
+    private long seekPosition;
+    private boolean isTargetReleased;
+    private boolean isSourceReleased;
+
+    public MediaPipe(@IntRange(from = 1) int trackCount, int orientationHint) {
+        this(trackCount, orientationHint, DEFAULT_BYTE_BUDGET);
+    }
+
+    /**
+     * Create a pipe
+     * @param trackCount number of tracks upstream job writes
+     * @param orientationHint video orientation hint, in degrees, usually orientation hint of upstream job's source
+     * @param byteBudget maximum number of sample bytes to buffer. At least one sample is always buffered, even if it exceeds the budget.
+     */
+    public MediaPipe(@IntRange(from = 1) int trackCount, int orientationHint, @IntRange(from = 1) long byteBudget) {
+        this.trackCount = trackCount;
+        this.orientationHint = orientationHint;
+        this.byteBudget = byteBudget;
+
+        trackFormats = new MediaFormat[trackCount];
+        videoTracks = new boolean[trackCount];
+        endOfStreamTracks = new boolean[trackCount];
+        selectedTracks = new boolean[trackCount];
+        syncSampleRequired = new boolean[trackCount];
+    }
+
+    /**
+     * Get a target for upstream job to write into
+     */
+    @NonNull
+    public MediaTarget getMediaTarget() {
+        return mediaTarget;
+    }
+
+    /**
+     * Get a source for downstream job to read from
+     */
+    @NonNull
+    public MediaSource getMediaSource() {
+        return mediaSource;
+    }
+
+    private void addTrack(@NonNull MediaFormat mediaFormat, int targetTrack) {
+        synchronized (lock) {
+            if (trackFormats[targetTrack] == null) {
+                addedTrackCount++;
+            }
+            trackFormats[targetTrack] = mediaFormat;
+            videoTracks[targetTrack] = mediaFormat.containsKey(MediaFormat.KEY_MIME)
+                    && MimeType.isVideo(mediaFormat.getString(MediaFormat.KEY_MIME));
+            lock.notifyAll();
+        }
+    }
+
+    private void writeSample(int targetTrack, @NonNull ByteBuffer buffer, @NonNull MediaCodec.BufferInfo info) {
+        if ((info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0) {
+            // codec specific data is carried by track format
+            return;
+        }
+
+        Sample sample;
+        boolean isSyncSample;
+        synchronized (lock) {
+            if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                endOfStreamTracks[targetTrack] = true;
+                lock.notifyAll();
+            }
+            if (info.size <= 0) {
+                return;
+            }
+            while (!isSourceReleased && addedTrackCount == trackCount && isFull()) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    // stop waiting, interrupted job will cancel itself after writing this sample
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            if (isSourceReleased) {
+                return;
+            }
+            sample = freeSamples.pollFirst();
+            // encoders do not always flag audio samples, every non video sample is a sync sample, just like in MediaMuxer
+            isSyncSample = !videoTracks[targetTrack] || (info.flags & MediaCodec.BUFFER_FLAG_KEY_FRAME) != 0;
+        }
+
+        // sample is copied outside of the lock, so that reader is not blocked by it
+        if (sample == null) {
+            sample = new Sample();
+        }
+        if (sample.buffer == null || sample.buffer.capacity() < info.size) {
+            sample.buffer = ByteBuffer.allocateDirect(info.size);
+        }
+        ByteBuffer data = buffer.duplicate();
+        data.limit(data.capacity());
+        data.position(info.offset);
+        data.limit(info.offset + info.size);
+        sample.buffer.clear();
+        sample.buffer.put(data);
+
+        sample.trackIndex = targetTrack;
+        sample.size = info.size;
+        sample.time = info.presentationTimeUs;
+        sample.flags = 0;
+        if (isSyncSample) {
+            sample.flags |= MediaExtractor.SAMPLE_FLAG_SYNC;
+        }
+        if ((info.flags & MediaCodec.BUFFER_FLAG_PARTIAL_FRAME) != 0) {
+            sample.flags |= MediaExtractor.SAMPLE_FLAG_PARTIAL_FRAME;
+        }
+
+        synchronized (lock) {
+            if (isSourceReleased) {
+                return;
+            }
+            samples.addLast(sample);
+            bufferedBytes += sample.size;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Must be called holding the lock
+     */
+    private boolean isFull() {
+        return !samples.isEmpty() && bufferedBytes >= byteBudget;
+    }
+
+    @NonNull
+    private MediaFormat getTrackFormat(int track) {
+        synchronized (lock) {
+            while (trackFormats[track] == null && !isTargetReleased) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for a track format", e);
+                }
+            }
+            if (trackFormats[track] == null) {
+                throw new IllegalStateException("Media target was released before adding track " + track);
+            }
+            return trackFormats[track];
+        }
+    }
+
+    private void selectTrack(int track) {
+        synchronized (lock) {
+            selectedTracks[track] = true;
+        }
+    }
+
+    private void seekTo(long position) {
+        synchronized (lock) {
+            seekPosition = position;
+            for (int track = 0; track < trackCount; track++) {
+                syncSampleRequired[track] = true;
+            }
+        }
+    }
+
+    /**
+     * Get current sample, dropping samples of tracks which are not selected and samples skipped by seeking
+     */
+    @NonNull
+    private Sample getCurrentSample() {
+        synchronized (lock) {
+            while (true) {
+                if (isSourceReleased) {
+                    throw new IllegalStateException("Media source is released");
+                }
+                Sample sample = samples.peekFirst();
+                if (sample != null) {
+                    if (!isSkipped(sample)) {
+                        syncSampleRequired[sample.trackIndex] = false;
+                        return sample;
+                    }
+                    removeCurrentSample();
+                } else if (isTargetReleased) {
+                    for (int track = 0; track < trackCount; track++) {
+                        if (selectedTracks[track] && !endOfStreamTracks[track]) {
+                            throw new IllegalStateException("Media target was released before end of stream of track " + track);
+                        }
+                    }
+                    return Sample.END_OF_STREAM;
+                } else {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted while waiting for a sample", e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Must be called holding the lock
+     */
+    private boolean isSkipped(@NonNull Sample sample) {
+        return !selectedTracks[sample.trackIndex]
+                || sample.time < seekPosition
+                || syncSampleRequired[sample.trackIndex] && (sample.flags & MediaExtractor.SAMPLE_FLAG_SYNC) == 0;
+    }
+
+    /**
+     * Must be called holding the lock
+     */
+    private void removeCurrentSample() {
+        Sample sample = samples.removeFirst();
+        bufferedBytes -= sample.size;
+        freeSamples.addLast(sample);
+        lock.notifyAll();
+    }
+
+    private class PipedMediaTarget implements MediaTarget {
+
+        @Override
+        public int addTrack(@NonNull MediaFormat mediaFormat, @IntRange(from = 0) int targetTrack) {
+            MediaPipe.this.addTrack(mediaFormat, targetTrack);
+            return targetTrack;
+        }
+
+        @Override
+        public void writeSampleData(int targetTrack, @NonNull ByteBuffer buffer, @NonNull MediaCodec.BufferInfo info) {
+            writeSample(targetTrack, buffer, info);
+        }
+
+        @Override
+        public void release() {
+            synchronized (lock) {
+                isTargetReleased = true;
+                lock.notifyAll();
+            }
+        }
+
+        @NonNull
+        @Override
+        public String getOutputFilePath() {
+            // nothing to delete if a job fails
+            return "";
+        }
+    }
+
+    private class PipedMediaSource implements MediaSource {
+
+        @Override
+        public int getOrientationHint() {
+            return orientationHint;
+        }
+
+        @Override
+        public int getTrackCount() {
+            return trackCount;
+        }
+
+        @NonNull
+        @Override
+        public MediaFormat getTrackFormat(int track) {
+            return MediaPipe.this.getTrackFormat(track);
+        }
+
+        @Override
+        public void selectTrack(int track) {
+            MediaPipe.this.selectTrack(track);
+        }
+
+        @Override
+        public void seekTo(long position, int mode) {
+            MediaPipe.this.seekTo(position);
+        }
+
+        @Override
+        public int getSampleTrackIndex() {
+            return getCurrentSample().trackIndex;
+        }
+
+        @Override
+        public int readSampleData(@NonNull ByteBuffer buffer, int offset) {
+            Sample sample = getCurrentSample();
+            if (sample.size < 0) {
+                return -1;
+            }
+            if (buffer.capacity() - offset < sample.size) {
+                throw new IllegalArgumentException("Buffer is too small for a sample of " + sample.size + " bytes");
+            }
+
+            ByteBuffer data = sample.buffer.duplicate();
+            data.position(0);
+            data.limit(sample.size);
+
+            buffer.clear();
+            buffer.position(offset);
+            buffer.put(data);
+            buffer.flip();
+            buffer.position(offset);
+
+            return sample.size;
+        }
+
+        @Override
+        public long getSampleTime() {
+            return getCurrentSample().time;
+        }
+
+        @Override
+        public int getSampleFlags() {
+            return getCurrentSample().flags;
+        }
+
+        @Override
+        public void advance() {
+            synchronized (lock) {
+                if (getCurrentSample().trackIndex >= 0) {
+                    removeCurrentSample();
+                }
+            }
+        }
+
+        @Override
+        public void release() {
+            synchronized (lock) {
+                isSourceReleased = true;
+                samples.clear();
+                freeSamples.clear();
+                bufferedBytes = 0;
+                lock.notifyAll();
+            }
+        }
+
+        @Override
+        public long getSize() {
+            return -1;
+        }
+    }
+
+    private static final class Sample {
+        private static final Sample END_OF_STREAM = new Sample();
+
+        static {
+            END_OF_STREAM.trackIndex = -1;
+            END_OF_STREAM.size = -1;
+            END_OF_STREAM.time = -1;
+        }
+
+        @Nullable private ByteBuffer buffer;
+        private int size;
+        private long time;
+        private int flags;
+        private int trackIndex;
+    }
+}
@@ -9,6 +9,9 @@ package com.linkedin.android.litr.io;
 
 import android.media.MediaFormat;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.linkedin.android.litr.probe.SampleIndex;
 
 import java.nio.ByteBuffer;
 
@@ -81,6 +84,27 @@ public interface MediaSource {
      */
     void advance();
 
+    /**
+     * Read consecutive samples of a track into a batch and advance past them. Reading stops before a sample of
+     * another track, at the end of stream, or when batch is full. Implementations should override this if they can read
+     * multiple samples cheaper than one by one, which is what default implementation does.
+     * @param track track index
+     * @param batch batch to read samples into, it is cleared first
+     * @return number of samples read, 0 if current sample belongs to a different track or no more samples are available
+     */
+    default int readSamples(int track, @NonNull SampleBatch batch) {
+        batch.clear();
+        while (!batch.isFull() && getSampleTrackIndex() == track) {
+            int size = readSampleData(batch.getData(), batch.getNextOffset());
+            if (size < 0) {
+                break;
+            }
+            batch.add(size, getSampleTime(), getSampleFlags());
+            advance();
+        }
+        return batch.getSampleCount();
+    }
+
     /**
      * Free up all resources. Make sure to call this when MediaSource is no longer needed.
      */
@@ -108,4 +132,13 @@ public interface MediaSource {
     default long getDuration() {
         return -1;
     }
+
+    /**
+     * Get index of media samples, with tracks in the same order as this source has them
+     * @return sample index, null if not available
+     */
+    @Nullable
+    default SampleIndex getSampleIndex() {
+        return null;
+    }
 }
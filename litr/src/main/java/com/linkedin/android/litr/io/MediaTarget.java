@@ -35,6 +35,33 @@ public interface MediaTarget {
      */
     void writeSampleData(int targetTrack, @NonNull ByteBuffer buffer, @NonNull MediaCodec.BufferInfo info);
 
+    /**
+     * Writes a range of samples from a batch. Sample flags must be {@link MediaCodec} buffer flags.
+     * Implementations should override this if they can write multiple samples cheaper than one by one,
+     * which is what default implementation does.
+     * @param targetTrack target track index
+     * @param batch batch of encoded samples
+     * @param fromSample index of first sample to write, inclusive
+     * @param toSample index of last sample to write, exclusive
+     */
+    default void writeSamples(int targetTrack,
+                              @NonNull SampleBatch batch,
+                              @IntRange(from = 0) int fromSample,
+                              @IntRange(from = 0) int toSample) {
+        // position and limit of a duplicate are set to each sample, for targets which look at them instead of info offset
+        ByteBuffer buffer = batch.getData().duplicate();
+        MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+        for (int sample = fromSample; sample < toSample; sample++) {
+            int offset = batch.getOffset(sample);
+            int size = batch.getSize(sample);
+            buffer.limit(buffer.capacity());
+            buffer.position(offset);
+            buffer.limit(offset + size);
+            info.set(offset, size, batch.getTime(sample), batch.getFlags(sample));
+            writeSampleData(targetTrack, buffer, info);
+        }
+    }
+
     /**
      * Release all resources. Make sure to call this when MediaTarget is no longer needed
      */
@@ -14,14 +14,15 @@ import java.nio.ByteBuffer
 
 /**
  * If a {@link MediaTarget} needs to temporarily queue up samples, this class can provide a deep
- * copy of the sample to allow the original to be returned (e.g. to the encoder).
+ * copy of the sample to allow the original to be returned (e.g. to the encoder). Only sample data, from buffer position
+ * to its limit, is copied, so that a sample from a large shared buffer does not hold a copy of the whole buffer.
  */
 class MediaTargetSample(
     val targetTrack: Int,
     buffer: ByteBuffer,
     info: MediaCodec.BufferInfo
 ) {
-    val buffer: ByteBuffer = ByteBuffer.allocate(buffer.capacity())
+    val buffer: ByteBuffer = ByteBuffer.allocate(buffer.remaining())
     val info : MediaCodec.BufferInfo = MediaCodec.BufferInfo()
 
     init {
@@ -0,0 +1,435 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.io;
+
+import android.media.MediaFormat;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.linkedin.android.litr.probe.SampleIndex;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * A {@link MediaSource} decorator which reads samples of a wrapped source ahead of time, on a background thread.
+ * Sources with variable read latency (content providers, removable storage, network backed files) otherwise stall
+ * the transformation thread right before a sample is queued into a decoder, starving the codec.
+ *
+ * Up to a configured number of samples, limited by a byte budget, are read into a pool of direct buffers, which are reused.
+ * Sample data, time, flags and track index are then served from memory. Selecting a track or seeking flushes read ahead
+ * samples and continues reading from a new position. Wrapped source is owned by this source: once reading starts,
+ * it must not be accessed directly, and it is released when this source is released. Since wrapped source is not
+ * thread safe, its track formats and other metadata are read when this source is created, and served from memory.
+ * If reading a sample fails, samples which were read ahead before that are served first, then the error is thrown.
+ */
+public class PrefetchingMediaSource implements MediaSource {
+
+    public static final int DEFAULT_MAX_SAMPLE_COUNT = 32;
+    public static final long DEFAULT_BYTE_BUDGET = 8L * 1024 * 1024;
+
+    private static final int DEFAULT_SAMPLE_BUFFER_SIZE = 256 * 1024;
+    private static final int MAX_SAMPLE_BUFFER_SIZE = 64 * 1024 * 1024;
+
+    private final MediaSource mediaSource;
+    private final int maxSampleCount;
+    private final long byteBudget;
+
+    private final int orientationHint;
+    @NonNull private final MediaFormat[] trackFormats;
+    private final long size;
+    @NonNull private final MediaRange selection;
+    private final long duration;
+    @Nullable private final SampleIndex sampleIndex;
+
+    private final Object lock = new Object();
+    private final ArrayDeque<Sample> samples = new ArrayDeque<>();
+    private final ArrayDeque<Sample> freeSamples = new ArrayDeque<>();
+    private final int[] sampleBufferSizes;
+
+    // all fields below are guarded by lock
+    @Nullable private Thread prefetchThread;
+    private long bufferedBytes;
+    private boolean isPaused;
+    private boolean isReading;
+    private boolean isEndReached;
+    private boolean isReleased;
+    @Nullable private RuntimeException prefetchError;
+
+    public PrefetchingMediaSource(@NonNull MediaSource mediaSource) {
+        this(mediaSource, DEFAULT_MAX_SAMPLE_COUNT, DEFAULT_BYTE_BUDGET);
+    }
+
+    /**
+     * Create a prefetching source
+     * @param mediaSource source to read samples from
+     * @param maxSampleCount maximum number of samples to read ahead
+     * @param byteBudget maximum number of sample bytes to read ahead. At least one sample is always read ahead, even if it exceeds the budget.
+     */
+    public PrefetchingMediaSource(@NonNull MediaSource mediaSource,
+                                  @IntRange(from = 1) int maxSampleCount,
+                                  @IntRange(from = 1) long byteBudget) {
+        this.mediaSource = mediaSource;
+        this.maxSampleCount = maxSampleCount;
+        this.byteBudget = byteBudget;
+
+        orientationHint = mediaSource.getOrientationHint();
+        trackFormats = new MediaFormat[mediaSource.getTrackCount()];
+        for (int track = 0; track < trackFormats.length; track++) {
+            trackFormats[track] = mediaSource.getTrackFormat(track);
+        }
+        size = mediaSource.getSize();
+        selection = mediaSource.getSelection();
+        duration = mediaSource.getDuration();
+        sampleIndex = mediaSource.getSampleIndex();
+
+        sampleBufferSizes = new int[trackFormats.length];
+    }
+
+    @Override
+    public int getOrientationHint() {
+        return orientationHint;
+    }
+
+    @Override
+    public int getTrackCount() {
+        return trackFormats.length;
+    }
+
+    @NonNull
+    @Override
+    public MediaFormat getTrackFormat(int track) {
+        return trackFormats[track];
+    }
+
+    @Override
+    public void selectTrack(int track) {
+        synchronized (lock) {
+            pauseAndFlush();
+            mediaSource.selectTrack(track);
+            resume();
+        }
+    }
+
+    @Override
+    public void seekTo(long position, int mode) {
+        synchronized (lock) {
+            pauseAndFlush();
+            mediaSource.seekTo(position, mode);
+            resume();
+        }
+    }
+
+    @Override
+    public int getSampleTrackIndex() {
+        return getCurrentSample().trackIndex;
+    }
+
+    @Override
+    public int readSampleData(@NonNull ByteBuffer buffer, int offset) {
+        Sample sample = getCurrentSample();
+        if (sample.size < 0) {
+            return -1;
+        }
+        if (buffer.capacity() - offset < sample.size) {
+            throw new IllegalArgumentException("Buffer is too small for a sample of " + sample.size + " bytes");
+        }
+
+        ByteBuffer data = sample.buffer.duplicate();
+        data.position(0);
+        data.limit(sample.size);
+
+        buffer.clear();
+        buffer.position(offset);
+        buffer.put(data);
+        buffer.flip();
+        buffer.position(offset);
+
+        return sample.size;
+    }
+
+    @Override
+    public long getSampleTime() {
+        return getCurrentSample().time;
+    }
+
+    @Override
+    public int getSampleFlags() {
+        return getCurrentSample().flags;
+    }
+
+    @Override
+    public void advance() {
+        Sample sample = getCurrentSample();
+        if (sample.trackIndex < 0) {
+            // end of stream sample stays current, just like with MediaExtractor
+            return;
+        }
+        synchronized (lock) {
+            samples.removeFirst();
+            bufferedBytes -= sample.size;
+            freeSamples.addLast(sample);
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public int readSamples(int track, @NonNull SampleBatch batch) {
+        batch.clear();
+        Sample sample = getCurrentSample();
+        ByteBuffer data = batch.getData();
+        // take all read ahead samples of the track under a single lock
+        synchronized (lock) {
+            while (sample != null && sample.trackIndex == track) {
+                if (!batch.hasSpaceFor(sample.size)) {
+                    if (batch.getSampleCount() == 0) {
+                        throw new IllegalArgumentException("Batch is too small for a sample of " + sample.size + " bytes");
+                    }
+                    break;
+                }
+                ByteBuffer sampleData = sample.buffer.duplicate();
+                sampleData.position(0);
+                sampleData.limit(sample.size);
+                data.limit(data.capacity());
+                data.position(batch.getNextOffset());
+                data.put(sampleData);
+                batch.add(sample.size, sample.time, sample.flags);
+
+                samples.removeFirst();
+                bufferedBytes -= sample.size;
+                freeSamples.addLast(sample);
+                sample = samples.peekFirst();
+            }
+            lock.notifyAll();
+        }
+        data.clear();
+        return batch.getSampleCount();
+    }
+
+    @Override
+    public void release() {
+        Thread thread;
+        synchronized (lock) {
+            isReleased = true;
+            thread = prefetchThread;
+            lock.notifyAll();
+        }
+        if (thread != null) {
+            boolean interrupted = false;
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (lock) {
+            samples.clear();
+            freeSamples.clear();
+        }
+        mediaSource.release();
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    @NonNull
+    @Override
+    public MediaRange getSelection() {
+        return selection;
+    }
+
+    @Override
+    public long getDuration() {
+        return duration;
+    }
+
+    @Nullable
+    @Override
+    public SampleIndex getSampleIndex() {
+        return sampleIndex;
+    }
+
+    @NonNull
+    private Sample getCurrentSample() {
+        synchronized (lock) {
+            if (isReleased) {
+                throw new IllegalStateException("Media source is released");
+            }
+            if (prefetchThread == null) {
+                prefetchThread = new Thread(this::prefetch, "LiTrPrefetch");
+                prefetchThread.setDaemon(true);
+                prefetchThread.start();
+            }
+            while (samples.isEmpty() && prefetchError == null) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for a sample", e);
+                }
+            }
+            // samples read ahead before an error are still good, so they are served first
+            if (samples.isEmpty()) {
+                throw prefetchError;
+            }
+            return samples.peekFirst();
+        }
+    }
+
+    /**
+     * Must be called holding the lock. Waits for a sample being read to finish and drops all read ahead samples.
+     */
+    private void pauseAndFlush() {
+        isPaused = true;
+        boolean interrupted = false;
+        while (isReading) {
+            try {
+                lock.wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        freeSamples.addAll(samples);
+        samples.clear();
+        bufferedBytes = 0;
+        isEndReached = false;
+        prefetchError = null;
+    }
+
+    /**
+     * Must be called holding the lock
+     */
+    private void resume() {
+        isPaused = false;
+        lock.notifyAll();
+    }
+
+    private void prefetch() {
+        while (true) {
+            Sample sample;
+            synchronized (lock) {
+                while (!isReleased && (isPaused || isEndReached || prefetchError != null || isFull())) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        // only release stops prefetching
+                    }
+                }
+                if (isReleased) {
+                    return;
+                }
+                isReading = true;
+                sample = freeSamples.pollFirst();
+            }
+
+            boolean isEndOfStream = false;
+            RuntimeException error = null;
+            try {
+                if (sample == null) {
+                    sample = new Sample();
+                }
+                isEndOfStream = !readSample(sample);
+            } catch (RuntimeException e) {
+                error = e;
+            }
+
+            synchronized (lock) {
+                isReading = false;
+                if (error != null) {
+                    prefetchError = error;
+                } else {
+                    samples.addLast(sample);
+                    bufferedBytes += Math.max(sample.size, 0);
+                    isEndReached = isEndOfStream;
+                }
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private boolean isFull() {
+        return !samples.isEmpty() && (samples.size() >= maxSampleCount || bufferedBytes >= byteBudget);
+    }
+
+    /**
+     * Read current sample of wrapped source and advance it. Called on prefetch thread only.
+     * @return false if end of stream is reached, true otherwise
+     */
+    private boolean readSample(@NonNull Sample sample) {
+        int trackIndex = mediaSource.getSampleTrackIndex();
+        sample.trackIndex = trackIndex;
+        if (trackIndex < 0) {
+            sample.size = -1;
+            sample.time = -1;
+            sample.flags = 0;
+            return false;
+        }
+
+        while (true) {
+            int bufferSize = getSampleBufferSize(trackIndex);
+            if (sample.buffer == null || sample.buffer.capacity() < bufferSize) {
+                sample.buffer = ByteBuffer.allocateDirect(bufferSize);
+            }
+            try {
+                sample.size = mediaSource.readSampleData(sample.buffer, 0);
+                break;
+            } catch (IllegalArgumentException e) {
+                // buffer is too small, reading a sample does not advance the source, so we can retry with a larger one
+                if (bufferSize >= MAX_SAMPLE_BUFFER_SIZE) {
+                    throw e;
+                }
+                sampleBufferSizes[trackIndex] = Math.min(bufferSize * 2, MAX_SAMPLE_BUFFER_SIZE);
+            }
+        }
+        if (sample.size < 0) {
+            sample.trackIndex = -1;
+            sample.time = -1;
+            sample.flags = 0;
+            return false;
+        }
+        sample.time = mediaSource.getSampleTime();
+        sample.flags = mediaSource.getSampleFlags();
+        mediaSource.advance();
+        return true;
+    }
+
+    private int getSampleBufferSize(int trackIndex) {
+        if (trackIndex >= sampleBufferSizes.length) {
+            return DEFAULT_SAMPLE_BUFFER_SIZE;
+        }
+        if (sampleBufferSizes[trackIndex] == 0) {
+            MediaFormat trackFormat = trackFormats[trackIndex];
+            int maxInputSize = trackFormat.containsKey(MediaFormat.KEY_MAX_INPUT_SIZE)
+                    ? trackFormat.getInteger(MediaFormat.KEY_MAX_INPUT_SIZE)
+                    : 0;
+            sampleBufferSizes[trackIndex] = maxInputSize > 0 ? maxInputSize : DEFAULT_SAMPLE_BUFFER_SIZE;
+        }
+        return sampleBufferSizes[trackIndex];
+    }
+
+    private static final class Sample {
+        @Nullable private ByteBuffer buffer;
+        private int size;
+        private long time;
+        private int flags;
+        private int trackIndex;
+    }
+}
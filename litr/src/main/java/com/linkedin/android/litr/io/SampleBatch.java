@@ -0,0 +1,146 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.io;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A batch of samples of a single track, used to move multiple samples from {@link MediaSource} to {@link MediaTarget}
+ * in one call. Sample data is packed into a single direct buffer, sample metadata is kept in primitive arrays,
+ * so a batch can be reused for the lifetime of a transformation without allocating.
+ */
+public final class SampleBatch {
+
+    private final ByteBuffer data;
+    private final int maxSampleSize;
+
+    private final int[] offsets;
+    private final int[] sizes;
+    private final long[] times;
+    private final int[] flags;
+
+    private int sampleCount;
+    private int nextOffset;
+
+    /**
+     * Create a batch
+     * @param maxSampleCount maximum number of samples in a batch
+     * @param maxSampleSize maximum size of a single sample, in bytes. Batch is considered full when less space than that is left.
+     * @param bufferSize size of a buffer holding data of all samples, in bytes, must not be less than maximum sample size
+     */
+    public SampleBatch(@IntRange(from = 1) int maxSampleCount,
+                       @IntRange(from = 1) int maxSampleSize,
+                       @IntRange(from = 1) int bufferSize) {
+        if (bufferSize < maxSampleSize) {
+            throw new IllegalArgumentException("Buffer size " + bufferSize + " is less than max sample size " + maxSampleSize);
+        }
+        this.maxSampleSize = maxSampleSize;
+
+        data = ByteBuffer.allocateDirect(bufferSize);
+        offsets = new int[maxSampleCount];
+        sizes = new int[maxSampleCount];
+        times = new long[maxSampleCount];
+        flags = new int[maxSampleCount];
+    }
+
+    /**
+     * Get a buffer with data of all samples. Use {@link #getOffset(int)} and {@link #getSize(int)} to locate sample data.
+     */
+    @NonNull
+    public ByteBuffer getData() {
+        return data;
+    }
+
+    public int getMaxSampleCount() {
+        return offsets.length;
+    }
+
+    public int getMaxSampleSize() {
+        return maxSampleSize;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    public int getOffset(@IntRange(from = 0) int sample) {
+        return offsets[sample];
+    }
+
+    public int getSize(@IntRange(from = 0) int sample) {
+        return sizes[sample];
+    }
+
+    /**
+     * Get sample presentation time, in microseconds
+     */
+    public long getTime(@IntRange(from = 0) int sample) {
+        return times[sample];
+    }
+
+    public void setTime(@IntRange(from = 0) int sample, long time) {
+        times[sample] = time;
+    }
+
+    /**
+     * Get sample flags, {@link android.media.MediaExtractor} sample flags when read from a source, or
+     * {@link android.media.MediaCodec} buffer flags when written to a target
+     */
+    public int getFlags(@IntRange(from = 0) int sample) {
+        return flags[sample];
+    }
+
+    public void setFlags(@IntRange(from = 0) int sample, int flags) {
+        this.flags[sample] = flags;
+    }
+
+    /**
+     * Get offset in data buffer at which next sample should be written
+     */
+    public int getNextOffset() {
+        return nextOffset;
+    }
+
+    /**
+     * Check if there is enough space left for a sample of a given size
+     */
+    public boolean hasSpaceFor(long sampleSize) {
+        return sampleCount < offsets.length && sampleSize <= data.capacity() - nextOffset;
+    }
+
+    /**
+     * Check if batch is full: either maximum sample count is reached or there may not be enough space for another sample
+     */
+    public boolean isFull() {
+        return !hasSpaceFor(maxSampleSize);
+    }
+
+    /**
+     * Add a sample, whose data has been written into data buffer at {@link #getNextOffset()}
+     */
+    public void add(@IntRange(from = 0) int size, long time, int flags) {
+        offsets[sampleCount] = nextOffset;
+        sizes[sampleCount] = size;
+        times[sampleCount] = time;
+        this.flags[sampleCount] = flags;
+        sampleCount++;
+        nextOffset += size;
+    }
+
+    /**
+     * Remove all samples
+     */
+    public void clear() {
+        sampleCount = 0;
+        nextOffset = 0;
+        data.clear();
+    }
+}
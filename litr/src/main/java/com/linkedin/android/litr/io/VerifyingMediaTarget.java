@@ -0,0 +1,143 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.io;
+
+import android.content.Context;
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+
+import com.linkedin.android.litr.exception.OutputVerificationException;
+import com.linkedin.android.litr.probe.Mp4StructureVerifier;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link MediaTarget} decorator which verifies structure of MP4 output written by a wrapped target, once it is final.
+ * Only container headers are read, so verification is fast regardless of media size. {@link com.linkedin.android.litr.MediaTransformer}
+ * verifies output after wrapped target is released and reports invalid output as an error, with an
+ * {@link OutputVerificationException} describing what is wrong, instead of reporting completion.
+ */
+public class VerifyingMediaTarget implements MediaTarget {
+
+    private static final String TAG = VerifyingMediaTarget.class.getSimpleName();
+
+    public static final long DEFAULT_DURATION_TOLERANCE_US = 1_000_000L;
+
+    @NonNull private final Context context;
+    @NonNull private final Uri outputUri;
+    @NonNull private final MediaTarget mediaTarget;
+    private final long durationToleranceUs;
+
+    private boolean isReleased;
+
+    public VerifyingMediaTarget(@NonNull Context context, @NonNull Uri outputUri, @NonNull MediaTarget mediaTarget) {
+        this(context, outputUri, mediaTarget, DEFAULT_DURATION_TOLERANCE_US);
+    }
+
+    /**
+     * Create a verifying target
+     * @param context context to read output with
+     * @param outputUri {@link Uri} of output wrapped target writes to, readable by provided context
+     * @param mediaTarget target to wrap
+     * @param durationToleranceUs maximum allowed difference between actual and expected track duration, in microseconds
+     */
+    public VerifyingMediaTarget(@NonNull Context context,
+                                @NonNull Uri outputUri,
+                                @NonNull MediaTarget mediaTarget,
+                                @IntRange(from = 0) long durationToleranceUs) {
+        this.context = context.getApplicationContext();
+        this.outputUri = outputUri;
+        this.mediaTarget = mediaTarget;
+        this.durationToleranceUs = durationToleranceUs;
+    }
+
+    /**
+     * Get wrapped target
+     */
+    @NonNull
+    public MediaTarget getMediaTarget() {
+        return mediaTarget;
+    }
+
+    @Override
+    public int addTrack(@NonNull MediaFormat mediaFormat, @IntRange(from = 0) int targetTrack) {
+        return mediaTarget.addTrack(mediaFormat, targetTrack);
+    }
+
+    @Override
+    public void writeSampleData(int targetTrack, @NonNull ByteBuffer buffer, @NonNull MediaCodec.BufferInfo info) {
+        mediaTarget.writeSampleData(targetTrack, buffer, info);
+    }
+
+    @Override
+    public void writeSamples(int targetTrack,
+                             @NonNull SampleBatch batch,
+                             @IntRange(from = 0) int fromSample,
+                             @IntRange(from = 0) int toSample) {
+        mediaTarget.writeSamples(targetTrack, batch, fromSample, toSample);
+    }
+
+    @Override
+    public void release() {
+        mediaTarget.release();
+        isReleased = true;
+    }
+
+    @NonNull
+    @Override
+    public String getOutputFilePath() {
+        return mediaTarget.getOutputFilePath();
+    }
+
+    /**
+     * Verify output structure. Should not be called on UI thread.
+     * @param expectedTrackDurationsUs expected duration of each output track, in order of target tracks, negative if unknown
+     * @throws IllegalStateException if target is not released yet, so its output is not final
+     * @throws OutputVerificationException if output is invalid or cannot be read
+     */
+    public void verify(@NonNull long[] expectedTrackDurationsUs) throws OutputVerificationException {
+        if (!isReleased) {
+            throw new IllegalStateException("Output is not final until target is released");
+        }
+
+        String violation;
+        ParcelFileDescriptor parcelFileDescriptor = null;
+        try {
+            parcelFileDescriptor = context.getContentResolver().openFileDescriptor(outputUri, "r");
+            if (parcelFileDescriptor == null) {
+                throw new IOException("Cannot open " + outputUri);
+            }
+            // stream is not closed, because that would close the descriptor it does not own
+            violation = Mp4StructureVerifier.verify(new FileInputStream(parcelFileDescriptor.getFileDescriptor()).getChannel(),
+                                                    expectedTrackDurationsUs,
+                                                    durationToleranceUs);
+        } catch (IOException | SecurityException ex) {
+            throw new OutputVerificationException("cannot read output " + outputUri, ex);
+        } finally {
+            if (parcelFileDescriptor != null) {
+                try {
+                    parcelFileDescriptor.close();
+                } catch (IOException ex) {
+                    Log.w(TAG, "Failed to close file descriptor of " + outputUri, ex);
+                }
+            }
+        }
+
+        if (violation != null) {
+            throw new OutputVerificationException(violation);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.io
+
+import android.content.Context
+import android.media.AudioFormat
+import android.media.MediaExtractor
+import android.media.MediaFormat
+import android.net.Uri
+import android.os.ParcelFileDescriptor
+import com.linkedin.android.litr.MimeType
+import com.linkedin.android.litr.exception.MediaSourceException
+import com.linkedin.android.litr.utils.PcmUtils
+import java.io.FileInputStream
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+
+private const val WAVE_FORMAT_PCM = 1
+private const val WAVE_FORMAT_IEEE_FLOAT = 3
+private const val WAVE_FORMAT_EXTENSIBLE = 0xFFFE
+private const val UINT32_MASK = 0xFFFFFFFFL
+
+private const val DEFAULT_SAMPLE_FRAME_COUNT = 4096
+private const val MAX_MAPPED_REGION_SIZE = 64L * 1024 * 1024
+
+/**
+ * Implementation of [MediaSource] that reads a single audio track from WAV (including RF64) file.
+ * PCM data is memory mapped, so reading it does not involve any system calls and only copies data once, into a target buffer.
+ * Data is served in samples of fixed number of sample frames, each sample is a sync sample. Track format has "audio/raw" MIME type and
+ * [MediaFormat.KEY_PCM_ENCODING] of WAV data.
+ * @param fileChannel channel of a WAV file, will be closed when source is released
+ * @param sampleFrameCount number of sample frames (a sample for every channel) in each sample returned by [readSampleData]
+ */
+class WavMediaSource @JvmOverloads constructor(
+    private val fileChannel: FileChannel,
+    private val sampleFrameCount: Int = DEFAULT_SAMPLE_FRAME_COUNT
+) : MediaSource {
+
+    @JvmOverloads
+    constructor(path: String, sampleFrameCount: Int = DEFAULT_SAMPLE_FRAME_COUNT) :
+        this(openChannel(null) { FileInputStream(path) }, sampleFrameCount)
+
+    @JvmOverloads
+    constructor(context: Context, uri: Uri, sampleFrameCount: Int = DEFAULT_SAMPLE_FRAME_COUNT) :
+        this(openChannel(uri) {
+            val fileDescriptor = context.contentResolver.openFileDescriptor(uri, "r")
+                ?: throw IOException("Cannot open $uri")
+            ParcelFileDescriptor.AutoCloseInputStream(fileDescriptor)
+        }, sampleFrameCount)
+
+    private val channelCount: Int
+    private val sampleRate: Int
+    private val pcmEncoding: Int
+    private val blockAlign: Int
+    private val dataOffset: Long
+    private val dataSize: Long
+    private val size: Long
+
+    // region of data chunk that is currently mapped
+    private var mappedRegion: MappedByteBuffer? = null
+    private var mappedRegionOffset = 0L
+
+    // position of a current sample, relative to data chunk start
+    private var dataPosition = 0L
+
+    init {
+        size = fileChannel.size()
+
+        val header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN)
+        readFully(header, 0)
+        val riffId = header.getFourCc(0)
+        require((riffId == "RIFF" || riffId == "RF64") && header.getFourCc(8) == "WAVE") { "Not a WAV file" }
+
+        var channelCount = 0
+        var sampleRate = 0
+        var pcmEncoding = AudioFormat.ENCODING_INVALID
+        var blockAlign = 0
+        var ds64DataSize = -1L
+        var dataOffset = -1L
+        var dataSize = 0L
+
+        val chunkHeader = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN)
+        var chunkOffset = 12L
+        while (dataOffset < 0 && chunkOffset + 8 <= size) {
+            readFully(chunkHeader, chunkOffset)
+            val chunkId = chunkHeader.getFourCc(0)
+            val chunkSize = chunkHeader.getInt(4).toLong() and UINT32_MASK
+            val chunkDataOffset = chunkOffset + 8
+
+            when (chunkId) {
+                "ds64" -> {
+                    val ds64 = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN)
+                    readFully(ds64, chunkDataOffset)
+                    ds64DataSize = ds64.getLong(8)
+                }
+                "fmt " -> {
+                    val fmt = ByteBuffer.allocate(minOf(chunkSize, 40L).toInt()).order(ByteOrder.LITTLE_ENDIAN)
+                    readFully(fmt, chunkDataOffset)
+                    var formatTag = fmt.getShort(0).toInt() and 0xFFFF
+                    if (formatTag == WAVE_FORMAT_EXTENSIBLE && fmt.capacity() >= 26) {
+                        // actual format is in the first two bytes of sub format GUID
+                        formatTag = fmt.getShort(24).toInt() and 0xFFFF
+                    }
+                    channelCount = fmt.getShort(2).toInt()
+                    sampleRate = fmt.getInt(4)
+                    blockAlign = fmt.getShort(12).toInt()
+                    pcmEncoding = getPcmEncoding(formatTag, fmt.getShort(14).toInt())
+                }
+                "data" -> {
+                    dataOffset = chunkDataOffset
+                    dataSize = if (chunkSize == UINT32_MASK && ds64DataSize >= 0) ds64DataSize else chunkSize
+                }
+            }
+
+            // chunks are padded to even size
+            chunkOffset = chunkDataOffset + chunkSize + chunkSize % 2
+        }
+
+        require(dataOffset >= 0) { "WAV file does not have a data chunk" }
+        require(channelCount > 0 && sampleRate > 0 && PcmUtils.isSupported(pcmEncoding)) { "Unsupported WAV format" }
+        require(blockAlign == channelCount * PcmUtils.getBytesPerSample(pcmEncoding)) { "Unsupported WAV block alignment" }
+
+        this.channelCount = channelCount
+        this.sampleRate = sampleRate
+        this.pcmEncoding = pcmEncoding
+        this.blockAlign = blockAlign
+        this.dataOffset = dataOffset
+        // size may be missing or wrong if file was not finalized, use whole sample frames that are actually present
+        this.dataSize = minOf(dataSize, size - dataOffset) / blockAlign * blockAlign
+    }
+
+    override fun getOrientationHint() = 0
+
+    override fun getTrackCount() = 1
+
+    override fun getTrackFormat(track: Int): MediaFormat {
+        return MediaFormat.createAudioFormat(MimeType.AUDIO_RAW, sampleRate, channelCount).apply {
+            setInteger(MediaFormat.KEY_PCM_ENCODING, pcmEncoding)
+            setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, sampleFrameCount * blockAlign)
+            setLong(MediaFormat.KEY_DURATION, getTimeUs(dataSize))
+        }
+    }
+
+    override fun selectTrack(track: Int) {
+        // Since we only support a single (audio) track, there is nothing to select.
+    }
+
+    override fun seekTo(position: Long, mode: Int) {
+        // every sample frame is a sync frame, so seek mode does not matter
+        val sampleFrame = (position.coerceAtLeast(0) * sampleRate / 1_000_000L)
+        dataPosition = minOf(sampleFrame * blockAlign, dataSize)
+    }
+
+    override fun getSampleTrackIndex() = if (dataPosition < dataSize) 0 else -1
+
+    override fun readSampleData(buffer: ByteBuffer, offset: Int): Int {
+        if (dataPosition >= dataSize) {
+            return -1
+        }
+
+        val sampleSize = getSampleSize()
+        require(buffer.capacity() - offset >= sampleSize) { "Buffer is too small for a sample of $sampleSize bytes" }
+        val region = getMappedRegion(sampleSize)
+        val regionPosition = (dataPosition - mappedRegionOffset).toInt()
+
+        val source = region.duplicate()
+        source.limit(regionPosition + sampleSize)
+        source.position(regionPosition)
+
+        buffer.clear()
+        buffer.position(offset)
+        buffer.put(source)
+        buffer.flip()
+        buffer.position(offset)
+
+        return sampleSize
+    }
+
+    override fun getSampleTime(): Long {
+        return if (dataPosition < dataSize) getTimeUs(dataPosition) else -1
+    }
+
+    override fun getSampleFlags(): Int {
+        return if (dataPosition < dataSize) MediaExtractor.SAMPLE_FLAG_SYNC else 0
+    }
+
+    override fun advance() {
+        dataPosition = minOf(dataPosition + getSampleSize(), dataSize)
+    }
+
+    override fun release() {
+        mappedRegion = null
+        fileChannel.close()
+    }
+
+    override fun getSize() = size
+
+    override fun getDuration(): Long {
+        return getTimeUs(dataSize) / 1000
+    }
+
+    private fun getSampleSize(): Int {
+        return minOf(sampleFrameCount.toLong() * blockAlign, dataSize - dataPosition).toInt()
+    }
+
+    private fun getTimeUs(dataPosition: Long): Long {
+        return dataPosition / blockAlign * 1_000_000L / sampleRate
+    }
+
+    /**
+     * Returns a mapped region of data chunk which contains [sampleSize] bytes at current position. Regions are mapped in large windows,
+     * because a single mapping cannot exceed 2 GB and mapping entire RF64 file may exhaust address space on 32 bit devices.
+     */
+    private fun getMappedRegion(sampleSize: Int): MappedByteBuffer {
+        val region = mappedRegion
+        if (region != null &&
+            dataPosition >= mappedRegionOffset &&
+            dataPosition + sampleSize <= mappedRegionOffset + region.capacity()) {
+            return region
+        }
+
+        mappedRegionOffset = dataPosition
+        val regionSize = minOf(maxOf(MAX_MAPPED_REGION_SIZE, sampleSize.toLong()), dataSize - dataPosition)
+        return fileChannel.map(FileChannel.MapMode.READ_ONLY, dataOffset + mappedRegionOffset, regionSize).also {
+            it.order(ByteOrder.LITTLE_ENDIAN)
+            mappedRegion = it
+        }
+    }
+
+    private fun readFully(buffer: ByteBuffer, position: Long) {
+        buffer.clear()
+        var readPosition = position
+        while (buffer.hasRemaining()) {
+            val bytesRead = fileChannel.read(buffer, readPosition)
+            require(bytesRead >= 0) { "Unexpected end of WAV file" }
+            readPosition += bytesRead
+        }
+    }
+
+    private fun ByteBuffer.getFourCc(index: Int): String {
+        return String(CharArray(4) { get(index + it).toInt().toChar() })
+    }
+
+    private fun getPcmEncoding(formatTag: Int, bitsPerSample: Int): Int {
+        return when {
+            formatTag == WAVE_FORMAT_IEEE_FLOAT && bitsPerSample == 32 -> AudioFormat.ENCODING_PCM_FLOAT
+            formatTag != WAVE_FORMAT_PCM -> AudioFormat.ENCODING_INVALID
+            bitsPerSample == 8 -> AudioFormat.ENCODING_PCM_8BIT
+            bitsPerSample == 16 -> AudioFormat.ENCODING_PCM_16BIT
+            bitsPerSample == 24 -> AudioFormat.ENCODING_PCM_24BIT_PACKED
+            bitsPerSample == 32 -> AudioFormat.ENCODING_PCM_32BIT
+            else -> AudioFormat.ENCODING_INVALID
+        }
+    }
+
+    private companion object {
+        fun openChannel(uri: Uri?, openStream: () -> FileInputStream): FileChannel {
+            return try {
+                openStream().channel
+            } catch (ex: IOException) {
+                throw MediaSourceException(MediaSourceException.Error.DATA_SOURCE, uri, ex)
+            }
+        }
+    }
+}
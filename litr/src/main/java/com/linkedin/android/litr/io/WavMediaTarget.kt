@@ -5,38 +5,65 @@
  * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
  * license information.
  */
-// header implementation by Kevin Mark is taken from https://gist.github.com/kmark/d8b1b01fb0d2febf5770 and modified
 package com.linkedin.android.litr.io
 
+import android.media.AudioFormat
 import android.media.MediaCodec
 import android.media.MediaFormat
-import java.io.File
-import java.io.FileOutputStream
-import java.io.IOException
-import java.io.OutputStream
+import androidx.annotation.RestrictTo
+import com.linkedin.android.litr.utils.PcmUtils
 import java.io.RandomAccessFile
 import java.nio.ByteBuffer
 import java.nio.ByteOrder
-import kotlin.IllegalStateException
+import java.nio.channels.FileChannel
 
-private const val BYTES_PER_SAMPLE = 2
-private const val MAX_SIZE = 4294967295
+private const val WAVE_FORMAT_PCM: Short = 1
+private const val WAVE_FORMAT_IEEE_FLOAT: Short = 3
+
+private const val RIFF_HEADER_SIZE = 12
+private const val DS64_CHUNK_SIZE = 28
+private const val FMT_CHUNK_SIZE = 16
+private const val CHUNK_HEADER_SIZE = 8
+// RIFF header, JUNK chunk reserving space for ds64 chunk, fmt chunk and data chunk header
+private const val WAV_HEADER_SIZE = RIFF_HEADER_SIZE + CHUNK_HEADER_SIZE + DS64_CHUNK_SIZE + CHUNK_HEADER_SIZE + FMT_CHUNK_SIZE + CHUNK_HEADER_SIZE
+private const val MAX_RIFF_SIZE = 0xFFFFFFFFL
+
+private const val DEFAULT_WRITE_BUFFER_SIZE = 64 * 1024
 
 /**
  * Implementation of [MediaTarget] that writes a single audio track to WAV file.
  * Accepts only one track in "audio-raw" format that has channel count and sample rate data.
- * Track rata must be in 16 bit little endian PCM format, e.g. coming from a direct ByteBuffer.
+ * Track data must be in little endian PCM format, with encoding specified by [MediaFormat.KEY_PCM_ENCODING] (16 bit if not specified).
+ * Integer encodings are written as PCM WAV, float encoding is written as IEEE float WAV.
+ *
+ * Data is written through a single [FileChannel]: small samples are coalesced in a direct buffer and flushed together with the next
+ * large sample in one gather write, and sizes are patched in place when target is released. Files larger than 4 GB are written as RF64.
+ * @param targetPath path of a target file
+ * @param writeBufferSize size of a buffer used to coalesce small samples
  */
-class WavMediaTarget(
-    private val targetPath: String
+class WavMediaTarget @JvmOverloads constructor(
+    private val targetPath: String,
+    writeBufferSize: Int = DEFAULT_WRITE_BUFFER_SIZE
 ) : MediaTarget {
 
     private val tracks = mutableListOf<MediaFormat>()
-    private val outputStream: OutputStream
-    private var size: Long = 0
+    private val file = RandomAccessFile(targetPath, "rw")
+    private val fileChannel: FileChannel = file.channel
+    private val writeBuffer = ByteBuffer.allocateDirect(writeBufferSize)
+    private val gatherBuffers = arrayOf(writeBuffer, writeBuffer)
+
+    /**
+     * Digester of written bytes, set by [DigestingMediaTarget] so that output does not have to be read back
+     */
+    @set:RestrictTo(RestrictTo.Scope.LIBRARY)
+    var contentDigester: ContentDigester? = null
+
+    private var blockAlign = 1
+    private var dataSize = 0L
+    private var released = false
 
     init {
-        outputStream = FileOutputStream(File(targetPath))
+        file.setLength(0)
     }
 
     override fun addTrack(mediaFormat: MediaFormat, targetTrack: Int): Int {
@@ -44,12 +71,17 @@ class WavMediaTarget(
             mediaFormat.containsKey(MediaFormat.KEY_MIME) &&
             mediaFormat.getString(MediaFormat.KEY_MIME) == "audio/raw" &&
             mediaFormat.containsKey(MediaFormat.KEY_CHANNEL_COUNT) &&
-            mediaFormat.containsKey(MediaFormat.KEY_SAMPLE_RATE)) {
+            mediaFormat.containsKey(MediaFormat.KEY_SAMPLE_RATE) &&
+            PcmUtils.isSupported(PcmUtils.getPcmEncoding(mediaFormat))) {
             tracks.add(mediaFormat)
+            val pcmEncoding = PcmUtils.getPcmEncoding(mediaFormat)
+            val channelCount = mediaFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT)
+            blockAlign = channelCount * PcmUtils.getBytesPerSample(pcmEncoding)
             writeWavHeader(
-                mediaFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT),
+                channelCount,
                 mediaFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE),
-                BYTES_PER_SAMPLE
+                PcmUtils.getBytesPerSample(pcmEncoding),
+                if (pcmEncoding == AudioFormat.ENCODING_PCM_FLOAT) WAVE_FORMAT_IEEE_FLOAT else WAVE_FORMAT_PCM
             )
             0
         } else {
@@ -58,95 +90,149 @@ class WavMediaTarget(
     }
 
     override fun writeSampleData(targetTrack: Int, buffer: ByteBuffer, info: MediaCodec.BufferInfo) {
-        size += info.size
-        if (size >= MAX_SIZE) {
-            release()
-            throw IllegalStateException("WAV file size cannot exceed $MAX_SIZE bytes")
+        if (info.size <= 0) {
+            return
+        }
+
+        // work with a duplicate, so that buffer's own position and limit are not modified
+        val sampleBuffer = buffer.duplicate()
+        sampleBuffer.limit(info.offset + info.size)
+        sampleBuffer.position(info.offset)
+
+        if (sampleBuffer.remaining() <= writeBuffer.remaining()) {
+            writeBuffer.put(sampleBuffer)
+            if (!writeBuffer.hasRemaining()) {
+                flush()
+            }
+        } else {
+            // write buffered data and a sample together, without copying a sample
+            writeBuffer.flip()
+            gatherBuffers[1] = sampleBuffer
+            contentDigester?.let { digester ->
+                val position = fileChannel.position()
+                digester.update(position, writeBuffer)
+                digester.update(position + writeBuffer.remaining(), sampleBuffer)
+            }
+            while (sampleBuffer.hasRemaining()) {
+                fileChannel.write(gatherBuffers)
+            }
+            gatherBuffers[1] = writeBuffer
+            writeBuffer.clear()
         }
-        outputStream.write(buffer.array(), info.offset, info.size)
+        dataSize += info.size
     }
 
     override fun release() {
-        outputStream.close()
-        updateWavHeader()
+        if (released) {
+            return
+        }
+        released = true
+
+        try {
+            flush()
+            if (tracks.isNotEmpty()) {
+                if (dataSize % 2 != 0L) {
+                    // RIFF chunks are padded to even size
+                    writeAt(WAV_HEADER_SIZE + dataSize, ByteBuffer.allocate(1))
+                }
+                updateWavHeader()
+            }
+        } finally {
+            fileChannel.close()
+            file.close()
+        }
     }
 
     override fun getOutputFilePath(): String {
         return targetPath
     }
 
-    // modified version of https://gist.github.com/kmark/d8b1b01fb0d2febf5770#file-audiorecordactivity-java-L288
+    private fun flush() {
+        writeBuffer.flip()
+        contentDigester?.update(fileChannel.position(), writeBuffer)
+        while (writeBuffer.hasRemaining()) {
+            fileChannel.write(writeBuffer)
+        }
+        writeBuffer.clear()
+    }
+
     /**
-     * Writes the proper 44-byte RIFF/WAVE header to/for the given stream
-     * Two size fields are left empty/null since we do not yet know the final stream size
+     * Writes a RIFF/WAVE header. Sizes are left empty, since we do not yet know the final data size. Space for RF64 ds64 chunk is
+     * reserved by a JUNK chunk, which readers skip, so that header does not have to move if file turns out to be larger than 4 GB.
      *
-     * @param channelCount  number of channels
+     * @param channelCount number of channels
      * @param sampleRate sample rate in hertz
      * @param bytesPerSample number of bytes per audio channel sample
+     * @param audioFormat WAVE format tag, PCM or IEEE float
      */
-    private fun writeWavHeader(channelCount: Int, sampleRate: Int, bytesPerSample: Int) {
-        // Convert the multi-byte integers to raw bytes in little endian format as required by the spec
-        val littleBytes = ByteBuffer
-            .allocate(14)
-            .order(ByteOrder.LITTLE_ENDIAN)
-            .putShort(channelCount.toShort())
-            .putInt(sampleRate)
-            .putInt(sampleRate * channelCount * bytesPerSample)
-            .putShort((channelCount * bytesPerSample).toShort())
-            .putShort((bytesPerSample * 8).toShort())
-            .array()
-
-        // Not necessarily the best, but it's very easy to visualize this way
-        outputStream.write(byteArrayOf( // RIFF header
-            'R'.code.toByte(), 'I'.code.toByte(), 'F'.code.toByte(), 'F'.code.toByte(),  // ChunkID
-            0, 0, 0, 0,  // ChunkSize (must be updated later)
-            'W'.code.toByte(), 'A'.code.toByte(), 'V'.code.toByte(), 'E'.code.toByte(),  // Format
-            // fmt subchunk
-            'f'.code.toByte(), 'm'.code.toByte(), 't'.code.toByte(), ' '.code.toByte(),  // Subchunk1ID
-            16, 0, 0, 0,  // Subchunk1 Size
-            1, 0,  // AudioFormat
-            littleBytes[0], littleBytes[1],  // NumChannels
-            littleBytes[2], littleBytes[3], littleBytes[4], littleBytes[5],  // SampleRate
-            littleBytes[6], littleBytes[7], littleBytes[8], littleBytes[9],  // ByteRate
-            littleBytes[10], littleBytes[11],  // BlockAlign
-            littleBytes[12], littleBytes[13],  // BitsPerSample
-            // data subchunk
-            'd'.code.toByte(), 'a'.code.toByte(), 't'.code.toByte(), 'a'.code.toByte(),  // Subchunk2 ID
-            0, 0, 0, 0))
+    private fun writeWavHeader(channelCount: Int, sampleRate: Int, bytesPerSample: Int, audioFormat: Short) {
+        val header = ByteBuffer.allocate(WAV_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+
+        // RIFF header
+        header.putFourCc("RIFF")
+        header.putInt(0) // size, must be updated later
+        header.putFourCc("WAVE")
+
+        // JUNK chunk, which becomes ds64 chunk for RF64 file
+        header.putFourCc("JUNK")
+        header.putInt(DS64_CHUNK_SIZE)
+        header.position(header.position() + DS64_CHUNK_SIZE)
+
+        // fmt chunk
+        header.putFourCc("fmt ")
+        header.putInt(FMT_CHUNK_SIZE)
+        header.putShort(audioFormat)
+        header.putShort(channelCount.toShort())
+        header.putInt(sampleRate)
+        header.putInt(sampleRate * channelCount * bytesPerSample) // byte rate
+        header.putShort((channelCount * bytesPerSample).toShort()) // block align
+        header.putShort((bytesPerSample * 8).toShort()) // bits per sample
+
+        // data chunk
+        header.putFourCc("data")
+        header.putInt(0) // size, must be updated later
+
+        header.flip()
+        contentDigester?.update(fileChannel.position(), header)
+        while (header.hasRemaining()) {
+            fileChannel.write(header)
+        }
     }
 
-    // modified version of https://gist.github.com/kmark/d8b1b01fb0d2febf5770#file-audiorecordactivity-java-L331
     /**
-     * Updates the given wav file's header to include the final chunk sizes
+     * Updates header in place, to include final chunk sizes. When sizes do not fit into 32 bits, file is converted to RF64.
      */
     private fun updateWavHeader() {
-        val targetFile = File(targetPath)
-        val sizes = ByteBuffer
-            .allocate(8)
-            .order(ByteOrder.LITTLE_ENDIAN)
-            .putInt((targetFile.length() - 8).toInt()) // ChunkSize
-            .putInt((targetFile.length() - 44).toInt()) // Subchunk2Size
-            .array()
-        var accessWave: RandomAccessFile? = null
-        try {
-            accessWave = RandomAccessFile(targetFile, "rw")
-            // ChunkSize
-            accessWave.seek(4)
-            accessWave.write(sizes, 0, 4)
-
-            // Subchunk2Size
-            accessWave.seek(40)
-            accessWave.write(sizes, 4, 4)
-        } catch (ex: IOException) {
-            throw ex
-        } finally {
-            if (accessWave != null) {
-                try {
-                    accessWave.close()
-                } catch (ex: IOException) {
-                    // fail silently
-                }
-            }
+        val riffSize = WAV_HEADER_SIZE - CHUNK_HEADER_SIZE + dataSize + dataSize % 2
+        if (riffSize <= MAX_RIFF_SIZE) {
+            writeAt(4, ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(riffSize.toInt()))
+            writeAt(WAV_HEADER_SIZE - 4L, ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(dataSize.toInt()))
+        } else {
+            val riffHeader = ByteBuffer.allocate(RIFF_HEADER_SIZE + CHUNK_HEADER_SIZE + DS64_CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+            riffHeader.putFourCc("RF64")
+            riffHeader.putInt(-1) // 0xFFFFFFFF, actual size is in ds64 chunk
+            riffHeader.putFourCc("WAVE")
+            riffHeader.putFourCc("ds64")
+            riffHeader.putInt(DS64_CHUNK_SIZE)
+            riffHeader.putLong(riffSize)
+            riffHeader.putLong(dataSize)
+            riffHeader.putLong(dataSize / blockAlign) // sample count
+            riffHeader.putInt(0) // table length
+            writeAt(0, riffHeader)
+            writeAt(WAV_HEADER_SIZE - 4L, ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(-1))
         }
     }
+
+    private fun writeAt(position: Long, buffer: ByteBuffer) {
+        buffer.rewind()
+        contentDigester?.update(position, buffer)
+        var writePosition = position
+        while (buffer.hasRemaining()) {
+            writePosition += fileChannel.write(buffer, writePosition)
+        }
+    }
+
+    private fun ByteBuffer.putFourCc(fourCc: String) {
+        fourCc.forEach { put(it.code.toByte()) }
+    }
 }
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.probe;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.system.StructStat;
+import android.util.Log;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.linkedin.android.litr.exception.MediaSourceException;
+import com.linkedin.android.litr.io.MediaExtractorMediaSource;
+import com.linkedin.android.litr.io.MediaSource;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lightweight media probe, which summarizes media (tracks, formats, rotation, duration, size, key frame interval) without
+ * instantiating {@link android.media.MediaExtractor} and {@link android.media.MediaMetadataRetriever}. For ISO base media
+ * (MP4, 3GP, QuickTime) only container headers are read, other containers fall back to {@link MediaExtractorMediaSource}.
+ *
+ * Results are kept in a least recently used cache, keyed by {@link Uri}, size and modification time of media, so repeated
+ * probes of the same unchanged media only cost a file descriptor open. This class is thread safe.
+ */
+public class MediaProbe {
+
+    private static final String TAG = MediaProbe.class.getSimpleName();
+
+    public static final int DEFAULT_CACHE_SIZE = 32;
+
+    private static final long US_IN_MS = 1000L;
+
+    @NonNull private final Context context;
+    @NonNull private final Map<CacheKey, MediaProbeResult> cache;
+
+    public MediaProbe(@NonNull Context context) {
+        this(context, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Create a probe
+     * @param context context to open media with
+     * @param cacheSize maximum number of cached results
+     */
+    public MediaProbe(@NonNull Context context, @IntRange(from = 0) int cacheSize) {
+        this.context = context.getApplicationContext();
+        cache = new LinkedHashMap<CacheKey, MediaProbeResult>(cacheSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, MediaProbeResult> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Summarize media. Blocks while media headers are read, so should not be called on UI thread.
+     * @param uri media {@link Uri}
+     * @return media summary
+     * @throws MediaSourceException if media cannot be opened or read
+     */
+    @NonNull
+    public MediaProbeResult probe(@NonNull Uri uri) throws MediaSourceException {
+        ParcelFileDescriptor parcelFileDescriptor = null;
+        try {
+            parcelFileDescriptor = context.getContentResolver().openFileDescriptor(uri, "r");
+            if (parcelFileDescriptor == null) {
+                throw new FileNotFoundException("Cannot open " + uri);
+            }
+
+            // only regular files have meaningful size and modification time
+            StructStat stat = Os.fstat(parcelFileDescriptor.getFileDescriptor());
+            CacheKey cacheKey = OsConstants.S_ISREG(stat.st_mode)
+                    ? new CacheKey(uri, stat.st_size, stat.st_mtime)
+                    : null;
+            if (cacheKey != null) {
+                synchronized (cache) {
+                    MediaProbeResult cachedResult = cache.get(cacheKey);
+                    if (cachedResult != null) {
+                        return cachedResult;
+                    }
+                }
+            }
+
+            MediaProbeResult result = parseHeaders(parcelFileDescriptor);
+            if (result == null) {
+                result = probeWithExtractor(uri);
+            }
+            if (cacheKey != null) {
+                synchronized (cache) {
+                    cache.put(cacheKey, result);
+                }
+            }
+            return result;
+        } catch (IOException | ErrnoException | SecurityException ex) {
+            throw new MediaSourceException(MediaSourceException.Error.DATA_SOURCE, uri, ex);
+        } finally {
+            if (parcelFileDescriptor != null) {
+                try {
+                    parcelFileDescriptor.close();
+                } catch (IOException ex) {
+                    Log.w(TAG, "Failed to close file descriptor of " + uri, ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove all cached results
+     */
+    public void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    @Nullable
+    private MediaProbeResult parseHeaders(@NonNull ParcelFileDescriptor parcelFileDescriptor) {
+        // stream is not closed, because that would close the descriptor it does not own
+        try {
+            return Mp4HeaderParser.parse(new FileInputStream(parcelFileDescriptor.getFileDescriptor()).getChannel());
+        } catch (IOException ex) {
+            Log.d(TAG, "Failed to read container headers", ex);
+            return null;
+        }
+    }
+
+    @NonNull
+    private MediaProbeResult probeWithExtractor(@NonNull Uri uri) throws MediaSourceException {
+        MediaSource mediaSource = new MediaExtractorMediaSource(context, uri);
+        try {
+            List<MediaProbeResult.Track> tracks = new ArrayList<>(mediaSource.getTrackCount());
+            for (int track = 0; track < mediaSource.getTrackCount(); track++) {
+                tracks.add(MediaProbeResult.Track.fromMediaFormat(mediaSource.getTrackFormat(track)));
+            }
+            long duration = mediaSource.getDuration();
+            return new MediaProbeResult(mediaSource.getSize(),
+                                        duration >= 0 ? duration * US_IN_MS : MediaProbeResult.UNKNOWN,
+                                        mediaSource.getOrientationHint(),
+                                        tracks,
+                                        false);
+        } finally {
+            mediaSource.release();
+        }
+    }
+
+    private static final class CacheKey {
+        @NonNull private final Uri uri;
+        private final long size;
+        private final long modificationTime;
+
+        private CacheKey(@NonNull Uri uri, long size, long modificationTime) {
+            this.uri = uri;
+            this.size = size;
+            this.modificationTime = modificationTime;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey cacheKey = (CacheKey) o;
+            return size == cacheKey.size
+                    && modificationTime == cacheKey.modificationTime
+                    && uri.equals(cacheKey.uri);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = uri.hashCode();
+            result = 31 * result + (int) (size ^ (size >>> 32));
+            result = 31 * result + (int) (modificationTime ^ (modificationTime >>> 32));
+            return result;
+        }
+    }
+}
@@ -0,0 +1,433 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.probe;
+
+import android.media.MediaFormat;
+import android.os.Build;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.linkedin.android.litr.MimeType;
+import com.linkedin.android.litr.utils.MediaFormatUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable summary of a media file: its size, duration, rotation and a list of tracks. Values which are not known
+ * are reported as -1.
+ */
+public final class MediaProbeResult {
+
+    public static final int UNKNOWN = -1;
+
+    private final long size;
+    private final long durationUs;
+    private final int orientationHint;
+    @NonNull private final List<Track> tracks;
+    private final boolean isHeaderOnly;
+
+    MediaProbeResult(long size,
+                     long durationUs,
+                     int orientationHint,
+                     @NonNull List<Track> tracks,
+                     boolean isHeaderOnly) {
+        this.size = size;
+        this.durationUs = durationUs;
+        this.orientationHint = orientationHint;
+        this.tracks = Collections.unmodifiableList(new ArrayList<>(tracks));
+        this.isHeaderOnly = isHeaderOnly;
+    }
+
+    /**
+     * Get media size in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Get media duration in microseconds
+     */
+    public long getDurationUs() {
+        return durationUs;
+    }
+
+    /**
+     * Get rotation of video, in degrees
+     */
+    public int getOrientationHint() {
+        return orientationHint;
+    }
+
+    public int getTrackCount() {
+        return tracks.size();
+    }
+
+    @NonNull
+    public Track getTrack(@IntRange(from = 0) int track) {
+        return tracks.get(track);
+    }
+
+    /**
+     * Get unmodifiable list of tracks. Only audio, video and text tracks are listed, so track indices do not necessarily
+     * match indices of {@link com.linkedin.android.litr.io.MediaSource} tracks.
+     */
+    @NonNull
+    public List<Track> getTracks() {
+        return tracks;
+    }
+
+    /**
+     * Check if summary was built from container headers only, without instantiating platform media extractor
+     */
+    public boolean isHeaderOnly() {
+        return isHeaderOnly;
+    }
+
+    @Override
+    @NonNull
+    public String toString() {
+        return "MediaProbeResult{size=" + size
+                + ", durationUs=" + durationUs
+                + ", orientationHint=" + orientationHint
+                + ", tracks=" + tracks
+                + ", isHeaderOnly=" + isHeaderOnly
+                + '}';
+    }
+
+    /**
+     * Immutable summary of a single track
+     */
+    public static final class Track {
+
+        private static final String KEY_ROTATION = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M
+                ? MediaFormat.KEY_ROTATION
+                : "rotation-degrees";
+        private static final String KEY_LEVEL = "level";
+
+        @Nullable private final String mimeType;
+        private final long durationUs;
+        private final int bitrate;
+
+        private final int width;
+        private final int height;
+        private final int rotation;
+        private final float frameRate;
+        private final int profile;
+        private final int level;
+
+        private final int sampleRate;
+        private final int channelCount;
+
+        private final int sampleCount;
+        private final int keyFrameCount;
+        private final long keyFrameIntervalUs;
+        private final long maxKeyFrameIntervalUs;
+
+        private Track(@NonNull Builder builder) {
+            mimeType = builder.mimeType;
+            durationUs = builder.durationUs;
+            bitrate = builder.bitrate;
+            width = builder.width;
+            height = builder.height;
+            rotation = builder.rotation;
+            frameRate = builder.frameRate;
+            profile = builder.profile;
+            level = builder.level;
+            sampleRate = builder.sampleRate;
+            channelCount = builder.channelCount;
+            sampleCount = builder.sampleCount;
+            keyFrameCount = builder.keyFrameCount;
+            keyFrameIntervalUs = builder.keyFrameIntervalUs;
+            maxKeyFrameIntervalUs = builder.maxKeyFrameIntervalUs;
+        }
+
+        @Nullable
+        public String getMimeType() {
+            return mimeType;
+        }
+
+        public boolean isVideo() {
+            return MimeType.isVideo(mimeType);
+        }
+
+        public boolean isAudio() {
+            return MimeType.isAudio(mimeType);
+        }
+
+        /**
+         * Get track duration in microseconds
+         */
+        public long getDurationUs() {
+            return durationUs;
+        }
+
+        /**
+         * Get track bitrate in bits per second. If not declared by container, it is estimated from total sample size and duration.
+         */
+        public int getBitrate() {
+            return bitrate;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * Get video rotation, in degrees
+         */
+        public int getRotation() {
+            return rotation;
+        }
+
+        /**
+         * Get average frame rate, in frames per second
+         */
+        public float getFrameRate() {
+            return frameRate;
+        }
+
+        /**
+         * Get codec profile, one of {@link android.media.MediaCodecInfo.CodecProfileLevel} profile constants
+         */
+        public int getProfile() {
+            return profile;
+        }
+
+        /**
+         * Get codec level, one of {@link android.media.MediaCodecInfo.CodecProfileLevel} level constants
+         */
+        public int getLevel() {
+            return level;
+        }
+
+        public int getSampleRate() {
+            return sampleRate;
+        }
+
+        public int getChannelCount() {
+            return channelCount;
+        }
+
+        public int getSampleCount() {
+            return sampleCount;
+        }
+
+        /**
+         * Get number of key (sync) frames
+         */
+        public int getKeyFrameCount() {
+            return keyFrameCount;
+        }
+
+        /**
+         * Get average interval between key frames, in microseconds. Zero means that every frame is a key frame.
+         */
+        public long getKeyFrameIntervalUs() {
+            return keyFrameIntervalUs;
+        }
+
+        /**
+         * Get longest interval between two consecutive key frames, in microseconds. Zero means that every frame is a key frame.
+         * When a track has a single key frame, track duration is returned.
+         */
+        public long getMaxKeyFrameIntervalUs() {
+            return maxKeyFrameIntervalUs;
+        }
+
+        /**
+         * Create a track summary from a {@link MediaFormat}, such as one reported by {@link android.media.MediaExtractor}
+         */
+        @NonNull
+        public static Track fromMediaFormat(@NonNull MediaFormat mediaFormat) {
+            return new Builder()
+                    .setMimeType(mediaFormat.containsKey(MediaFormat.KEY_MIME) ? mediaFormat.getString(MediaFormat.KEY_MIME) : null)
+                    .setDurationUs(mediaFormat.containsKey(MediaFormat.KEY_DURATION)
+                            ? mediaFormat.getLong(MediaFormat.KEY_DURATION)
+                            : UNKNOWN)
+                    .setBitrate(getInt(mediaFormat, MediaFormat.KEY_BIT_RATE))
+                    .setSize(getInt(mediaFormat, MediaFormat.KEY_WIDTH), getInt(mediaFormat, MediaFormat.KEY_HEIGHT))
+                    .setRotation(Math.max(getInt(mediaFormat, KEY_ROTATION), 0))
+                    .setFrameRate(MediaFormatUtils.getFrameRate(mediaFormat, UNKNOWN).floatValue())
+                    .setProfileLevel(getInt(mediaFormat, MediaFormat.KEY_PROFILE), getInt(mediaFormat, KEY_LEVEL))
+                    .setSampleRate(getInt(mediaFormat, MediaFormat.KEY_SAMPLE_RATE))
+                    .setChannelCount(getInt(mediaFormat, MediaFormat.KEY_CHANNEL_COUNT))
+                    .build();
+        }
+
+        /**
+         * Create a new {@link MediaFormat} with known track parameters
+         */
+        @NonNull
+        public MediaFormat toMediaFormat() {
+            MediaFormat mediaFormat = new MediaFormat();
+            if (mimeType != null) {
+                mediaFormat.setString(MediaFormat.KEY_MIME, mimeType);
+            }
+            if (durationUs >= 0) {
+                mediaFormat.setLong(MediaFormat.KEY_DURATION, durationUs);
+            }
+            if (bitrate > 0) {
+                mediaFormat.setInteger(MediaFormat.KEY_BIT_RATE, bitrate);
+            }
+            if (width > 0 && height > 0) {
+                mediaFormat.setInteger(MediaFormat.KEY_WIDTH, width);
+                mediaFormat.setInteger(MediaFormat.KEY_HEIGHT, height);
+            }
+            if (rotation > 0) {
+                mediaFormat.setInteger(KEY_ROTATION, rotation);
+            }
+            if (frameRate > 0) {
+                mediaFormat.setInteger(MediaFormat.KEY_FRAME_RATE, Math.round(frameRate));
+            }
+            if (profile >= 0) {
+                mediaFormat.setInteger(MediaFormat.KEY_PROFILE, profile);
+            }
+            if (level >= 0) {
+                mediaFormat.setInteger(KEY_LEVEL, level);
+            }
+            if (sampleRate > 0) {
+                mediaFormat.setInteger(MediaFormat.KEY_SAMPLE_RATE, sampleRate);
+            }
+            if (channelCount > 0) {
+                mediaFormat.setInteger(MediaFormat.KEY_CHANNEL_COUNT, channelCount);
+            }
+            if (keyFrameIntervalUs >= 0) {
+                mediaFormat.setFloat(MediaFormat.KEY_I_FRAME_INTERVAL, keyFrameIntervalUs / 1_000_000f);
+            }
+            return mediaFormat;
+        }
+
+        private static int getInt(@NonNull MediaFormat mediaFormat, @NonNull String key) {
+            Number value = MediaFormatUtils.getNumber(mediaFormat, key);
+            return value != null ? value.intValue() : UNKNOWN;
+        }
+
+        @Override
+        @NonNull
+        public String toString() {
+            return "Track{mimeType=" + mimeType
+                    + ", durationUs=" + durationUs
+                    + ", bitrate=" + bitrate
+                    + ", width=" + width
+                    + ", height=" + height
+                    + ", rotation=" + rotation
+                    + ", frameRate=" + frameRate
+                    + ", profile=" + profile
+                    + ", level=" + level
+                    + ", sampleRate=" + sampleRate
+                    + ", channelCount=" + channelCount
+                    + ", sampleCount=" + sampleCount
+                    + ", keyFrameCount=" + keyFrameCount
+                    + ", keyFrameIntervalUs=" + keyFrameIntervalUs
+                    + ", maxKeyFrameIntervalUs=" + maxKeyFrameIntervalUs
+                    + '}';
+        }
+
+        static final class Builder {
+            @Nullable private String mimeType;
+            private long durationUs = UNKNOWN;
+            private int bitrate = UNKNOWN;
+            private int width = UNKNOWN;
+            private int height = UNKNOWN;
+            private int rotation;
+            private float frameRate = UNKNOWN;
+            private int profile = UNKNOWN;
+            private int level = UNKNOWN;
+            private int sampleRate = UNKNOWN;
+            private int channelCount = UNKNOWN;
+            private int sampleCount = UNKNOWN;
+            private int keyFrameCount = UNKNOWN;
+            private long keyFrameIntervalUs = UNKNOWN;
+            private long maxKeyFrameIntervalUs = UNKNOWN;
+
+            @NonNull
+            Builder setMimeType(@Nullable String mimeType) {
+                this.mimeType = mimeType;
+                return this;
+            }
+
+            @NonNull
+            Builder setDurationUs(long durationUs) {
+                this.durationUs = durationUs;
+                return this;
+            }
+
+            @NonNull
+            Builder setBitrate(int bitrate) {
+                this.bitrate = bitrate;
+                return this;
+            }
+
+            @NonNull
+            Builder setSize(int width, int height) {
+                this.width = width;
+                this.height = height;
+                return this;
+            }
+
+            @NonNull
+            Builder setRotation(int rotation) {
+                this.rotation = rotation;
+                return this;
+            }
+
+            @NonNull
+            Builder setFrameRate(float frameRate) {
+                this.frameRate = frameRate;
+                return this;
+            }
+
+            @NonNull
+            Builder setProfileLevel(int profile, int level) {
+                this.profile = profile;
+                this.level = level;
+                return this;
+            }
+
+            @NonNull
+            Builder setSampleRate(int sampleRate) {
+                this.sampleRate = sampleRate;
+                return this;
+            }
+
+            @NonNull
+            Builder setChannelCount(int channelCount) {
+                this.channelCount = channelCount;
+                return this;
+            }
+
+            @NonNull
+            Builder setSampleCount(int sampleCount) {
+                this.sampleCount = sampleCount;
+                return this;
+            }
+
+            @NonNull
+            Builder setKeyFrames(int keyFrameCount, long keyFrameIntervalUs, long maxKeyFrameIntervalUs) {
+                this.keyFrameCount = keyFrameCount;
+                this.keyFrameIntervalUs = keyFrameIntervalUs;
+                this.maxKeyFrameIntervalUs = maxKeyFrameIntervalUs;
+                return this;
+            }
+
+            @NonNull
+            Track build() {
+                return new Track(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,687 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.probe;
+
+import android.media.MediaCodecInfo.CodecProfileLevel;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.linkedin.android.litr.MimeType;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Parser of ISO base media (MP4, 3GP, QuickTime) container headers. Only the top level box headers and the movie (moov) box
+ * are read, media data is never touched. Parser gives up (returns null) on anything it does not fully understand, such as
+ * fragmented or encrypted media, or unknown audio/video codecs, so that caller can fall back to platform extractor.
+ */
+final class Mp4HeaderParser {
+
+    private static final String TAG = Mp4HeaderParser.class.getSimpleName();
+
+    // sample tables of long recordings can take a few megabytes, larger movie boxes are not worth parsing
+    static final int MAX_MOVIE_BOX_SIZE = 16 * 1024 * 1024;
+
+    static final Set<String> FIRST_BOX_TYPES = new HashSet<>(Arrays.asList(
+            "ftyp", "moov", "mdat", "free", "skip", "wide", "pnot", "uuid"));
+
+    private static final int FIXED_ONE = 0x10000;
+    private static final long US_IN_SECOND = 1_000_000L;
+
+    private Mp4HeaderParser() {}
+
+    /**
+     * Parse container headers
+     * @param channel channel to read media from, must be seekable
+     * @return media summary, null if media is not an ISO base media file, or cannot be summarized from its headers alone
+     * @throws IOException if reading from a channel fails
+     */
+    @Nullable
+    static MediaProbeResult parse(@NonNull FileChannel channel) throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(16);
+
+        long position = 0;
+        while (size - position >= 8) {
+            header.clear();
+            header.limit(8);
+            readFully(channel, header, position);
+            long boxSize = header.getInt(0) & 0xFFFFFFFFL;
+            String type = getFourCc(header, 4);
+            int headerSize = 8;
+            if (boxSize == 1) {
+                header.limit(16);
+                readFully(channel, header, position + 8);
+                boxSize = header.getLong(8);
+                headerSize = 16;
+            } else if (boxSize == 0) {
+                boxSize = size - position;
+            }
+
+            if (boxSize < headerSize || position == 0 && !FIRST_BOX_TYPES.contains(type)) {
+                return null;
+            }
+
+            if ("moov".equals(type)) {
+                long movieBoxSize = boxSize - headerSize;
+                if (movieBoxSize > MAX_MOVIE_BOX_SIZE) {
+                    Log.d(TAG, "Movie box is too large to parse: " + movieBoxSize);
+                    return null;
+                }
+                ByteBuffer movieBox = ByteBuffer.allocate((int) movieBoxSize);
+                readFully(channel, movieBox, position + headerSize);
+                try {
+                    return parseMovie(movieBox, size);
+                } catch (IndexOutOfBoundsException | IllegalArgumentException ex) {
+                    Log.w(TAG, "Malformed movie box", ex);
+                    return null;
+                }
+            }
+
+            position += boxSize;
+        }
+        return null;
+    }
+
+    @Nullable
+    private static MediaProbeResult parseMovie(@NonNull ByteBuffer buffer, long size) {
+        Movie movie = new Movie();
+        parseBoxes(buffer, 0, buffer.limit(), (type, start, end) -> {
+            switch (type) {
+                case "mvhd":
+                    int version = buffer.get(start);
+                    movie.timescale = buffer.getInt(start + (version == 1 ? 20 : 12)) & 0xFFFFFFFFL;
+                    movie.duration = getDuration(buffer, start + (version == 1 ? 24 : 16), version);
+                    break;
+                case "trak":
+                    TrackBox trackBox = new TrackBox();
+                    parseTrackBoxes(buffer, start, end, trackBox);
+                    movie.trackBoxes.add(trackBox);
+                    break;
+                case "mvex":
+                    movie.isFragmented = true;
+                    break;
+                default:
+                    break;
+            }
+        });
+
+        if (movie.isFragmented) {
+            // samples are described in fragments, which are spread across the file
+            return null;
+        }
+
+        List<MediaProbeResult.Track> tracks = new ArrayList<>(movie.trackBoxes.size());
+        long maxTrackDurationUs = MediaProbeResult.UNKNOWN;
+        int orientationHint = 0;
+        boolean hasVideo = false;
+        for (TrackBox trackBox : movie.trackBoxes) {
+            if (!isSupportedHandler(trackBox.handler)) {
+                continue;
+            }
+            MediaProbeResult.Track track = buildTrack(buffer, trackBox);
+            if (track == null) {
+                return null;
+            }
+            tracks.add(track);
+            maxTrackDurationUs = Math.max(maxTrackDurationUs, track.getDurationUs());
+            if (track.isVideo() && !hasVideo) {
+                orientationHint = track.getRotation();
+                hasVideo = true;
+            }
+        }
+
+        long durationUs = toUs(movie.duration, movie.timescale);
+        return new MediaProbeResult(size,
+                                    durationUs > 0 ? durationUs : maxTrackDurationUs,
+                                    orientationHint,
+                                    tracks,
+                                    true);
+    }
+
+    private static void parseTrackBoxes(@NonNull ByteBuffer buffer, int start, int end, @NonNull TrackBox trackBox) {
+        parseBoxes(buffer, start, end, (type, boxStart, boxEnd) -> {
+            switch (type) {
+                case "mdia":
+                case "minf":
+                case "stbl":
+                    parseTrackBoxes(buffer, boxStart, boxEnd, trackBox);
+                    break;
+                case "tkhd":
+                    trackBox.rotation = getRotation(buffer, boxStart + (buffer.get(boxStart) == 1 ? 52 : 40));
+                    break;
+                case "mdhd":
+                    int version = buffer.get(boxStart);
+                    trackBox.timescale = buffer.getInt(boxStart + (version == 1 ? 20 : 12)) & 0xFFFFFFFFL;
+                    trackBox.duration = getDuration(buffer, boxStart + (version == 1 ? 24 : 16), version);
+                    break;
+                case "hdlr":
+                    trackBox.handler = getFourCc(buffer, boxStart + 8);
+                    break;
+                case "stsd":
+                    if (buffer.getInt(boxStart + 4) > 0) {
+                        trackBox.sampleEntryStart = boxStart + 8;
+                        trackBox.sampleEntryEnd = boxStart + 8 + buffer.getInt(boxStart + 8);
+                        if (trackBox.sampleEntryEnd > boxEnd || trackBox.sampleEntryEnd < trackBox.sampleEntryStart + 16) {
+                            throw new IllegalArgumentException("Malformed sample entry");
+                        }
+                    }
+                    break;
+                case "stts":
+                    trackBox.timeToSampleStart = boxStart;
+                    break;
+                case "stss":
+                    trackBox.syncSampleStart = boxStart;
+                    break;
+                case "stsz":
+                    parseSampleSizes(buffer, boxStart, trackBox);
+                    break;
+                case "stz2":
+                    parseCompactSampleSizes(buffer, boxStart, trackBox);
+                    break;
+                default:
+                    break;
+            }
+        });
+    }
+
+    private static void parseSampleSizes(@NonNull ByteBuffer buffer, int start, @NonNull TrackBox trackBox) {
+        long sampleSize = buffer.getInt(start + 4) & 0xFFFFFFFFL;
+        trackBox.sampleCount = buffer.getInt(start + 8);
+        if (sampleSize > 0) {
+            trackBox.totalSampleSize = sampleSize * trackBox.sampleCount;
+        } else {
+            long totalSampleSize = 0;
+            for (int sample = 0; sample < trackBox.sampleCount; sample++) {
+                totalSampleSize += buffer.getInt(start + 12 + 4 * sample) & 0xFFFFFFFFL;
+            }
+            trackBox.totalSampleSize = totalSampleSize;
+        }
+    }
+
+    private static void parseCompactSampleSizes(@NonNull ByteBuffer buffer, int start, @NonNull TrackBox trackBox) {
+        int fieldSize = buffer.get(start + 7) & 0xFF;
+        trackBox.sampleCount = buffer.getInt(start + 8);
+        long totalSampleSize = 0;
+        for (int sample = 0; sample < trackBox.sampleCount; sample++) {
+            switch (fieldSize) {
+                case 4:
+                    int sizes = buffer.get(start + 12 + sample / 2) & 0xFF;
+                    totalSampleSize += sample % 2 == 0 ? sizes >> 4 : sizes & 0x0F;
+                    break;
+                case 8:
+                    totalSampleSize += buffer.get(start + 12 + sample) & 0xFF;
+                    break;
+                case 16:
+                    totalSampleSize += buffer.getShort(start + 12 + 2 * sample) & 0xFFFF;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid sample size field size " + fieldSize);
+            }
+        }
+        trackBox.totalSampleSize = totalSampleSize;
+    }
+
+    @Nullable
+    private static MediaProbeResult.Track buildTrack(@NonNull ByteBuffer buffer, @NonNull TrackBox trackBox) {
+        if (trackBox.sampleEntryStart < 0) {
+            return null;
+        }
+
+        MediaProbeResult.Track.Builder builder = new MediaProbeResult.Track.Builder();
+        String sampleEntryType = getFourCc(buffer, trackBox.sampleEntryStart + 4);
+        long durationUs = toUs(trackBox.duration, trackBox.timescale);
+        builder.setDurationUs(durationUs);
+
+        long bitrate = MediaProbeResult.UNKNOWN;
+        String mimeType;
+        switch (trackBox.handler) {
+            case "vide":
+                mimeType = getVideoMimeType(sampleEntryType);
+                if (mimeType == null) {
+                    Log.d(TAG, "Unsupported video sample entry " + sampleEntryType);
+                    return null;
+                }
+                parseVisualSampleEntry(buffer, trackBox, builder);
+                builder.setRotation(trackBox.rotation);
+                if (durationUs > 0 && trackBox.sampleCount > 0) {
+                    builder.setFrameRate(trackBox.sampleCount * (float) US_IN_SECOND / durationUs);
+                }
+                parseKeyFrames(buffer, trackBox, durationUs, builder);
+                break;
+            case "soun":
+                int oti = parseAudioSampleEntry(buffer, trackBox, builder);
+                mimeType = getAudioMimeType(sampleEntryType, oti);
+                if (mimeType == null) {
+                    Log.d(TAG, "Unsupported audio sample entry " + sampleEntryType + ", object type " + oti);
+                    return null;
+                }
+                bitrate = trackBox.declaredBitrate;
+                break;
+            default:
+                mimeType = getTextMimeType(sampleEntryType);
+                break;
+        }
+        builder.setMimeType(mimeType);
+
+        if (trackBox.sampleCount >= 0) {
+            builder.setSampleCount(trackBox.sampleCount);
+            if (bitrate <= 0 && durationUs > 0) {
+                bitrate = trackBox.totalSampleSize * 8 * US_IN_SECOND / durationUs;
+            }
+        }
+        if (bitrate > 0 && bitrate <= Integer.MAX_VALUE) {
+            builder.setBitrate((int) bitrate);
+        }
+
+        return builder.build();
+    }
+
+    private static void parseVisualSampleEntry(@NonNull ByteBuffer buffer,
+                                               @NonNull TrackBox trackBox,
+                                               @NonNull MediaProbeResult.Track.Builder builder) {
+        int start = trackBox.sampleEntryStart;
+        builder.setSize(buffer.getShort(start + 32) & 0xFFFF, buffer.getShort(start + 34) & 0xFFFF);
+
+        if (trackBox.sampleEntryEnd - start <= 86) {
+            return;
+        }
+        parseBoxes(buffer, start + 86, trackBox.sampleEntryEnd, (type, boxStart, boxEnd) -> {
+            switch (type) {
+                case "avcC":
+                    builder.setProfileLevel(getAvcProfile(buffer.get(boxStart + 1) & 0xFF),
+                                            getAvcLevel(buffer.get(boxStart + 3) & 0xFF));
+                    break;
+                case "hvcC":
+                    int profileTierByte = buffer.get(boxStart + 1) & 0xFF;
+                    builder.setProfileLevel(getHevcProfile(profileTierByte & 0x1F),
+                                            getHevcLevel(buffer.get(boxStart + 12) & 0xFF, (profileTierByte & 0x20) != 0));
+                    break;
+                default:
+                    break;
+            }
+        });
+    }
+
+    /**
+     * Parse audio sample entry
+     * @return MPEG-4 object type indication if sample entry has elementary stream descriptor, -1 otherwise
+     */
+    private static int parseAudioSampleEntry(@NonNull ByteBuffer buffer,
+                                             @NonNull TrackBox trackBox,
+                                             @NonNull MediaProbeResult.Track.Builder builder) {
+        int start = trackBox.sampleEntryStart;
+        int version = buffer.getShort(start + 16) & 0xFFFF;
+        int childrenStart;
+        if (version == 2) {
+            // QuickTime sound sample description version 2
+            builder.setSampleRate((int) Double.longBitsToDouble(buffer.getLong(start + 40)));
+            builder.setChannelCount(buffer.getInt(start + 48));
+            childrenStart = start + 72;
+        } else {
+            builder.setChannelCount(buffer.getShort(start + 24) & 0xFFFF);
+            builder.setSampleRate((buffer.getInt(start + 32) >>> 16));
+            childrenStart = start + (version == 1 ? 52 : 36);
+        }
+
+        int[] objectTypeIndication = {MediaProbeResult.UNKNOWN};
+        if (trackBox.sampleEntryEnd - childrenStart >= 8) {
+            parseBoxes(buffer, childrenStart, trackBox.sampleEntryEnd, (type, boxStart, boxEnd) -> {
+                if ("esds".equals(type)) {
+                    objectTypeIndication[0] = parseElementaryStreamDescriptor(buffer, boxStart + 4, trackBox);
+                }
+            });
+        }
+        return objectTypeIndication[0];
+    }
+
+    private static int parseElementaryStreamDescriptor(@NonNull ByteBuffer buffer, int start, @NonNull TrackBox trackBox) {
+        int position = start;
+        if (buffer.get(position++) != 0x03) {
+            return MediaProbeResult.UNKNOWN;
+        }
+        position = skipDescriptorLength(buffer, position);
+        position += 2; // ES_ID
+        int flags = buffer.get(position++);
+        if ((flags & 0x80) != 0) {
+            position += 2; // dependsOn_ES_ID
+        }
+        if ((flags & 0x40) != 0) {
+            position += 1 + (buffer.get(position) & 0xFF); // URL
+        }
+        if ((flags & 0x20) != 0) {
+            position += 2; // OCR_ES_Id
+        }
+
+        if (buffer.get(position++) != 0x04) {
+            return MediaProbeResult.UNKNOWN;
+        }
+        position = skipDescriptorLength(buffer, position);
+        trackBox.declaredBitrate = buffer.getInt(position + 9) & 0xFFFFFFFFL;
+        return buffer.get(position) & 0xFF;
+    }
+
+    private static int skipDescriptorLength(@NonNull ByteBuffer buffer, int position) {
+        for (int index = 0; index < 4; index++) {
+            if ((buffer.get(position++) & 0x80) == 0) {
+                break;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Count key frames and measure intervals between them, using decoding times from time to sample box
+     */
+    private static void parseKeyFrames(@NonNull ByteBuffer buffer,
+                                       @NonNull TrackBox trackBox,
+                                       long durationUs,
+                                       @NonNull MediaProbeResult.Track.Builder builder) {
+        if (trackBox.syncSampleStart < 0) {
+            // no sync sample box means that every sample is a sync sample
+            if (trackBox.sampleCount >= 0) {
+                builder.setKeyFrames(trackBox.sampleCount, 0, 0);
+            }
+            return;
+        }
+
+        int keyFrameCount = buffer.getInt(trackBox.syncSampleStart + 4);
+        if (keyFrameCount <= 0) {
+            builder.setKeyFrames(0, MediaProbeResult.UNKNOWN, MediaProbeResult.UNKNOWN);
+            return;
+        }
+        long keyFrameIntervalUs = durationUs > 0 ? durationUs / keyFrameCount : MediaProbeResult.UNKNOWN;
+        if (keyFrameCount == 1 || trackBox.timeToSampleStart < 0 || trackBox.timescale <= 0) {
+            builder.setKeyFrames(keyFrameCount, keyFrameIntervalUs, keyFrameCount == 1 ? durationUs : MediaProbeResult.UNKNOWN);
+            return;
+        }
+
+        int entryCount = buffer.getInt(trackBox.timeToSampleStart + 4);
+        int entry = 0;
+        long entryFirstSample = 1;
+        long entryTime = 0;
+        long previousKeyFrameTime = -1;
+        long maxKeyFrameInterval = 0;
+        for (int keyFrame = 0; keyFrame < keyFrameCount; keyFrame++) {
+            long sample = buffer.getInt(trackBox.syncSampleStart + 8 + 4 * keyFrame) & 0xFFFFFFFFL;
+            long sampleCount = 0;
+            long sampleDelta = 0;
+            while (entry < entryCount) {
+                sampleCount = buffer.getInt(trackBox.timeToSampleStart + 8 + 8 * entry) & 0xFFFFFFFFL;
+                sampleDelta = buffer.getInt(trackBox.timeToSampleStart + 12 + 8 * entry) & 0xFFFFFFFFL;
+                if (sample < entryFirstSample + sampleCount) {
+                    break;
+                }
+                entryFirstSample += sampleCount;
+                entryTime += sampleCount * sampleDelta;
+                entry++;
+            }
+            if (entry >= entryCount) {
+                // sync sample is not described by time to sample box
+                break;
+            }
+            long keyFrameTime = entryTime + (sample - entryFirstSample) * sampleDelta;
+            if (previousKeyFrameTime >= 0) {
+                maxKeyFrameInterval = Math.max(maxKeyFrameInterval, keyFrameTime - previousKeyFrameTime);
+            }
+            previousKeyFrameTime = keyFrameTime;
+        }
+        builder.setKeyFrames(keyFrameCount, keyFrameIntervalUs, toUs(maxKeyFrameInterval, trackBox.timescale));
+    }
+
+    static void parseBoxes(@NonNull ByteBuffer buffer, int start, int end, @NonNull BoxVisitor visitor) {
+        int position = start;
+        while (end - position >= 8) {
+            long boxSize = buffer.getInt(position) & 0xFFFFFFFFL;
+            int headerSize = 8;
+            if (boxSize == 1) {
+                boxSize = buffer.getLong(position + 8);
+                headerSize = 16;
+            } else if (boxSize == 0) {
+                boxSize = end - position;
+            }
+            if (boxSize < headerSize || boxSize > end - position) {
+                throw new IllegalArgumentException("Malformed box at " + position);
+            }
+            visitor.visit(getFourCc(buffer, position + 4), position + headerSize, (int) (position + boxSize));
+            position += (int) boxSize;
+        }
+    }
+
+    static long getDuration(@NonNull ByteBuffer buffer, int position, int version) {
+        long duration = version == 1 ? buffer.getLong(position) : buffer.getInt(position) & 0xFFFFFFFFL;
+        // all ones means that duration is unknown
+        return duration == -1 || version != 1 && duration == 0xFFFFFFFFL ? MediaProbeResult.UNKNOWN : duration;
+    }
+
+    private static int getRotation(@NonNull ByteBuffer buffer, int matrixStart) {
+        int a = buffer.getInt(matrixStart);
+        int b = buffer.getInt(matrixStart + 4);
+        int c = buffer.getInt(matrixStart + 12);
+        int d = buffer.getInt(matrixStart + 16);
+        if (a == 0 && b == FIXED_ONE && c == -FIXED_ONE && d == 0) {
+            return 90;
+        } else if (a == -FIXED_ONE && b == 0 && c == 0 && d == -FIXED_ONE) {
+            return 180;
+        } else if (a == 0 && b == -FIXED_ONE && c == FIXED_ONE && d == 0) {
+            return 270;
+        }
+        return 0;
+    }
+
+    static long toUs(long value, long timescale) {
+        if (value < 0 || timescale <= 0) {
+            return MediaProbeResult.UNKNOWN;
+        }
+        return value / timescale * US_IN_SECOND + value % timescale * US_IN_SECOND / timescale;
+    }
+
+    static boolean isSupportedHandler(@Nullable String handler) {
+        return "vide".equals(handler)
+                || "soun".equals(handler)
+                || "text".equals(handler)
+                || "sbtl".equals(handler)
+                || "subt".equals(handler);
+    }
+
+    @Nullable
+    private static String getVideoMimeType(@NonNull String sampleEntryType) {
+        switch (sampleEntryType) {
+            case "avc1":
+            case "avc3":
+                return MimeType.VIDEO_AVC;
+            case "hvc1":
+            case "hev1":
+                return MimeType.VIDEO_HEVC;
+            case "vp08":
+                return MimeType.VIDEO_VP8;
+            case "vp09":
+                return MimeType.VIDEO_VP9;
+            case "av01":
+                return "video/av01";
+            case "mp4v":
+                return "video/mp4v-es";
+            case "s263":
+            case "h263":
+                return "video/3gpp";
+            default:
+                return null;
+        }
+    }
+
+    @Nullable
+    private static String getAudioMimeType(@NonNull String sampleEntryType, int objectTypeIndication) {
+        switch (sampleEntryType) {
+            case "mp4a":
+                if (objectTypeIndication == 0x69 || objectTypeIndication == 0x6B) {
+                    return "audio/mpeg";
+                }
+                return objectTypeIndication == MediaProbeResult.UNKNOWN
+                        || objectTypeIndication == 0x40
+                        || objectTypeIndication >= 0x66 && objectTypeIndication <= 0x68
+                        ? MimeType.AUDIO_AAC
+                        : null;
+            case ".mp3":
+                return "audio/mpeg";
+            case "samr":
+                return "audio/3gpp";
+            case "sawb":
+                return "audio/amr-wb";
+            case "Opus":
+                return MimeType.AUDIO_OPUS;
+            case "fLaC":
+                return "audio/flac";
+            case "ac-3":
+                return "audio/ac3";
+            case "ec-3":
+                return "audio/eac3";
+            case "alac":
+                return "audio/alac";
+            case "sowt":
+            case "twos":
+            case "lpcm":
+            case "ipcm":
+                return MimeType.AUDIO_RAW;
+            default:
+                return null;
+        }
+    }
+
+    @NonNull
+    private static String getTextMimeType(@NonNull String sampleEntryType) {
+        switch (sampleEntryType) {
+            case "tx3g":
+                return "text/3gpp-tt";
+            case "wvtt":
+                return "text/vtt";
+            default:
+                return "text/" + sampleEntryType;
+        }
+    }
+
+    private static int getAvcProfile(int profileIdc) {
+        switch (profileIdc) {
+            case 66: return CodecProfileLevel.AVCProfileBaseline;
+            case 77: return CodecProfileLevel.AVCProfileMain;
+            case 88: return CodecProfileLevel.AVCProfileExtended;
+            case 100: return CodecProfileLevel.AVCProfileHigh;
+            case 110: return CodecProfileLevel.AVCProfileHigh10;
+            case 122: return CodecProfileLevel.AVCProfileHigh422;
+            case 244: return CodecProfileLevel.AVCProfileHigh444;
+            default: return MediaProbeResult.UNKNOWN;
+        }
+    }
+
+    private static int getAvcLevel(int levelIdc) {
+        switch (levelIdc) {
+            case 9: return CodecProfileLevel.AVCLevel1b;
+            case 10: return CodecProfileLevel.AVCLevel1;
+            case 11: return CodecProfileLevel.AVCLevel11;
+            case 12: return CodecProfileLevel.AVCLevel12;
+            case 13: return CodecProfileLevel.AVCLevel13;
+            case 20: return CodecProfileLevel.AVCLevel2;
+            case 21: return CodecProfileLevel.AVCLevel21;
+            case 22: return CodecProfileLevel.AVCLevel22;
+            case 30: return CodecProfileLevel.AVCLevel3;
+            case 31: return CodecProfileLevel.AVCLevel31;
+            case 32: return CodecProfileLevel.AVCLevel32;
+            case 40: return CodecProfileLevel.AVCLevel4;
+            case 41: return CodecProfileLevel.AVCLevel41;
+            case 42: return CodecProfileLevel.AVCLevel42;
+            case 50: return CodecProfileLevel.AVCLevel5;
+            case 51: return CodecProfileLevel.AVCLevel51;
+            case 52: return CodecProfileLevel.AVCLevel52;
+            default: return MediaProbeResult.UNKNOWN;
+        }
+    }
+
+    private static int getHevcProfile(int profileIdc) {
+        switch (profileIdc) {
+            case 1: return CodecProfileLevel.HEVCProfileMain;
+            case 2: return CodecProfileLevel.HEVCProfileMain10;
+            default: return MediaProbeResult.UNKNOWN;
+        }
+    }
+
+    private static int getHevcLevel(int levelIdc, boolean isHighTier) {
+        int level;
+        switch (levelIdc) {
+            case 30: level = CodecProfileLevel.HEVCMainTierLevel1; break;
+            case 60: level = CodecProfileLevel.HEVCMainTierLevel2; break;
+            case 63: level = CodecProfileLevel.HEVCMainTierLevel21; break;
+            case 90: level = CodecProfileLevel.HEVCMainTierLevel3; break;
+            case 93: level = CodecProfileLevel.HEVCMainTierLevel31; break;
+            case 120: level = CodecProfileLevel.HEVCMainTierLevel4; break;
+            case 123: level = CodecProfileLevel.HEVCMainTierLevel41; break;
+            case 150: level = CodecProfileLevel.HEVCMainTierLevel5; break;
+            case 153: level = CodecProfileLevel.HEVCMainTierLevel51; break;
+            case 156: level = CodecProfileLevel.HEVCMainTierLevel52; break;
+            case 180: level = CodecProfileLevel.HEVCMainTierLevel6; break;
+            case 183: level = CodecProfileLevel.HEVCMainTierLevel61; break;
+            case 186: level = CodecProfileLevel.HEVCMainTierLevel62; break;
+            default: return MediaProbeResult.UNKNOWN;
+        }
+        // high tier level constant immediately follows main tier one
+        return isHighTier ? level << 1 : level;
+    }
+
+    @NonNull
+    static String getFourCc(@NonNull ByteBuffer buffer, int position) {
+        byte[] bytes = new byte[4];
+        for (int index = 0; index < bytes.length; index++) {
+            bytes[index] = buffer.get(position + index);
+        }
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    static void readFully(@NonNull FileChannel channel, @NonNull ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int bytesRead = channel.read(buffer, position);
+            if (bytesRead < 0) {
+                throw new EOFException("Unexpected end of media at " + position);
+            }
+            position += bytesRead;
+        }
+    }
+
+    interface BoxVisitor {
+        void visit(@NonNull String type, int start, int end);
+    }
+
+    private static final class Movie {
+        private long timescale;
+        private long duration = MediaProbeResult.UNKNOWN;
+        private boolean isFragmented;
+        private final List<TrackBox> trackBoxes = new ArrayList<>();
+    }
+
+    private static final class TrackBox {
+        @Nullable private String handler;
+        private int rotation;
+        private long timescale;
+        private long duration = MediaProbeResult.UNKNOWN;
+        private int sampleEntryStart = -1;
+        private int sampleEntryEnd = -1;
+        private int timeToSampleStart = -1;
+        private int syncSampleStart = -1;
+        private int sampleCount = MediaProbeResult.UNKNOWN;
+        private long totalSampleSize;
+        private long declaredBitrate = MediaProbeResult.UNKNOWN;
+    }
+}
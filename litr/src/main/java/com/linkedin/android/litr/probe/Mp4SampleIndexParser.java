@@ -0,0 +1,370 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.probe;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builder of a {@link SampleIndex} from sample tables of ISO base media (MP4, 3GP, QuickTime) movie box. Tracks are indexed
+ * in the same order {@link MediaProbe} reports them. Like {@link Mp4HeaderParser}, this parser gives up (returns null) on
+ * anything it does not fully understand, such as fragmented media or edit lists with multiple segments.
+ */
+final class Mp4SampleIndexParser {
+
+    private static final String TAG = Mp4SampleIndexParser.class.getSimpleName();
+
+    // a few hours of 60 fps video, index of more samples would hardly be compact
+    private static final int MAX_SAMPLE_COUNT = 2 * 1024 * 1024;
+
+    private Mp4SampleIndexParser() {}
+
+    /**
+     * Build an index from sample tables
+     * @param channel channel to read media from, must be seekable
+     * @return sample index, null if media is not an ISO base media file, or its samples cannot be indexed from tables
+     * @throws IOException if reading from a channel fails
+     */
+    @Nullable
+    static SampleIndex parse(@NonNull FileChannel channel) throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(16);
+
+        long position = 0;
+        while (size - position >= 8) {
+            header.clear();
+            header.limit(8);
+            Mp4HeaderParser.readFully(channel, header, position);
+            long boxSize = header.getInt(0) & 0xFFFFFFFFL;
+            String type = Mp4HeaderParser.getFourCc(header, 4);
+            int headerSize = 8;
+            if (boxSize == 1) {
+                header.limit(16);
+                Mp4HeaderParser.readFully(channel, header, position + 8);
+                boxSize = header.getLong(8);
+                headerSize = 16;
+            } else if (boxSize == 0) {
+                boxSize = size - position;
+            }
+
+            if (boxSize < headerSize || position == 0 && !Mp4HeaderParser.FIRST_BOX_TYPES.contains(type)) {
+                return null;
+            }
+
+            if ("moov".equals(type)) {
+                long movieBoxSize = boxSize - headerSize;
+                if (movieBoxSize > Mp4HeaderParser.MAX_MOVIE_BOX_SIZE) {
+                    Log.d(TAG, "Movie box is too large to index: " + movieBoxSize);
+                    return null;
+                }
+                ByteBuffer movieBox = ByteBuffer.allocate((int) movieBoxSize);
+                Mp4HeaderParser.readFully(channel, movieBox, position + headerSize);
+                try {
+                    return parseMovie(movieBox);
+                } catch (IndexOutOfBoundsException | IllegalArgumentException ex) {
+                    Log.w(TAG, "Malformed movie box", ex);
+                    return null;
+                }
+            }
+
+            position += boxSize;
+        }
+        return null;
+    }
+
+    @Nullable
+    private static SampleIndex parseMovie(@NonNull ByteBuffer buffer) {
+        List<TrackBox> trackBoxes = new ArrayList<>();
+        long[] movieTimescale = {0};
+        boolean[] isFragmented = {false};
+        Mp4HeaderParser.parseBoxes(buffer, 0, buffer.limit(), (type, start, end) -> {
+            switch (type) {
+                case "mvhd":
+                    movieTimescale[0] = buffer.getInt(start + (buffer.get(start) == 1 ? 20 : 12)) & 0xFFFFFFFFL;
+                    break;
+                case "trak":
+                    TrackBox trackBox = new TrackBox();
+                    parseTrackBoxes(buffer, start, end, trackBox);
+                    trackBoxes.add(trackBox);
+                    break;
+                case "mvex":
+                    isFragmented[0] = true;
+                    break;
+                default:
+                    break;
+            }
+        });
+
+        if (isFragmented[0]) {
+            // samples are described in fragments, which are spread across the file
+            return null;
+        }
+
+        List<SampleIndex.Track> tracks = new ArrayList<>(trackBoxes.size());
+        for (TrackBox trackBox : trackBoxes) {
+            if (!Mp4HeaderParser.isSupportedHandler(trackBox.handler)) {
+                continue;
+            }
+            SampleIndex.Track track = buildTrack(buffer, trackBox, movieTimescale[0]);
+            if (track == null) {
+                return null;
+            }
+            tracks.add(track);
+        }
+        return new SampleIndex(tracks);
+    }
+
+    private static void parseTrackBoxes(@NonNull ByteBuffer buffer, int start, int end, @NonNull TrackBox trackBox) {
+        Mp4HeaderParser.parseBoxes(buffer, start, end, (type, boxStart, boxEnd) -> {
+            switch (type) {
+                case "edts":
+                case "mdia":
+                case "minf":
+                case "stbl":
+                    parseTrackBoxes(buffer, boxStart, boxEnd, trackBox);
+                    break;
+                case "elst":
+                    trackBox.editListStart = boxStart;
+                    break;
+                case "mdhd":
+                    trackBox.timescale = buffer.getInt(boxStart + (buffer.get(boxStart) == 1 ? 20 : 12)) & 0xFFFFFFFFL;
+                    break;
+                case "hdlr":
+                    trackBox.handler = Mp4HeaderParser.getFourCc(buffer, boxStart + 8);
+                    break;
+                case "stts":
+                    trackBox.timeToSampleStart = boxStart;
+                    break;
+                case "ctts":
+                    trackBox.compositionOffsetStart = boxStart;
+                    break;
+                case "stss":
+                    trackBox.syncSampleStart = boxStart;
+                    break;
+                case "stsz":
+                case "stz2":
+                    trackBox.sampleSizeStart = boxStart;
+                    trackBox.isCompactSampleSize = "stz2".equals(type);
+                    break;
+                case "stsc":
+                    trackBox.sampleToChunkStart = boxStart;
+                    break;
+                case "stco":
+                case "co64":
+                    trackBox.chunkOffsetStart = boxStart;
+                    trackBox.isLargeChunkOffset = "co64".equals(type);
+                    break;
+                default:
+                    break;
+            }
+        });
+    }
+
+    @Nullable
+    private static SampleIndex.Track buildTrack(@NonNull ByteBuffer buffer, @NonNull TrackBox trackBox, long movieTimescale) {
+        if (trackBox.timescale <= 0
+                || trackBox.sampleSizeStart < 0
+                || trackBox.timeToSampleStart < 0
+                || trackBox.sampleToChunkStart < 0
+                || trackBox.chunkOffsetStart < 0) {
+            return null;
+        }
+
+        int sampleCount = buffer.getInt(trackBox.sampleSizeStart + 8);
+        if (sampleCount < 0 || sampleCount > MAX_SAMPLE_COUNT) {
+            Log.d(TAG, "Cannot index " + sampleCount + " samples");
+            return null;
+        }
+        int[] sizes = new int[sampleCount];
+        for (int sample = 0; sample < sampleCount; sample++) {
+            sizes[sample] = getSampleSize(buffer, trackBox, sample);
+        }
+
+        long[] timesUs = parseSampleTimes(buffer, trackBox, sampleCount, movieTimescale);
+        long[] offsets = parseSampleOffsets(buffer, trackBox, sizes);
+        int[] syncSamples = parseSyncSamples(buffer, trackBox, sampleCount);
+        if (timesUs == null || offsets == null || syncSamples == null) {
+            return null;
+        }
+        return new SampleIndex.Track(timesUs, sizes, offsets, syncSamples);
+    }
+
+    /**
+     * Compute presentation times from decoding times, composition offsets and edit list, the way platform extractor does:
+     * initial empty edit delays the track, and media time of the first non-empty edit is subtracted from sample times.
+     */
+    @Nullable
+    private static long[] parseSampleTimes(@NonNull ByteBuffer buffer,
+                                           @NonNull TrackBox trackBox,
+                                           int sampleCount,
+                                           long movieTimescale) {
+        long delayUs = 0;
+        long shift = 0;
+        if (trackBox.editListStart >= 0) {
+            int version = buffer.get(trackBox.editListStart);
+            int entrySize = version == 1 ? 20 : 12;
+            int entryCount = buffer.getInt(trackBox.editListStart + 4);
+            int entry = 0;
+            for (; entry < entryCount; entry++) {
+                int entryStart = trackBox.editListStart + 8 + entrySize * entry;
+                long segmentDuration = version == 1 ? buffer.getLong(entryStart) : buffer.getInt(entryStart) & 0xFFFFFFFFL;
+                long mediaTime = version == 1 ? buffer.getLong(entryStart + 8) : buffer.getInt(entryStart + 4);
+                if (mediaTime != -1) {
+                    shift = mediaTime;
+                    break;
+                }
+                if (movieTimescale <= 0) {
+                    return null;
+                }
+                delayUs += Mp4HeaderParser.toUs(segmentDuration, movieTimescale);
+            }
+            if (entryCount - entry > 1) {
+                Log.d(TAG, "Edit lists with multiple segments are not supported");
+                return null;
+            }
+        }
+
+        long[] timesUs = new long[sampleCount];
+        int entryCount = buffer.getInt(trackBox.timeToSampleStart + 4);
+        int sample = 0;
+        long decodingTime = 0;
+        for (int entry = 0; entry < entryCount && sample < sampleCount; entry++) {
+            long entrySampleCount = buffer.getInt(trackBox.timeToSampleStart + 8 + 8 * entry) & 0xFFFFFFFFL;
+            long sampleDelta = buffer.getInt(trackBox.timeToSampleStart + 12 + 8 * entry) & 0xFFFFFFFFL;
+            for (long index = 0; index < entrySampleCount && sample < sampleCount; index++) {
+                timesUs[sample++] = decodingTime;
+                decodingTime += sampleDelta;
+            }
+        }
+        if (sample != sampleCount) {
+            return null;
+        }
+
+        if (trackBox.compositionOffsetStart >= 0) {
+            entryCount = buffer.getInt(trackBox.compositionOffsetStart + 4);
+            sample = 0;
+            for (int entry = 0; entry < entryCount && sample < sampleCount; entry++) {
+                long entrySampleCount = buffer.getInt(trackBox.compositionOffsetStart + 8 + 8 * entry) & 0xFFFFFFFFL;
+                // version 0 offsets are unsigned, but negative ones are written in the wild, and are meant as such
+                int sampleOffset = buffer.getInt(trackBox.compositionOffsetStart + 12 + 8 * entry);
+                for (long index = 0; index < entrySampleCount && sample < sampleCount; index++) {
+                    timesUs[sample++] += sampleOffset;
+                }
+            }
+        }
+
+        for (sample = 0; sample < sampleCount; sample++) {
+            long time = timesUs[sample] - shift;
+            long timeUs = time >= 0
+                    ? Mp4HeaderParser.toUs(time, trackBox.timescale)
+                    : -Mp4HeaderParser.toUs(-time, trackBox.timescale);
+            timesUs[sample] = timeUs + delayUs;
+        }
+        return timesUs;
+    }
+
+    @Nullable
+    private static long[] parseSampleOffsets(@NonNull ByteBuffer buffer, @NonNull TrackBox trackBox, @NonNull int[] sizes) {
+        long[] offsets = new long[sizes.length];
+        int chunkCount = buffer.getInt(trackBox.chunkOffsetStart + 4);
+        int entryCount = buffer.getInt(trackBox.sampleToChunkStart + 4);
+
+        int entry = 0;
+        int sample = 0;
+        for (int chunk = 1; chunk <= chunkCount && sample < sizes.length; chunk++) {
+            while (entry + 1 < entryCount
+                    && (buffer.getInt(trackBox.sampleToChunkStart + 8 + 12 * (entry + 1)) & 0xFFFFFFFFL) <= chunk) {
+                entry++;
+            }
+            if (entry >= entryCount) {
+                return null;
+            }
+            long samplesPerChunk = buffer.getInt(trackBox.sampleToChunkStart + 12 + 12 * entry) & 0xFFFFFFFFL;
+            long offset = trackBox.isLargeChunkOffset
+                    ? buffer.getLong(trackBox.chunkOffsetStart + 8 + 8 * (chunk - 1))
+                    : buffer.getInt(trackBox.chunkOffsetStart + 8 + 4 * (chunk - 1)) & 0xFFFFFFFFL;
+            for (long index = 0; index < samplesPerChunk && sample < sizes.length; index++) {
+                offsets[sample] = offset;
+                offset += sizes[sample++];
+            }
+        }
+        return sample == sizes.length ? offsets : null;
+    }
+
+    @Nullable
+    private static int[] parseSyncSamples(@NonNull ByteBuffer buffer, @NonNull TrackBox trackBox, int sampleCount) {
+        int[] syncSamples;
+        if (trackBox.syncSampleStart < 0) {
+            // no sync sample box means that every sample is a sync sample
+            syncSamples = new int[sampleCount];
+            for (int sample = 0; sample < sampleCount; sample++) {
+                syncSamples[sample] = sample;
+            }
+            return syncSamples;
+        }
+
+        int syncSampleCount = buffer.getInt(trackBox.syncSampleStart + 4);
+        if (syncSampleCount < 0 || syncSampleCount > sampleCount) {
+            return null;
+        }
+        syncSamples = new int[syncSampleCount];
+        int previousSyncSample = -1;
+        for (int index = 0; index < syncSampleCount; index++) {
+            // sync sample numbers are one based
+            int syncSample = buffer.getInt(trackBox.syncSampleStart + 8 + 4 * index) - 1;
+            if (syncSample <= previousSyncSample || syncSample >= sampleCount) {
+                return null;
+            }
+            syncSamples[index] = syncSample;
+            previousSyncSample = syncSample;
+        }
+        return syncSamples;
+    }
+
+    private static int getSampleSize(@NonNull ByteBuffer buffer, @NonNull TrackBox trackBox, int sample) {
+        int start = trackBox.sampleSizeStart;
+        if (!trackBox.isCompactSampleSize) {
+            int sampleSize = buffer.getInt(start + 4);
+            return sampleSize != 0 ? sampleSize : buffer.getInt(start + 12 + 4 * sample);
+        }
+        int fieldSize = buffer.get(start + 7) & 0xFF;
+        switch (fieldSize) {
+            case 4:
+                int sizes = buffer.get(start + 12 + sample / 2) & 0xFF;
+                return sample % 2 == 0 ? sizes >> 4 : sizes & 0x0F;
+            case 8:
+                return buffer.get(start + 12 + sample) & 0xFF;
+            case 16:
+                return buffer.getShort(start + 12 + 2 * sample) & 0xFFFF;
+            default:
+                throw new IllegalArgumentException("Invalid sample size field size " + fieldSize);
+        }
+    }
+
+    private static final class TrackBox {
+        @Nullable private String handler;
+        private long timescale;
+        private int editListStart = -1;
+        private int timeToSampleStart = -1;
+        private int compositionOffsetStart = -1;
+        private int syncSampleStart = -1;
+        private int sampleSizeStart = -1;
+        private boolean isCompactSampleSize;
+        private int sampleToChunkStart = -1;
+        private int chunkOffsetStart = -1;
+        private boolean isLargeChunkOffset;
+    }
+}
@@ -0,0 +1,401 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.probe;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Structural verifier of ISO base media (MP4) files. Only top level box headers and the movie (moov) box are read, so
+ * verification takes time proportional to header size, not media size. For each track, it checks that sample tables
+ * agree on sample count, that decoding timestamps increase, that sync samples are valid and video starts with one,
+ * that every chunk lies within the file, and that track duration matches expectation.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY)
+public final class Mp4StructureVerifier {
+
+    private static final String TAG = Mp4StructureVerifier.class.getSimpleName();
+
+    private Mp4StructureVerifier() {}
+
+    /**
+     * Verify media structure
+     * @param channel channel to read media from, must be seekable
+     * @param expectedTrackDurationsUs expected duration of each track, in order of tracks, negative if unknown
+     * @param durationToleranceUs maximum allowed difference between actual and expected track duration
+     * @return reason why media is invalid, null if it is valid
+     * @throws IOException if reading from a channel fails
+     */
+    @Nullable
+    public static String verify(@NonNull FileChannel channel,
+                                @NonNull long[] expectedTrackDurationsUs,
+                                long durationToleranceUs) throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(16);
+
+        long position = 0;
+        long movieBoxPosition = -1;
+        long movieBoxSize = 0;
+        while (size - position >= 8) {
+            header.clear();
+            header.limit(8);
+            Mp4HeaderParser.readFully(channel, header, position);
+            long boxSize = header.getInt(0) & 0xFFFFFFFFL;
+            String type = Mp4HeaderParser.getFourCc(header, 4);
+            int headerSize = 8;
+            if (boxSize == 1) {
+                header.limit(16);
+                Mp4HeaderParser.readFully(channel, header, position + 8);
+                boxSize = header.getLong(8);
+                headerSize = 16;
+            } else if (boxSize == 0) {
+                boxSize = size - position;
+            }
+
+            if (position == 0 && !Mp4HeaderParser.FIRST_BOX_TYPES.contains(type)) {
+                return "Not an ISO base media file";
+            }
+            if (boxSize < headerSize) {
+                return "Malformed box header at offset " + position;
+            }
+            if (boxSize > size - position) {
+                return "Box " + type + " at offset " + position + " extends past end of file of " + size + " bytes";
+            }
+            if ("moov".equals(type)) {
+                if (movieBoxPosition >= 0) {
+                    return "Multiple movie boxes";
+                }
+                movieBoxPosition = position + headerSize;
+                movieBoxSize = boxSize - headerSize;
+            }
+            position += boxSize;
+        }
+        if (position < size) {
+            return "Truncated box header at offset " + position;
+        }
+        if (movieBoxPosition < 0) {
+            return "Movie box is missing";
+        }
+        if (movieBoxSize > Mp4HeaderParser.MAX_MOVIE_BOX_SIZE) {
+            Log.w(TAG, "Movie box is too large to verify: " + movieBoxSize);
+            return null;
+        }
+
+        ByteBuffer movieBox = ByteBuffer.allocate((int) movieBoxSize);
+        Mp4HeaderParser.readFully(channel, movieBox, movieBoxPosition);
+        try {
+            return verifyMovie(movieBox, size, expectedTrackDurationsUs, durationToleranceUs);
+        } catch (IndexOutOfBoundsException | IllegalArgumentException ex) {
+            return "Malformed movie box: " + ex.getMessage();
+        }
+    }
+
+    @Nullable
+    private static String verifyMovie(@NonNull ByteBuffer buffer,
+                                      long size,
+                                      @NonNull long[] expectedTrackDurationsUs,
+                                      long durationToleranceUs) {
+        List<TrackBox> trackBoxes = new ArrayList<>();
+        boolean[] isFragmented = new boolean[1];
+        Mp4HeaderParser.parseBoxes(buffer, 0, buffer.limit(), (type, start, end) -> {
+            if ("trak".equals(type)) {
+                TrackBox trackBox = new TrackBox();
+                parseTrackBoxes(buffer, start, end, trackBox);
+                trackBoxes.add(trackBox);
+            } else if ("mvex".equals(type)) {
+                isFragmented[0] = true;
+            }
+        });
+
+        if (isFragmented[0]) {
+            // samples are described in fragments, which are spread across the file
+            Log.w(TAG, "Fragmented media cannot be verified from movie box");
+            return null;
+        }
+        if (trackBoxes.size() != expectedTrackDurationsUs.length) {
+            return "Media has " + trackBoxes.size() + " tracks, expected " + expectedTrackDurationsUs.length;
+        }
+
+        for (int track = 0; track < trackBoxes.size(); track++) {
+            String violation = verifyTrack(buffer, trackBoxes.get(track), size);
+            if (violation == null) {
+                violation = verifyDuration(trackBoxes.get(track), expectedTrackDurationsUs[track], durationToleranceUs);
+            }
+            if (violation != null) {
+                return "Track " + track + ": " + violation;
+            }
+        }
+        return null;
+    }
+
+    private static void parseTrackBoxes(@NonNull ByteBuffer buffer, int start, int end, @NonNull TrackBox trackBox) {
+        Mp4HeaderParser.parseBoxes(buffer, start, end, (type, boxStart, boxEnd) -> {
+            switch (type) {
+                case "mdia":
+                case "minf":
+                case "stbl":
+                    parseTrackBoxes(buffer, boxStart, boxEnd, trackBox);
+                    break;
+                case "mdhd":
+                    int version = buffer.get(boxStart);
+                    trackBox.timescale = buffer.getInt(boxStart + (version == 1 ? 20 : 12)) & 0xFFFFFFFFL;
+                    trackBox.duration = Mp4HeaderParser.getDuration(buffer, boxStart + (version == 1 ? 24 : 16), version);
+                    break;
+                case "hdlr":
+                    trackBox.handler = Mp4HeaderParser.getFourCc(buffer, boxStart + 8);
+                    break;
+                case "stsd":
+                    trackBox.sampleDescriptionStart = boxStart;
+                    break;
+                case "stts":
+                    trackBox.timeToSampleStart = boxStart;
+                    break;
+                case "ctts":
+                    trackBox.compositionOffsetStart = boxStart;
+                    break;
+                case "stss":
+                    trackBox.syncSampleStart = boxStart;
+                    break;
+                case "stsz":
+                case "stz2":
+                    trackBox.sampleSizeStart = boxStart;
+                    trackBox.isCompactSampleSize = "stz2".equals(type);
+                    break;
+                case "stsc":
+                    trackBox.sampleToChunkStart = boxStart;
+                    break;
+                case "stco":
+                case "co64":
+                    trackBox.chunkOffsetStart = boxStart;
+                    trackBox.isLargeChunkOffset = "co64".equals(type);
+                    break;
+                default:
+                    break;
+            }
+        });
+    }
+
+    @Nullable
+    private static String verifyTrack(@NonNull ByteBuffer buffer, @NonNull TrackBox trackBox, long size) {
+        if (trackBox.timescale <= 0) {
+            return "media header box is missing or has no timescale";
+        }
+        if (trackBox.sampleDescriptionStart < 0 || buffer.getInt(trackBox.sampleDescriptionStart + 4) <= 0) {
+            return "sample description is missing";
+        }
+        if (trackBox.sampleSizeStart < 0) {
+            return "sample size box is missing";
+        }
+        if (trackBox.timeToSampleStart < 0) {
+            return "time to sample box is missing";
+        }
+        if (trackBox.sampleToChunkStart < 0) {
+            return "sample to chunk box is missing";
+        }
+        if (trackBox.chunkOffsetStart < 0) {
+            return "chunk offset box is missing";
+        }
+
+        int sampleCount = buffer.getInt(trackBox.sampleSizeStart + 8);
+        if (sampleCount <= 0) {
+            return "no samples";
+        }
+
+        String violation = verifyTimeToSample(buffer, trackBox, sampleCount);
+        if (violation == null) {
+            violation = verifyCompositionOffsets(buffer, trackBox, sampleCount);
+        }
+        if (violation == null) {
+            violation = verifySyncSamples(buffer, trackBox, sampleCount);
+        }
+        if (violation == null) {
+            violation = verifyChunks(buffer, trackBox, sampleCount, size);
+        }
+        return violation;
+    }
+
+    /**
+     * Check that time to sample box describes every sample and that decoding timestamps increase.
+     * Only the last sample may have zero duration.
+     */
+    @Nullable
+    private static String verifyTimeToSample(@NonNull ByteBuffer buffer, @NonNull TrackBox trackBox, int sampleCount) {
+        int entryCount = buffer.getInt(trackBox.timeToSampleStart + 4);
+        long describedSampleCount = 0;
+        long duration = 0;
+        for (int entry = 0; entry < entryCount; entry++) {
+            long entrySampleCount = buffer.getInt(trackBox.timeToSampleStart + 8 + 8 * entry) & 0xFFFFFFFFL;
+            long sampleDelta = buffer.getInt(trackBox.timeToSampleStart + 12 + 8 * entry) & 0xFFFFFFFFL;
+            boolean isLastSample = entry == entryCount - 1 && entrySampleCount == 1;
+            if (sampleDelta == 0 && entrySampleCount > 0 && !isLastSample) {
+                return "decoding timestamps do not increase after sample " + (describedSampleCount + 1);
+            }
+            describedSampleCount += entrySampleCount;
+            duration += entrySampleCount * sampleDelta;
+        }
+        if (describedSampleCount != sampleCount) {
+            return "time to sample box describes " + describedSampleCount + " samples, sample size box " + sampleCount;
+        }
+        trackBox.sampleDuration = duration;
+        return null;
+    }
+
+    @Nullable
+    private static String verifyCompositionOffsets(@NonNull ByteBuffer buffer, @NonNull TrackBox trackBox, int sampleCount) {
+        if (trackBox.compositionOffsetStart < 0) {
+            return null;
+        }
+        int entryCount = buffer.getInt(trackBox.compositionOffsetStart + 4);
+        long describedSampleCount = 0;
+        for (int entry = 0; entry < entryCount; entry++) {
+            describedSampleCount += buffer.getInt(trackBox.compositionOffsetStart + 8 + 8 * entry) & 0xFFFFFFFFL;
+        }
+        if (describedSampleCount != sampleCount) {
+            return "composition offset box describes " + describedSampleCount + " samples, sample size box " + sampleCount;
+        }
+        return null;
+    }
+
+    @Nullable
+    private static String verifySyncSamples(@NonNull ByteBuffer buffer, @NonNull TrackBox trackBox, int sampleCount) {
+        if (trackBox.syncSampleStart < 0) {
+            // no sync sample box means that every sample is a sync sample
+            return null;
+        }
+        int syncSampleCount = buffer.getInt(trackBox.syncSampleStart + 4);
+        if (syncSampleCount <= 0) {
+            return "no sync samples";
+        }
+        long previousSyncSample = 0;
+        for (int index = 0; index < syncSampleCount; index++) {
+            long syncSample = buffer.getInt(trackBox.syncSampleStart + 8 + 4 * index) & 0xFFFFFFFFL;
+            if (syncSample <= previousSyncSample || syncSample > sampleCount) {
+                return "sync sample " + syncSample + " is out of order or out of range of " + sampleCount + " samples";
+            }
+            previousSyncSample = syncSample;
+        }
+        if ("vide".equals(trackBox.handler) && buffer.getInt(trackBox.syncSampleStart + 8) != 1) {
+            return "first video sample is not a sync sample";
+        }
+        return null;
+    }
+
+    /**
+     * Check that sample to chunk box describes every sample, and that every chunk lies within the file
+     */
+    @Nullable
+    private static String verifyChunks(@NonNull ByteBuffer buffer, @NonNull TrackBox trackBox, int sampleCount, long size) {
+        int chunkCount = buffer.getInt(trackBox.chunkOffsetStart + 4);
+        int entryCount = buffer.getInt(trackBox.sampleToChunkStart + 4);
+        if (chunkCount <= 0 || entryCount <= 0) {
+            return "no chunks";
+        }
+        if (buffer.getInt(trackBox.sampleToChunkStart + 8) != 1) {
+            return "sample to chunk box does not start with first chunk";
+        }
+
+        int entry = 0;
+        int sample = 0;
+        for (int chunk = 1; chunk <= chunkCount; chunk++) {
+            while (entry + 1 < entryCount) {
+                long nextFirstChunk = buffer.getInt(trackBox.sampleToChunkStart + 8 + 12 * (entry + 1)) & 0xFFFFFFFFL;
+                long firstChunk = buffer.getInt(trackBox.sampleToChunkStart + 8 + 12 * entry) & 0xFFFFFFFFL;
+                if (nextFirstChunk <= firstChunk) {
+                    return "sample to chunk entries are out of order";
+                }
+                if (nextFirstChunk > chunk) {
+                    break;
+                }
+                entry++;
+            }
+            long samplesPerChunk = buffer.getInt(trackBox.sampleToChunkStart + 12 + 12 * entry) & 0xFFFFFFFFL;
+            if (samplesPerChunk == 0 || sample + samplesPerChunk > sampleCount) {
+                return "chunk " + chunk + " describes samples beyond " + sampleCount + " samples of sample size box";
+            }
+
+            long chunkSize = 0;
+            for (int index = 0; index < samplesPerChunk; index++) {
+                chunkSize += getSampleSize(buffer, trackBox, sample++);
+            }
+            long chunkOffset = trackBox.isLargeChunkOffset
+                    ? buffer.getLong(trackBox.chunkOffsetStart + 8 + 8 * (chunk - 1))
+                    : buffer.getInt(trackBox.chunkOffsetStart + 8 + 4 * (chunk - 1)) & 0xFFFFFFFFL;
+            if (chunkOffset < 0 || chunkOffset + chunkSize > size) {
+                return String.format(Locale.ENGLISH,
+                                     "chunk %d of %d bytes at offset %d extends past end of file of %d bytes",
+                                     chunk,
+                                     chunkSize,
+                                     chunkOffset,
+                                     size);
+            }
+        }
+        if (sample != sampleCount) {
+            return "chunks describe " + sample + " samples, sample size box " + sampleCount;
+        }
+        return null;
+    }
+
+    @Nullable
+    private static String verifyDuration(@NonNull TrackBox trackBox, long expectedDurationUs, long durationToleranceUs) {
+        if (expectedDurationUs < 0) {
+            return null;
+        }
+        long durationUs = Mp4HeaderParser.toUs(trackBox.duration >= 0 ? trackBox.duration : trackBox.sampleDuration,
+                                               trackBox.timescale);
+        if (Math.abs(durationUs - expectedDurationUs) > durationToleranceUs) {
+            return "duration " + durationUs + " us differs from expected " + expectedDurationUs + " us";
+        }
+        return null;
+    }
+
+    private static long getSampleSize(@NonNull ByteBuffer buffer, @NonNull TrackBox trackBox, int sample) {
+        int start = trackBox.sampleSizeStart;
+        if (!trackBox.isCompactSampleSize) {
+            long sampleSize = buffer.getInt(start + 4) & 0xFFFFFFFFL;
+            return sampleSize > 0 ? sampleSize : buffer.getInt(start + 12 + 4 * sample) & 0xFFFFFFFFL;
+        }
+        int fieldSize = buffer.get(start + 7) & 0xFF;
+        switch (fieldSize) {
+            case 4:
+                int sizes = buffer.get(start + 12 + sample / 2) & 0xFF;
+                return sample % 2 == 0 ? sizes >> 4 : sizes & 0x0F;
+            case 8:
+                return buffer.get(start + 12 + sample) & 0xFF;
+            case 16:
+                return buffer.getShort(start + 12 + 2 * sample) & 0xFFFF;
+            default:
+                throw new IllegalArgumentException("Invalid sample size field size " + fieldSize);
+        }
+    }
+
+    private static final class TrackBox {
+        @Nullable private String handler;
+        private long timescale;
+        private long duration = MediaProbeResult.UNKNOWN;
+        private long sampleDuration;
+        private int sampleDescriptionStart = -1;
+        private int timeToSampleStart = -1;
+        private int compositionOffsetStart = -1;
+        private int syncSampleStart = -1;
+        private int sampleSizeStart = -1;
+        private boolean isCompactSampleSize;
+        private int sampleToChunkStart = -1;
+        private int chunkOffsetStart = -1;
+        private boolean isLargeChunkOffset;
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.probe;
+
+import android.media.MediaExtractor;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Index of media samples: presentation time, size, file offset and sync flag of every sample of every track, in decoding
+ * order. Index is kept in primitive arrays, so that even hour long recordings take a few megabytes at most, and can be
+ * persisted and loaded back cheaply. It allows looking up sync samples for exact seeks, and sizing media ranges, without
+ * walking media with {@link MediaExtractor}.
+ *
+ * Index is built either from MP4 sample tables, or by scanning media with {@link Builder}. Scanned indexes have no file
+ * offsets. This class is immutable.
+ */
+public final class SampleIndex {
+
+    public static final int UNKNOWN = -1;
+
+    private static final int MAGIC = 0x4C534958; // "LSIX"
+    private static final int VERSION = 1;
+
+    @NonNull private final List<Track> tracks;
+
+    SampleIndex(@NonNull List<Track> tracks) {
+        this.tracks = Collections.unmodifiableList(tracks);
+    }
+
+    /**
+     * Get number of indexed tracks
+     */
+    public int getTrackCount() {
+        return tracks.size();
+    }
+
+    /**
+     * Get index of a track
+     * @param track track index, same as in {@link com.linkedin.android.litr.io.MediaSource}
+     */
+    @NonNull
+    public Track getTrack(int track) {
+        return tracks.get(track);
+    }
+
+    /**
+     * Get total size of samples of all tracks with presentation time within a range
+     * @param startUs range start in microseconds, inclusive
+     * @param endUs range end in microseconds, exclusive
+     * @return size in bytes
+     */
+    public long getSize(long startUs, long endUs) {
+        long size = 0;
+        for (Track track : tracks) {
+            size += track.getSize(startUs, endUs);
+        }
+        return size;
+    }
+
+    void writeTo(@NonNull DataOutputStream outputStream) throws IOException {
+        outputStream.writeInt(MAGIC);
+        outputStream.writeInt(VERSION);
+        outputStream.writeInt(tracks.size());
+        for (Track track : tracks) {
+            int sampleCount = track.getSampleCount();
+            outputStream.writeInt(sampleCount);
+            outputStream.writeBoolean(track.offsets != null);
+            outputStream.writeInt(track.syncSamples.length);
+            for (int sample = 0; sample < sampleCount; sample++) {
+                outputStream.writeLong(track.timesUs[sample]);
+                outputStream.writeInt(track.sizes[sample]);
+                if (track.offsets != null) {
+                    outputStream.writeLong(track.offsets[sample]);
+                }
+            }
+            for (int syncSample : track.syncSamples) {
+                outputStream.writeInt(syncSample);
+            }
+        }
+    }
+
+    /**
+     * Read an index written by {@link #writeTo(DataOutputStream)}
+     * @throws IOException if index cannot be read or was written by an incompatible version
+     */
+    @NonNull
+    static SampleIndex readFrom(@NonNull DataInputStream inputStream) throws IOException {
+        if (inputStream.readInt() != MAGIC || inputStream.readInt() != VERSION) {
+            throw new IOException("Not a sample index, or an incompatible version");
+        }
+        int trackCount = inputStream.readInt();
+        if (trackCount < 0) {
+            throw new IOException("Invalid track count " + trackCount);
+        }
+        List<Track> tracks = new ArrayList<>(trackCount);
+        for (int track = 0; track < trackCount; track++) {
+            int sampleCount = inputStream.readInt();
+            boolean hasOffsets = inputStream.readBoolean();
+            int syncSampleCount = inputStream.readInt();
+            if (sampleCount < 0 || syncSampleCount < 0 || syncSampleCount > sampleCount) {
+                throw new IOException("Invalid sample count " + sampleCount + " or sync sample count " + syncSampleCount);
+            }
+            long[] timesUs = new long[sampleCount];
+            int[] sizes = new int[sampleCount];
+            long[] offsets = hasOffsets ? new long[sampleCount] : null;
+            for (int sample = 0; sample < sampleCount; sample++) {
+                timesUs[sample] = inputStream.readLong();
+                sizes[sample] = inputStream.readInt();
+                if (offsets != null) {
+                    offsets[sample] = inputStream.readLong();
+                }
+            }
+            int[] syncSamples = new int[syncSampleCount];
+            for (int index = 0; index < syncSampleCount; index++) {
+                syncSamples[index] = inputStream.readInt();
+            }
+            tracks.add(new Track(timesUs, sizes, offsets, syncSamples));
+        }
+        return new SampleIndex(tracks);
+    }
+
+    /**
+     * Index of a single track. Samples are in decoding order, so with B-frames their presentation times are not monotonic.
+     */
+    public static final class Track {
+        @NonNull private final long[] timesUs;
+        @NonNull private final int[] sizes;
+        @Nullable private final long[] offsets;
+        // indices of sync samples, in increasing order
+        @NonNull private final int[] syncSamples;
+
+        Track(@NonNull long[] timesUs, @NonNull int[] sizes, @Nullable long[] offsets, @NonNull int[] syncSamples) {
+            this.timesUs = timesUs;
+            this.sizes = sizes;
+            this.offsets = offsets;
+            this.syncSamples = syncSamples;
+        }
+
+        public int getSampleCount() {
+            return timesUs.length;
+        }
+
+        /**
+         * Get sample presentation time
+         * @param sample sample index, in decoding order
+         * @return presentation time in microseconds
+         */
+        public long getSampleTimeUs(int sample) {
+            return timesUs[sample];
+        }
+
+        /**
+         * Get sample size
+         * @param sample sample index, in decoding order
+         * @return size in bytes
+         */
+        public int getSampleSize(int sample) {
+            return sizes[sample];
+        }
+
+        /**
+         * Get sample offset in media file
+         * @param sample sample index, in decoding order
+         * @return offset in bytes, {@link #UNKNOWN} if index was built by scanning media
+         */
+        public long getSampleOffset(int sample) {
+            return offsets != null ? offsets[sample] : UNKNOWN;
+        }
+
+        public boolean isSyncSample(int sample) {
+            return Arrays.binarySearch(syncSamples, sample) >= 0;
+        }
+
+        public int getSyncSampleCount() {
+            return syncSamples.length;
+        }
+
+        /**
+         * Get presentation time of a sync sample. Sync samples are assumed to be in presentation order.
+         * @param index sync sample index, from 0 to {@link #getSyncSampleCount()} exclusive
+         * @return presentation time in microseconds
+         */
+        public long getSyncSampleTimeUs(int index) {
+            return timesUs[syncSamples[index]];
+        }
+
+        /**
+         * Find a sync sample a seek to a position would land on
+         * @param positionUs position in microseconds
+         * @param mode seek mode, SEEK_TO_PREVIOUS_SYNC, SEEK_TO_NEXT_SYNC, or SEEK_TO_CLOSEST_SYNC from {@link MediaExtractor}
+         * @return presentation time of the sync sample in microseconds, {@link #UNKNOWN} if track has no such sync sample
+         */
+        public long findSyncSampleTimeUs(long positionUs, int mode) {
+            if (syncSamples.length == 0) {
+                return UNKNOWN;
+            }
+
+            // index of the first sync sample after position
+            int low = 0;
+            int high = syncSamples.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (getSyncSampleTimeUs(middle) <= positionUs) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            long previousTimeUs = low > 0 ? getSyncSampleTimeUs(low - 1) : UNKNOWN;
+            long nextTimeUs = low < syncSamples.length ? getSyncSampleTimeUs(low) : UNKNOWN;
+            if (previousTimeUs == positionUs) {
+                return previousTimeUs;
+            }
+
+            switch (mode) {
+                case MediaExtractor.SEEK_TO_NEXT_SYNC:
+                    return nextTimeUs;
+                case MediaExtractor.SEEK_TO_CLOSEST_SYNC:
+                    if (previousTimeUs == UNKNOWN) {
+                        return nextTimeUs;
+                    } else if (nextTimeUs == UNKNOWN) {
+                        return previousTimeUs;
+                    }
+                    return positionUs - previousTimeUs <= nextTimeUs - positionUs ? previousTimeUs : nextTimeUs;
+                default:
+                    // like extractor, seek before the first sync sample lands on it
+                    return previousTimeUs != UNKNOWN ? previousTimeUs : nextTimeUs;
+            }
+        }
+
+        /**
+         * Get total size of samples with presentation time within a range
+         * @param startUs range start in microseconds, inclusive
+         * @param endUs range end in microseconds, exclusive
+         * @return size in bytes
+         */
+        public long getSize(long startUs, long endUs) {
+            long size = 0;
+            for (int sample = 0; sample < timesUs.length; sample++) {
+                if (timesUs[sample] >= startUs && timesUs[sample] < endUs) {
+                    size += sizes[sample];
+                }
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Builder of an index from samples read from media, for media without sample tables
+     */
+    public static final class Builder {
+        private static final int INITIAL_CAPACITY = 256;
+
+        @NonNull private final TrackBuilder[] trackBuilders;
+
+        public Builder(@IntRange(from = 0) int trackCount) {
+            trackBuilders = new TrackBuilder[trackCount];
+            for (int track = 0; track < trackCount; track++) {
+                trackBuilders[track] = new TrackBuilder();
+            }
+        }
+
+        /**
+         * Add next sample of a track, in decoding order
+         * @param track track index
+         * @param timeUs sample presentation time in microseconds
+         * @param size sample size in bytes
+         * @param flags sample flags from {@link MediaExtractor}
+         */
+        @NonNull
+        public Builder addSample(int track, long timeUs, int size, int flags) {
+            trackBuilders[track].addSample(timeUs, size, (flags & MediaExtractor.SAMPLE_FLAG_SYNC) != 0);
+            return this;
+        }
+
+        @NonNull
+        public SampleIndex build() {
+            List<Track> tracks = new ArrayList<>(trackBuilders.length);
+            for (TrackBuilder trackBuilder : trackBuilders) {
+                tracks.add(trackBuilder.build());
+            }
+            return new SampleIndex(tracks);
+        }
+
+        private static final class TrackBuilder {
+            private long[] timesUs = new long[INITIAL_CAPACITY];
+            private int[] sizes = new int[INITIAL_CAPACITY];
+            private int[] syncSamples = new int[INITIAL_CAPACITY];
+            private int sampleCount;
+            private int syncSampleCount;
+
+            private void addSample(long timeUs, int size, boolean isSyncSample) {
+                if (sampleCount == timesUs.length) {
+                    timesUs = Arrays.copyOf(timesUs, sampleCount * 2);
+                    sizes = Arrays.copyOf(sizes, sampleCount * 2);
+                }
+                if (isSyncSample) {
+                    if (syncSampleCount == syncSamples.length) {
+                        syncSamples = Arrays.copyOf(syncSamples, syncSampleCount * 2);
+                    }
+                    syncSamples[syncSampleCount++] = sampleCount;
+                }
+                timesUs[sampleCount] = timeUs;
+                sizes[sampleCount] = size;
+                sampleCount++;
+            }
+
+            @NonNull
+            private Track build() {
+                return new Track(Arrays.copyOf(timesUs, sampleCount),
+                                 Arrays.copyOf(sizes, sampleCount),
+                                 null,
+                                 Arrays.copyOf(syncSamples, syncSampleCount));
+            }
+        }
+    }
+}
@@ -0,0 +1,424 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.probe;
+
+import android.content.Context;
+import android.media.MediaFormat;
+import android.net.Uri;
+import android.os.Build;
+import android.os.ParcelFileDescriptor;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.system.StructStat;
+import android.util.Log;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.linkedin.android.litr.exception.MediaSourceException;
+import com.linkedin.android.litr.io.MediaExtractorMediaSource;
+import com.linkedin.android.litr.io.MediaSource;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Cache of {@link SampleIndex}es, so that media which is accessed repeatedly (previewed, trimmed several times) is indexed
+ * only once. Indexes are kept in a least recently used memory cache, and persisted in a directory, keyed by identity of
+ * media file: device, inode, size, modification time and a fingerprint of file head and tail, where MP4 movie box is.
+ * Modification time has nanosecond precision on API 27 and later, but only second precision before that, and coarser
+ * one on some file systems, so fingerprint makes sure that a file rewritten within the same tick, keeping its size,
+ * does not get an index of its previous content. Therefore, cached index survives process restarts, is shared by
+ * different {@link Uri}s of the same file, and is not used once file changes. Media which is not a regular file is indexed
+ * every time. This class is thread safe.
+ */
+public class SampleIndexCache {
+
+    private static final String TAG = SampleIndexCache.class.getSimpleName();
+
+    public static final int DEFAULT_CACHE_SIZE = 4;
+    public static final int DEFAULT_MAX_PERSISTED_INDEXES = 64;
+
+    private static final String DIRECTORY_NAME = "litr-sample-index";
+    private static final String FILE_EXTENSION = ".idx";
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+    private static final int DEFAULT_SCAN_BUFFER_SIZE = 1024 * 1024;
+    @VisibleForTesting static final int FINGERPRINT_SIZE = 64 * 1024;
+
+    @NonNull private final Context context;
+    @NonNull private final File directory;
+    private final int maxPersistedIndexes;
+    @NonNull private final Map<CacheKey, SampleIndex> cache;
+
+    public SampleIndexCache(@NonNull Context context) {
+        this(context,
+             new File(context.getCacheDir(), DIRECTORY_NAME),
+             DEFAULT_CACHE_SIZE,
+             DEFAULT_MAX_PERSISTED_INDEXES);
+    }
+
+    /**
+     * Create a cache
+     * @param context context to open media with
+     * @param directory directory to persist indexes in, created if it does not exist
+     * @param cacheSize maximum number of indexes kept in memory
+     * @param maxPersistedIndexes maximum number of persisted indexes, least recently used ones are deleted first
+     */
+    public SampleIndexCache(@NonNull Context context,
+                            @NonNull File directory,
+                            @IntRange(from = 0) int cacheSize,
+                            @IntRange(from = 0) int maxPersistedIndexes) {
+        this.context = context.getApplicationContext();
+        this.directory = directory;
+        this.maxPersistedIndexes = maxPersistedIndexes;
+        cache = new LinkedHashMap<CacheKey, SampleIndex>(cacheSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, SampleIndex> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Get sample index of media, if it is cached or can be built from container sample tables. Never scans media,
+     * but reads MP4 movie box when index is not cached, so should not be called on UI thread.
+     * @param uri media {@link Uri}
+     * @return sample index, null if it is not cached and media has no sample tables
+     * @throws MediaSourceException if media cannot be opened or read
+     */
+    @Nullable
+    public SampleIndex getSampleIndex(@NonNull Uri uri) throws MediaSourceException {
+        return getSampleIndex(uri, false);
+    }
+
+    /**
+     * Get sample index of media, scanning entire media with {@link android.media.MediaExtractor} if index is not cached
+     * and cannot be built from container sample tables. Scan reads every sample, so this can take a while for large media.
+     * Should not be called on UI thread.
+     * @param uri media {@link Uri}
+     * @return sample index
+     * @throws MediaSourceException if media cannot be opened or read
+     */
+    @NonNull
+    public SampleIndex scan(@NonNull Uri uri) throws MediaSourceException {
+        SampleIndex sampleIndex = getSampleIndex(uri, true);
+        if (sampleIndex == null) {
+            // never happens, scan always produces an index
+            throw new IllegalStateException("Failed to index " + uri);
+        }
+        return sampleIndex;
+    }
+
+    /**
+     * Remove all cached indexes, including persisted ones
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.delete()) {
+                    Log.w(TAG, "Failed to delete " + file);
+                }
+            }
+        }
+    }
+
+    @Nullable
+    private SampleIndex getSampleIndex(@NonNull Uri uri, boolean scan) throws MediaSourceException {
+        ParcelFileDescriptor parcelFileDescriptor = null;
+        try {
+            parcelFileDescriptor = context.getContentResolver().openFileDescriptor(uri, "r");
+            if (parcelFileDescriptor == null) {
+                throw new FileNotFoundException("Cannot open " + uri);
+            }
+
+            // stream is not closed, because that would close the descriptor it does not own
+            FileChannel channel = new FileInputStream(parcelFileDescriptor.getFileDescriptor()).getChannel();
+
+            // only regular files have a meaningful identity
+            StructStat stat = Os.fstat(parcelFileDescriptor.getFileDescriptor());
+            CacheKey cacheKey = OsConstants.S_ISREG(stat.st_mode)
+                    ? new CacheKey(stat.st_dev,
+                                   stat.st_ino,
+                                   stat.st_size,
+                                   getModificationTimeNs(stat),
+                                   getFingerprint(channel, stat.st_size))
+                    : null;
+            if (cacheKey != null) {
+                SampleIndex cachedIndex = getCachedIndex(cacheKey);
+                if (cachedIndex != null) {
+                    return cachedIndex;
+                }
+            }
+
+            SampleIndex sampleIndex = Mp4SampleIndexParser.parse(channel);
+            if (sampleIndex == null && scan) {
+                sampleIndex = scanWithExtractor(uri);
+            }
+            if (sampleIndex != null && cacheKey != null) {
+                putCachedIndex(cacheKey, sampleIndex);
+            }
+            return sampleIndex;
+        } catch (IOException | ErrnoException | SecurityException ex) {
+            throw new MediaSourceException(MediaSourceException.Error.DATA_SOURCE, uri, ex);
+        } finally {
+            if (parcelFileDescriptor != null) {
+                try {
+                    parcelFileDescriptor.close();
+                } catch (IOException ex) {
+                    Log.w(TAG, "Failed to close file descriptor of " + uri, ex);
+                }
+            }
+        }
+    }
+
+    private static long getModificationTimeNs(@NonNull StructStat stat) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+            return stat.st_mtim.tv_sec * 1_000_000_000L + stat.st_mtim.tv_nsec;
+        }
+        return stat.st_mtime * 1_000_000_000L;
+    }
+
+    /**
+     * Get fingerprint of file content: leading bits of SHA-256 digest of its first and last {@link #FINGERPRINT_SIZE}
+     * bytes. MP4 movie box is at the head of files optimized for streaming and at the tail of other ones, so its change
+     * changes fingerprint, while reading it is much cheaper than parsing the movie box again.
+     */
+    @VisibleForTesting
+    static long getFingerprint(@NonNull FileChannel channel, long size) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(ex);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(FINGERPRINT_SIZE);
+        readFully(channel, buffer, 0, Math.min(size, FINGERPRINT_SIZE));
+        digest.update(buffer);
+        long tailPosition = Math.max(FINGERPRINT_SIZE, size - FINGERPRINT_SIZE);
+        if (tailPosition < size) {
+            readFully(channel, buffer, tailPosition, size - tailPosition);
+            digest.update(buffer);
+        }
+        return ByteBuffer.wrap(digest.digest()).getLong();
+    }
+
+    private static void readFully(@NonNull FileChannel channel,
+                                  @NonNull ByteBuffer buffer,
+                                  long position,
+                                  long length) throws IOException {
+        buffer.clear();
+        buffer.limit((int) length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("File ended at " + (position + buffer.position()) + " bytes");
+            }
+        }
+        buffer.flip();
+    }
+
+    @NonNull
+    private SampleIndex scanWithExtractor(@NonNull Uri uri) throws MediaSourceException {
+        MediaSource mediaSource = new MediaExtractorMediaSource(context, uri);
+        try {
+            int trackCount = mediaSource.getTrackCount();
+            int bufferSize = DEFAULT_SCAN_BUFFER_SIZE;
+            for (int track = 0; track < trackCount; track++) {
+                MediaFormat trackFormat = mediaSource.getTrackFormat(track);
+                if (trackFormat.containsKey(MediaFormat.KEY_MAX_INPUT_SIZE)) {
+                    bufferSize = Math.max(bufferSize, trackFormat.getInteger(MediaFormat.KEY_MAX_INPUT_SIZE));
+                }
+                mediaSource.selectTrack(track);
+            }
+
+            SampleIndex.Builder builder = new SampleIndex.Builder(trackCount);
+            ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+            int track;
+            while ((track = mediaSource.getSampleTrackIndex()) >= 0) {
+                int size = mediaSource.readSampleData(buffer, 0);
+                if (size < 0) {
+                    break;
+                }
+                builder.addSample(track, mediaSource.getSampleTime(), size, mediaSource.getSampleFlags());
+                mediaSource.advance();
+            }
+            return builder.build();
+        } finally {
+            mediaSource.release();
+        }
+    }
+
+    @Nullable
+    private SampleIndex getCachedIndex(@NonNull CacheKey cacheKey) {
+        synchronized (cache) {
+            SampleIndex cachedIndex = cache.get(cacheKey);
+            if (cachedIndex != null) {
+                return cachedIndex;
+            }
+        }
+
+        File file = new File(directory, cacheKey.getFileName());
+        if (!file.exists()) {
+            return null;
+        }
+        DataInputStream inputStream = null;
+        try {
+            inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            SampleIndex sampleIndex = SampleIndex.readFrom(inputStream);
+            // persisted indexes are evicted by last use
+            file.setLastModified(System.currentTimeMillis());
+            synchronized (cache) {
+                cache.put(cacheKey, sampleIndex);
+            }
+            return sampleIndex;
+        } catch (IOException ex) {
+            Log.w(TAG, "Failed to read persisted index " + file, ex);
+            file.delete();
+            return null;
+        } finally {
+            closeQuietly(inputStream);
+        }
+    }
+
+    private void putCachedIndex(@NonNull CacheKey cacheKey, @NonNull SampleIndex sampleIndex) {
+        synchronized (cache) {
+            cache.put(cacheKey, sampleIndex);
+        }
+        if (maxPersistedIndexes <= 0 || !directory.isDirectory() && !directory.mkdirs()) {
+            return;
+        }
+
+        // write to a temporary file first, so that a concurrent reader never sees a partially written index
+        File file = new File(directory, cacheKey.getFileName());
+        File tempFile = new File(directory, cacheKey.getFileName() + TEMP_FILE_EXTENSION);
+        DataOutputStream outputStream = null;
+        try {
+            outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            sampleIndex.writeTo(outputStream);
+            outputStream.close();
+            outputStream = null;
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("Failed to rename " + tempFile + " to " + file);
+            }
+        } catch (IOException ex) {
+            Log.w(TAG, "Failed to persist index " + file, ex);
+            tempFile.delete();
+            return;
+        } finally {
+            closeQuietly(outputStream);
+        }
+
+        trimPersistedIndexes();
+    }
+
+    private void trimPersistedIndexes() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(FILE_EXTENSION));
+        if (files == null || files.length <= maxPersistedIndexes) {
+            return;
+        }
+        long[] lastModified = new long[files.length];
+        for (int index = 0; index < files.length; index++) {
+            lastModified[index] = files[index].lastModified();
+        }
+        long[] sortedLastModified = lastModified.clone();
+        Arrays.sort(sortedLastModified);
+        long threshold = sortedLastModified[files.length - maxPersistedIndexes];
+        for (int index = 0; index < files.length; index++) {
+            if (lastModified[index] < threshold) {
+                files[index].delete();
+            }
+        }
+    }
+
+    private static void closeQuietly(@Nullable Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ex) {
+                // Nothing to do.
+            }
+        }
+    }
+
+    private static final class CacheKey {
+        private final long device;
+        private final long inode;
+        private final long size;
+        private final long modificationTimeNs;
+        private final long fingerprint;
+
+        private CacheKey(long device, long inode, long size, long modificationTimeNs, long fingerprint) {
+            this.device = device;
+            this.inode = inode;
+            this.size = size;
+            this.modificationTimeNs = modificationTimeNs;
+            this.fingerprint = fingerprint;
+        }
+
+        @NonNull
+        private String getFileName() {
+            return String.format(Locale.ENGLISH,
+                                 "%x-%x-%x-%x-%x%s",
+                                 device,
+                                 inode,
+                                 size,
+                                 modificationTimeNs,
+                                 fingerprint,
+                                 FILE_EXTENSION);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey cacheKey = (CacheKey) o;
+            return device == cacheKey.device
+                    && inode == cacheKey.inode
+                    && size == cacheKey.size
+                    && modificationTimeNs == cacheKey.modificationTimeNs
+                    && fingerprint == cacheKey.fingerprint;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = (int) (device ^ (device >>> 32));
+            result = 31 * result + (int) (inode ^ (inode >>> 32));
+            result = 31 * result + (int) (size ^ (size >>> 32));
+            result = 31 * result + (int) (modificationTimeNs ^ (modificationTimeNs >>> 32));
+            result = 31 * result + (int) (fingerprint ^ (fingerprint >>> 32));
+            return result;
+        }
+    }
+}
@@ -8,10 +8,18 @@
 package com.linkedin.android.litr.render
 
 import android.media.MediaFormat
+import com.linkedin.android.litr.utils.PcmUtils
 
 class AudioProcessorFactory {
 
+    /**
+     * Creates the cheapest [AudioProcessor] which converts audio from source to target format. PCM encoding is taken from
+     * [MediaFormat.KEY_PCM_ENCODING] (16 bit when not specified), and is converted only when source and target encodings differ.
+     */
     fun createAudioProcessor(sourceMediaFormat: MediaFormat?, targetMediaFormat: MediaFormat?): AudioProcessor {
+        val sourcePcmEncoding = PcmUtils.getPcmEncoding(sourceMediaFormat)
+        val targetPcmEncoding = PcmUtils.getPcmEncoding(targetMediaFormat)
+
         return if (sourceMediaFormat != null &&
             targetMediaFormat != null &&
             sourceMediaFormat.containsKey(MediaFormat.KEY_SAMPLE_RATE) &&
@@ -23,11 +31,15 @@ class AudioProcessorFactory {
             OboeAudioProcessor(
                 sourceMediaFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT),
                 sourceMediaFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE),
+                sourcePcmEncoding,
                 targetMediaFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT),
-                targetMediaFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE)
+                targetMediaFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE),
+                targetPcmEncoding
             )
+        } else if (sourcePcmEncoding != targetPcmEncoding) {
+            PcmEncodingAudioProcessor(sourcePcmEncoding, targetPcmEncoding)
         } else {
             PassthroughAudioProcessor()
         }
     }
-}
\ No newline at end of file
+}
@@ -11,16 +11,17 @@ import android.media.MediaCodec
 import android.media.MediaFormat
 import android.util.Log
 import android.view.Surface
+import com.linkedin.android.litr.analytics.Tracing
 import com.linkedin.android.litr.codec.Encoder
 import com.linkedin.android.litr.codec.Frame
 import com.linkedin.android.litr.filter.BufferFilter
 import com.linkedin.android.litr.utils.ByteBufferPool
 import com.linkedin.android.litr.utils.MediaFormatUtils
+import com.linkedin.android.litr.utils.PcmUtils
 import java.util.concurrent.LinkedBlockingDeque
 import java.util.concurrent.atomic.AtomicBoolean
 import kotlin.math.ceil
 
-private const val BYTES_PER_SAMPLE = 2
 private const val FRAME_WAIT_TIMEOUT: Long = 0L
 private const val UNDEFINED_VALUE: Int = -1
 
@@ -40,6 +41,10 @@ class AudioRenderer @JvmOverloads constructor(
     private var targetChannelCount = UNDEFINED_VALUE
     private var sourceSampleRate = UNDEFINED_VALUE
     private var targetSampleRate = UNDEFINED_VALUE
+    private var sourcePcmEncoding = UNDEFINED_VALUE
+    private var targetPcmEncoding = UNDEFINED_VALUE
+    private var sourceBytesPerSample = 0
+    private var targetBytesPerSample = 0
     private var samplingRatio = 1.0
 
     private val bufferPool = ByteBufferPool(true)
@@ -66,11 +71,15 @@ class AudioRenderer @JvmOverloads constructor(
             sourceMediaFormat?.let { MediaFormatUtils.getSampleRate(it, UNDEFINED_VALUE) } ?: UNDEFINED_VALUE
         val targetSampleRate =
             targetMediaFormat?.let { MediaFormatUtils.getSampleRate(it, UNDEFINED_VALUE) } ?: UNDEFINED_VALUE
+        val sourcePcmEncoding = PcmUtils.getPcmEncoding(sourceMediaFormat)
+        val targetPcmEncoding = PcmUtils.getPcmEncoding(targetMediaFormat)
 
         if (this.sourceChannelCount != sourceChannelCount ||
             this.targetChannelCount != targetChannelCount ||
             this.sourceSampleRate != sourceSampleRate ||
-            this.targetSampleRate != targetSampleRate) {
+            this.targetSampleRate != targetSampleRate ||
+            this.sourcePcmEncoding != sourcePcmEncoding ||
+            this.targetPcmEncoding != targetPcmEncoding) {
 
             audioProcessor?.release()
             audioProcessor = audioProcessorFactory.createAudioProcessor(sourceMediaFormat, targetMediaFormat)
@@ -79,6 +88,10 @@ class AudioRenderer @JvmOverloads constructor(
             this.targetChannelCount = targetChannelCount.toInt()
             this.sourceSampleRate = sourceSampleRate.toInt()
             this.targetSampleRate = targetSampleRate.toInt()
+            this.sourcePcmEncoding = sourcePcmEncoding
+            this.targetPcmEncoding = targetPcmEncoding
+            sourceBytesPerSample = PcmUtils.getBytesPerSample(sourcePcmEncoding)
+            targetBytesPerSample = PcmUtils.getBytesPerSample(targetPcmEncoding)
             targetSampleDurationUs = 1_000_000.0 / targetSampleRate.toDouble()
             samplingRatio = targetSampleRate.toDouble() / sourceSampleRate.toDouble()
 
@@ -93,15 +106,20 @@ class AudioRenderer @JvmOverloads constructor(
 
     override fun renderFrame(inputFrame: Frame?, presentationTimeNs: Long) {
         if (!released.get() && inputFrame != null) {
-            val sourceSampleCount = inputFrame.bufferInfo.size / (BYTES_PER_SAMPLE * sourceChannelCount)
+            val sourceSampleCount = inputFrame.bufferInfo.size / (sourceBytesPerSample * sourceChannelCount)
             val estimatedTargetSampleCount = ceil(sourceSampleCount * samplingRatio).toInt()
-            val targetBufferCapacity = estimatedTargetSampleCount * targetChannelCount * BYTES_PER_SAMPLE
+            val targetBufferCapacity = estimatedTargetSampleCount * targetChannelCount * targetBytesPerSample
             val targetBuffer = bufferPool.get(targetBufferCapacity)
 
             val processedFrame = Frame(inputFrame.tag, targetBuffer, MediaCodec.BufferInfo())
 
             audioProcessor?.processFrame(inputFrame, processedFrame)
-            filters.forEach { it.apply(processedFrame) }
+            Tracing.beginSection(Tracing.SECTION_APPLY_FILTERS)
+            try {
+                filters.forEach { it.apply(processedFrame) }
+            } finally {
+                Tracing.endSection()
+            }
 
             renderQueue.add(processedFrame)
         }
@@ -140,7 +158,7 @@ class AudioRenderer @JvmOverloads constructor(
                     outputFrame.bufferInfo.flags = inputFrame.bufferInfo.flags
                     outputFrame.bufferInfo.presentationTimeUs =
                         inputFrame.bufferInfo.presentationTimeUs +
-                            ((inputFrame.buffer.position() / (targetChannelCount * BYTES_PER_SAMPLE)) * targetSampleDurationUs).toLong()
+                            ((inputFrame.buffer.position() / (targetChannelCount * targetBytesPerSample)) * targetSampleDurationUs).toLong()
 
                     val inputBufferDepleted = if (outputFrame.buffer.limit() >= inputFrame.buffer.remaining()) {
                         // if remaining input bytes fit output buffer, use them all
@@ -163,7 +181,12 @@ class AudioRenderer @JvmOverloads constructor(
                         bufferPool.put(inputFrame.buffer)
                     }
 
-                    encoder.queueInputFrame(outputFrame)
+                    Tracing.beginSection(Tracing.SECTION_ENCODER_QUEUE_INPUT)
+                    try {
+                        encoder.queueInputFrame(outputFrame)
+                    } finally {
+                        Tracing.endSection()
+                    }
                 }
             }
         }
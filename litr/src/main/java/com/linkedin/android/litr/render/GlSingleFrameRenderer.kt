@@ -18,14 +18,21 @@ import com.linkedin.android.litr.ExperimentalFrameExtractorApi
 import com.linkedin.android.litr.filter.GlFilter
 import com.linkedin.android.litr.filter.GlFrameRenderFilter
 import com.linkedin.android.litr.filter.video.gl.DefaultVideoFrameRenderFilter
+import com.linkedin.android.litr.utils.BitmapPool
 import java.nio.ByteBuffer
 import java.util.*
 
 /**
  * A renderer that applies OpenGL filters to a bitmap, and returns a new bitmap.
+ *
+ * @param filters filters to apply
+ * @param bitmapPool optional pool from which rendered bitmaps are taken
  */
 @OptIn(ExperimentalFrameExtractorApi::class)
-class GlSingleFrameRenderer(filters: List<GlFilter>?) : SingleFrameRenderer {
+class GlSingleFrameRenderer @JvmOverloads constructor(
+    filters: List<GlFilter>?,
+    private val bitmapPool: BitmapPool? = null
+) : SingleFrameRenderer {
     private val hasFilters: Boolean = filters != null && filters.isNotEmpty()
 
     private val filters: MutableList<GlFilter>
@@ -58,7 +65,7 @@ class GlSingleFrameRenderer(filters: List<GlFilter>?) : SingleFrameRenderer {
     private fun saveTexture(width: Int, height: Int): Bitmap {
         pixelBuffer?.rewind()
         GLES20.glReadPixels(0, 0, width, height, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, pixelBuffer)
-        val destBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888)
+        val destBitmap = bitmapPool?.get(width, height, Bitmap.Config.ARGB_8888) ?: Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888)
         destBitmap.copyPixelsFromBuffer(pixelBuffer)
         return destBitmap
     }
@@ -127,6 +134,36 @@ class GlSingleFrameRenderer(filters: List<GlFilter>?) : SingleFrameRenderer {
         return readBitmap
     }
 
+    /**
+     * Returns a [Surface] onto which a video decoder can render its output frames, of a specified size. Each frame rendered onto this surface
+     * can be read back as a bitmap by calling [renderInputSurfaceFrame]. Must be called on the thread that will be rendering frames.
+     */
+    internal fun getInputSurface(width: Int, height: Int): Surface {
+        if (isInitialized && (inputSize.x != width || inputSize.y != height)) {
+            release()
+        }
+        if (!isInitialized) {
+            init(width, height)
+            isInitialized = true
+        }
+        return inputSurface.surface
+    }
+
+    /**
+     * Waits for the next frame rendered onto the surface obtained from [getInputSurface], applies filters to it and reads it back as a bitmap.
+     */
+    internal fun renderInputSurfaceFrame(presentationTimeNs: Long): Bitmap {
+        check(isInitialized) { "Input surface is not initialized" }
+
+        inputSurface.awaitNewImage()
+
+        destFramebuffer.bind()
+        drawFilters(presentationTimeNs)
+        val readBitmap = saveTexture(inputSize.x, inputSize.y)
+        destFramebuffer.unbind()
+        return readBitmap
+    }
+
     /**
      * Draws the data from SurfaceTexture onto the current EGL surface.
      */
@@ -145,12 +182,16 @@ class GlSingleFrameRenderer(filters: List<GlFilter>?) : SingleFrameRenderer {
     }
 
     fun release() {
+        if (!isInitialized) {
+            return
+        }
         for (filter in filters) {
             filter.release()
         }
         inputSurface.release()
         outputSurface.release()
         destFramebuffer.delete()
+        isInitialized = false
     }
 
     fun hasFilters(): Boolean {
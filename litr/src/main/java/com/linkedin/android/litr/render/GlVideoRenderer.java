@@ -28,6 +28,7 @@ import android.view.Surface;
 
 import androidx.annotation.Nullable;
 
+import com.linkedin.android.litr.analytics.Tracing;
 import com.linkedin.android.litr.codec.Frame;
 import com.linkedin.android.litr.filter.GlFilter;
 import com.linkedin.android.litr.filter.GlFrameRenderFilter;
@@ -170,8 +171,13 @@ public class GlVideoRenderer implements Renderer {
         GLES20.glClearColor(0.0f, 0.0f, 0.0f, 1.0f);
         GLES20.glClear(GLES20.GL_DEPTH_BUFFER_BIT | GLES20.GL_COLOR_BUFFER_BIT);
 
-        for (GlFilter filter : filters) {
-            filter.apply(presentationTimeNs);
+        Tracing.beginSection(Tracing.SECTION_APPLY_FILTERS);
+        try {
+            for (GlFilter filter : filters) {
+                filter.apply(presentationTimeNs);
+            }
+        } finally {
+            Tracing.endSection();
         }
 
         GLES20.glFinish();
@@ -8,27 +8,31 @@
 package com.linkedin.android.litr.render
 
 import com.linkedin.android.litr.codec.Frame
+import com.linkedin.android.litr.utils.PcmUtils
 import java.nio.ByteBuffer
 import kotlin.math.min
 
-private const val BYTES_PER_SAMPLE = 2
-
 /**
- * Implementation of audio processor that uses Oboe library
+ * Implementation of audio processor that uses Oboe library. Source and target PCM encodings can differ, conversion
+ * between them is done while resampling, in the same pass.
  */
 internal class OboeAudioProcessor(
     private val sourceChannelCount: Int,
     sourceSampleRate: Int,
+    sourcePcmEncoding: Int,
     private val targetChannelCount: Int,
-    targetSampleRate: Int
+    targetSampleRate: Int,
+    targetPcmEncoding: Int
 ) : AudioProcessor {
 
+    private val sourceBytesPerSample = PcmUtils.getBytesPerSample(sourcePcmEncoding)
+    private val targetBytesPerSample = PcmUtils.getBytesPerSample(targetPcmEncoding)
     private val samplingRatio: Double
     private var sampleDurationUs: Double
     private var presentationTimeNs: Long
 
     init {
-        initProcessor(sourceChannelCount, sourceSampleRate, targetChannelCount, targetSampleRate)
+        initProcessor(sourceChannelCount, sourceSampleRate, sourcePcmEncoding, targetChannelCount, targetSampleRate, targetPcmEncoding)
         samplingRatio = targetSampleRate.toDouble() / sourceSampleRate
         sampleDurationUs = 1_000_000.0 / targetSampleRate
         presentationTimeNs = 0
@@ -36,10 +40,10 @@ internal class OboeAudioProcessor(
 
     override fun processFrame(sourceFrame: Frame, targetFrame: Frame) {
         if (sourceFrame.buffer != null && targetFrame.buffer != null) {
-            val sourceSampleCount = sourceFrame.bufferInfo.size / (BYTES_PER_SAMPLE * sourceChannelCount)
+            val sourceSampleCount = sourceFrame.bufferInfo.size / (sourceBytesPerSample * sourceChannelCount)
             val targetSampleCount = processAudioFrame(sourceFrame.buffer, sourceSampleCount, targetFrame.buffer, targetFrame.buffer.capacity())
 
-            val targetBufferSize = targetSampleCount * BYTES_PER_SAMPLE * targetChannelCount
+            val targetBufferSize = targetSampleCount * targetBytesPerSample * targetChannelCount
             targetFrame.buffer.rewind()
 
             val limit = min(targetBufferSize, targetFrame.buffer.capacity())
@@ -62,7 +66,14 @@ internal class OboeAudioProcessor(
         releaseProcessor()
     }
 
-    private external fun initProcessor(sourceChannelCount: Int, sourceSampleRate: Int, targetChannelCount: Int, targetSampleRate: Int)
+    private external fun initProcessor(
+        sourceChannelCount: Int,
+        sourceSampleRate: Int,
+        sourcePcmEncoding: Int,
+        targetChannelCount: Int,
+        targetSampleRate: Int,
+        targetPcmEncoding: Int
+    )
 
     private external fun processAudioFrame(sourceBuffer: ByteBuffer, sampleCount: Int, targetBuffer: ByteBuffer, targetBufferSize: Int): Int
 
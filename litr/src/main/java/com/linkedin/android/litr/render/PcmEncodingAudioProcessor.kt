@@ -0,0 +1,61 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.render
+
+import com.linkedin.android.litr.codec.Frame
+import com.linkedin.android.litr.utils.PcmUtils
+
+private const val CONVERSION_BLOCK_SIZE = 1024
+
+/**
+ * Implementation of [AudioProcessor] that converts PCM samples between encodings, keeping sample rate and channel count.
+ */
+internal class PcmEncodingAudioProcessor(
+    private val sourcePcmEncoding: Int,
+    private val targetPcmEncoding: Int
+) : AudioProcessor {
+
+    private val sourceBytesPerSample = PcmUtils.getBytesPerSample(sourcePcmEncoding)
+    private val targetBytesPerSample = PcmUtils.getBytesPerSample(targetPcmEncoding)
+    private val samples = FloatArray(CONVERSION_BLOCK_SIZE)
+
+    override fun processFrame(sourceFrame: Frame, targetFrame: Frame) {
+        if (sourceFrame.buffer != null && targetFrame.buffer != null) {
+            val sampleCount = minOf(
+                sourceFrame.bufferInfo.size / sourceBytesPerSample,
+                targetFrame.buffer.capacity() / targetBytesPerSample
+            )
+
+            var sourcePosition = sourceFrame.bufferInfo.offset
+            var targetPosition = 0
+            var samplesLeft = sampleCount
+            while (samplesLeft > 0) {
+                val blockSampleCount = minOf(samplesLeft, CONVERSION_BLOCK_SIZE)
+                PcmUtils.readSamples(sourceFrame.buffer, sourcePosition, sourcePcmEncoding, samples, blockSampleCount)
+                PcmUtils.writeSamples(samples, blockSampleCount, targetFrame.buffer, targetPosition, targetPcmEncoding)
+                sourcePosition += blockSampleCount * sourceBytesPerSample
+                targetPosition += blockSampleCount * targetBytesPerSample
+                samplesLeft -= blockSampleCount
+            }
+
+            targetFrame.buffer.position(0)
+            targetFrame.buffer.limit(targetPosition)
+
+            targetFrame.bufferInfo.apply {
+                offset = 0
+                size = targetPosition
+                presentationTimeUs = sourceFrame.bufferInfo.presentationTimeUs
+                flags = sourceFrame.bufferInfo.flags
+            }
+        } else {
+            throw IllegalArgumentException("Source or target frame doesn't have a buffer, cannot process it!")
+        }
+    }
+
+    override fun release() {}
+}
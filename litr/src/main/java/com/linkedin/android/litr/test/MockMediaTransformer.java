@@ -20,6 +20,7 @@ import com.linkedin.android.litr.TrackTransform;
 import com.linkedin.android.litr.TransformationListener;
 import com.linkedin.android.litr.TransformationOptions;
 
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -86,7 +87,7 @@ public class MockMediaTransformer extends MediaTransformer {
                     transformationListener.onProgress(event.id, event.progress);
                     break;
                 case TransformationEvent.TYPE_COMPLETED:
-                    transformationListener.onCompleted(event.id, null);
+                    transformationListener.onCompleted(event.id, null, Collections.emptyList());
                     break;
                 case TransformationEvent.TYPE_ERROR:
                     transformationListener.onError(event.id, event.cause, null);
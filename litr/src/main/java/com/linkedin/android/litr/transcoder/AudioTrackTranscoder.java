@@ -13,6 +13,7 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.RestrictTo;
 import androidx.annotation.VisibleForTesting;
+import com.linkedin.android.litr.analytics.Tracing;
 import com.linkedin.android.litr.codec.Decoder;
 import com.linkedin.android.litr.codec.Encoder;
 import com.linkedin.android.litr.codec.Frame;
@@ -23,6 +24,14 @@ import com.linkedin.android.litr.render.Renderer;
 
 import java.util.concurrent.TimeUnit;
 
+import static com.linkedin.android.litr.analytics.TrackTransformationInfo.CODEC_DECODER;
+import static com.linkedin.android.litr.analytics.TrackTransformationInfo.CODEC_ENCODER;
+import static com.linkedin.android.litr.analytics.TrackTransformationInfo.STAGE_DECODE;
+import static com.linkedin.android.litr.analytics.TrackTransformationInfo.STAGE_ENCODE;
+import static com.linkedin.android.litr.analytics.TrackTransformationInfo.STAGE_EXTRACT;
+import static com.linkedin.android.litr.analytics.TrackTransformationInfo.STAGE_MUX;
+import static com.linkedin.android.litr.analytics.TrackTransformationInfo.STAGE_RENDER;
+
 @RestrictTo(RestrictTo.Scope.LIBRARY)
 public class AudioTrackTranscoder extends TrackTranscoder {
     private static final String TAG = AudioTrackTranscoder.class.getSimpleName();
@@ -32,6 +41,8 @@ public class AudioTrackTranscoder extends TrackTranscoder {
     @VisibleForTesting int lastEncodeFrameResult;
 
     @NonNull private MediaFormat sourceAudioFormat;
+    // format encoder was configured with, it describes encoder input, e.g. its PCM encoding, unlike encoder output format
+    @NonNull private final MediaFormat encoderInputFormat;
 
     AudioTrackTranscoder(@NonNull MediaSource mediaSource,
                          int sourceTrack,
@@ -46,6 +57,7 @@ public class AudioTrackTranscoder extends TrackTranscoder {
         lastExtractFrameResult = RESULT_FRAME_PROCESSED;
         lastDecodeFrameResult = RESULT_FRAME_PROCESSED;
         lastEncodeFrameResult = RESULT_FRAME_PROCESSED;
+        encoderInputFormat = targetFormat;
 
         initCodecs();
     }
@@ -55,8 +67,8 @@ public class AudioTrackTranscoder extends TrackTranscoder {
 
         sourceAudioFormat = mediaSource.getTrackFormat(sourceTrack);
 
-        encoder.init(targetFormat);
-        renderer.init(null, sourceAudioFormat, targetFormat);
+        encoder.init(encoderInputFormat);
+        renderer.init(null, sourceAudioFormat, encoderInputFormat);
         decoder.init(sourceAudioFormat, null);
     }
 
@@ -124,15 +136,33 @@ public class AudioTrackTranscoder extends TrackTranscoder {
 
         int selectedTrack = mediaSource.getSampleTrackIndex();
         if (selectedTrack == sourceTrack || selectedTrack == NO_SELECTED_TRACK) {
-            int tag = decoder.dequeueInputFrame(0);
+            long stageStartTimeNs = System.nanoTime();
+            int tag;
+            Tracing.beginSection(Tracing.SECTION_DECODER_DEQUEUE_INPUT);
+            try {
+                tag = decoder.dequeueInputFrame(0);
+            } finally {
+                Tracing.endSection();
+            }
+            recordStageDuration(STAGE_DECODE, stageStartTimeNs);
             if (tag >= 0) {
                 Frame frame = decoder.getInputFrame(tag);
                 if (frame == null) {
                     throw new TrackTranscoderException(TrackTranscoderException.Error.NO_FRAME_AVAILABLE);
                 }
-                int bytesRead = mediaSource.readSampleData(frame.buffer, 0);
-                long sampleTime = mediaSource.getSampleTime();
-                int sampleFlags = mediaSource.getSampleFlags();
+                stageStartTimeNs = System.nanoTime();
+                int bytesRead;
+                long sampleTime;
+                int sampleFlags;
+                Tracing.beginSection(Tracing.SECTION_EXTRACT);
+                try {
+                    bytesRead = mediaSource.readSampleData(frame.buffer, 0);
+                    sampleTime = mediaSource.getSampleTime();
+                    sampleFlags = mediaSource.getSampleFlags();
+                } finally {
+                    Tracing.endSection();
+                }
+                recordStageDuration(STAGE_EXTRACT, stageStartTimeNs);
 
                 if (bytesRead < 0 || (sampleFlags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
                     frame.bufferInfo.set(0, 0, -1, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
@@ -146,14 +176,26 @@ public class AudioTrackTranscoder extends TrackTranscoder {
                     Log.d(TAG, "Selection end reached on the input stream");
                 } else {
                     frame.bufferInfo.set(0, bytesRead, sampleTime, sampleFlags);
-                    decoder.queueInputFrame(frame);
+                    stageStartTimeNs = System.nanoTime();
+                    Tracing.beginSection(Tracing.SECTION_DECODER_QUEUE_INPUT);
+                    try {
+                        decoder.queueInputFrame(frame);
+                    } finally {
+                        Tracing.endSection();
+                    }
+                    recordStageDuration(STAGE_DECODE, stageStartTimeNs);
+                    recordFrameQueued(CODEC_DECODER);
+
+                    stageStartTimeNs = System.nanoTime();
                     mediaSource.advance();
+                    recordStageDuration(STAGE_EXTRACT, stageStartTimeNs);
                     //Log.d(TAG, "Sample time: " + sampleTime + ", source bytes read: " + bytesRead);
                 }
             } else {
                 switch (tag) {
                     case MediaCodec.INFO_TRY_AGAIN_LATER:
                         //Log.d(TAG, "Will try getting decoder input buffer later");
+                        recordTryAgainLater(CODEC_DECODER);
                         break;
                     default:
                         Log.e(TAG, "Unhandled value " + tag + " when decoding an input frame");
@@ -168,20 +210,38 @@ public class AudioTrackTranscoder extends TrackTranscoder {
     private int queueDecodedInputFrame() throws TrackTranscoderException {
         int decodeFrameResult = RESULT_FRAME_PROCESSED;
 
-        int tag = decoder.dequeueOutputFrame(0);
+        long stageStartTimeNs = System.nanoTime();
+        int tag;
+        Tracing.beginSection(Tracing.SECTION_DECODER_DEQUEUE_OUTPUT);
+        try {
+            tag = decoder.dequeueOutputFrame(0);
+        } finally {
+            Tracing.endSection();
+        }
+        recordStageDuration(STAGE_DECODE, stageStartTimeNs);
         if (tag >= 0) {
             Frame decoderOutputFrame = decoder.getOutputFrame(tag);
             if (decoderOutputFrame == null) {
                 throw new TrackTranscoderException(TrackTranscoderException.Error.NO_FRAME_AVAILABLE);
             }
+            if ((decoderOutputFrame.bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) == 0) {
+                recordFrameDequeued(CODEC_DECODER);
+            }
 
+            stageStartTimeNs = System.nanoTime();
             if (decoderOutputFrame.bufferInfo.presentationTimeUs >= sourceMediaSelection.getStart()
                     || (decoderOutputFrame.bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
                 long presentationTimeUs = decoderOutputFrame.bufferInfo.presentationTimeUs - sourceMediaSelection.getStart();
                 decoderOutputFrame.bufferInfo.presentationTimeUs = presentationTimeUs;
-                renderer.renderFrame(decoderOutputFrame, TimeUnit.MICROSECONDS.toNanos(presentationTimeUs));
+                Tracing.beginSection(Tracing.SECTION_RENDER);
+                try {
+                    renderer.renderFrame(decoderOutputFrame, TimeUnit.MICROSECONDS.toNanos(presentationTimeUs));
+                } finally {
+                    Tracing.endSection();
+                }
             }
             decoder.releaseOutputFrame(tag, false);
+            recordStageDuration(STAGE_RENDER, stageStartTimeNs);
 
             if ((decoderOutputFrame.bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
                 Log.d(TAG, "EoS on decoder output stream");
@@ -191,10 +251,11 @@ public class AudioTrackTranscoder extends TrackTranscoder {
             switch (tag) {
                 case MediaCodec.INFO_TRY_AGAIN_LATER:
                     // Log.d(TAG, "Will try getting decoder output later");
+                    recordTryAgainLater(CODEC_DECODER);
                     break;
                 case MediaCodec.INFO_OUTPUT_FORMAT_CHANGED:
                     sourceAudioFormat = decoder.getOutputFormat();
-                    renderer.onMediaFormatChanged(sourceAudioFormat, targetFormat);
+                    renderer.onMediaFormatChanged(sourceAudioFormat, encoderInputFormat);
                     Log.d(TAG, "Decoder output format changed: " + sourceAudioFormat);
                     break;
                 default:
@@ -209,7 +270,15 @@ public class AudioTrackTranscoder extends TrackTranscoder {
     private int writeEncodedOutputFrame() throws TrackTranscoderException {
         int encodeFrameResult = RESULT_FRAME_PROCESSED;
 
-        int tag = encoder.dequeueOutputFrame(0);
+        long stageStartTimeNs = System.nanoTime();
+        int tag;
+        Tracing.beginSection(Tracing.SECTION_ENCODER_DEQUEUE_OUTPUT);
+        try {
+            tag = encoder.dequeueOutputFrame(0);
+        } finally {
+            Tracing.endSection();
+        }
+        recordStageDuration(STAGE_ENCODE, stageStartTimeNs);
         if (tag >= 0) {
             Frame frame = encoder.getOutputFrame(tag);
             if (frame == null) {
@@ -222,17 +291,29 @@ public class AudioTrackTranscoder extends TrackTranscoder {
                 encodeFrameResult = RESULT_EOS_REACHED;
             } else if (frame.bufferInfo.size > 0
                     && (frame.bufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) == 0) {
-                mediaMuxer.writeSampleData(targetTrack, frame.buffer, frame.bufferInfo);
+                recordFrameDequeued(CODEC_ENCODER);
+                stageStartTimeNs = System.nanoTime();
+                Tracing.beginSection(Tracing.SECTION_MUXER_WRITE);
+                try {
+                    mediaMuxer.writeSampleData(targetTrack, frame.buffer, frame.bufferInfo);
+                } finally {
+                    Tracing.endSection();
+                }
+                recordSampleWritten(frame.bufferInfo);
+                recordStageDuration(STAGE_MUX, stageStartTimeNs);
                 if (duration > 0) {
                     progress = ((float) frame.bufferInfo.presentationTimeUs) / duration;
                 }
             }
 
+            stageStartTimeNs = System.nanoTime();
             encoder.releaseOutputFrame(tag);
+            recordStageDuration(STAGE_ENCODE, stageStartTimeNs);
         } else {
             switch (tag) {
                 case MediaCodec.INFO_TRY_AGAIN_LATER:
                     //                        Log.d(TAG, "Will try getting encoder output buffer later");
+                    recordTryAgainLater(CODEC_ENCODER);
                     break;
                 case MediaCodec.INFO_OUTPUT_FORMAT_CHANGED:
                     // TODO for now, we assume that we only get one media format as a first buffer
@@ -241,7 +322,8 @@ public class AudioTrackTranscoder extends TrackTranscoder {
                         targetFormat = addMissingMetadata(sourceAudioFormat, outputMediaFormat);
                         targetTrack = mediaMuxer.addTrack(targetFormat, targetTrack);
                         targetTrackAdded = true;
-                        renderer.onMediaFormatChanged(sourceAudioFormat, targetFormat);
+                        // renderer produces encoder input, so it keeps converting to the format encoder was configured with
+                        renderer.onMediaFormatChanged(sourceAudioFormat, encoderInputFormat);
                     }
                     encodeFrameResult = RESULT_OUTPUT_MEDIA_FORMAT_CHANGED;
                     Log.d(TAG, "Encoder output format received " + outputMediaFormat);
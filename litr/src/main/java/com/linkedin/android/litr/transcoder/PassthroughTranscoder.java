@@ -15,9 +15,11 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.RestrictTo;
 import androidx.annotation.VisibleForTesting;
+import com.linkedin.android.litr.analytics.TrackTransformationInfo;
 import com.linkedin.android.litr.exception.TrackTranscoderException;
 import com.linkedin.android.litr.io.MediaSource;
 import com.linkedin.android.litr.io.MediaTarget;
+import com.linkedin.android.litr.io.SampleBatch;
 
 import java.nio.ByteBuffer;
 
@@ -29,9 +31,12 @@ public class PassthroughTranscoder extends TrackTranscoder {
     private static final String TAG = PassthroughTranscoder.class.getSimpleName();
 
     private static final int DEFAULT_BUFFER_SIZE = 1024 * 1024; // default to 1 Mb buffer
+    private static final int MAX_BATCH_SAMPLE_COUNT = 64;
 
+    // samples are moved in batches, output buffer is only used to write end of stream, which has no data
     @VisibleForTesting ByteBuffer outputBuffer;
     @VisibleForTesting MediaCodec.BufferInfo outputBufferInfo;
+    @VisibleForTesting SampleBatch sampleBatch;
 
     @VisibleForTesting int lastResult;
 
@@ -55,6 +60,7 @@ public class PassthroughTranscoder extends TrackTranscoder {
             outputBuffer.clear();
             outputBuffer = null;
         }
+        sampleBatch = null;
     }
 
     @Override
@@ -82,7 +88,11 @@ public class PassthroughTranscoder extends TrackTranscoder {
             int bufferSize = targetFormat.containsKey(MediaFormat.KEY_MAX_INPUT_SIZE)
                     ? targetFormat.getInteger(MediaFormat.KEY_MAX_INPUT_SIZE)
                     : DEFAULT_BUFFER_SIZE;
-            outputBuffer = ByteBuffer.allocate(bufferSize);
+            if (bufferSize <= 0) {
+                bufferSize = DEFAULT_BUFFER_SIZE;
+            }
+            outputBuffer = ByteBuffer.allocate(0);
+            sampleBatch = new SampleBatch(MAX_BATCH_SAMPLE_COUNT, bufferSize, Math.max(bufferSize, DEFAULT_BUFFER_SIZE));
 
             lastResult = RESULT_OUTPUT_MEDIA_FORMAT_CHANGED;
             return lastResult;
@@ -96,24 +106,49 @@ public class PassthroughTranscoder extends TrackTranscoder {
 
         lastResult = RESULT_FRAME_PROCESSED;
 
-        int bytesRead = mediaSource.readSampleData(outputBuffer, 0);
-        long sampleTime = mediaSource.getSampleTime();
-        int inputFlags = mediaSource.getSampleFlags();
+        return processNextBatch();
+    }
 
-        if (bytesRead < 0 || (inputFlags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
-            outputBuffer.clear();
+    /**
+     * Read available samples of source track in one batch and write ones within selection in as few calls as possible
+     */
+    private int processNextBatch() {
+        long stageStartTimeNs = System.nanoTime();
+        int sampleCount = mediaSource.readSamples(sourceTrack, sampleBatch);
+        recordStageDuration(TrackTransformationInfo.STAGE_EXTRACT, stageStartTimeNs);
+
+        if (sampleCount == 0) {
             progress = 1.0f;
             lastResult = RESULT_EOS_REACHED;
             Log.d(TAG, "Reach EoS on input stream");
-        } else if (sampleTime >= sourceMediaSelection.getEnd()) {
-            outputBuffer.clear();
-            progress = 1.0f;
-            outputBufferInfo.set(0, 0, sampleTime - sourceMediaSelection.getStart(), outputBufferInfo.flags | MediaCodec.BUFFER_FLAG_END_OF_STREAM);
-            mediaMuxer.writeSampleData(targetTrack, outputBuffer, outputBufferInfo);
-            lastResult = advanceToNextTrack();
-            Log.d(TAG, "Reach selection end on input stream");
-        } else {
-            if (sampleTime >= sourceMediaSelection.getStart()) {
+            return lastResult;
+        }
+
+        // samples are written in contiguous runs, skipping samples before selection start
+        int runStart = 0;
+        for (int sample = 0; sample < sampleCount; sample++) {
+            long sampleTime = sampleBatch.getTime(sample);
+            int inputFlags = sampleBatch.getFlags(sample);
+
+            if ((inputFlags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                writeSamples(runStart, sample);
+                progress = 1.0f;
+                lastResult = RESULT_EOS_REACHED;
+                Log.d(TAG, "Reach EoS on input stream");
+                return lastResult;
+            } else if (sampleTime >= sourceMediaSelection.getEnd()) {
+                writeSamples(runStart, sample);
+                progress = 1.0f;
+                outputBuffer.clear();
+                outputBufferInfo.set(0, 0, sampleTime - sourceMediaSelection.getStart(), MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                mediaMuxer.writeSampleData(targetTrack, outputBuffer, outputBufferInfo);
+                lastResult = advanceToNextTrack();
+                Log.d(TAG, "Reach selection end on input stream");
+                return lastResult;
+            } else if (sampleTime < sourceMediaSelection.getStart()) {
+                writeSamples(runStart, sample);
+                runStart = sample + 1;
+            } else {
                 int outputFlags = 0;
                 if ((inputFlags & MediaExtractor.SAMPLE_FLAG_SYNC) != 0) {
                     if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
@@ -123,18 +158,33 @@ public class PassthroughTranscoder extends TrackTranscoder {
                     }
                 }
                 sampleTime -= sourceMediaSelection.getStart();
+                sampleBatch.setTime(sample, sampleTime);
+                sampleBatch.setFlags(sample, outputFlags);
                 if (duration > 0) {
                     progress = ((float) sampleTime) / duration;
                 }
-                outputBufferInfo.set(0, bytesRead, sampleTime, outputFlags);
-                mediaMuxer.writeSampleData(targetTrack, outputBuffer, outputBufferInfo);
             }
-            mediaSource.advance();
         }
+        writeSamples(runStart, sampleCount);
 
         return lastResult;
     }
 
+    private void writeSamples(int fromSample, int toSample) {
+        if (fromSample >= toSample) {
+            return;
+        }
+        long stageStartTimeNs = System.nanoTime();
+        mediaMuxer.writeSamples(targetTrack, sampleBatch, fromSample, toSample);
+        recordStageDuration(TrackTransformationInfo.STAGE_MUX, stageStartTimeNs);
+
+        long byteCount = 0;
+        for (int sample = fromSample; sample < toSample; sample++) {
+            byteCount += sampleBatch.getSize(sample);
+        }
+        recordSamplesWritten(toSample - fromSample, byteCount);
+    }
+
     @Override
     @NonNull
     public String getEncoderName() {
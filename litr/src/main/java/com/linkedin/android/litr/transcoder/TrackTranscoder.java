@@ -14,6 +14,8 @@ import android.os.Build;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
+import com.linkedin.android.litr.analytics.TrackTransformationInfo;
+import com.linkedin.android.litr.analytics.Tracing;
 import com.linkedin.android.litr.codec.Decoder;
 import com.linkedin.android.litr.codec.Encoder;
 import com.linkedin.android.litr.exception.TrackTranscoderException;
@@ -52,6 +54,15 @@ public abstract class TrackTranscoder {
     protected long duration = UNDEFINED_VALUE;
     protected float progress;
 
+    private long framesWritten;
+    private long bytesWritten;
+
+    @Nullable protected TrackTransformationInfo stats;
+
+    // number of frames queued into decoder and encoder which did not come out yet, indexed by TrackTransformationInfo codec
+    private final long[] framesInFlight = new long[2];
+    @Nullable private String[] framesInFlightCounterNames;
+
     TrackTranscoder(@NonNull MediaSource mediaSource,
                     int sourceTrack,
                     @NonNull MediaTarget mediaTarget,
@@ -94,6 +105,23 @@ public abstract class TrackTranscoder {
 
     public abstract void stop();
 
+    /**
+     * Set a destination for per stage timing and codec metrics. When not set, metrics are not collected.
+     */
+    public void setStats(@Nullable TrackTransformationInfo stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Set id of a job this track transcoder belongs to. Frames in flight are traced in counters named after it.
+     */
+    public void setJobId(@NonNull String jobId) {
+        framesInFlightCounterNames = new String[] {
+                Tracing.getTrackCounterName(jobId, sourceTrack, Tracing.COUNTER_DECODER_FRAMES_IN_FLIGHT),
+                Tracing.getTrackCounterName(jobId, sourceTrack, Tracing.COUNTER_ENCODER_FRAMES_IN_FLIGHT)
+        };
+    }
+
     public int getSourceTrack() {
         return sourceTrack;
     }
@@ -106,6 +134,27 @@ public abstract class TrackTranscoder {
         return progress;
     }
 
+    /**
+     * Get duration of a selected part of source track, in microseconds, or {@link #UNDEFINED_VALUE} if unknown
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Get number of samples written into target track
+     */
+    public long getFramesWritten() {
+        return framesWritten;
+    }
+
+    /**
+     * Get number of bytes written into target track
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
     @NonNull
     public String getEncoderName() throws TrackTranscoderException {
         return encoder.getName();
@@ -133,6 +182,52 @@ public abstract class TrackTranscoder {
         return RESULT_END_OF_RANGE_REACHED;
     }
 
+    protected void recordSampleWritten(@NonNull MediaCodec.BufferInfo bufferInfo) {
+        framesWritten++;
+        bytesWritten += bufferInfo.size;
+    }
+
+    protected void recordSamplesWritten(int sampleCount, long byteCount) {
+        framesWritten += sampleCount;
+        bytesWritten += byteCount;
+    }
+
+    protected void recordStageDuration(@TrackTransformationInfo.Stage int stage, long stageStartTimeNs) {
+        if (stats != null) {
+            stats.addStageDuration(stage, System.nanoTime() - stageStartTimeNs);
+        }
+    }
+
+    protected void recordFrameQueued(@TrackTransformationInfo.Codec int codec) {
+        if (stats != null) {
+            stats.onFrameQueued(codec);
+        }
+        framesInFlight[codec]++;
+        traceFramesInFlight(codec);
+    }
+
+    protected void recordFrameDequeued(@TrackTransformationInfo.Codec int codec) {
+        if (stats != null) {
+            stats.onFrameDequeued(codec);
+        }
+        if (framesInFlight[codec] > 0) {
+            framesInFlight[codec]--;
+        }
+        traceFramesInFlight(codec);
+    }
+
+    private void traceFramesInFlight(@TrackTransformationInfo.Codec int codec) {
+        if (framesInFlightCounterNames != null) {
+            Tracing.setCounter(framesInFlightCounterNames[codec], framesInFlight[codec]);
+        }
+    }
+
+    protected void recordTryAgainLater(@TrackTransformationInfo.Codec int codec) {
+        if (stats != null) {
+            stats.onTryAgainLater(codec);
+        }
+    }
+
     protected MediaFormat addMissingMetadata(@NonNull MediaFormat sourceMediaFormat, @NonNull MediaFormat targetMediaFormat) {
         if (!targetMediaFormat.containsKey(MediaFormat.KEY_DURATION)
                 && sourceMediaFormat.containsKey(MediaFormat.KEY_DURATION)) {
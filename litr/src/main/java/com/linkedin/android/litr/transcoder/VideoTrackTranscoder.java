@@ -14,6 +14,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 import androidx.annotation.VisibleForTesting;
+import com.linkedin.android.litr.analytics.Tracing;
 import com.linkedin.android.litr.codec.Decoder;
 import com.linkedin.android.litr.codec.Encoder;
 import com.linkedin.android.litr.codec.Frame;
@@ -28,6 +29,14 @@ import com.linkedin.android.litr.utils.MediaFormatUtils;
 
 import java.util.concurrent.TimeUnit;
 
+import static com.linkedin.android.litr.analytics.TrackTransformationInfo.CODEC_DECODER;
+import static com.linkedin.android.litr.analytics.TrackTransformationInfo.CODEC_ENCODER;
+import static com.linkedin.android.litr.analytics.TrackTransformationInfo.STAGE_DECODE;
+import static com.linkedin.android.litr.analytics.TrackTransformationInfo.STAGE_ENCODE;
+import static com.linkedin.android.litr.analytics.TrackTransformationInfo.STAGE_EXTRACT;
+import static com.linkedin.android.litr.analytics.TrackTransformationInfo.STAGE_MUX;
+import static com.linkedin.android.litr.analytics.TrackTransformationInfo.STAGE_RENDER;
+
 /**
  * Transcoder that processes video tracks.
  */
@@ -165,15 +174,33 @@ public class VideoTrackTranscoder extends TrackTranscoder {
 
         int selectedTrack = mediaSource.getSampleTrackIndex();
         if (selectedTrack == sourceTrack || selectedTrack == NO_SELECTED_TRACK) {
-            int tag = decoder.dequeueInputFrame(0);
+            long stageStartTimeNs = System.nanoTime();
+            int tag;
+            Tracing.beginSection(Tracing.SECTION_DECODER_DEQUEUE_INPUT);
+            try {
+                tag = decoder.dequeueInputFrame(0);
+            } finally {
+                Tracing.endSection();
+            }
+            recordStageDuration(STAGE_DECODE, stageStartTimeNs);
             if (tag >= 0) {
                 Frame frame = decoder.getInputFrame(tag);
                 if (frame == null) {
                     throw new TrackTranscoderException(TrackTranscoderException.Error.NO_FRAME_AVAILABLE);
                 }
-                int bytesRead = mediaSource.readSampleData(frame.buffer, 0);
-                long sampleTime = mediaSource.getSampleTime();
-                int sampleFlags = mediaSource.getSampleFlags();
+                stageStartTimeNs = System.nanoTime();
+                int bytesRead;
+                long sampleTime;
+                int sampleFlags;
+                Tracing.beginSection(Tracing.SECTION_EXTRACT);
+                try {
+                    bytesRead = mediaSource.readSampleData(frame.buffer, 0);
+                    sampleTime = mediaSource.getSampleTime();
+                    sampleFlags = mediaSource.getSampleFlags();
+                } finally {
+                    Tracing.endSection();
+                }
+                recordStageDuration(STAGE_EXTRACT, stageStartTimeNs);
 
                 if (bytesRead < 0 || (sampleFlags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
                     frame.bufferInfo.set(0, 0, -1, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
@@ -187,14 +214,26 @@ public class VideoTrackTranscoder extends TrackTranscoder {
                     Log.d(TAG, "Selection end reached on the input stream");
                 } else {
                     frame.bufferInfo.set(0, bytesRead, sampleTime, sampleFlags);
-                    decoder.queueInputFrame(frame);
+                    stageStartTimeNs = System.nanoTime();
+                    Tracing.beginSection(Tracing.SECTION_DECODER_QUEUE_INPUT);
+                    try {
+                        decoder.queueInputFrame(frame);
+                    } finally {
+                        Tracing.endSection();
+                    }
+                    recordStageDuration(STAGE_DECODE, stageStartTimeNs);
+                    recordFrameQueued(CODEC_DECODER);
+
+                    stageStartTimeNs = System.nanoTime();
                     mediaSource.advance();
+                    recordStageDuration(STAGE_EXTRACT, stageStartTimeNs);
                     //Log.d(TAG, "Sample time: " + sampleTime + ", source bytes read: " + bytesRead);
                 }
             } else {
                 switch (tag) {
                     case MediaCodec.INFO_TRY_AGAIN_LATER:
                         //Log.d(TAG, "Will try getting decoder input buffer later");
+                        recordTryAgainLater(CODEC_DECODER);
                         break;
                     default:
                         Log.e(TAG, "Unhandled value " + tag + " when decoding an input frame");
@@ -209,7 +248,15 @@ public class VideoTrackTranscoder extends TrackTranscoder {
     private int resizeDecodedInputFrame() throws TrackTranscoderException {
         int decodeFrameResult = RESULT_FRAME_PROCESSED;
 
-        int tag = decoder.dequeueOutputFrame(0);
+        long stageStartTimeNs = System.nanoTime();
+        int tag;
+        Tracing.beginSection(Tracing.SECTION_DECODER_DEQUEUE_OUTPUT);
+        try {
+            tag = decoder.dequeueOutputFrame(0);
+        } finally {
+            Tracing.endSection();
+        }
+        recordStageDuration(STAGE_DECODE, stageStartTimeNs);
         if (tag >= 0) {
             Frame frame = decoder.getOutputFrame(tag);
             if (frame == null) {
@@ -221,14 +268,23 @@ public class VideoTrackTranscoder extends TrackTranscoder {
                 encoder.signalEndOfInputStream();
                 decodeFrameResult = RESULT_EOS_REACHED;
             } else {
+                recordFrameDequeued(CODEC_DECODER);
                 boolean isFrameAfterSelectionStart = frame.bufferInfo.presentationTimeUs >= sourceMediaSelection.getStart();
+                stageStartTimeNs = System.nanoTime();
                 decoder.releaseOutputFrame(tag, isFrameAfterSelectionStart);
 
                 final boolean shouldRender = frameDropper == null || frameDropper.shouldRender();
 
                 if (isFrameAfterSelectionStart && shouldRender) {
-                    renderer.renderFrame(null,
-                            TimeUnit.MICROSECONDS.toNanos(frame.bufferInfo.presentationTimeUs - sourceMediaSelection.getStart()));
+                    Tracing.beginSection(Tracing.SECTION_RENDER);
+                    try {
+                        renderer.renderFrame(null,
+                                TimeUnit.MICROSECONDS.toNanos(frame.bufferInfo.presentationTimeUs - sourceMediaSelection.getStart()));
+                    } finally {
+                        Tracing.endSection();
+                    }
+                    recordStageDuration(STAGE_RENDER, stageStartTimeNs);
+                    recordFrameQueued(CODEC_ENCODER);
                 } else {
                     decodeFrameResult = RESULT_FRAME_SKIPPED;
                 }
@@ -237,6 +293,7 @@ public class VideoTrackTranscoder extends TrackTranscoder {
             switch (tag) {
                 case MediaCodec.INFO_TRY_AGAIN_LATER:
                     // Log.d(TAG, "Will try getting decoder output later");
+                    recordTryAgainLater(CODEC_DECODER);
                     break;
                 case MediaCodec.INFO_OUTPUT_FORMAT_CHANGED:
                     sourceVideoFormat = addMissingMetadata(sourceVideoFormat, decoder.getOutputFormat());
@@ -255,7 +312,15 @@ public class VideoTrackTranscoder extends TrackTranscoder {
     private int writeEncodedOutputFrame() throws TrackTranscoderException {
         int encodeFrameResult = RESULT_FRAME_PROCESSED;
 
-        int index = encoder.dequeueOutputFrame(0);
+        long stageStartTimeNs = System.nanoTime();
+        int index;
+        Tracing.beginSection(Tracing.SECTION_ENCODER_DEQUEUE_OUTPUT);
+        try {
+            index = encoder.dequeueOutputFrame(0);
+        } finally {
+            Tracing.endSection();
+        }
+        recordStageDuration(STAGE_ENCODE, stageStartTimeNs);
         if (index >= 0) {
             Frame frame = encoder.getOutputFrame(index);
             if (frame == null) {
@@ -268,17 +333,29 @@ public class VideoTrackTranscoder extends TrackTranscoder {
                 encodeFrameResult = RESULT_EOS_REACHED;
             } else if (frame.bufferInfo.size > 0
                 && (frame.bufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) == 0) {
-                mediaMuxer.writeSampleData(targetTrack, frame.buffer, frame.bufferInfo);
+                recordFrameDequeued(CODEC_ENCODER);
+                stageStartTimeNs = System.nanoTime();
+                Tracing.beginSection(Tracing.SECTION_MUXER_WRITE);
+                try {
+                    mediaMuxer.writeSampleData(targetTrack, frame.buffer, frame.bufferInfo);
+                } finally {
+                    Tracing.endSection();
+                }
+                recordSampleWritten(frame.bufferInfo);
+                recordStageDuration(STAGE_MUX, stageStartTimeNs);
                 if (duration > 0) {
                     progress = ((float) frame.bufferInfo.presentationTimeUs) / duration;
                 }
             }
 
+            stageStartTimeNs = System.nanoTime();
             encoder.releaseOutputFrame(index);
+            recordStageDuration(STAGE_ENCODE, stageStartTimeNs);
         } else {
             switch (index) {
                 case MediaCodec.INFO_TRY_AGAIN_LATER:
                     // Log.d(TAG, "Will try getting encoder output buffer later");
+                    recordTryAgainLater(CODEC_ENCODER);
                     break;
                 case MediaCodec.INFO_OUTPUT_FORMAT_CHANGED:
                     // TODO for now, we assume that we only get one media format as a first buffer
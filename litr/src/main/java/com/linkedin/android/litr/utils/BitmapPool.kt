@@ -0,0 +1,109 @@
+/*
+ * Copyright 2021 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.utils
+
+import android.graphics.Bitmap
+import android.graphics.Canvas
+import android.graphics.Paint
+import android.graphics.PorterDuff
+import android.graphics.PorterDuffXfermode
+import java.util.ArrayDeque
+
+/**
+ * A helper thread safe class that manages a pool of mutable [Bitmap]s, keyed by their size and config, to increase bitmap reuse.
+ * This class is useful when same sized bitmaps are repeatedly produced and discarded, e.g. when extracting video frames.
+ *
+ * @param maxSizeBytes maximum total size of bitmaps kept in the pool, least recently used sizes are evicted first
+ */
+class BitmapPool(private val maxSizeBytes: Long) {
+
+    private val bitmaps = LinkedHashMap<BitmapKey, ArrayDeque<Bitmap>>(0, 0.75f, true)
+
+    /**
+     * Total size of bitmaps currently kept in the pool.
+     */
+    @get:Synchronized
+    var sizeBytes = 0L
+        private set
+
+    private val copyPaint = Paint().apply {
+        xfermode = PorterDuffXfermode(PorterDuff.Mode.SRC)
+    }
+
+    /**
+     * Get a bitmap from the pool. If a bitmap of requested size and config is available in the pool, it will be returned.
+     * Otherwise, new bitmap will be created. Contents of a returned bitmap are undefined, and must be fully overwritten.
+     */
+    fun get(width: Int, height: Int, config: Bitmap.Config = Bitmap.Config.ARGB_8888): Bitmap {
+        synchronized(this) {
+            val key = BitmapKey(width, height, config)
+            bitmaps[key]?.let { sizedBitmaps ->
+                val bitmap = sizedBitmaps.pollLast()
+                // drop sizes with no pooled bitmaps, so that pool does not accumulate keys of every size it has ever seen
+                if (sizedBitmaps.isEmpty()) {
+                    bitmaps.remove(key)
+                }
+                if (bitmap != null) {
+                    sizeBytes -= bitmap.allocationByteCount
+                    return bitmap
+                }
+            }
+        }
+        return Bitmap.createBitmap(width, height, config)
+    }
+
+    /**
+     * Put a bitmap back in the pool. Bitmap must not be used by its previous owner after calling this method.
+     * Immutable and recycled bitmaps are ignored.
+     */
+    @Synchronized
+    fun put(bitmap: Bitmap) {
+        if (bitmap.isRecycled || !bitmap.isMutable || bitmap.allocationByteCount > maxSizeBytes) {
+            return
+        }
+
+        val key = BitmapKey(bitmap.width, bitmap.height, bitmap.config ?: return)
+        val sizedBitmaps = bitmaps.getOrPut(key) { ArrayDeque() }
+        if (sizedBitmaps.any { it === bitmap }) {
+            return
+        }
+        sizedBitmaps.add(bitmap)
+        sizeBytes += bitmap.allocationByteCount
+
+        val iterator = bitmaps.values.iterator()
+        while (sizeBytes > maxSizeBytes && iterator.hasNext()) {
+            val evictedBitmaps = iterator.next()
+            while (sizeBytes > maxSizeBytes && evictedBitmaps.isNotEmpty()) {
+                sizeBytes -= evictedBitmaps.pollFirst()!!.allocationByteCount
+            }
+            if (evictedBitmaps.isEmpty()) {
+                iterator.remove()
+            }
+        }
+    }
+
+    /**
+     * Get a copy of a bitmap, using a bitmap from the pool if one is available.
+     */
+    fun copy(source: Bitmap): Bitmap {
+        val copy = get(source.width, source.height, source.config ?: Bitmap.Config.ARGB_8888)
+        Canvas(copy).drawBitmap(source, 0f, 0f, copyPaint)
+        return copy
+    }
+
+    /**
+     * Clear the pool, all entries in it will be removed.
+     */
+    @Synchronized
+    fun clear() {
+        bitmaps.clear()
+        sizeBytes = 0
+    }
+
+    private data class BitmapKey(val width: Int, val height: Int, val config: Bitmap.Config)
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.utils;
+
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.media.MediaFormat;
+import android.os.Build;
+import android.text.TextUtils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+import androidx.annotation.RestrictTo;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process wide index of device codecs, built once on first use. For every MIME type, encoders and decoders are
+ * ranked: hardware accelerated codecs first, then vendor codecs, then codecs supporting more profiles, keeping
+ * platform order otherwise. Reading {@link MediaCodecList} and querying capabilities is expensive, so every
+ * lookup after the first one is served from memory.
+ */
+@RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+@RestrictTo(RestrictTo.Scope.LIBRARY)
+public final class CodecCapabilityIndex {
+
+    private static volatile CodecCapabilityIndex instance;
+
+    @NonNull private final MediaCodecInfo[] codecInfos;
+    @NonNull private final Map<String, List<CodecEntry>> rankedCodecs = new ConcurrentHashMap<>();
+
+    @VisibleForTesting
+    CodecCapabilityIndex(@NonNull MediaCodecInfo[] codecInfos) {
+        this.codecInfos = codecInfos;
+    }
+
+    @NonNull
+    public static CodecCapabilityIndex getInstance() {
+        CodecCapabilityIndex index = instance;
+        if (index == null) {
+            synchronized (CodecCapabilityIndex.class) {
+                index = instance;
+                if (index == null) {
+                    index = new CodecCapabilityIndex(new MediaCodecList(MediaCodecList.ALL_CODECS).getCodecInfos());
+                    instance = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Get codecs which support a MIME type, ranked from most to least preferred
+     * @param mimeType media MIME type
+     * @param isEncoder look for encoders if true, decoders if false
+     * @return immutable ranked list of codecs, empty if none support the MIME type
+     */
+    @NonNull
+    public List<CodecEntry> getCodecs(@NonNull String mimeType, boolean isEncoder) {
+        String key = (isEncoder ? "e:" : "d:") + mimeType.toLowerCase(Locale.ROOT);
+        List<CodecEntry> codecs = rankedCodecs.get(key);
+        if (codecs == null) {
+            codecs = buildRankedCodecs(mimeType, isEncoder);
+            rankedCodecs.put(key, codecs);
+        }
+        return codecs;
+    }
+
+    /**
+     * Find a codec by name
+     * @param codecName codec name
+     * @param mimeType MIME type codec is used for
+     * @param isEncoder true if codec is an encoder, false if decoder
+     * @return codec, or null if no such codec supports the MIME type
+     */
+    @Nullable
+    public CodecEntry getCodec(@NonNull String codecName, @NonNull String mimeType, boolean isEncoder) {
+        for (CodecEntry codec : getCodecs(mimeType, isEncoder)) {
+            if (codec.getName().equals(codecName)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get names of codecs which support a media format, ranked from most to least preferred
+     * @param mediaFormat media format, must have a MIME type
+     * @param isEncoder look for encoders if true, decoders if false
+     */
+    @NonNull
+    public List<String> getCodecNamesForFormat(@NonNull MediaFormat mediaFormat, boolean isEncoder) {
+        String mimeType = mediaFormat.getString(MediaFormat.KEY_MIME);
+        List<String> codecNames = new ArrayList<>();
+        if (mimeType == null) {
+            return codecNames;
+        }
+        for (CodecEntry codec : getCodecs(mimeType, isEncoder)) {
+            if (codec.isFormatSupported(mediaFormat)) {
+                codecNames.add(codec.getName());
+            }
+        }
+        return codecNames;
+    }
+
+    @NonNull
+    private List<CodecEntry> buildRankedCodecs(@NonNull String mimeType, boolean isEncoder) {
+        List<CodecEntry> codecs = new ArrayList<>();
+        for (MediaCodecInfo codecInfo : codecInfos) {
+            if (codecInfo.isEncoder() != isEncoder || !supportsType(codecInfo, mimeType)) {
+                continue;
+            }
+            try {
+                MediaCodecInfo.CodecCapabilities capabilities = codecInfo.getCapabilitiesForType(mimeType);
+                if (capabilities != null) {
+                    codecs.add(new CodecEntry(codecInfo, capabilities));
+                }
+            } catch (IllegalArgumentException e) {
+                // type is not supported
+            }
+        }
+
+        // sort is stable, so codecs of the same rank keep platform preferred order
+        Collections.sort(codecs, (codec1, codec2) -> {
+            if (codec1.isHardwareAccelerated() != codec2.isHardwareAccelerated()) {
+                return codec1.isHardwareAccelerated() ? -1 : 1;
+            }
+            if (codec1.isVendor() != codec2.isVendor()) {
+                return codec1.isVendor() ? -1 : 1;
+            }
+            return Integer.compare(codec2.getProfiles().length, codec1.getProfiles().length);
+        });
+        return Collections.unmodifiableList(codecs);
+    }
+
+    private static boolean supportsType(@NonNull MediaCodecInfo mediaCodecInfo, @NonNull String mimeType) {
+        for (String supportedType : mediaCodecInfo.getSupportedTypes()) {
+            if (TextUtils.equals(mimeType, supportedType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Capabilities of a single codec for a single MIME type
+     */
+    public static final class CodecEntry {
+        @NonNull private final String name;
+        @NonNull private final MediaCodecInfo.CodecCapabilities capabilities;
+        @NonNull private final int[] profiles;
+        private final boolean isHardwareAccelerated;
+        private final boolean isVendor;
+        private final int maxSupportedInstances;
+
+        private CodecEntry(@NonNull MediaCodecInfo codecInfo, @NonNull MediaCodecInfo.CodecCapabilities capabilities) {
+            this.name = codecInfo.getName();
+            this.capabilities = capabilities;
+
+            MediaCodecInfo.CodecProfileLevel[] profileLevels = capabilities.profileLevels;
+            profiles = new int[profileLevels == null ? 0 : profileLevels.length];
+            for (int index = 0; index < profiles.length; index++) {
+                profiles[index] = profileLevels[index].profile;
+            }
+
+            maxSupportedInstances = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M
+                    ? capabilities.getMaxSupportedInstances()
+                    : CodecUtils.UNDEFINED_VALUE;
+
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                isHardwareAccelerated = codecInfo.isHardwareAccelerated();
+                isVendor = codecInfo.isVendor();
+            } else {
+                // before Q, software codecs shipped with the platform follow well known naming
+                String lowerCaseName = name.toLowerCase(Locale.ROOT);
+                boolean isPlatformCodec = lowerCaseName.startsWith("omx.google.")
+                        || lowerCaseName.startsWith("c2.android.")
+                        || lowerCaseName.startsWith("c2.google.");
+                isVendor = !isPlatformCodec;
+                isHardwareAccelerated = !isPlatformCodec
+                        && !lowerCaseName.contains(".sw.")
+                        && !lowerCaseName.endsWith(".sw");
+            }
+        }
+
+        @NonNull
+        public String getName() {
+            return name;
+        }
+
+        public boolean isHardwareAccelerated() {
+            return isHardwareAccelerated;
+        }
+
+        public boolean isVendor() {
+            return isVendor;
+        }
+
+        /**
+         * Get maximum number of concurrent codec instances supported by device, or {@link CodecUtils#UNDEFINED_VALUE}
+         * if unknown (before Android M)
+         */
+        public int getMaxSupportedInstances() {
+            return maxSupportedInstances;
+        }
+
+        /**
+         * Get {@link MediaCodecInfo.CodecProfileLevel} profile constants supported by this codec
+         */
+        @NonNull
+        public int[] getProfiles() {
+            return profiles;
+        }
+
+        public boolean isFormatSupported(@Nullable MediaFormat mediaFormat) {
+            try {
+                return mediaFormat == null || capabilities.isFormatSupported(mediaFormat);
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        }
+    }
+}
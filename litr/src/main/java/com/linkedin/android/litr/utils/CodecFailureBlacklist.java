@@ -0,0 +1,163 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.os.Build;
+import android.text.TextUtils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import androidx.annotation.VisibleForTesting;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers codecs which failed to be created or configured for a particular format shape (MIME type, resolution
+ * or audio layout, profile and direction), so that they are skipped when looking for a codec next time.
+ * Only failures which indicate that codec cannot handle a format are counted, and a codec is blacklisted after
+ * failing repeatedly, so that running out of codec resources or a one off error does not disable a good codec.
+ * When initialized with a {@link Context}, failures are persisted in {@link SharedPreferences}. Persisted failures are
+ * dropped when device build changes, since system update may fix codecs.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY)
+public final class CodecFailureBlacklist {
+
+    private static final String PREFERENCES_NAME = "com.linkedin.android.litr.codec_failures";
+    private static final String KEY_BUILD_FINGERPRINT = "build_fingerprint";
+    private static final String KEY_FAILURES = "failures";
+
+    @VisibleForTesting static final int FAILURE_THRESHOLD = 2;
+
+    private static final Set<String> failures = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    // failures of codecs which are not blacklisted yet, guarded by class lock
+    private static final Map<String, Integer> failureCounts = new HashMap<>();
+    @Nullable private static volatile SharedPreferences preferences;
+
+    private CodecFailureBlacklist() {}
+
+    /**
+     * Load persisted failures and start persisting new ones. Safe to call multiple times.
+     */
+    public static void init(@NonNull Context context) {
+        if (preferences != null) {
+            return;
+        }
+        synchronized (CodecFailureBlacklist.class) {
+            if (preferences != null) {
+                return;
+            }
+            SharedPreferences sharedPreferences = context.getApplicationContext()
+                    .getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+            if (TextUtils.equals(sharedPreferences.getString(KEY_BUILD_FINGERPRINT, null), Build.FINGERPRINT)) {
+                Set<String> persistedFailures = sharedPreferences.getStringSet(KEY_FAILURES, null);
+                if (persistedFailures != null) {
+                    failures.addAll(persistedFailures);
+                }
+            } else {
+                sharedPreferences.edit()
+                        .clear()
+                        .putString(KEY_BUILD_FINGERPRINT, Build.FINGERPRINT)
+                        .apply();
+            }
+            preferences = sharedPreferences;
+        }
+    }
+
+    public static boolean isBlacklisted(@NonNull String codecName, @NonNull MediaFormat mediaFormat, boolean isEncoder) {
+        return !failures.isEmpty() && failures.contains(getKey(codecName, mediaFormat, isEncoder));
+    }
+
+    /**
+     * Record a failure to create or configure a codec. Codec is blacklisted for a format shape once it fails
+     * {@link #FAILURE_THRESHOLD} times with an exception which is not caused by lack of resources.
+     * @param codecName name of a codec which failed
+     * @param mediaFormat format codec was configured with
+     * @param isEncoder true if codec is an encoder, false if decoder
+     * @param exception exception thrown when creating or configuring a codec
+     */
+    public static synchronized void recordFailure(@NonNull String codecName,
+                                                  @NonNull MediaFormat mediaFormat,
+                                                  boolean isEncoder,
+                                                  @NonNull Exception exception) {
+        if (!isFormatFailure(exception)) {
+            return;
+        }
+
+        String key = getKey(codecName, mediaFormat, isEncoder);
+        if (failures.contains(key)) {
+            return;
+        }
+        Integer previousFailureCount = failureCounts.get(key);
+        int failureCount = previousFailureCount == null ? 1 : previousFailureCount + 1;
+        if (failureCount < FAILURE_THRESHOLD) {
+            failureCounts.put(key, failureCount);
+            return;
+        }
+
+        failureCounts.remove(key);
+        failures.add(key);
+        SharedPreferences sharedPreferences = preferences;
+        if (sharedPreferences != null) {
+            sharedPreferences.edit()
+                    .putStringSet(KEY_FAILURES, new HashSet<>(failures))
+                    .apply();
+        }
+    }
+
+    /**
+     * Forget all failures, including persisted ones
+     */
+    public static synchronized void clear() {
+        failureCounts.clear();
+        failures.clear();
+        SharedPreferences sharedPreferences = preferences;
+        if (sharedPreferences != null) {
+            sharedPreferences.edit().remove(KEY_FAILURES).apply();
+        }
+    }
+
+    /**
+     * Check if an exception indicates that codec cannot handle a format. Transient and recoverable codec errors,
+     * as well as codec running out of resources (e.g. when too many codec instances are in use) say nothing
+     * about the format, neither does {@link IOException}, which is how codec allocation failures are reported.
+     */
+    @VisibleForTesting
+    static boolean isFormatFailure(@NonNull Exception exception) {
+        if (exception instanceof IOException) {
+            return false;
+        }
+        if (exception instanceof MediaCodec.CodecException) {
+            MediaCodec.CodecException codecException = (MediaCodec.CodecException) exception;
+            if (codecException.isTransient() || codecException.isRecoverable()) {
+                return false;
+            }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                int errorCode = codecException.getErrorCode();
+                return errorCode != MediaCodec.CodecException.ERROR_INSUFFICIENT_RESOURCE
+                        && errorCode != MediaCodec.CodecException.ERROR_RECLAIMED;
+            }
+        }
+        return true;
+    }
+
+    @NonNull
+    private static String getKey(@NonNull String codecName, @NonNull MediaFormat mediaFormat, boolean isEncoder) {
+        return codecName + '|' + CodecUtils.getFormatShape(mediaFormat, isEncoder);
+    }
+}
@@ -9,10 +9,8 @@ package com.linkedin.android.litr.utils;
 
 import android.media.MediaCodec;
 import android.media.MediaCodecInfo;
-import android.media.MediaCodecList;
 import android.media.MediaFormat;
 import android.os.Build;
-import android.text.TextUtils;
 import android.view.Surface;
 
 import androidx.annotation.NonNull;
@@ -135,6 +133,7 @@ public class CodecUtils {
     /**
      * Attempts to find highest supported codec profile for a given MIME type. Iterates through all codecs available,
      * filters for codecs that support provided MIME type and picks highest profile available among them.
+     * Codec capabilities are read once per process, see {@link CodecCapabilityIndex}.
      * Works only on API level 21 and above (Lollipop +)
      * @param mimeType media MIME type
      * @param isEncoder search through encoder codecs if true, decoder codecs if false
@@ -149,15 +148,11 @@ public class CodecUtils {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
             int maxProfileRank = targetProfile == UNDEFINED_VALUE ? Integer.MAX_VALUE : getProfileRank(mimeType, targetProfile);
 
-            MediaCodecList mediaCodecList = new MediaCodecList(MediaCodecList.ALL_CODECS);
-            for (MediaCodecInfo mediaCodecInfo : mediaCodecList.getCodecInfos()) {
-                if (supportsType(mediaCodecInfo, mimeType) && mediaCodecInfo.isEncoder() == isEncoder) {
-                    MediaCodecInfo.CodecCapabilities codecCapabilities = mediaCodecInfo.getCapabilitiesForType(mimeType);
-                    for (MediaCodecInfo.CodecProfileLevel codecProfileLevel : codecCapabilities.profileLevels) {
-                        if (getProfileRank(mimeType, codecProfileLevel.profile) > getProfileRank(mimeType, highestSupportedProfile)
-                                && getProfileRank(mimeType, codecProfileLevel.profile) <= maxProfileRank) {
-                            highestSupportedProfile = codecProfileLevel.profile;
-                        }
+            for (CodecCapabilityIndex.CodecEntry codec : CodecCapabilityIndex.getInstance().getCodecs(mimeType, isEncoder)) {
+                for (int profile : codec.getProfiles()) {
+                    if (getProfileRank(mimeType, profile) > getProfileRank(mimeType, highestSupportedProfile)
+                            && getProfileRank(mimeType, profile) <= maxProfileRank) {
+                        highestSupportedProfile = profile;
                     }
                 }
             }
@@ -166,6 +161,31 @@ public class CodecUtils {
         return highestSupportedProfile;
     }
 
+    /**
+     * Get a "shape" of a media format, which identifies formats a codec would be configured for in the same way:
+     * codec direction, MIME type, resolution (for video) or sample rate and channel count (for audio) and profile.
+     * @param mediaFormat media format
+     * @param isEncoder true if format is for an encoder, false if for a decoder
+     * @return format shape, to be used as a key
+     */
+    @NonNull
+    public static String getFormatShape(@NonNull MediaFormat mediaFormat, boolean isEncoder) {
+        String mimeType = mediaFormat.getString(MediaFormat.KEY_MIME);
+        StringBuilder shape = new StringBuilder()
+                .append(isEncoder ? 'e' : 'd')
+                .append('|')
+                .append(mimeType);
+        if (mimeType != null && mimeType.startsWith("video")) {
+            shape.append('|').append(getInteger(mediaFormat, MediaFormat.KEY_WIDTH))
+                    .append('x').append(getInteger(mediaFormat, MediaFormat.KEY_HEIGHT));
+        } else {
+            shape.append('|').append(getInteger(mediaFormat, MediaFormat.KEY_SAMPLE_RATE))
+                    .append('/').append(getInteger(mediaFormat, MediaFormat.KEY_CHANNEL_COUNT));
+        }
+        shape.append('|').append(getInteger(mediaFormat, MediaFormat.KEY_PROFILE));
+        return shape.toString();
+    }
+
     /**
      * Get and configure {@link MediaCodec} for provided parameters
      * @param mediaFormat {@link MediaFormat} for which to get the codec
@@ -225,7 +245,7 @@ public class CodecUtils {
                                                          boolean isEncoder) throws IOException, IllegalStateException {
         String mimeType = mediaFormat.getString(MediaFormat.KEY_MIME);
         MediaCodec mediaCodec = null;
-        List<Callable<MediaCodec>> supportedMediaCodecs = findCodecForFormatOrType(isEncoder, mimeType, null);
+        List<Callable<MediaCodec>> supportedMediaCodecs = findCodecForFormatOrType(isEncoder, mimeType, null, mediaFormat);
         if (!supportedMediaCodecs.isEmpty()) {
             mediaCodec = createAndConfigureCodec(mediaFormat, surface, isEncoder, supportedMediaCodecs);
         }
@@ -241,7 +261,7 @@ public class CodecUtils {
         MediaCodec mediaCodec = null;
         String mimeType = mediaFormat.getString(MediaFormat.KEY_MIME);
         List<Callable<MediaCodec>> supportedMediaCodecs = findCodecForFormatOrType(isEncoder, mimeType,
-                mediaFormat);
+                mediaFormat, mediaFormat);
         if (!supportedMediaCodecs.isEmpty()) {
             mediaCodec = createAndConfigureCodec(mediaFormat, surface, isEncoder, supportedMediaCodecs);
         }
@@ -270,6 +290,9 @@ public class CodecUtils {
                     mediaCodec.release();
                     mediaCodec = null;
                 }
+                if (callable instanceof NamedCodecFactory) {
+                    CodecFailureBlacklist.recordFailure(((NamedCodecFactory) callable).codecName, mediaFormat, isEncoder, e);
+                }
                 if (e instanceof IOException) {
                     error = (IOException) e;
                 }
@@ -286,40 +309,48 @@ public class CodecUtils {
         return mediaCodec;
     }
 
-    private static void configureMediaFormat(@NonNull MediaCodec mediaCodec,
-                                             @NonNull MediaFormat mediaFormat,
-                                             @Nullable Surface surface,
-                                             boolean isEncoder) throws IllegalStateException {
+    /**
+     * Configure a codec which is in uninitialized state
+     */
+    public static void configureMediaFormat(@NonNull MediaCodec mediaCodec,
+                                            @NonNull MediaFormat mediaFormat,
+                                            @Nullable Surface surface,
+                                            boolean isEncoder) throws IllegalStateException {
         mediaCodec.configure(mediaFormat, surface, null, isEncoder ? MediaCodec.CONFIGURE_FLAG_ENCODE : 0);
     }
 
     /**
      * This will iterate over all available codecs that support the mimeType param, and return them as a list of
-     * {@link Callable Callable#MediaCodec}, when will create the codec once calling {@link Callable#call()}
+     * {@link Callable Callable#MediaCodec}, when will create the codec once calling {@link Callable#call()}.
+     * Codecs are ranked by {@link CodecCapabilityIndex}. Codecs which previously failed for the same format shape
+     * (see {@link CodecFailureBlacklist}) are skipped, unless there are no other codecs to try.
      * @param encoder flag indicating if encoder codec is requested
      * @param mimeType the mime type for which to get the codecs that support it
      * @param mediaFormat {@link MediaFormat} if non-null, then only get the codecs that support the mediaFormat
+     * @param targetMediaFormat {@link MediaFormat} codec will be configured with, used to look up previous failures
      */
     @NonNull
     private static List<Callable<MediaCodec>> findCodecForFormatOrType(boolean encoder,
                                                                        @NonNull String mimeType,
-                                                                       @Nullable MediaFormat mediaFormat) {
+                                                                       @Nullable MediaFormat mediaFormat,
+                                                                       @NonNull MediaFormat targetMediaFormat) {
         List<Callable<MediaCodec>> supportedMediaCodecs = new ArrayList<>();
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-            MediaCodecList mediaCodecList = new MediaCodecList(MediaCodecList.ALL_CODECS);
-            for (MediaCodecInfo info : mediaCodecList.getCodecInfos()) {
-                if (info.isEncoder() != encoder) {
-                    continue;
-                }
-                try {
-                    MediaCodecInfo.CodecCapabilities caps = info.getCapabilitiesForType(mimeType);
-                    if (caps != null && (mediaFormat == null || caps.isFormatSupported(mediaFormat))) {
-                        supportedMediaCodecs.add(() -> MediaCodec.createByCodecName(info.getName()));
+            List<Callable<MediaCodec>> blacklistedMediaCodecs = new ArrayList<>();
+            for (CodecCapabilityIndex.CodecEntry codec : CodecCapabilityIndex.getInstance().getCodecs(mimeType, encoder)) {
+                if (codec.isFormatSupported(mediaFormat)) {
+                    NamedCodecFactory codecFactory = new NamedCodecFactory(codec.getName());
+                    if (CodecFailureBlacklist.isBlacklisted(codec.getName(), targetMediaFormat, encoder)) {
+                        blacklistedMediaCodecs.add(codecFactory);
+                    } else {
+                        supportedMediaCodecs.add(codecFactory);
                     }
-                } catch (IllegalArgumentException e) {
-                    // type is not supported
                 }
             }
+            if (supportedMediaCodecs.isEmpty()) {
+                // known bad codecs are better than no codecs at all
+                supportedMediaCodecs.addAll(blacklistedMediaCodecs);
+            }
         } else {
             supportedMediaCodecs.add(() -> encoder ? MediaCodec.createEncoderByType(mimeType) :
                     MediaCodec.createDecoderByType(mimeType));
@@ -327,14 +358,8 @@ public class CodecUtils {
         return supportedMediaCodecs;
     }
 
-    private static boolean supportsType(@NonNull MediaCodecInfo mediaCodecInfo, @NonNull String mimeType) {
-        String[] supportedTypes = mediaCodecInfo.getSupportedTypes();
-        for (String supportedType : supportedTypes) {
-            if (TextUtils.equals(mimeType, supportedType)) {
-                return true;
-            }
-        }
-        return false;
+    private static int getInteger(@NonNull MediaFormat mediaFormat, @NonNull String key) {
+        return mediaFormat.containsKey(key) ? mediaFormat.getInteger(key) : UNDEFINED_VALUE;
     }
 
     private static int getProfileRank(@NonNull String mimeType, int profile) {
@@ -354,4 +379,20 @@ public class CodecUtils {
         }
         return UNDEFINED_VALUE;
     }
+
+    /**
+     * Creates a codec by name, keeping the name so that a failure can be attributed to it
+     */
+    private static class NamedCodecFactory implements Callable<MediaCodec> {
+        @NonNull private final String codecName;
+
+        private NamedCodecFactory(@NonNull String codecName) {
+            this.codecName = codecName;
+        }
+
+        @Override
+        public MediaCodec call() throws IOException {
+            return MediaCodec.createByCodecName(codecName);
+        }
+    }
 }
@@ -25,6 +25,11 @@ class MediaFormatUtils {
             return getNumber(format, MediaFormat.KEY_SAMPLE_RATE) ?: defaultValue
         }
 
+        @JvmStatic
+        fun getPcmEncoding(format: MediaFormat, defaultValue: Number): Number {
+            return getNumber(format, MediaFormat.KEY_PCM_ENCODING) ?: defaultValue
+        }
+
         @JvmStatic
         fun getNumber(format: MediaFormat, key: String): Number? {
             return when {
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2022 LinkedIn Corporation
+ * All Rights Reserved.
+ *
+ * Licensed under the BSD 2-Clause License (the "License").  See License in the project root for
+ * license information.
+ */
+package com.linkedin.android.litr.utils
+
+import android.media.AudioFormat
+import android.media.MediaFormat
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+private const val PCM_8_SCALE = 128f
+private const val PCM_16_SCALE = 32768f
+private const val PCM_24_SCALE = 8388608f
+private const val PCM_32_SCALE = 2147483648.0
+
+/**
+ * Helpers for working with PCM audio in any encoding supported by Android: 8, 16, 24 (packed), 32 bit integer and float.
+ * Samples are converted to and from float values in [-1, 1] range. Each conversion runs a loop specialized for an encoding,
+ * so encoding is not checked for every sample. Multi-byte samples are always little endian.
+ */
+class PcmUtils {
+    companion object {
+
+        /**
+         * Returns PCM encoding of a raw audio [MediaFormat]. When it is not specified, 16 bit PCM is assumed, as per [MediaFormat] docs.
+         */
+        @JvmStatic
+        fun getPcmEncoding(format: MediaFormat?): Int {
+            return format?.let { MediaFormatUtils.getPcmEncoding(it, AudioFormat.ENCODING_PCM_16BIT).toInt() }
+                ?: AudioFormat.ENCODING_PCM_16BIT
+        }
+
+        @JvmStatic
+        fun isSupported(pcmEncoding: Int): Boolean {
+            return when (pcmEncoding) {
+                AudioFormat.ENCODING_PCM_8BIT,
+                AudioFormat.ENCODING_PCM_16BIT,
+                AudioFormat.ENCODING_PCM_24BIT_PACKED,
+                AudioFormat.ENCODING_PCM_32BIT,
+                AudioFormat.ENCODING_PCM_FLOAT -> true
+                else -> false
+            }
+        }
+
+        /**
+         * Returns size of a single channel sample, in bytes.
+         */
+        @JvmStatic
+        fun getBytesPerSample(pcmEncoding: Int): Int {
+            return when (pcmEncoding) {
+                AudioFormat.ENCODING_PCM_8BIT -> 1
+                AudioFormat.ENCODING_PCM_16BIT -> 2
+                AudioFormat.ENCODING_PCM_24BIT_PACKED -> 3
+                AudioFormat.ENCODING_PCM_32BIT, AudioFormat.ENCODING_PCM_FLOAT -> 4
+                else -> throw IllegalArgumentException("Unsupported PCM encoding $pcmEncoding")
+            }
+        }
+
+        /**
+         * Reads PCM samples from a buffer and converts them to float values.
+         * @param buffer source buffer, its position is not modified
+         * @param position absolute position of a first sample in a buffer
+         * @param pcmEncoding PCM encoding of buffer contents
+         * @param samples destination array
+         * @param sampleCount number of samples (not frames) to read
+         */
+        @JvmStatic
+        fun readSamples(buffer: ByteBuffer, position: Int, pcmEncoding: Int, samples: FloatArray, sampleCount: Int) {
+            val byteOrder = buffer.order()
+            buffer.order(ByteOrder.LITTLE_ENDIAN)
+
+            var bufferPosition = position
+            when (pcmEncoding) {
+                AudioFormat.ENCODING_PCM_8BIT -> for (index in 0 until sampleCount) {
+                    // 8 bit PCM is unsigned
+                    samples[index] = ((buffer.get(bufferPosition++).toInt() and 0xFF) - 128) / PCM_8_SCALE
+                }
+                AudioFormat.ENCODING_PCM_16BIT -> for (index in 0 until sampleCount) {
+                    samples[index] = buffer.getShort(bufferPosition) / PCM_16_SCALE
+                    bufferPosition += 2
+                }
+                AudioFormat.ENCODING_PCM_24BIT_PACKED -> for (index in 0 until sampleCount) {
+                    val value = (buffer.get(bufferPosition).toInt() and 0xFF) or
+                        ((buffer.get(bufferPosition + 1).toInt() and 0xFF) shl 8) or
+                        (buffer.get(bufferPosition + 2).toInt() shl 16)
+                    samples[index] = value / PCM_24_SCALE
+                    bufferPosition += 3
+                }
+                AudioFormat.ENCODING_PCM_32BIT -> for (index in 0 until sampleCount) {
+                    samples[index] = (buffer.getInt(bufferPosition) / PCM_32_SCALE).toFloat()
+                    bufferPosition += 4
+                }
+                AudioFormat.ENCODING_PCM_FLOAT -> for (index in 0 until sampleCount) {
+                    samples[index] = buffer.getFloat(bufferPosition)
+                    bufferPosition += 4
+                }
+                else -> throw IllegalArgumentException("Unsupported PCM encoding $pcmEncoding")
+            }
+
+            buffer.order(byteOrder)
+        }
+
+        /**
+         * Converts float values to PCM samples and writes them into a buffer. Integer samples are rounded and clipped, float samples
+         * are written as is.
+         * @param samples source array
+         * @param sampleCount number of samples (not frames) to write
+         * @param buffer destination buffer, its position is not modified
+         * @param position absolute position of a first sample in a buffer
+         * @param pcmEncoding PCM encoding of buffer contents
+         */
+        @JvmStatic
+        fun writeSamples(samples: FloatArray, sampleCount: Int, buffer: ByteBuffer, position: Int, pcmEncoding: Int) {
+            val byteOrder = buffer.order()
+            buffer.order(ByteOrder.LITTLE_ENDIAN)
+
+            var bufferPosition = position
+            when (pcmEncoding) {
+                AudioFormat.ENCODING_PCM_8BIT -> for (index in 0 until sampleCount) {
+                    val value = Math.round(samples[index] * PCM_8_SCALE).coerceIn(-128, 127)
+                    buffer.put(bufferPosition++, (value + 128).toByte())
+                }
+                AudioFormat.ENCODING_PCM_16BIT -> for (index in 0 until sampleCount) {
+                    val value = Math.round(samples[index] * PCM_16_SCALE).coerceIn(Short.MIN_VALUE.toInt(), Short.MAX_VALUE.toInt())
+                    buffer.putShort(bufferPosition, value.toShort())
+                    bufferPosition += 2
+                }
+                AudioFormat.ENCODING_PCM_24BIT_PACKED -> for (index in 0 until sampleCount) {
+                    val value = Math.round(samples[index] * PCM_24_SCALE).coerceIn(-8388608, 8388607)
+                    buffer.put(bufferPosition, value.toByte())
+                    buffer.put(bufferPosition + 1, (value shr 8).toByte())
+                    buffer.put(bufferPosition + 2, (value shr 16).toByte())
+                    bufferPosition += 3
+                }
+                AudioFormat.ENCODING_PCM_32BIT -> for (index in 0 until sampleCount) {
+                    val value = Math.round(samples[index] * PCM_32_SCALE).coerceIn(Int.MIN_VALUE.toLong(), Int.MAX_VALUE.toLong())
+                    buffer.putInt(bufferPosition, value.toInt())
+                    bufferPosition += 4
+                }
+                AudioFormat.ENCODING_PCM_FLOAT -> for (index in 0 until sampleCount) {
+                    buffer.putFloat(bufferPosition, samples[index])
+                    bufferPosition += 4
+                }
+                else -> throw IllegalArgumentException("Unsupported PCM encoding $pcmEncoding")
+            }
+
+            buffer.order(byteOrder)
+        }
+    }
+}
@@ -21,6 +21,8 @@ import androidx.annotation.VisibleForTesting;
 import com.linkedin.android.litr.TrackTransform;
 import com.linkedin.android.litr.io.MediaRange;
 import com.linkedin.android.litr.io.MediaSource;
+import com.linkedin.android.litr.probe.MediaProbeResult;
+import com.linkedin.android.litr.probe.SampleIndex;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -56,6 +58,12 @@ public final class TranscoderUtils {
         }
 
         for (TrackTransform trackTransform : trackTransforms) {
+            long passthroughSize = getPassthroughSize(trackTransform);
+            if (passthroughSize >= 0) {
+                estimatedFileSize += passthroughSize * BITS_IN_BYTE;
+                continue;
+            }
+
             MediaFormat sourceTrackFormat = trackTransform.getMediaSource().getTrackFormat(trackTransform.getSourceTrack());
             int bitrate = getBitrate(sourceTrackFormat);
             long duration = getDuration(trackTransform);
@@ -87,6 +95,19 @@ public final class TranscoderUtils {
         return (long) estimatedFileSize;
     }
 
+    /**
+     * Get exact size of a track which is passed through, if source has a sample index
+     * @return size of selected samples in bytes, -1 if track is transcoded or source has no index
+     */
+    private static long getPassthroughSize(@NonNull TrackTransform trackTransform) {
+        SampleIndex sampleIndex = trackTransform.getMediaSource().getSampleIndex();
+        if (trackTransform.getTargetFormat() != null || sampleIndex == null) {
+            return -1;
+        }
+        MediaRange selection = trackTransform.getMediaSource().getSelection();
+        return sampleIndex.getTrack(trackTransform.getSourceTrack()).getSize(selection.getStart(), selection.getEnd());
+    }
+
     /**
      * Estimate target file size for a video with one video and one audio track
      * @param mediaSource source video
@@ -116,6 +137,53 @@ public final class TranscoderUtils {
         return getEstimatedTargetFileSize(trackTransforms);
     }
 
+    /**
+     * Estimate target file size for a video, using its {@link MediaProbeResult}
+     * @param probeResult source video summary
+     * @param selection selected range of source video
+     * @param targetVideoFormat target video format
+     * @param targetAudioFormat target audio format, null if not transformed
+     * @return estimated size in bytes, zero if estimation fails
+     */
+    public static long getEstimatedTargetVideoFileSize(@NonNull MediaProbeResult probeResult,
+                                                       @NonNull MediaRange selection,
+                                                       @NonNull MediaFormat targetVideoFormat,
+                                                       @Nullable MediaFormat targetAudioFormat) {
+        long maxDurationUs = 0;
+        for (MediaProbeResult.Track track : probeResult.getTracks()) {
+            maxDurationUs = Math.max(getSelectedDuration(track.getDurationUs(), selection), maxDurationUs);
+        }
+
+        float estimatedFileSize = 0;
+        for (MediaProbeResult.Track track : probeResult.getTracks()) {
+            long duration = getSelectedDuration(track.getDurationUs(), selection);
+            if (duration < 0) {
+                Log.d(TAG, "Track duration is not available, using maximum duration");
+                duration = maxDurationUs;
+            }
+
+            int bitrate = track.getBitrate();
+            if (track.isVideo()) {
+                bitrate = getBitrate(targetVideoFormat);
+            } else if (track.isAudio()) {
+                if (targetAudioFormat != null) {
+                    bitrate = getBitrate(targetAudioFormat);
+                } else if (bitrate < 0) {
+                    bitrate = COMMON_AUDIO_BITRATE_KBPS * BITS_IN_KILO;
+                }
+            }
+
+            if (bitrate < 0) {
+                Log.d(TAG, "Bitrate is not available, cannot use that track to estimate size");
+                bitrate = 0;
+            }
+
+            estimatedFileSize += bitrate * TimeUtils.microsToSeconds(duration);
+        }
+
+        return (long) (estimatedFileSize / BITS_IN_BYTE);
+    }
+
     /**
      * Estimates video track bitrate. On many devices bitrate value is not specified in {@link MediaFormat} for video track.
      * Since not all data required for accurate estimation is available, this method makes several assumptions:
@@ -243,12 +311,16 @@ public final class TranscoderUtils {
         long trackDuration = -1;
         if (trackFormat.containsKey(MediaFormat.KEY_DURATION)) {
             trackDuration = trackFormat.getLong(MediaFormat.KEY_DURATION);
-
-            // Get the user specified MediaRange's duration
-            final MediaRange mediaRange = trackTransform.getMediaSource().getSelection();
-            trackDuration = Math.min(trackDuration, mediaRange.getEnd()) - Math.max(0, mediaRange.getStart());
         }
 
-        return trackDuration;
+        // Get the user specified MediaRange's duration
+        return getSelectedDuration(trackDuration, trackTransform.getMediaSource().getSelection());
+    }
+
+    private static long getSelectedDuration(long trackDuration, @NonNull MediaRange mediaRange) {
+        if (trackDuration < 0) {
+            return -1;
+        }
+        return Math.min(trackDuration, mediaRange.getEnd()) - Math.max(0, mediaRange.getStart());
     }
 }
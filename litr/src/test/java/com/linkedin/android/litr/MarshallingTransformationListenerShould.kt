@@ -0,0 +1,107 @@
+package com.linkedin.android.litr
+
+import android.os.Looper
+import org.junit.Test
+import org.mockito.kotlin.any
+import org.mockito.kotlin.anyOrNull
+import org.mockito.kotlin.eq
+import org.mockito.kotlin.inOrder
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.never
+import org.mockito.kotlin.times
+import org.mockito.kotlin.verify
+import java.util.concurrent.Future
+import kotlin.test.assertEquals
+
+private const val JOB_ID = "job"
+
+class MarshallingTransformationListenerShould {
+
+    private val listener = mock<TransformationListener>()
+
+    // events sent to looper, delivered when test runs the looper
+    private val sentEvents = mutableListOf<MarshallingTransformationListener.Event>()
+    private val marshallingListener = object : MarshallingTransformationListener(
+        mutableMapOf<String, Future<*>>(),
+        listener,
+        mock<Looper>()
+    ) {
+        override fun sendEvent(event: MarshallingTransformationListener.Event) {
+            sentEvents.add(event)
+        }
+    }
+
+    @Test
+    fun `deliver only latest progress reported before looper runs`() {
+        val progresses = listOf(0.1f, 0.2f, 0.3f).map { createProgress(it) }
+
+        progresses.forEach { marshallingListener.onProgress(JOB_ID, it) }
+
+        assertEquals(1, sentEvents.size)
+        runLooper()
+        verify(listener).onProgress(JOB_ID, 0.3f)
+        verify(listener).onProgress(JOB_ID, progresses.last())
+        verify(listener, times(1)).onProgress(any(), any<Float>())
+        verify(listener, times(1)).onProgress(any(), any<TransformationProgress>())
+    }
+
+    @Test
+    fun `send progress again once pending progress is delivered`() {
+        val firstProgress = createProgress(0.1f)
+        val secondProgress = createProgress(0.2f)
+
+        marshallingListener.onProgress(JOB_ID, firstProgress)
+        runLooper()
+        marshallingListener.onProgress(JOB_ID, secondProgress)
+        runLooper()
+
+        inOrder(listener) {
+            verify(listener).onProgress(JOB_ID, firstProgress)
+            verify(listener).onProgress(JOB_ID, secondProgress)
+        }
+    }
+
+    @Test
+    fun `deliver lifecycle events in order after coalesced progress`() {
+        val latestProgress = createProgress(0.9f)
+
+        marshallingListener.onStarted(JOB_ID)
+        marshallingListener.onProgress(JOB_ID, createProgress(0.5f))
+        marshallingListener.onProgress(JOB_ID, latestProgress)
+        marshallingListener.onCompleted(JOB_ID, emptyList(), emptyList())
+
+        assertEquals(3, sentEvents.size)
+        runLooper()
+        inOrder(listener) {
+            verify(listener).onStarted(JOB_ID)
+            verify(listener).onProgress(JOB_ID, latestProgress)
+            verify(listener).onCompleted(eq(JOB_ID), anyOrNull(), eq(emptyList()))
+        }
+        verify(listener, times(1)).onProgress(any(), any<TransformationProgress>())
+    }
+
+    @Test
+    fun `deliver error after coalesced progress`() {
+        val cause = IllegalStateException()
+
+        marshallingListener.onProgress(JOB_ID, createProgress(0.1f))
+        marshallingListener.onProgress(JOB_ID, createProgress(0.2f))
+        marshallingListener.onError(JOB_ID, cause, emptyList())
+
+        runLooper()
+        inOrder(listener) {
+            verify(listener).onProgress(JOB_ID, 0.2f)
+            verify(listener).onError(eq(JOB_ID), eq(cause), anyOrNull())
+        }
+        verify(listener, never()).onProgress(JOB_ID, 0.1f)
+    }
+
+    private fun runLooper() {
+        val events = sentEvents.toList()
+        sentEvents.clear()
+        events.forEach { marshallingListener.deliverEvent(it) }
+    }
+
+    private fun createProgress(progress: Float) =
+        TransformationProgress(progress, 0, FloatArray(0), 0f, 0, TransformationProgress.UNKNOWN_VALUE)
+}
@@ -0,0 +1,144 @@
+package com.linkedin.android.litr
+
+import android.media.MediaCodecInfo.CodecProfileLevel
+import android.media.MediaExtractor
+import android.media.MediaFormat
+import com.linkedin.android.litr.io.MediaRange
+import com.linkedin.android.litr.probe.MediaProbeResult
+import com.linkedin.android.litr.probe.SampleIndex
+import org.junit.Test
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.whenever
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+
+private const val MAX_VIDEO_BITRATE = 5_000_000
+
+class PassthroughConstraintsShould {
+
+    private val constraints = PassthroughConstraints.Builder()
+        .setMaxDimensions(1280, 720)
+        .setMaxVideoBitrate(MAX_VIDEO_BITRATE)
+        .addAllowedCodec(MimeType.VIDEO_AVC, CodecProfileLevel.AVCProfileBaseline, CodecProfileLevel.AVCProfileHigh)
+        .build()
+
+    private val targetFormat = createMediaFormat(MimeType.VIDEO_HEVC)
+
+    @Test
+    fun `allow passthrough of compliant portrait video`() {
+        val sourceTrack = createVideoTrack(MimeType.VIDEO_AVC, 720, 1280, MAX_VIDEO_BITRATE, CodecProfileLevel.AVCProfileHigh)
+
+        assertNull(constraints.getViolation(sourceTrack, targetFormat))
+    }
+
+    @Test
+    fun `require transcoding when source exceeds constraints`() {
+        assertNotNull(constraints.getViolation(
+            createVideoTrack(MimeType.VIDEO_AVC, 1920, 1080, MAX_VIDEO_BITRATE, CodecProfileLevel.AVCProfileHigh),
+            targetFormat))
+        assertNotNull(constraints.getViolation(
+            createVideoTrack(MimeType.VIDEO_AVC, 1280, 720, MAX_VIDEO_BITRATE + 1, CodecProfileLevel.AVCProfileHigh),
+            targetFormat))
+        assertNotNull(constraints.getViolation(
+            createVideoTrack(MimeType.VIDEO_AVC, 1280, 720, MAX_VIDEO_BITRATE, CodecProfileLevel.AVCProfileMain),
+            targetFormat))
+        assertNotNull(constraints.getViolation(
+            createVideoTrack(MimeType.VIDEO_HEVC, 1280, 720, MAX_VIDEO_BITRATE, CodecProfileLevel.HEVCProfileMain),
+            targetFormat))
+    }
+
+    @Test
+    fun `require transcoding when constrained value is unknown`() {
+        val keyFrameConstraints = PassthroughConstraints.Builder()
+            .setMaxKeyFrameInterval(2f)
+            .build()
+        val sourceTrack = createVideoTrack(MimeType.VIDEO_AVC, 1280, 720, MAX_VIDEO_BITRATE, CodecProfileLevel.AVCProfileHigh)
+
+        assertNotNull(keyFrameConstraints.getViolation(sourceTrack, createMediaFormat(MimeType.VIDEO_AVC)))
+    }
+
+    @Test
+    fun `only allow target codec when no codecs are allowed explicitly`() {
+        val bitrateConstraints = PassthroughConstraints.Builder()
+            .setMaxVideoBitrate(MAX_VIDEO_BITRATE)
+            .build()
+        val sourceTrack = createVideoTrack(MimeType.VIDEO_AVC, 1280, 720, MAX_VIDEO_BITRATE, CodecProfileLevel.AVCProfileHigh)
+
+        assertNull(bitrateConstraints.getViolation(sourceTrack, createMediaFormat(MimeType.VIDEO_AVC)))
+        assertNotNull(bitrateConstraints.getViolation(sourceTrack, createMediaFormat(MimeType.VIDEO_HEVC)))
+    }
+
+    @Test
+    fun `require transcoding when audio does not match target sample rate or channel count`() {
+        val audioConstraints = PassthroughConstraints.Builder().build()
+        val audioTargetFormat = createMediaFormat(MimeType.AUDIO_AAC)
+        audioTargetFormat.stubInteger(MediaFormat.KEY_SAMPLE_RATE, 48000)
+        audioTargetFormat.stubInteger(MediaFormat.KEY_CHANNEL_COUNT, 2)
+
+        assertNull(audioConstraints.getViolation(createAudioTrack(48000, 2), audioTargetFormat))
+        assertNotNull(audioConstraints.getViolation(createAudioTrack(44100, 2), audioTargetFormat))
+        assertNotNull(audioConstraints.getViolation(createAudioTrack(48000, 1), audioTargetFormat))
+        // values not set in target format are not constrained
+        assertNull(audioConstraints.getViolation(createAudioTrack(44100, 1), createMediaFormat(MimeType.AUDIO_AAC)))
+    }
+
+    @Test
+    fun `require transcoding when trimmed selection does not start on a sync sample`() {
+        val sourceTrack = createVideoTrack(MimeType.VIDEO_AVC, 1280, 720, MAX_VIDEO_BITRATE, CodecProfileLevel.AVCProfileHigh)
+        // sync samples at 0 and 1 second, other samples every 250 milliseconds
+        val sampleIndexBuilder = SampleIndex.Builder(1)
+        repeat(8) { sample ->
+            sampleIndexBuilder.addSample(0, sample * 250_000L, 1, if (sample % 4 == 0) MediaExtractor.SAMPLE_FLAG_SYNC else 0)
+        }
+        val trackIndex = sampleIndexBuilder.build().getTrack(0)
+
+        assertNull(constraints.getViolation(sourceTrack, targetFormat, MediaRange(0, 500_000), null))
+        assertNull(constraints.getViolation(sourceTrack, targetFormat, MediaRange(1_000_000, Long.MAX_VALUE), trackIndex))
+        assertNotNull(constraints.getViolation(sourceTrack, targetFormat, MediaRange(500_000, Long.MAX_VALUE), trackIndex))
+        assertNotNull(constraints.getViolation(sourceTrack, targetFormat, MediaRange(1_000_000, Long.MAX_VALUE), null))
+    }
+
+    @Test
+    fun `allow trimmed selection of a track with only sync samples`() {
+        val audioConstraints = PassthroughConstraints.Builder().build()
+        val sampleIndexBuilder = SampleIndex.Builder(1)
+        repeat(8) { sample ->
+            sampleIndexBuilder.addSample(0, sample * 21_333L, 1, MediaExtractor.SAMPLE_FLAG_SYNC)
+        }
+        val trackIndex = sampleIndexBuilder.build().getTrack(0)
+
+        assertNull(audioConstraints.getViolation(
+            createAudioTrack(48000, 2),
+            createMediaFormat(MimeType.AUDIO_AAC),
+            MediaRange(50_000, Long.MAX_VALUE),
+            trackIndex))
+    }
+
+    private fun createAudioTrack(sampleRate: Int, channelCount: Int): MediaProbeResult.Track {
+        val mediaFormat = createMediaFormat(MimeType.AUDIO_AAC)
+        mediaFormat.stubInteger(MediaFormat.KEY_SAMPLE_RATE, sampleRate)
+        mediaFormat.stubInteger(MediaFormat.KEY_CHANNEL_COUNT, channelCount)
+        return MediaProbeResult.Track.fromMediaFormat(mediaFormat)
+    }
+
+    private fun createVideoTrack(mimeType: String, width: Int, height: Int, bitrate: Int, profile: Int): MediaProbeResult.Track {
+        val mediaFormat = createMediaFormat(mimeType)
+        mediaFormat.stubInteger(MediaFormat.KEY_WIDTH, width)
+        mediaFormat.stubInteger(MediaFormat.KEY_HEIGHT, height)
+        mediaFormat.stubInteger(MediaFormat.KEY_BIT_RATE, bitrate)
+        mediaFormat.stubInteger(MediaFormat.KEY_PROFILE, profile)
+        return MediaProbeResult.Track.fromMediaFormat(mediaFormat)
+    }
+
+    private fun createMediaFormat(mimeType: String): MediaFormat {
+        val mediaFormat = mock<MediaFormat>()
+        whenever(mediaFormat.containsKey(MediaFormat.KEY_MIME)).thenReturn(true)
+        whenever(mediaFormat.getString(MediaFormat.KEY_MIME)).thenReturn(mimeType)
+        return mediaFormat
+    }
+
+    private fun MediaFormat.stubInteger(key: String, value: Int) {
+        whenever(containsKey(key)).thenReturn(true)
+        whenever(getInteger(key)).thenReturn(value)
+    }
+}
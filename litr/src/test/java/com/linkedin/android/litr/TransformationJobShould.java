@@ -12,13 +12,14 @@ import static junit.framework.Assert.assertFalse;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
-import static org.mockito.ArgumentMatchers.anyFloat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.nullable;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
@@ -32,8 +33,11 @@ import com.linkedin.android.litr.analytics.TrackTransformationInfo;
 import com.linkedin.android.litr.analytics.TransformationStatsCollector;
 import com.linkedin.android.litr.codec.Decoder;
 import com.linkedin.android.litr.codec.Encoder;
+import com.linkedin.android.litr.exception.ContentManifestException;
 import com.linkedin.android.litr.exception.InsufficientDiskSpaceException;
 import com.linkedin.android.litr.exception.TrackTranscoderException;
+import com.linkedin.android.litr.io.ContentManifest;
+import com.linkedin.android.litr.io.DigestingMediaTarget;
 import com.linkedin.android.litr.io.MediaRange;
 import com.linkedin.android.litr.io.MediaSource;
 import com.linkedin.android.litr.io.MediaTarget;
@@ -52,6 +56,7 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -85,6 +90,7 @@ public class TransformationJobShould {
     @Mock private TransformationStatsCollector statsCollector;
 
     @Captor private ArgumentCaptor<List<TrackTransformationInfo>> trackTransformationInfosCaptor;
+    @Captor private ArgumentCaptor<TransformationProgress> progressCaptor;
 
     private List<TrackTransform> trackTransforms;
 
@@ -213,13 +219,63 @@ public class TransformationJobShould {
         verify(statsCollector).addSourceTrack(sourceVideoFormat);
         verify(statsCollector).addSourceTrack(sourceAudioFormat);
         verify(statsCollector).setTargetFormat(1, targetAudioFormat);
+        verify(statsCollector).setTrackPlan(0, TrackTransformationInfo.PLAN_TRANSCODE, null);
+        verify(statsCollector).setTrackPlan(1, TrackTransformationInfo.PLAN_TRANSCODE, null);
         // Verify release of resources
         verify(transformationJob).release();
         // Verify output is not deleted in success scenarios
         verify(transformationJob, never()).deleteOutputFiles();
         // Verify invocation of completion callback with latest stats
         verify(statsCollector).getStats();
-        verify(marshallingTransformationListener).onCompleted(eq(JOB_ID), ArgumentMatchers.<TrackTransformationInfo>anyList());
+        // no manifests are computed when targets do not request them
+        verify(marshallingTransformationListener).onCompleted(eq(JOB_ID),
+                                                              ArgumentMatchers.<TrackTransformationInfo>anyList(),
+                                                              eq(Collections.<ContentManifest>emptyList()));
+    }
+
+    @Test
+    public void reportErrorAndKeepOutputWhenContentManifestCannotBeComputed() throws Exception {
+        DigestingMediaTarget digestingMediaTarget = mock(DigestingMediaTarget.class);
+        doReturn(OUTPUT_FILE_PATH).when(digestingMediaTarget).getOutputFilePath();
+        IOException cause = new IOException("Cannot read output");
+        doThrow(cause).when(digestingMediaTarget).getContentManifest();
+        TrackTransform trackTransform = new TrackTransform.Builder(mediaSource, SOURCE_TRACK_VIDEO, digestingMediaTarget)
+            .setDecoder(decoder)
+            .setRenderer(renderer)
+            .setEncoder(encoder)
+            .setTargetTrack(SOURCE_TRACK_VIDEO)
+            .setTargetFormat(targetVideoFormat)
+            .build();
+        doReturn(videoTrackTranscoder).when(trackTranscoderFactory).create(SOURCE_TRACK_VIDEO,
+                                                                           SOURCE_TRACK_VIDEO,
+                                                                           mediaSource,
+                                                                           decoder,
+                                                                           renderer,
+                                                                           encoder,
+                                                                           digestingMediaTarget,
+                                                                           targetVideoFormat);
+        TransformationJob digestingTransformationJob = spy(new TransformationJob(JOB_ID,
+                                                                                 Collections.singletonList(trackTransform),
+                                                                                 MAX_PROGRESS,
+                                                                                 marshallingTransformationListener));
+        digestingTransformationJob.trackTranscoderFactory = trackTranscoderFactory;
+        digestingTransformationJob.diskUtil = diskUtil;
+        digestingTransformationJob.statsCollector = statsCollector;
+
+        digestingTransformationJob.transform();
+
+        ArgumentCaptor<Throwable> errorCaptor = ArgumentCaptor.forClass(Throwable.class);
+        verify(marshallingTransformationListener).onError(eq(JOB_ID),
+                                                          errorCaptor.capture(),
+                                                          ArgumentMatchers.<TrackTransformationInfo>anyList());
+        assertTrue(errorCaptor.getValue() instanceof ContentManifestException);
+        assertThat(((ContentManifestException) errorCaptor.getValue()).getOutputFilePath(), is(OUTPUT_FILE_PATH));
+        assertThat(errorCaptor.getValue().getCause(), is((Throwable) cause));
+        verify(marshallingTransformationListener, never()).onCompleted(anyString(),
+                                                                       ArgumentMatchers.<TrackTransformationInfo>anyList(),
+                                                                       ArgumentMatchers.<ContentManifest>anyList());
+        // output itself is valid
+        verify(digestingTransformationJob, never()).deleteOutputFiles();
     }
 
     @Test(expected = InsufficientDiskSpaceException.class)
@@ -259,6 +315,47 @@ public class TransformationJobShould {
         verify(statsCollector).setTrackCodecs(0, videoTrackTranscoder.getDecoderName(), videoTrackTranscoder.getDecoderName());
     }
 
+    @Test
+    public void setUpAudioTrackOnSetupThreadAndVideoTrackOnJobThread() throws Exception {
+        when(targetVideoFormat.containsKey(MediaFormat.KEY_MIME)).thenReturn(true);
+        when(targetVideoFormat.getString(MediaFormat.KEY_MIME)).thenReturn("video/avc");
+        when(targetAudioFormat.containsKey(MediaFormat.KEY_MIME)).thenReturn(true);
+        when(targetAudioFormat.getString(MediaFormat.KEY_MIME)).thenReturn("audio/mp4a-latm");
+        MediaRange selection = new MediaRange(0, Long.MAX_VALUE);
+        when(mediaSource.getSelection()).thenReturn(selection);
+        List<Runnable> setupTasks = new ArrayList<>();
+        transformationJob.trackSetupExecutor = setupTasks::add;
+        ArgumentCaptor<MediaSource> setupMediaSourceCaptor = ArgumentCaptor.forClass(MediaSource.class);
+        doReturn(audioTrackTranscoder)
+                .when(trackTranscoderFactory)
+                .create(eq(SOURCE_TRACK_AUDIO),
+                        eq(SOURCE_TRACK_AUDIO),
+                        setupMediaSourceCaptor.capture(),
+                        eq(decoder),
+                        nullable(Renderer.class),
+                        eq(encoder),
+                        eq(mediaTarget),
+                        eq(targetAudioFormat));
+
+        transformationJob.startTrackTranscoderSetup();
+        // media source is read on job thread, before setup is handed off
+        verify(mediaSource).getTrackFormat(SOURCE_TRACK_AUDIO);
+        verify(mediaSource).getSelection();
+        assertThat(setupTasks.size(), is(1));
+        setupTasks.get(0).run();
+        transformationJob.createTrackTranscoders();
+
+        assertThat(transformationJob.trackTranscoders.get(SOURCE_TRACK_VIDEO), is((TrackTranscoder) videoTrackTranscoder));
+        assertThat(transformationJob.trackTranscoders.get(SOURCE_TRACK_AUDIO), is((TrackTranscoder) audioTrackTranscoder));
+
+        // setup thread gets prefetched track format and selection without touching media source
+        MediaSource setupMediaSource = setupMediaSourceCaptor.getValue();
+        assertThat(setupMediaSource.getTrackFormat(SOURCE_TRACK_AUDIO), is(sourceAudioFormat));
+        assertThat(setupMediaSource.getSelection(), is(selection));
+        verify(mediaSource).getTrackFormat(SOURCE_TRACK_AUDIO);
+        verify(mediaSource).getSelection();
+    }
+
     @Test
     public void notStartWhenNotAllTrackTranscodersStart() throws Exception {
         doThrow(new TrackTranscoderException(TrackTranscoderException.Error.INTERNAL_CODEC_ERROR)).when(videoTrackTranscoder).start();
@@ -303,7 +400,8 @@ public class TransformationJobShould {
         loadTrackTranscoders();
         boolean completed = transformationJob.processNextFrame();
 
-        verify(marshallingTransformationListener).onProgress(JOB_ID, 1.0f);
+        verify(marshallingTransformationListener).onProgress(eq(JOB_ID), progressCaptor.capture());
+        assertThat(progressCaptor.getValue().getProgress(), is(1.0f));
         assertTrue(completed);
         verify(statsCollector).increaseTrackProcessingDuration(eq(0), anyLong());
         verify(statsCollector).increaseTrackProcessingDuration(eq(1), anyLong());
@@ -322,7 +420,8 @@ public class TransformationJobShould {
 
         boolean completed = transformationJob.processNextFrame();
 
-        verify(marshallingTransformationListener).onProgress(JOB_ID, 0.75f);
+        verify(marshallingTransformationListener).onProgress(eq(JOB_ID), progressCaptor.capture());
+        assertThat(progressCaptor.getValue().getProgress(), is(0.75f));
         assertFalse(completed);
         assertThat(transformationJob.lastProgress, is(0.75f));
         verify(statsCollector).increaseTrackProcessingDuration(eq(0), anyLong());
@@ -345,7 +444,7 @@ public class TransformationJobShould {
 
         transformationJob.processNextFrame();
 
-        verify(marshallingTransformationListener, never()).onProgress(anyString(), anyFloat());
+        verify(marshallingTransformationListener, never()).onProgress(anyString(), any(TransformationProgress.class));
         verify(statsCollector).increaseTrackProcessingDuration(eq(0), anyLong());
         verify(statsCollector).increaseTrackProcessingDuration(eq(1), anyLong());
     }
@@ -366,7 +465,8 @@ public class TransformationJobShould {
 
         transformationJob.processNextFrame();
 
-        verify(marshallingTransformationListener).onProgress(JOB_ID, currentProgress);
+        verify(marshallingTransformationListener).onProgress(eq(JOB_ID), progressCaptor.capture());
+        assertThat(progressCaptor.getValue().getProgress(), is(currentProgress));
         verify(statsCollector).increaseTrackProcessingDuration(eq(0), anyLong());
         verify(statsCollector).increaseTrackProcessingDuration(eq(1), anyLong());
     }
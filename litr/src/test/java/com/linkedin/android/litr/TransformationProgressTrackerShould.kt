@@ -0,0 +1,55 @@
+package com.linkedin.android.litr
+
+import com.linkedin.android.litr.transcoder.TrackTranscoder
+import org.junit.Test
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.whenever
+import kotlin.test.assertEquals
+
+private const val DURATION_US = 10_000_000L
+private const val SECOND_NS = 1_000_000_000L
+
+class TransformationProgressTrackerShould {
+
+    private val trackTranscoder = mock<TrackTranscoder>()
+    private val progressTracker = TransformationProgressTracker()
+
+    @Test
+    fun `report throughput and estimated time remaining`() {
+        whenever(trackTranscoder.duration).thenReturn(DURATION_US)
+        progressTracker.start(0, 1)
+
+        setState(progress = 0.2f, framesWritten = 60, bytesWritten = 1000)
+        val progress = progressTracker.update(SECOND_NS, 0.2f, listOf(trackTranscoder))
+
+        assertEquals(0.2f, progress.progress)
+        assertEquals(1000, progress.elapsedTimeMs)
+        assertEquals(60f, progress.getFramesPerSecond(0))
+        assertEquals(2f, progress.speedFactor, 0.001f)
+        assertEquals(1000, progress.bytesWritten)
+        assertEquals(4000, progress.estimatedTimeRemainingMs)
+    }
+
+    @Test
+    fun `smooth estimated time remaining`() {
+        whenever(trackTranscoder.duration).thenReturn(DURATION_US)
+        progressTracker.start(0, 1)
+
+        setState(progress = 0.2f, framesWritten = 60, bytesWritten = 1000)
+        progressTracker.update(SECOND_NS, 0.2f, listOf(trackTranscoder))
+        // progress rate drops from 0.2 to 0.1 per second, smoothed rate is 0.3 * 0.1 + 0.7 * 0.2 = 0.17 per second
+        setState(progress = 0.3f, framesWritten = 90, bytesWritten = 1500)
+        val progress = progressTracker.update(2 * SECOND_NS, 0.3f, listOf(trackTranscoder))
+
+        assertEquals(30f, progress.getFramesPerSecond(0))
+        assertEquals(1f, progress.speedFactor, 0.001f)
+        assertEquals(1500, progress.bytesWritten)
+        assertEquals(4117, progress.estimatedTimeRemainingMs.toDouble(), 1.0)
+    }
+
+    private fun setState(progress: Float, framesWritten: Long, bytesWritten: Long) {
+        whenever(trackTranscoder.progress).thenReturn(progress)
+        whenever(trackTranscoder.framesWritten).thenReturn(framesWritten)
+        whenever(trackTranscoder.bytesWritten).thenReturn(bytesWritten)
+    }
+}
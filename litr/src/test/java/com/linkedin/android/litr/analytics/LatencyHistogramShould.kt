@@ -0,0 +1,46 @@
+package com.linkedin.android.litr.analytics
+
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+class LatencyHistogramShould {
+
+    @Test
+    fun `report zero percentiles when empty`() {
+        val histogram = LatencyHistogram()
+
+        assertEquals(0, histogram.getPercentile(50.0))
+        assertEquals(0, histogram.count)
+    }
+
+    @Test
+    fun `report percentiles within bucket precision`() {
+        val histogram = LatencyHistogram()
+        for (value in 1..1000) {
+            histogram.record(value * 1_000_000L)
+        }
+
+        assertEquals(1000, histogram.count)
+        assertPercentile(500_000_000L, histogram.getPercentile(50.0))
+        assertPercentile(950_000_000L, histogram.getPercentile(95.0))
+        assertPercentile(990_000_000L, histogram.getPercentile(99.0))
+        assertEquals(1_000_000_000L, histogram.getPercentile(100.0))
+    }
+
+    @Test
+    fun `keep values outside of bucket range`() {
+        val histogram = LatencyHistogram()
+        histogram.record(100)
+        histogram.record(Long.MAX_VALUE / 2)
+
+        assertEquals(1, histogram.getBucketValueCount(0))
+        assertEquals(1, histogram.getBucketValueCount(histogram.bucketCount - 1))
+        assertEquals(Long.MAX_VALUE / 2, histogram.getPercentile(100.0))
+    }
+
+    private fun assertPercentile(expected: Long, actual: Long) {
+        // reported value is an upper bound of a bucket, which is at most 25% larger than any value in it
+        assertTrue(actual >= expected && actual <= expected * 5 / 4, "Expected $expected, got $actual")
+    }
+}
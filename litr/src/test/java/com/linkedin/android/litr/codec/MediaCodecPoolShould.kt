@@ -0,0 +1,185 @@
+package com.linkedin.android.litr.codec
+
+import android.content.ComponentCallbacks2
+import android.content.Context
+import android.media.MediaCodec
+import android.media.MediaCrypto
+import android.media.MediaFormat
+import android.view.Surface
+import com.linkedin.android.litr.exception.TrackTranscoderException
+import org.junit.Test
+import org.mockito.kotlin.any
+import org.mockito.kotlin.anyOrNull
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.doThrow
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.never
+import org.mockito.kotlin.verify
+import org.mockito.kotlin.whenever
+import kotlin.test.assertEquals
+import kotlin.test.assertNotSame
+import kotlin.test.assertSame
+
+private const val MAX_IDLE_CODECS = 2
+private const val IDLE_TIMEOUT_MS = 1000L
+
+class MediaCodecPoolShould {
+
+    private val context = mock<Context>().also {
+        whenever(it.applicationContext).thenReturn(it)
+    }
+
+    @Test
+    fun `reuse recycled codec for the same format shape`() {
+        val pool = TestMediaCodecPool(context)
+
+        val codec = pool.getCodec(createFormat(44100))
+        pool.recycle(codec)
+        assertEquals(1, pool.idleCodecCount)
+        val reusedCodec = pool.getCodec(createFormat(44100))
+
+        assertSame(codec, reusedCodec)
+        verify(codec).reset()
+        assertEquals(1, pool.createdCodecs.size)
+        assertEquals(0, pool.idleCodecCount)
+    }
+
+    @Test
+    fun `create new codec for a different format shape`() {
+        val pool = TestMediaCodecPool(context)
+
+        val codec = pool.getCodec(createFormat(44100))
+        pool.recycle(codec)
+        val otherCodec = pool.getCodec(createFormat(48000))
+
+        assertNotSame(codec, otherCodec)
+        assertEquals(2, pool.createdCodecs.size)
+        assertEquals(1, pool.idleCodecCount)
+    }
+
+    @Test
+    fun `release least recently used idle codecs when full`() {
+        val pool = TestMediaCodecPool(context)
+        val codecs = listOf(44100, 48000, 96000).map { pool.getCodec(createFormat(it)) }
+
+        codecs.forEach { pool.recycle(it) }
+
+        assertEquals(MAX_IDLE_CODECS, pool.idleCodecCount)
+        verify(codecs[0]).release()
+        verify(codecs[1], never()).release()
+        verify(codecs[2], never()).release()
+    }
+
+    @Test
+    fun `release idle codecs which would exceed instance limit`() {
+        val pool = TestMediaCodecPool(context, maxInstances = 2)
+        val codecs = listOf(44100, 48000).map { pool.getCodec(createFormat(it)) }
+        codecs.forEach { pool.recycle(it) }
+
+        pool.getCodec(createFormat(96000))
+
+        // one idle instance is released to make room for a new one, least recently used first
+        verify(codecs[0]).release()
+        verify(codecs[1], never()).release()
+        assertEquals(1, pool.idleCodecCount)
+    }
+
+    @Test
+    fun `release codecs which cannot be reused`() {
+        val pool = TestMediaCodecPool(context)
+        val codec = pool.getCodec(createFormat(44100))
+        doThrow(IllegalStateException()).whenever(codec).reset()
+
+        pool.recycle(codec)
+        val foreignCodec = mock<MediaCodec>()
+        pool.recycle(foreignCodec)
+
+        verify(codec).release()
+        verify(foreignCodec).release()
+        assertEquals(0, pool.idleCodecCount)
+    }
+
+    @Test
+    fun `create new codec when pooled codec fails to reconfigure`() {
+        val pool = TestMediaCodecPool(context)
+        val codec = pool.getCodec(createFormat(44100))
+        pool.recycle(codec)
+        doThrow(IllegalStateException()).whenever(codec)
+            .configure(any<MediaFormat>(), anyOrNull<Surface>(), anyOrNull<MediaCrypto>(), any<Int>())
+
+        val newCodec = pool.getCodec(createFormat(44100))
+
+        assertNotSame(codec, newCodec)
+        verify(codec).release()
+        assertEquals(2, pool.createdCodecs.size)
+    }
+
+    @Test
+    fun `not keep idle codecs when pool size is zero`() {
+        val pool = TestMediaCodecPool(context, maxIdleCodecs = 0)
+        val codec = pool.getCodec(createFormat(44100))
+
+        pool.recycle(codec)
+
+        verify(codec).release()
+        assertEquals(0, pool.idleCodecCount)
+    }
+
+    @Test
+    fun `release idle codecs on memory pressure`() {
+        val pool = TestMediaCodecPool(context)
+        val codec = pool.getCodec(createFormat(44100))
+        pool.recycle(codec)
+
+        pool.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE)
+        assertEquals(1, pool.idleCodecCount)
+
+        pool.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW)
+        assertEquals(0, pool.idleCodecCount)
+        verify(codec).release()
+    }
+
+    private fun MediaCodecPool.getCodec(mediaFormat: MediaFormat) = getAndConfigureCodec(
+        mediaFormat,
+        null,
+        false,
+        TrackTranscoderException.Error.DECODER_NOT_FOUND,
+        TrackTranscoderException.Error.DECODER_FORMAT_NOT_FOUND,
+        TrackTranscoderException.Error.DECODER_CONFIGURATION_ERROR
+    )
+
+    private fun createFormat(sampleRate: Int) = mock<MediaFormat> {
+        on { getString(MediaFormat.KEY_MIME) } doReturn MediaFormat.MIMETYPE_AUDIO_AAC
+        on { containsKey(MediaFormat.KEY_SAMPLE_RATE) } doReturn true
+        on { getInteger(MediaFormat.KEY_SAMPLE_RATE) } doReturn sampleRate
+    }
+
+    /**
+     * Pool which creates mock codecs instead of device codecs and has a fixed instance limit
+     */
+    private class TestMediaCodecPool(
+        context: Context,
+        maxIdleCodecs: Int = MAX_IDLE_CODECS,
+        private val maxInstances: Int = Int.MAX_VALUE
+    ) : MediaCodecPool(context, maxIdleCodecs, IDLE_TIMEOUT_MS) {
+
+        val createdCodecs = mutableListOf<MediaCodec>()
+
+        override fun createAndConfigureCodec(
+            mediaFormat: MediaFormat,
+            surface: Surface?,
+            isEncoder: Boolean,
+            codecNotFoundError: TrackTranscoderException.Error,
+            codecFormatNotFoundError: TrackTranscoderException.Error,
+            codecConfigurationError: TrackTranscoderException.Error
+        ): MediaCodec {
+            val codec = mock<MediaCodec> {
+                on { name } doReturn "codec${createdCodecs.size}"
+            }
+            createdCodecs.add(codec)
+            return codec
+        }
+
+        override fun getMaxSupportedInstances(mimeType: String, isEncoder: Boolean) = maxInstances
+    }
+}
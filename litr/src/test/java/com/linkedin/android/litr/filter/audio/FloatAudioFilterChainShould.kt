@@ -0,0 +1,167 @@
+package com.linkedin.android.litr.filter.audio
+
+import android.media.AudioFormat
+import android.media.MediaCodec
+import android.media.MediaFormat
+import com.linkedin.android.litr.codec.Frame
+import com.linkedin.android.litr.filter.BufferFilter
+import com.linkedin.android.litr.filter.FloatBufferFilter
+import org.junit.Test
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.whenever
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import kotlin.math.abs
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+private const val CHANNEL_COUNT = 2
+private const val SAMPLE_RATE = 44100
+private const val SAMPLE_COUNT = 1000
+private const val BLOCK_SIZE = 64
+
+class FloatAudioFilterChainShould {
+
+    @Test
+    fun `keep samples within one least significant bit when filters do not modify them`() {
+        val chain = FloatAudioFilterChain(listOf(GainFilter(1f)), BLOCK_SIZE)
+        chain.init(createMediaFormat())
+
+        val frame = createFrame()
+        chain.apply(frame)
+
+        verifySamples(frame, 1f)
+    }
+
+    @Test
+    fun `apply all filters to every sample`() {
+        val chain = FloatAudioFilterChain(listOf(GainFilter(0.5f), GainFilter(0.5f)), BLOCK_SIZE)
+        chain.init(createMediaFormat())
+
+        val frame = createFrame()
+        chain.apply(frame)
+
+        verifySamples(frame, 0.25f)
+    }
+
+    @Test
+    fun `clip samples instead of wrapping around`() {
+        val chain = FloatAudioFilterChain(listOf(GainFilter(100f)), BLOCK_SIZE)
+        chain.init(createMediaFormat())
+
+        val frame = createFrame()
+        chain.apply(frame)
+
+        val buffer = frame.buffer!!.order(ByteOrder.LITTLE_ENDIAN)
+        repeat(SAMPLE_COUNT * CHANNEL_COUNT) { index ->
+            val originalSample = getSample(index)
+            val sample = buffer.getShort(index * 2)
+            if (originalSample > 0) {
+                assertTrue(sample >= originalSample)
+            } else if (originalSample < 0) {
+                assertTrue(sample <= originalSample)
+            }
+        }
+    }
+
+    @Test
+    fun `apply wrapped buffer filters`() {
+        val bufferFilter = object : BufferFilter {
+            override fun init(mediaFormat: MediaFormat?) {}
+
+            override fun apply(frame: Frame) {
+                val buffer = frame.buffer!!
+                repeat(frame.bufferInfo.size / 2) { index ->
+                    buffer.putShort(index * 2, (buffer.getShort(index * 2) / 2).toShort())
+                }
+            }
+
+            override fun release() {}
+        }
+        val chain = FloatAudioFilterChain(listOf(BufferFilterAdapter(bufferFilter)), BLOCK_SIZE)
+        chain.init(createMediaFormat())
+
+        val frame = createFrame()
+        chain.apply(frame)
+
+        verifySamples(frame, 0.5f)
+    }
+
+    @Test
+    fun `process float samples without quantizing or clipping them`() {
+        val chain = FloatAudioFilterChain(listOf(GainFilter(4f)), BLOCK_SIZE)
+        chain.init(createMediaFormat(AudioFormat.ENCODING_PCM_FLOAT))
+
+        val buffer = ByteBuffer.allocateDirect(SAMPLE_COUNT * CHANNEL_COUNT * 4).order(ByteOrder.LITTLE_ENDIAN)
+        repeat(SAMPLE_COUNT * CHANNEL_COUNT) { index ->
+            buffer.putFloat(getSample(index) / 32768f)
+        }
+        buffer.flip()
+        val bufferInfo = MediaCodec.BufferInfo().apply {
+            offset = 0
+            size = buffer.limit()
+            presentationTimeUs = 0
+            flags = 0
+        }
+        chain.apply(Frame(0, buffer, bufferInfo))
+
+        repeat(SAMPLE_COUNT * CHANNEL_COUNT) { index ->
+            assertEquals(getSample(index) / 32768f * 4f, buffer.getFloat(index * 4))
+        }
+    }
+
+    private fun verifySamples(frame: Frame, gain: Float) {
+        val buffer = frame.buffer!!.order(ByteOrder.LITTLE_ENDIAN)
+        repeat(SAMPLE_COUNT * CHANNEL_COUNT) { index ->
+            val expectedSample = getSample(index) * gain
+            val sample = buffer.getShort(index * 2)
+            assertTrue(abs(sample - expectedSample) <= 1.5f, "Sample $index is $sample, expected $expectedSample")
+        }
+        assertEquals(0, buffer.position())
+    }
+
+    private fun createFrame(): Frame {
+        val buffer = ByteBuffer.allocateDirect(SAMPLE_COUNT * CHANNEL_COUNT * 2).order(ByteOrder.LITTLE_ENDIAN)
+        repeat(SAMPLE_COUNT * CHANNEL_COUNT) { index ->
+            buffer.putShort(getSample(index))
+        }
+        buffer.flip()
+
+        val bufferInfo = MediaCodec.BufferInfo().apply {
+            offset = 0
+            size = buffer.limit()
+            presentationTimeUs = 0
+            flags = 0
+        }
+        return Frame(0, buffer, bufferInfo)
+    }
+
+    private fun getSample(index: Int): Short {
+        return ((index * 37 % 2000 - 1000) * 16).toShort()
+    }
+
+    private fun createMediaFormat(pcmEncoding: Int = AudioFormat.ENCODING_PCM_16BIT): MediaFormat {
+        val mediaFormat = mock<MediaFormat>()
+        whenever(mediaFormat.containsKey(MediaFormat.KEY_PCM_ENCODING)).thenReturn(true)
+        whenever(mediaFormat.getInteger(MediaFormat.KEY_PCM_ENCODING)).thenReturn(pcmEncoding)
+        whenever(mediaFormat.containsKey(MediaFormat.KEY_CHANNEL_COUNT)).thenReturn(true)
+        whenever(mediaFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT)).thenReturn(CHANNEL_COUNT)
+        whenever(mediaFormat.containsKey(MediaFormat.KEY_SAMPLE_RATE)).thenReturn(true)
+        whenever(mediaFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE)).thenReturn(SAMPLE_RATE)
+        return mediaFormat
+    }
+
+    private class GainFilter(private val gain: Float) : FloatBufferFilter {
+        override fun init(mediaFormat: MediaFormat?) {}
+
+        override fun apply(samples: Array<FloatArray>, sampleCount: Int, presentationTimeUs: Long) {
+            samples.forEach { channelSamples ->
+                for (index in 0 until sampleCount) {
+                    channelSamples[index] *= gain
+                }
+            }
+        }
+
+        override fun release() {}
+    }
+}
@@ -0,0 +1,159 @@
+package com.linkedin.android.litr.frameextract
+
+import android.graphics.Bitmap
+import android.net.Uri
+import com.linkedin.android.litr.ExperimentalFrameExtractorApi
+import com.linkedin.android.litr.frameextract.behaviors.FrameExtractBehavior
+import com.linkedin.android.litr.frameextract.behaviors.FrameExtractBehaviorBatchListener
+import com.linkedin.android.litr.frameextract.behaviors.FrameExtractBehaviorFrameListener
+import com.linkedin.android.litr.render.SingleFrameRenderer
+import org.junit.Test
+import org.mockito.kotlin.any
+import org.mockito.kotlin.eq
+import org.mockito.kotlin.inOrder
+import org.mockito.kotlin.isNull
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.never
+import org.mockito.kotlin.verify
+import kotlin.test.assertEquals
+
+private const val JOB_ID = "job"
+private const val FIRST_TIMESTAMP_US = 1_000_000L
+private const val FRAME_INTERVAL_US = 500_000L
+
+@OptIn(ExperimentalFrameExtractorApi::class)
+class FrameExtractJobShould {
+
+    private val mediaUri = mock<Uri>()
+    private val listener = mock<FrameExtractListener>()
+
+    @Test
+    fun `deliver rendered frame`() {
+        val extractedBitmap = mock<Bitmap>()
+        val renderer = FakeRenderer()
+        val behavior = FakeBehavior { extractedBitmap }
+        val params = FrameExtractParameters(mediaUri, FIRST_TIMESTAMP_US, renderer)
+
+        FrameExtractJob(JOB_ID, params, behavior, listener).run()
+
+        assertEquals(listOf(FIRST_TIMESTAMP_US * 1000L), renderer.renderedTimesNs)
+        inOrder(listener) {
+            verify(listener).onStarted(JOB_ID, FIRST_TIMESTAMP_US)
+            verify(listener).onExtracted(JOB_ID, FIRST_TIMESTAMP_US, renderer.renderedBitmaps[0])
+        }
+        verify(listener, never()).onError(any(), any(), any())
+    }
+
+    @Test
+    fun `extract batch in one behavior call`() {
+        val renderer = FakeRenderer()
+        val behavior = FakeBehavior { mock() }
+        val batchParams = List(3) { FrameExtractParameters(mediaUri, FIRST_TIMESTAMP_US + it * FRAME_INTERVAL_US, renderer) }
+
+        FrameExtractJob(JOB_ID, batchParams, behavior, listener).run()
+
+        assertEquals(1, behavior.batchCallCount)
+        assertEquals(batchParams.map { it.timestampUs }, behavior.extractedTimestampsUs)
+        verify(listener).onStarted(JOB_ID, FIRST_TIMESTAMP_US)
+        batchParams.forEachIndexed { index, params ->
+            verify(listener).onExtracted(JOB_ID, params.timestampUs, renderer.renderedBitmaps[index])
+        }
+    }
+
+    @Test
+    fun `report failed frames and continue with batch`() {
+        val renderer = FakeRenderer()
+        val failedTimestampUs = FIRST_TIMESTAMP_US + FRAME_INTERVAL_US
+        val behavior = FakeBehavior { timestampUs -> if (timestampUs == failedTimestampUs) null else mock() }
+        val batchParams = List(3) { FrameExtractParameters(mediaUri, FIRST_TIMESTAMP_US + it * FRAME_INTERVAL_US, renderer) }
+
+        FrameExtractJob(JOB_ID, batchParams, behavior, listener).run()
+
+        verify(listener).onError(eq(JOB_ID), eq(failedTimestampUs), isNull())
+        verify(listener).onExtracted(JOB_ID, FIRST_TIMESTAMP_US, renderer.renderedBitmaps[0])
+        verify(listener).onExtracted(JOB_ID, FIRST_TIMESTAMP_US + 2 * FRAME_INTERVAL_US, renderer.renderedBitmaps[1])
+    }
+
+    @Test
+    fun `report cancellation when behavior does not complete`() {
+        val behavior = FakeBehavior(completed = false) { mock() }
+        val params = FrameExtractParameters(mediaUri, FIRST_TIMESTAMP_US, FakeRenderer())
+
+        FrameExtractJob(JOB_ID, params, behavior, listener).run()
+
+        verify(listener).onCancelled(JOB_ID, FIRST_TIMESTAMP_US)
+    }
+
+    @Test
+    fun `report error when behavior throws`() {
+        val exception = IllegalStateException()
+        val behavior = FakeBehavior { throw exception }
+        val params = FrameExtractParameters(mediaUri, FIRST_TIMESTAMP_US, FakeRenderer())
+
+        FrameExtractJob(JOB_ID, params, behavior, listener).run()
+
+        verify(listener).onError(JOB_ID, FIRST_TIMESTAMP_US, exception)
+        verify(listener, never()).onExtracted(any(), any(), any())
+    }
+
+    @Test
+    fun `extract batch frame by frame by default`() {
+        val extractedTimestampsUs = mutableListOf<Long>()
+        val behavior = object : FrameExtractBehavior {
+            override fun extract(params: FrameExtractParameters, listener: FrameExtractBehaviorFrameListener): Boolean {
+                extractedTimestampsUs.add(params.timestampUs)
+                listener.onFrameExtracted(mock())
+                return true
+            }
+
+            override fun release() {}
+        }
+        val batchListener = mock<FrameExtractBehaviorBatchListener>()
+        val batchParams = List(3) { FrameExtractParameters(mediaUri, FIRST_TIMESTAMP_US + it * FRAME_INTERVAL_US, FakeRenderer()) }
+
+        val completed = behavior.extract(batchParams, batchListener)
+
+        assertEquals(true, completed)
+        assertEquals(batchParams.map { it.timestampUs }, extractedTimestampsUs)
+        batchParams.forEach { verify(batchListener).onFrameExtracted(eq(it), any()) }
+    }
+
+    /**
+     * Extracts frames produced by [extractFrame], which returns null for frames that fail to extract.
+     */
+    private class FakeBehavior(
+        private val completed: Boolean = true,
+        private val extractFrame: (Long) -> Bitmap?
+    ) : FrameExtractBehavior {
+
+        var batchCallCount = 0
+        val extractedTimestampsUs = mutableListOf<Long>()
+
+        override fun extract(params: FrameExtractParameters, listener: FrameExtractBehaviorFrameListener): Boolean {
+            extractedTimestampsUs.add(params.timestampUs)
+            extractFrame(params.timestampUs)?.let { listener.onFrameExtracted(it) } ?: listener.onFrameFailed()
+            return completed
+        }
+
+        override fun extract(params: List<FrameExtractParameters>, listener: FrameExtractBehaviorBatchListener): Boolean {
+            batchCallCount++
+            params.forEach { frameParams ->
+                extractedTimestampsUs.add(frameParams.timestampUs)
+                extractFrame(frameParams.timestampUs)?.let { listener.onFrameExtracted(frameParams, it) } ?: listener.onFrameFailed(frameParams)
+            }
+            return completed
+        }
+
+        override fun release() {}
+    }
+
+    private class FakeRenderer : SingleFrameRenderer {
+        val renderedTimesNs = mutableListOf<Long>()
+        val renderedBitmaps = mutableListOf<Bitmap>()
+
+        override fun renderFrame(input: Bitmap?, presentationTimeNs: Long): Bitmap? {
+            renderedTimesNs.add(presentationTimeNs)
+            return mock<Bitmap>().also { renderedBitmaps.add(it) }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.linkedin.android.litr.frameextract
+
+import android.graphics.Bitmap
+import android.net.Uri
+import android.os.Handler
+import com.linkedin.android.litr.ExperimentalFrameExtractorApi
+import com.linkedin.android.litr.frameextract.behaviors.FrameExtractBehavior
+import com.linkedin.android.litr.frameextract.behaviors.FrameExtractBehaviorFrameListener
+import com.linkedin.android.litr.frameextract.cache.FrameCache
+import com.linkedin.android.litr.frameextract.cache.FrameCacheKey
+import com.linkedin.android.litr.render.SingleFrameRenderer
+import org.junit.After
+import org.junit.Test
+import org.mockito.kotlin.any
+import org.mockito.kotlin.doAnswer
+import org.mockito.kotlin.inOrder
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.never
+import org.mockito.kotlin.verify
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+private const val TIMESTAMP_US = 1_000_000L
+private const val MEMORY_CACHE_SIZE = 1024 * 1024
+private const val TIMEOUT_SECONDS = 5L
+
+@OptIn(ExperimentalFrameExtractorApi::class)
+class VideoFrameExtractorShould {
+
+    private val mediaUri = mock<Uri>()
+    private val renderer = mock<SingleFrameRenderer> {
+        on { renderFrame(any(), any()) } doAnswer { it.getArgument(0) }
+    }
+    private val bitmap = mock<Bitmap>()
+    private val behavior = BlockingBehavior(bitmap)
+    private val frameCache = FrameCache(MEMORY_CACHE_SIZE)
+
+    // listener events are run on test thread, when it drains them
+    private val postedEvents = LinkedBlockingQueue<Runnable>()
+    private val listenerHandler = mock<Handler> {
+        on { post(any()) } doAnswer {
+            postedEvents.add(it.getArgument(0))
+            true
+        }
+    }
+
+    private val extractor = VideoFrameExtractor(mock(), mock(), behavior, frameCache).also {
+        it.listenerHandler = listenerHandler
+    }
+
+    @After
+    fun teardown() {
+        extractor.release()
+    }
+
+    @Test
+    fun `notify each coalesced listener once`() {
+        val params = FrameExtractParameters(mediaUri, TIMESTAMP_US, renderer)
+        val firstListener = mock<FrameExtractListener>()
+        val secondListener = mock<FrameExtractListener>()
+        val thirdListener = mock<FrameExtractListener>()
+
+        // second request joins before start of shared job is delivered, third one after that
+        extractor.extract("first", params, firstListener)
+        extractor.extract("second", params, secondListener)
+        assertTrue(behavior.extractStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+        drainEvents()
+        extractor.extract("third", params, thirdListener)
+        behavior.extractAllowed.countDown()
+        assertTrue(behavior.extracted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+        drainEvents()
+
+        assertEquals(1, behavior.extractCount.get())
+        listOf("first" to firstListener, "second" to secondListener, "third" to thirdListener).forEach { (requestId, listener) ->
+            inOrder(listener) {
+                verify(listener).onStarted(requestId, TIMESTAMP_US)
+                verify(listener).onExtracted(requestId, TIMESTAMP_US, bitmap)
+            }
+            verify(listener, never()).onError(any(), any(), any())
+            verify(listener, never()).onCancelled(any(), any())
+        }
+    }
+
+    @Test
+    fun `serve cached frame without extracting it`() {
+        val params = FrameExtractParameters(mediaUri, TIMESTAMP_US, renderer)
+        val listener = mock<FrameExtractListener>()
+        frameCache.put(FrameCacheKey.from(params), bitmap)
+
+        extractor.extract("request", params, listener)
+        drainEvents()
+
+        assertEquals(0, behavior.extractCount.get())
+        inOrder(listener) {
+            verify(listener).onStarted("request", TIMESTAMP_US)
+            verify(listener).onExtracted("request", TIMESTAMP_US, bitmap)
+        }
+    }
+
+    private fun drainEvents() {
+        while (true) {
+            val event = postedEvents.poll() ?: return
+            event.run()
+        }
+    }
+
+    /**
+     * Extracts [bitmap] once test allows it, so that requests can arrive while a frame is being extracted.
+     */
+    private class BlockingBehavior(private val bitmap: Bitmap) : FrameExtractBehavior {
+        val extractCount = AtomicInteger()
+        val extractStarted = CountDownLatch(1)
+        val extractAllowed = CountDownLatch(1)
+        val extracted = CountDownLatch(1)
+
+        override fun extract(params: FrameExtractParameters, listener: FrameExtractBehaviorFrameListener): Boolean {
+            extractCount.incrementAndGet()
+            extractStarted.countDown()
+            extractAllowed.await()
+            listener.onFrameExtracted(bitmap)
+            extracted.countDown()
+            return true
+        }
+
+        override fun release() {}
+    }
+}
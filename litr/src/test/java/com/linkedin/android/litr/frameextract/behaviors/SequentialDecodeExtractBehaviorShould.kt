@@ -0,0 +1,252 @@
+package com.linkedin.android.litr.frameextract.behaviors
+
+import android.graphics.Bitmap
+import android.media.MediaCodec
+import android.media.MediaExtractor
+import android.media.MediaFormat
+import android.net.Uri
+import android.view.Surface
+import com.linkedin.android.litr.ExperimentalFrameExtractorApi
+import com.linkedin.android.litr.codec.Decoder
+import com.linkedin.android.litr.codec.Frame
+import com.linkedin.android.litr.frameextract.FrameExtractMode
+import com.linkedin.android.litr.frameextract.FrameExtractParameters
+import com.linkedin.android.litr.render.SingleFrameRenderer
+import org.junit.Test
+import org.mockito.kotlin.any
+import org.mockito.kotlin.anyOrNull
+import org.mockito.kotlin.doAnswer
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.whenever
+import java.nio.ByteBuffer
+import java.util.ArrayDeque
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertTrue
+
+private const val SAMPLE_COUNT = 100
+private const val SAMPLE_DURATION_US = 33_333L
+private const val GOP_SIZE = 10
+private const val SAMPLE_SIZE = 100
+
+@OptIn(ExperimentalFrameExtractorApi::class)
+class SequentialDecodeExtractBehaviorShould {
+
+    private val mediaUri = mock<Uri>()
+    private val renderer = mock<SingleFrameRenderer>()
+    private val media = FakeMedia()
+    private val decoder = FakeDecoder()
+    private val renderedTimesUs = mutableListOf<Long>()
+    // presentation time of a frame each extracted bitmap holds
+    private val frameTimesUs = mutableMapOf<Bitmap, Long>()
+    private val listener = RecordingListener(frameTimesUs)
+
+    @Test
+    fun `decode each closest sync frame once in fast mode`() {
+        val params = createParams(FrameExtractMode.Fast, 0, 100_000, 350_000, 2_000_000)
+
+        val completed = SequentialDecodeExtractBehavior.SyncFrameDecodePass(
+            media.extractor, decoder, ::renderFrame, params, listener, 0, null
+        ).run()
+
+        assertTrue(completed)
+        assertEquals(listOf(0L, getSyncSampleTimeUs(1), getSyncSampleTimeUs(6)), renderedTimesUs)
+        assertEquals(listOf(0L, 0L, getSyncSampleTimeUs(1), getSyncSampleTimeUs(6)), listener.extractedTimesUs)
+        assertEquals(params, listener.extractedParams)
+        assertEquals(3, media.readSampleCount)
+    }
+
+    @Test
+    fun `decode only groups of pictures containing requested frames in exact mode`() {
+        val params = createParams(FrameExtractMode.Exact, 100_000, 150_000, 1_000_000)
+
+        val completed = SequentialDecodeExtractBehavior.ExactFrameDecodePass(
+            media.extractor, decoder, ::renderFrame, params, listener, 0, null
+        ).run()
+
+        assertTrue(completed)
+        // first frame at or after each requested timestamp
+        val expectedTimesUs = listOf(4 * SAMPLE_DURATION_US, 5 * SAMPLE_DURATION_US, 31 * SAMPLE_DURATION_US)
+        assertEquals(expectedTimesUs, renderedTimesUs)
+        assertEquals(expectedTimesUs, listener.extractedTimesUs)
+        assertEquals(params, listener.extractedParams)
+        // first group of pictures, and the fourth one up to the last requested frame
+        assertEquals(GOP_SIZE + 2, media.readSampleCount)
+        assertTrue(decoder.releasedFrameCount > renderedTimesUs.size)
+    }
+
+    @Test
+    fun `use last frame for timestamps past end of media in exact mode`() {
+        val params = createParams(FrameExtractMode.Exact, SAMPLE_COUNT * SAMPLE_DURATION_US, 2 * SAMPLE_COUNT * SAMPLE_DURATION_US)
+
+        val completed = SequentialDecodeExtractBehavior.ExactFrameDecodePass(
+            media.extractor, decoder, ::renderFrame, params, listener, 0, null
+        ).run()
+
+        assertTrue(completed)
+        val lastSampleTimeUs = (SAMPLE_COUNT - 1) * SAMPLE_DURATION_US
+        assertEquals(listOf(lastSampleTimeUs), renderedTimesUs)
+        assertEquals(listOf(lastSampleTimeUs, lastSampleTimeUs), listener.extractedTimesUs)
+        assertTrue(listener.failedParams.isEmpty())
+    }
+
+    @Test
+    fun `stop decoding when interrupted`() {
+        val params = createParams(FrameExtractMode.Exact, 0, 1_000_000)
+
+        Thread.currentThread().interrupt()
+        val completed = try {
+            SequentialDecodeExtractBehavior.ExactFrameDecodePass(
+                media.extractor, decoder, ::renderFrame, params, listener, 0, null
+            ).run()
+        } finally {
+            Thread.interrupted()
+        }
+
+        assertEquals(false, completed)
+        assertTrue(listener.extractedParams.isEmpty())
+    }
+
+    @Test
+    fun `reject batch of frames with different modes`() {
+        val params = createParams(FrameExtractMode.Fast, 0) + createParams(FrameExtractMode.Exact, 1_000_000)
+
+        assertFailsWith<IllegalArgumentException> {
+            SequentialDecodeExtractBehavior(mock()).extract(params, listener)
+        }
+        assertTrue(listener.extractedParams.isEmpty())
+    }
+
+    private fun createParams(mode: FrameExtractMode, vararg timestampsUs: Long) = timestampsUs.map {
+        FrameExtractParameters(mediaUri, it, renderer, mode)
+    }
+
+    private fun getSyncSampleTimeUs(gop: Int) = gop * GOP_SIZE * SAMPLE_DURATION_US
+
+    private fun renderFrame(presentationTimeNs: Long): Bitmap {
+        val presentationTimeUs = presentationTimeNs / 1000L
+        renderedTimesUs.add(presentationTimeUs)
+        val bitmap = mock<Bitmap> {
+            on { copy(anyOrNull(), any()) } doAnswer { mock<Bitmap>().also { frameTimesUs[it] = presentationTimeUs } }
+        }
+        frameTimesUs[bitmap] = presentationTimeUs
+        return bitmap
+    }
+
+    /**
+     * Media with a single track, with groups of pictures of [GOP_SIZE] frames and no B-frames.
+     */
+    private class FakeMedia {
+        private var sample = 0
+        var readSampleCount = 0
+
+        val extractor = mock<MediaExtractor> {
+            on { sampleTime } doAnswer { if (sample < SAMPLE_COUNT) sample * SAMPLE_DURATION_US else -1L }
+            on { sampleFlags } doAnswer { if (sample < SAMPLE_COUNT && sample % GOP_SIZE == 0) MediaExtractor.SAMPLE_FLAG_SYNC else 0 }
+            on { readSampleData(any(), any()) } doAnswer {
+                if (sample < SAMPLE_COUNT) {
+                    readSampleCount++
+                    SAMPLE_SIZE
+                } else {
+                    -1
+                }
+            }
+            on { advance() } doAnswer {
+                sample++
+                sample < SAMPLE_COUNT
+            }
+        }
+
+        init {
+            doAnswer { invocation ->
+                seekTo(invocation.getArgument(0), invocation.getArgument(1))
+            }.whenever(extractor).seekTo(any(), any())
+        }
+
+        private fun seekTo(positionUs: Long, mode: Int) {
+            val previousSyncSample = minOf(positionUs / SAMPLE_DURATION_US, SAMPLE_COUNT - 1L).toInt() / GOP_SIZE * GOP_SIZE
+            val nextSyncSample = previousSyncSample + GOP_SIZE
+            sample = if (mode == MediaExtractor.SEEK_TO_CLOSEST_SYNC && nextSyncSample < SAMPLE_COUNT &&
+                nextSyncSample * SAMPLE_DURATION_US - positionUs < positionUs - previousSyncSample * SAMPLE_DURATION_US) {
+                nextSyncSample
+            } else {
+                previousSyncSample
+            }
+        }
+    }
+
+    /**
+     * Decoder without latency, which outputs each queued sample right away.
+     */
+    private class FakeDecoder : Decoder {
+        private val inputBuffer = ByteBuffer.allocate(SAMPLE_SIZE)
+        private val outputFrames = ArrayDeque<Frame>()
+        var releasedFrameCount = 0
+
+        override fun init(mediaFormat: MediaFormat, surface: Surface?) {}
+
+        override fun start() {}
+
+        override fun isRunning() = true
+
+        override fun dequeueInputFrame(timeout: Long) = 0
+
+        override fun getInputFrame(tag: Int): Frame {
+            // buffer info is a stub in unit tests, so values set by extraction are captured by a mock
+            val bufferInfo = mock<MediaCodec.BufferInfo>()
+            doAnswer { invocation ->
+                bufferInfo.offset = invocation.getArgument(0)
+                bufferInfo.size = invocation.getArgument(1)
+                bufferInfo.presentationTimeUs = invocation.getArgument(2)
+                bufferInfo.flags = invocation.getArgument(3)
+            }.whenever(bufferInfo).set(any(), any(), any(), any())
+            inputBuffer.clear()
+            return Frame(tag, inputBuffer, bufferInfo)
+        }
+
+        override fun queueInputFrame(frame: Frame) {
+            val bufferInfo = MediaCodec.BufferInfo().apply {
+                size = frame.bufferInfo.size
+                presentationTimeUs = frame.bufferInfo.presentationTimeUs
+                flags = frame.bufferInfo.flags
+            }
+            outputFrames.add(Frame(outputFrames.size + 1, null, bufferInfo))
+        }
+
+        override fun dequeueOutputFrame(timeout: Long) = outputFrames.peek()?.tag ?: MediaCodec.INFO_TRY_AGAIN_LATER
+
+        override fun getOutputFrame(tag: Int): Frame? = outputFrames.peek()
+
+        override fun releaseOutputFrame(tag: Int, render: Boolean) {
+            outputFrames.poll()
+            releasedFrameCount++
+        }
+
+        override fun getOutputFormat() = mock<MediaFormat>()
+
+        override fun stop() {}
+
+        override fun release() {}
+
+        override fun getName() = "FakeDecoder"
+    }
+
+    private class RecordingListener(private val frameTimesUs: Map<Bitmap, Long>) : FrameExtractBehaviorBatchListener {
+        val extractedParams = mutableListOf<FrameExtractParameters>()
+        val extractedTimesUs = mutableListOf<Long>()
+        val failedParams = mutableListOf<FrameExtractParameters>()
+        private val extractedBitmaps = mutableListOf<Bitmap>()
+
+        override fun onFrameExtracted(params: FrameExtractParameters, bitmap: Bitmap) {
+            // each extracted bitmap must be owned by its receiver
+            assertTrue(extractedBitmaps.none { it === bitmap })
+            extractedBitmaps.add(bitmap)
+            extractedParams.add(params)
+            extractedTimesUs.add(frameTimesUs.getValue(bitmap))
+        }
+
+        override fun onFrameFailed(params: FrameExtractParameters) {
+            failedParams.add(params)
+        }
+    }
+}
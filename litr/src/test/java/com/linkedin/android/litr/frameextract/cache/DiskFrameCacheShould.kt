@@ -0,0 +1,132 @@
+package com.linkedin.android.litr.frameextract.cache
+
+import android.graphics.Bitmap
+import android.net.Uri
+import com.linkedin.android.litr.ExperimentalFrameExtractorApi
+import com.linkedin.android.litr.frameextract.FrameExtractMode
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.mockito.kotlin.any
+import org.mockito.kotlin.doAnswer
+import org.mockito.kotlin.mock
+import java.io.File
+import java.io.OutputStream
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+
+private const val FRAME_SIZE = 100
+private const val MEDIA_IDENTITY = "1-2-3-4"
+
+@OptIn(ExperimentalFrameExtractorApi::class)
+class DiskFrameCacheShould {
+
+    @get:Rule val temporaryFolder = TemporaryFolder()
+
+    private val mediaUri = mock<Uri>()
+    private var mediaIdentity: String? = MEDIA_IDENTITY
+    private val decodedFiles = mutableListOf<File>()
+
+    @Test
+    fun `return stored frame`() {
+        val diskCache = createDiskCache(temporaryFolder.newFolder(), 10L * FRAME_SIZE)
+
+        diskCache.put(createKey(0), createBitmap())
+
+        assertNotNull(diskCache.get(createKey(0)))
+        assertNull(diskCache.get(createKey(1)))
+        // frames which are not stored are not read
+        assertEquals(1, decodedFiles.size)
+    }
+
+    @Test
+    fun `not return frames of media which changed`() {
+        val diskCache = createDiskCache(temporaryFolder.newFolder(), 10L * FRAME_SIZE)
+        diskCache.put(createKey(0), createBitmap())
+
+        // media was overwritten at the same URI
+        mediaIdentity = "1-2-5-6"
+
+        assertNull(diskCache.get(createKey(0)))
+    }
+
+    @Test
+    fun `not store frames of media without identity`() {
+        val directory = temporaryFolder.newFolder()
+        val diskCache = createDiskCache(directory, 10L * FRAME_SIZE)
+        mediaIdentity = null
+
+        diskCache.put(createKey(0), createBitmap())
+
+        assertNull(diskCache.get(createKey(0)))
+        assertEquals(0, directory.listFiles()?.size)
+    }
+
+    @Test
+    fun `not store frames without renderer key`() {
+        val directory = temporaryFolder.newFolder()
+        val diskCache = createDiskCache(directory, 10L * FRAME_SIZE)
+        val key = FrameCacheKey(mediaUri, 0, FrameExtractMode.Fast, null, null, mock())
+
+        diskCache.put(key, createBitmap())
+
+        assertNull(diskCache.get(key))
+        assertEquals(0, directory.listFiles()?.size)
+    }
+
+    @Test
+    fun `delete least recently used frames when full`() {
+        val directory = temporaryFolder.newFolder()
+        val diskCache = createDiskCache(directory, 2L * FRAME_SIZE)
+
+        diskCache.put(createKey(0), createBitmap())
+        diskCache.put(createKey(1), createBitmap())
+        // reading first frame makes second one least recently used
+        assertNotNull(diskCache.get(createKey(0)))
+        diskCache.put(createKey(2), createBitmap())
+
+        assertEquals(2, directory.listFiles()?.size)
+        assertNotNull(diskCache.get(createKey(0)))
+        assertNotNull(diskCache.get(createKey(2)))
+        assertNull(diskCache.get(createKey(1)))
+    }
+
+    @Test
+    fun `keep stored frames and delete temporary files when reopened`() {
+        val directory = temporaryFolder.newFolder()
+        createDiskCache(directory, 10L * FRAME_SIZE).put(createKey(0), createBitmap())
+        // left behind by a process which died while writing a frame
+        val tempFile = File(directory, "frame.tmp").apply { writeBytes(ByteArray(FRAME_SIZE)) }
+
+        val diskCache = createDiskCache(directory, 10L * FRAME_SIZE)
+
+        assertNotNull(diskCache.get(createKey(0)))
+        assertFalse(tempFile.exists())
+    }
+
+    private fun createDiskCache(directory: File, maxSizeBytes: Long) = DiskFrameCache(
+        directory,
+        maxSizeBytes,
+        Bitmap.CompressFormat.JPEG,
+        90,
+        { mediaIdentity },
+        { file ->
+            decodedFiles.add(file)
+            if (file.length() == FRAME_SIZE.toLong()) mock() else null
+        }
+    )
+
+    private fun createKey(timestampUs: Long) = FrameCacheKey(mediaUri, timestampUs, FrameExtractMode.Fast, null, "renderer")
+
+    /**
+     * Creates a bitmap which compresses to [FRAME_SIZE] bytes.
+     */
+    private fun createBitmap() = mock<Bitmap> {
+        on { compress(any(), any(), any()) } doAnswer {
+            it.getArgument<OutputStream>(2).write(ByteArray(FRAME_SIZE))
+            true
+        }
+    }
+}
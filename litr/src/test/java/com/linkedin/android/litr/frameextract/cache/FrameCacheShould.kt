@@ -0,0 +1,99 @@
+package com.linkedin.android.litr.frameextract.cache
+
+import android.graphics.Bitmap
+import android.net.Uri
+import com.linkedin.android.litr.ExperimentalFrameExtractorApi
+import com.linkedin.android.litr.frameextract.FrameExtractMode
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.mockito.kotlin.any
+import org.mockito.kotlin.doAnswer
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.mock
+import java.io.OutputStream
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+import kotlin.test.assertSame
+
+private const val FRAME_SIZE = 100
+
+@OptIn(ExperimentalFrameExtractorApi::class)
+class FrameCacheShould {
+
+    @get:Rule val temporaryFolder = TemporaryFolder()
+
+    private val mediaUri = mock<Uri>()
+
+    @Test
+    fun `return frame from memory`() {
+        val frameCache = FrameCache(10 * FRAME_SIZE)
+        val bitmap = createBitmap()
+
+        frameCache.put(createKey(0), bitmap)
+
+        assertSame(bitmap, frameCache.getFromMemory(createKey(0)))
+        assertSame(bitmap, frameCache.get(createKey(0)))
+        assertNull(frameCache.getFromMemory(createKey(1)))
+    }
+
+    @Test
+    fun `evict least recently used frames from memory when full`() {
+        val frameCache = FrameCache(2 * FRAME_SIZE)
+
+        frameCache.put(createKey(0), createBitmap())
+        frameCache.put(createKey(1), createBitmap())
+        // reading first frame makes second one least recently used
+        assertNotNull(frameCache.getFromMemory(createKey(0)))
+        frameCache.put(createKey(2), createBitmap())
+
+        assertNotNull(frameCache.getFromMemory(createKey(0)))
+        assertNotNull(frameCache.getFromMemory(createKey(2)))
+        assertNull(frameCache.getFromMemory(createKey(1)))
+    }
+
+    @Test
+    fun `promote frame found on disk to memory`() {
+        val diskCache = createDiskCache()
+        FrameCache(10 * FRAME_SIZE, diskCache).put(createKey(0), createBitmap())
+        // a new memory cache, as after process restart
+        val frameCache = FrameCache(10 * FRAME_SIZE, diskCache)
+        assertNull(frameCache.getFromMemory(createKey(0)))
+
+        val bitmap = frameCache.get(createKey(0))
+
+        assertNotNull(bitmap)
+        assertSame(bitmap, frameCache.getFromMemory(createKey(0)))
+    }
+
+    @Test
+    fun `keep frames without renderer key only in memory`() {
+        val diskCache = createDiskCache()
+        val key = FrameCacheKey(mediaUri, 0, FrameExtractMode.Fast, null, null, mock())
+        FrameCache(10 * FRAME_SIZE, diskCache).put(key, createBitmap())
+
+        assertNull(FrameCache(10 * FRAME_SIZE, diskCache).get(key))
+    }
+
+    private fun createDiskCache() = DiskFrameCache(
+        temporaryFolder.newFolder(),
+        10L * FRAME_SIZE,
+        Bitmap.CompressFormat.JPEG,
+        90,
+        { "1-2-3-4" },
+        { mock() }
+    )
+
+    private fun createKey(timestampUs: Long) = FrameCacheKey(mediaUri, timestampUs, FrameExtractMode.Fast, null, "renderer")
+
+    /**
+     * Creates a bitmap which takes [FRAME_SIZE] bytes in memory, and compresses to as many bytes.
+     */
+    private fun createBitmap() = mock<Bitmap> {
+        on { allocationByteCount } doReturn FRAME_SIZE
+        on { compress(any(), any(), any()) } doAnswer {
+            it.getArgument<OutputStream>(2).write(ByteArray(FRAME_SIZE))
+            true
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.linkedin.android.litr.frameextract.queue
+
+import android.net.Uri
+import com.linkedin.android.litr.ExperimentalFrameExtractorApi
+import com.linkedin.android.litr.frameextract.FrameExtractJob
+import com.linkedin.android.litr.frameextract.FrameExtractParameters
+import com.linkedin.android.litr.frameextract.behaviors.FrameExtractBehavior
+import com.linkedin.android.litr.frameextract.behaviors.FrameExtractBehaviorFrameListener
+import org.junit.After
+import org.junit.Test
+import org.mockito.kotlin.mock
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+private const val AFFINITY_KEY = "media"
+private const val TASK_COUNT = 100
+private const val TIMEOUT_SECONDS = 10L
+private const val BLOCKING_TIMESTAMP_US = 1_000_000L
+
+@OptIn(ExperimentalFrameExtractorApi::class)
+class AffinityPriorityExecutorShould {
+
+    private val executor = AffinityPriorityExecutor(1, 4)
+    private val behavior = RecordingBehavior()
+
+    @After
+    fun tearDown() {
+        behavior.workerLatch.countDown()
+        executor.shutdownNow()
+    }
+
+    @Test
+    fun `run pending tasks in order of updated priorities`() {
+        blockWorker()
+        val tasks = List(TASK_COUNT) { createTask(it.toLong(), it.toLong()) }
+        tasks.forEach { executor.execute(AFFINITY_KEY, it) }
+
+        // reverse the order, and drop every other task
+        val droppedTasks = executor.updatePriorities { task -> if (task.priority % 2 == 0L) -task.priority else null }
+        behavior.workerLatch.countDown()
+
+        val expectedTimestamps = (0 until TASK_COUNT).filter { it % 2 == 0 }.map { it.toLong() }.reversed()
+        expectedTimestamps.forEach { tasks[it.toInt()].get(TIMEOUT_SECONDS, TimeUnit.SECONDS) }
+        assertEquals(expectedTimestamps, behavior.extractedTimestamps.drop(1))
+        assertEquals(tasks.filterIndexed { index, _ -> index % 2 != 0 }.toSet(), droppedTasks.toSet())
+    }
+
+    @Test
+    fun `not lose tasks or priority updates when updating priorities concurrently`() {
+        blockWorker()
+        val tasks = List(TASK_COUNT) { createTask(it.toLong(), it.toLong()) }
+        tasks.forEach { executor.execute(AFFINITY_KEY, it) }
+        val submittedTimestamps = List(TASK_COUNT) { (TASK_COUNT + it).toLong() }
+        val submittedTasks = submittedTimestamps.map { createTask(it, TASK_COUNT + it) }
+
+        val startLatch = CountDownLatch(1)
+        // bulk updates keep priorities of pending tasks, so that they only race with other updates
+        val bulkUpdater = thread {
+            startLatch.await()
+            repeat(TASK_COUNT) { executor.updatePriorities { task -> task.priority } }
+        }
+        val submitter = thread {
+            startLatch.await()
+            submittedTasks.forEach { executor.execute(AFFINITY_KEY, it) }
+        }
+        val updater = thread {
+            startLatch.await()
+            // reverse the order of initial tasks
+            tasks.forEachIndexed { index, task -> executor.updatePriority(task, TASK_COUNT - index.toLong()) }
+        }
+        startLatch.countDown()
+        listOf(bulkUpdater, submitter, updater).forEach { it.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS)) }
+        behavior.workerLatch.countDown()
+
+        (tasks + submittedTasks).forEach { it.get(TIMEOUT_SECONDS, TimeUnit.SECONDS) }
+        val expectedTimestamps = (0 until TASK_COUNT).reversed().map { it.toLong() } + submittedTimestamps
+        assertEquals(expectedTimestamps, behavior.extractedTimestamps.drop(1))
+    }
+
+    private fun blockWorker() {
+        executor.execute(AFFINITY_KEY, createTask(BLOCKING_TIMESTAMP_US, Long.MIN_VALUE))
+        assertTrue(behavior.startLatch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+    }
+
+    private fun createTask(timestampUs: Long, priority: Long): ComparableFutureTask<Unit> {
+        val params = FrameExtractParameters(mock<Uri>(), timestampUs, mock())
+        return ComparableFutureTask(FrameExtractJob("job$timestampUs", params, behavior, null), Unit, priority)
+    }
+
+    /**
+     * Records timestamps of extracted frames in order of extraction. Extraction blocks until [workerLatch] is released.
+     */
+    private class RecordingBehavior : FrameExtractBehavior {
+        val startLatch = CountDownLatch(1)
+        val workerLatch = CountDownLatch(1)
+        val extractedTimestamps: MutableList<Long> = Collections.synchronizedList(mutableListOf())
+
+        override fun extract(params: FrameExtractParameters, listener: FrameExtractBehaviorFrameListener): Boolean {
+            extractedTimestamps.add(params.timestampUs)
+            startLatch.countDown()
+            workerLatch.await()
+            return true
+        }
+
+        override fun release() {}
+    }
+}
@@ -0,0 +1,121 @@
+package com.linkedin.android.litr.io
+
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.verify
+import java.io.Closeable
+import java.io.RandomAccessFile
+import java.nio.channels.FileChannel
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+
+private const val BLOCK_SIZE = 16
+private const val SOURCE_SIZE = 100
+private const val READ_SIZE = 20
+
+class BufferedMediaDataSourceShould {
+
+    @get:Rule val temporaryFolder = TemporaryFolder()
+
+    private val sourceData = ByteArray(SOURCE_SIZE) { (it * 7).toByte() }
+
+    @Test
+    fun `read data at any position`() {
+        val dataSource = createDataSource(maxCachedBlocks = 4, readAheadBlocks = 2)
+
+        // within a block, across blocks, at the end of source and backwards
+        listOf(0, 15, 17, 90, 50, 1).forEach { position ->
+            val buffer = ByteArray(READ_SIZE + 1)
+
+            val bytesRead = dataSource.readAt(position.toLong(), buffer, 1, READ_SIZE)
+
+            val expectedSize = minOf(READ_SIZE, SOURCE_SIZE - position)
+            assertEquals(expectedSize, bytesRead)
+            assertEquals(sourceData.copyOfRange(position, position + expectedSize).toList(), buffer.copyOfRange(1, 1 + expectedSize).toList())
+        }
+    }
+
+    @Test
+    fun `use file channel size when source size is unknown`() {
+        val dataSource = createDataSource(maxCachedBlocks = 4, readAheadBlocks = 2, statSize = -1)
+
+        assertEquals(SOURCE_SIZE.toLong(), dataSource.size)
+    }
+
+    @Test
+    fun `return end of stream when reading past the end of source`() {
+        val dataSource = createDataSource(maxCachedBlocks = 4, readAheadBlocks = 2)
+        val buffer = ByteArray(READ_SIZE)
+
+        assertEquals(-1, dataSource.readAt(SOURCE_SIZE.toLong(), buffer, 0, READ_SIZE))
+        assertEquals(0, dataSource.readAt(0, buffer, 0, 0))
+        assertEquals(0L, dataSource.sourceReadCount)
+    }
+
+    @Test
+    fun `read ahead when reads are sequential`() {
+        val dataSource = createDataSource(maxCachedBlocks = 8, readAheadBlocks = 4)
+        val buffer = ByteArray(BLOCK_SIZE)
+
+        // first read is not known to be sequential, next one continues where it ended and reads ahead
+        repeat(5) { block ->
+            dataSource.readAt(block.toLong() * BLOCK_SIZE, buffer, 0, BLOCK_SIZE)
+        }
+
+        assertEquals(2L, dataSource.sourceReadCount)
+        assertEquals(5L * BLOCK_SIZE, dataSource.sourceBytesRead)
+        assertEquals(2L, dataSource.cacheMissCount)
+        assertEquals(3L, dataSource.cacheHitCount)
+    }
+
+    @Test
+    fun `not read ahead when reads are random`() {
+        val dataSource = createDataSource(maxCachedBlocks = 8, readAheadBlocks = 4)
+        val buffer = ByteArray(BLOCK_SIZE)
+
+        listOf(4, 0, 2).forEach { block ->
+            dataSource.readAt(block.toLong() * BLOCK_SIZE, buffer, 0, BLOCK_SIZE)
+        }
+
+        assertEquals(3L, dataSource.sourceReadCount)
+        assertEquals(3L * BLOCK_SIZE, dataSource.sourceBytesRead)
+    }
+
+    @Test
+    fun `evict least recently used blocks`() {
+        val dataSource = createDataSource(maxCachedBlocks = 2, readAheadBlocks = 1)
+        val buffer = ByteArray(1)
+
+        // reading block 0 again keeps it cached when block 2 evicts block 1
+        listOf(0, 1, 0, 2, 0, 1).forEach { block ->
+            dataSource.readAt(block.toLong() * BLOCK_SIZE, buffer, 0, 1)
+            assertEquals(sourceData[block * BLOCK_SIZE], buffer[0])
+        }
+
+        assertEquals(2L, dataSource.cacheHitCount)
+        assertEquals(4L, dataSource.cacheMissCount)
+    }
+
+    @Test
+    fun `close file channel and source when closed`() {
+        val source = mock<Closeable>()
+        val fileChannel = createFileChannel()
+        val dataSource = BufferedMediaDataSource(source, fileChannel, SOURCE_SIZE.toLong(), BLOCK_SIZE, 2, 1)
+
+        dataSource.close()
+
+        assertFalse(fileChannel.isOpen)
+        verify(source).close()
+    }
+
+    private fun createDataSource(maxCachedBlocks: Int, readAheadBlocks: Int, statSize: Long = SOURCE_SIZE.toLong()) =
+        BufferedMediaDataSource(mock(), createFileChannel(), statSize, BLOCK_SIZE, maxCachedBlocks, readAheadBlocks)
+
+    private fun createFileChannel(): FileChannel {
+        val file = temporaryFolder.newFile()
+        file.writeBytes(sourceData)
+        return RandomAccessFile(file, "r").channel
+    }
+}
@@ -0,0 +1,152 @@
+package com.linkedin.android.litr.io
+
+import android.media.AudioFormat
+import android.media.MediaCodec
+import android.media.MediaFormat
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.whenever
+import java.io.File
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import kotlin.random.Random
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+
+private const val CHUNK_SIZE = 1000
+private const val CONTENT_SIZE = 4500
+private const val WRITE_SIZE = 300
+
+class ContentDigesterShould {
+
+    @get:Rule val temporaryFolder = TemporaryFolder()
+
+    private val content = Random(0).nextBytes(CONTENT_SIZE)
+
+    @Test
+    fun `not read content observed as it was written`() {
+        val contentDigester = ContentDigester(CHUNK_SIZE)
+        write(contentDigester, 0, CONTENT_SIZE)
+
+        val file = createFile(content)
+
+        assertManifest(file, build(contentDigester, file))
+        assertEquals(0L, contentDigester.readSize)
+    }
+
+    @Test
+    fun `read only chunks with patched bytes`() {
+        val contentDigester = ContentDigester(CHUNK_SIZE)
+        write(contentDigester, 0, CONTENT_SIZE)
+        // patch a header, like containers do when released
+        content.fill(42, 10, 20)
+        contentDigester.update(10, ByteBuffer.wrap(content, 10, 10))
+
+        val file = createFile(content)
+
+        assertManifest(file, build(contentDigester, file))
+        assertEquals(CHUNK_SIZE.toLong(), contentDigester.readSize)
+    }
+
+    @Test
+    fun `read content which was not observed`() {
+        val contentDigester = ContentDigester(CHUNK_SIZE)
+        write(contentDigester, 0, 2000)
+        // writes resume in the middle of a chunk, which is read as a whole
+        write(contentDigester, 3500, 4000)
+
+        val file = createFile(content)
+
+        assertManifest(file, build(contentDigester, file))
+        // chunks 2 and 3 are read again, then content after last write
+        assertEquals(2L * CHUNK_SIZE + 500, contentDigester.readSize)
+    }
+
+    @Test
+    fun `read truncated chunk`() {
+        val contentDigester = ContentDigester(CHUNK_SIZE)
+        write(contentDigester, 0, CONTENT_SIZE)
+
+        val file = createFile(content.copyOf(3500))
+
+        assertManifest(file, build(contentDigester, file))
+        assertEquals(500L, contentDigester.readSize)
+    }
+
+    @Test
+    fun `digest wav output as it is written`() {
+        val file = temporaryFolder.newFile("test.wav")
+        val contentDigester = ContentDigester(CHUNK_SIZE)
+        val mediaTarget = WavMediaTarget(file.absolutePath, WRITE_SIZE)
+        mediaTarget.contentDigester = contentDigester
+
+        mediaTarget.addTrack(createWavMediaFormat(), 0)
+        // mix of samples smaller and larger than write buffer, to exercise both buffered and gather writes
+        var position = 0
+        var sampleSize = WRITE_SIZE / 2
+        while (position < CONTENT_SIZE) {
+            val bufferInfo = MediaCodec.BufferInfo().apply {
+                offset = position
+                size = minOf(sampleSize, CONTENT_SIZE - position)
+            }
+            mediaTarget.writeSampleData(0, ByteBuffer.wrap(content), bufferInfo)
+            position += bufferInfo.size
+            sampleSize = if (sampleSize == WRITE_SIZE / 2) WRITE_SIZE * 2 else WRITE_SIZE / 2
+        }
+        mediaTarget.release()
+
+        assertManifest(file, build(contentDigester, file))
+        // sizes in header are patched when target is released
+        assertEquals(CHUNK_SIZE.toLong(), contentDigester.readSize)
+    }
+
+    private fun write(contentDigester: ContentDigester, start: Int, end: Int) {
+        var position = start
+        while (position < end) {
+            val size = minOf(WRITE_SIZE, end - position)
+            contentDigester.update(position.toLong(), ByteBuffer.wrap(content, position, size))
+            position += size
+        }
+    }
+
+    private fun build(contentDigester: ContentDigester, file: File): ContentManifest {
+        return RandomAccessFile(file, "r").use { contentDigester.build(it.channel) }
+    }
+
+    /**
+     * Check manifest against one computed by reading the whole file
+     */
+    private fun assertManifest(file: File, manifest: ContentManifest) {
+        val expectedManifest = RandomAccessFile(file, "r").use { ContentDigester(CHUNK_SIZE).build(it.channel) }
+
+        assertEquals(expectedManifest.size, manifest.size)
+        assertEquals(expectedManifest.chunks.size, manifest.chunks.size)
+        expectedManifest.chunks.forEachIndexed { index, chunk ->
+            assertEquals(chunk.offset, manifest.chunks[index].offset)
+            assertEquals(chunk.size, manifest.chunks[index].size)
+            assertContentEquals(chunk.digest, manifest.chunks[index].digest)
+        }
+        assertContentEquals(expectedManifest.digest, manifest.digest)
+    }
+
+    private fun createFile(bytes: ByteArray): File {
+        val file = temporaryFolder.newFile()
+        file.writeBytes(bytes)
+        return file
+    }
+
+    private fun createWavMediaFormat(): MediaFormat {
+        val mediaFormat = mock<MediaFormat>()
+        whenever(mediaFormat.containsKey(MediaFormat.KEY_MIME)).thenReturn(true)
+        whenever(mediaFormat.getString(MediaFormat.KEY_MIME)).thenReturn("audio/raw")
+        whenever(mediaFormat.containsKey(MediaFormat.KEY_CHANNEL_COUNT)).thenReturn(true)
+        whenever(mediaFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT)).thenReturn(1)
+        whenever(mediaFormat.containsKey(MediaFormat.KEY_SAMPLE_RATE)).thenReturn(true)
+        whenever(mediaFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE)).thenReturn(48000)
+        whenever(mediaFormat.containsKey(MediaFormat.KEY_PCM_ENCODING)).thenReturn(true)
+        whenever(mediaFormat.getInteger(MediaFormat.KEY_PCM_ENCODING)).thenReturn(AudioFormat.ENCODING_PCM_16BIT)
+        return mediaFormat
+    }
+}
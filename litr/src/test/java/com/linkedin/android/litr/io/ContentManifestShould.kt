@@ -0,0 +1,58 @@
+package com.linkedin.android.litr.io
+
+import org.junit.Test
+import java.nio.ByteBuffer
+import java.security.MessageDigest
+import kotlin.random.Random
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+
+private const val CHUNK_SIZE = 100_000
+private const val WRITE_SIZE = 64 * 1024
+
+class ContentManifestShould {
+
+    @Test
+    fun `digest whole content and each chunk in a single pass`() {
+        // content size is not a multiple of either chunk size or write size
+        val content = Random(0).nextBytes(3 * CHUNK_SIZE + 1234)
+
+        val manifest = compute(content)
+
+        assertEquals(content.size.toLong(), manifest.size)
+        assertEquals(CHUNK_SIZE, manifest.chunkSize)
+        assertEquals(4, manifest.chunks.size)
+        manifest.chunks.forEachIndexed { index, chunk ->
+            val offset = index * CHUNK_SIZE
+            val size = minOf(CHUNK_SIZE, content.size - offset)
+            assertEquals(offset.toLong(), chunk.offset)
+            assertEquals(size, chunk.size)
+            assertContentEquals(sha256(content.copyOfRange(offset, offset + size)), chunk.digest)
+        }
+        // whole content digest is a digest of chunk digests
+        assertContentEquals(sha256(manifest.chunks.map { it.digest }.reduce { digests, digest -> digests + digest }), manifest.digest)
+    }
+
+    @Test
+    fun `have no chunks when content is empty`() {
+        val manifest = compute(ByteArray(0))
+
+        assertEquals(0L, manifest.size)
+        assertContentEquals(sha256(ByteArray(0)), manifest.digest)
+        assertEquals(0, manifest.chunks.size)
+    }
+
+    private fun compute(content: ByteArray): ContentManifest {
+        val contentDigester = ContentDigester(CHUNK_SIZE)
+        // written in pieces which do not align with chunks
+        var position = 0
+        while (position < content.size) {
+            val size = minOf(WRITE_SIZE, content.size - position)
+            contentDigester.update(position.toLong(), ByteBuffer.wrap(content, position, size))
+            position += size
+        }
+        return contentDigester.build()
+    }
+
+    private fun sha256(bytes: ByteArray) = MessageDigest.getInstance("SHA-256").digest(bytes)
+}
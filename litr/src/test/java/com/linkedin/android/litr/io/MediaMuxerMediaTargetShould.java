@@ -88,6 +88,34 @@ public class MediaMuxerMediaTargetShould {
         assertFalse(mediaMuxerWrapper.queue.isEmpty());
     }
 
+    @Test
+    public void queueOnlySampleDataOfBatchedSamplesWhenNotStarted() {
+        mediaMuxerWrapper.isStarted = false;
+        SampleBatch batch = new SampleBatch(4, BUFFER_SIZE, 1024 * 1024);
+        for (int sample = 0; sample < 3; sample++) {
+            ByteBuffer data = batch.getData();
+            int size = BUFFER_SIZE - sample;
+            for (int index = 0; index < size; index++) {
+                data.put(batch.getNextOffset() + index, (byte) sample);
+            }
+            batch.add(size, PRESENTATION_TIME + sample, 0);
+        }
+
+        mediaMuxerWrapper.writeSamples(TRACK_AUDIO, batch, 0, batch.getSampleCount());
+
+        verify(mediaMuxer, never()).writeSampleData(anyInt(), any(ByteBuffer.class), any(MediaCodec.BufferInfo.class));
+        assertThat(mediaMuxerWrapper.queue.size(), is(3));
+        for (int sample = 0; sample < 3; sample++) {
+            MediaTargetSample mediaSample = mediaMuxerWrapper.queue.get(sample);
+            int size = BUFFER_SIZE - sample;
+            // queued copy is as large as the sample, not as the whole batch buffer
+            assertThat(mediaSample.getBuffer().capacity(), is(size));
+            assertThat(mediaSample.getBuffer().remaining(), is(size));
+            assertThat(mediaSample.getBuffer().get(0), is((byte) sample));
+            assertThat(mediaSample.getBuffer().get(size - 1), is((byte) sample));
+        }
+    }
+
     @Test
     public void notAddTrackWhenNotAllTracksAreAdded() {
         doReturn(TRACK_VIDEO).when(mediaMuxer).addTrack(videoMediaFormat);
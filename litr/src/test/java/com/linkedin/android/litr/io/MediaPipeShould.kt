@@ -0,0 +1,115 @@
+package com.linkedin.android.litr.io
+
+import android.media.MediaCodec
+import android.media.MediaExtractor
+import android.media.MediaFormat
+import com.linkedin.android.litr.MimeType
+import org.junit.Test
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.whenever
+import java.nio.ByteBuffer
+import kotlin.concurrent.thread
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertSame
+
+private const val TRACK_COUNT = 2
+private const val SAMPLE_COUNT = 100
+private const val SAMPLE_DURATION_US = 10_000L
+private const val SAMPLE_SIZE = 100
+
+class MediaPipeShould {
+
+    // video and audio tracks, samples are interleaved
+    private val trackFormats = listOf(createMediaFormat(MimeType.VIDEO_AVC), createMediaFormat(MimeType.AUDIO_AAC))
+
+    @Test
+    fun `pass samples and formats from target to source while upstream is throttled`() {
+        // budget fits just a few samples, so that writer has to wait for reader
+        val mediaPipe = MediaPipe(TRACK_COUNT, 90, 4L * SAMPLE_SIZE)
+        val writer = thread { writeSamples(mediaPipe.mediaTarget, SAMPLE_COUNT) }
+
+        val mediaSource = mediaPipe.mediaSource
+        assertEquals(90, mediaSource.orientationHint)
+        repeat(TRACK_COUNT) { track ->
+            assertSame(trackFormats[track], mediaSource.getTrackFormat(track))
+            mediaSource.selectTrack(track)
+        }
+        mediaSource.seekTo(0, MediaExtractor.SEEK_TO_PREVIOUS_SYNC)
+
+        val buffer = ByteBuffer.allocate(SAMPLE_SIZE)
+        for (sample in 0 until SAMPLE_COUNT) {
+            assertEquals(sample % TRACK_COUNT, mediaSource.sampleTrackIndex)
+            assertEquals(sample * SAMPLE_DURATION_US, mediaSource.sampleTime)
+            // audio samples are always sync samples
+            val isSyncSample = sample % 10 == 0 || sample % TRACK_COUNT == 1
+            assertEquals(if (isSyncSample) MediaExtractor.SAMPLE_FLAG_SYNC else 0, mediaSource.sampleFlags)
+            assertEquals(SAMPLE_SIZE, mediaSource.readSampleData(buffer, 0))
+            assertEquals(sample.toByte(), buffer.get(0))
+            mediaSource.advance()
+        }
+        assertEquals(-1, mediaSource.sampleTrackIndex)
+
+        writer.join()
+        mediaSource.release()
+    }
+
+    @Test
+    fun `skip samples of unselected tracks and samples before seek position`() {
+        val mediaPipe = MediaPipe(TRACK_COUNT, 0)
+        writeSamples(mediaPipe.mediaTarget, SAMPLE_COUNT)
+
+        val mediaSource = mediaPipe.mediaSource
+        mediaSource.selectTrack(0)
+        mediaSource.seekTo(15 * SAMPLE_DURATION_US, MediaExtractor.SEEK_TO_PREVIOUS_SYNC)
+
+        // first video sync sample after seek position
+        assertEquals(0, mediaSource.sampleTrackIndex)
+        assertEquals(20 * SAMPLE_DURATION_US, mediaSource.sampleTime)
+        mediaSource.advance()
+        assertEquals(22 * SAMPLE_DURATION_US, mediaSource.sampleTime)
+        mediaSource.release()
+    }
+
+    @Test
+    fun `fail when upstream ends without end of stream`() {
+        val mediaPipe = MediaPipe(TRACK_COUNT, 0)
+        writeSamples(mediaPipe.mediaTarget, SAMPLE_COUNT / 2, false)
+
+        val mediaSource = mediaPipe.mediaSource
+        mediaSource.selectTrack(0)
+        repeat(SAMPLE_COUNT / 4) { mediaSource.advance() }
+
+        assertFailsWith<IllegalStateException> { mediaSource.sampleTrackIndex }
+    }
+
+    private fun writeSamples(mediaTarget: MediaTarget, sampleCount: Int, endOfStream: Boolean = true) {
+        repeat(TRACK_COUNT) { track -> mediaTarget.addTrack(trackFormats[track], track) }
+        val buffer = ByteBuffer.allocate(SAMPLE_SIZE)
+        val info = MediaCodec.BufferInfo()
+        for (sample in 0 until sampleCount) {
+            buffer.clear()
+            buffer.put(0, sample.toByte())
+            info.offset = 0
+            info.size = SAMPLE_SIZE
+            info.presentationTimeUs = sample * SAMPLE_DURATION_US
+            info.flags = if (sample % 10 == 0) MediaCodec.BUFFER_FLAG_KEY_FRAME else 0
+            mediaTarget.writeSampleData(sample % TRACK_COUNT, buffer, info)
+        }
+        if (endOfStream) {
+            repeat(TRACK_COUNT) { track ->
+                info.size = 0
+                info.flags = MediaCodec.BUFFER_FLAG_END_OF_STREAM
+                mediaTarget.writeSampleData(track, buffer, info)
+            }
+        }
+        mediaTarget.release()
+    }
+
+    private fun createMediaFormat(mimeType: String): MediaFormat {
+        val mediaFormat = mock<MediaFormat>()
+        whenever(mediaFormat.containsKey(MediaFormat.KEY_MIME)).thenReturn(true)
+        whenever(mediaFormat.getString(MediaFormat.KEY_MIME)).thenReturn(mimeType)
+        return mediaFormat
+    }
+}
@@ -0,0 +1,157 @@
+package com.linkedin.android.litr.io
+
+import android.media.MediaExtractor
+import android.media.MediaFormat
+import org.junit.Test
+import org.mockito.kotlin.mock
+import java.nio.ByteBuffer
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertTrue
+
+private const val TRACK_COUNT = 2
+private const val SAMPLE_COUNT = 100
+private const val SAMPLE_DURATION_US = 10_000L
+private const val MAX_SAMPLE_SIZE = 1000
+
+class PrefetchingMediaSourceShould {
+
+    @Test
+    fun `serve samples of wrapped source in order`() {
+        val wrappedSource = FakeMediaSource()
+        val mediaSource = PrefetchingMediaSource(wrappedSource, 4, 2 * MAX_SAMPLE_SIZE.toLong())
+
+        assertSamples(mediaSource, 0)
+        // end of stream is sticky
+        mediaSource.advance()
+        assertEquals(-1, mediaSource.sampleTrackIndex)
+        assertEquals(-1, mediaSource.readSampleData(ByteBuffer.allocate(MAX_SAMPLE_SIZE), 0))
+
+        mediaSource.release()
+        assertTrue(wrappedSource.isReleased)
+    }
+
+    @Test
+    fun `flush read ahead samples when seeking`() {
+        val mediaSource = PrefetchingMediaSource(FakeMediaSource())
+
+        // consume a few samples, so that more are read ahead
+        repeat(10) {
+            mediaSource.advance()
+        }
+        val seekSample = SAMPLE_COUNT / 2
+        mediaSource.seekTo(seekSample * SAMPLE_DURATION_US, MediaExtractor.SEEK_TO_PREVIOUS_SYNC)
+
+        assertSamples(mediaSource, seekSample)
+        mediaSource.release()
+    }
+
+    @Test
+    fun `read metadata of wrapped source only when created`() {
+        val wrappedSource = FakeMediaSource()
+        val mediaSource = PrefetchingMediaSource(wrappedSource)
+
+        // track formats are requested while prefetch thread is reading samples
+        repeat(10) {
+            mediaSource.advance()
+            repeat(TRACK_COUNT) { track ->
+                mediaSource.getTrackFormat(track)
+            }
+        }
+
+        assertEquals(TRACK_COUNT, wrappedSource.trackFormatRequestCount)
+        mediaSource.release()
+    }
+
+    @Test
+    fun `serve read ahead samples before reporting read error`() {
+        val failingSample = 20
+        val mediaSource = PrefetchingMediaSource(FakeMediaSource(failingSample))
+
+        val buffer = ByteBuffer.allocate(MAX_SAMPLE_SIZE)
+        for (sample in 0 until failingSample) {
+            assertEquals(sample * SAMPLE_DURATION_US, mediaSource.sampleTime)
+            assertEquals(getSampleSize(sample), mediaSource.readSampleData(buffer, 0))
+            mediaSource.advance()
+        }
+        assertFailsWith<IllegalStateException> { mediaSource.sampleTrackIndex }
+
+        mediaSource.release()
+    }
+
+    private fun assertSamples(mediaSource: MediaSource, firstSample: Int) {
+        val buffer = ByteBuffer.allocate(MAX_SAMPLE_SIZE + 10)
+        for (sample in firstSample until SAMPLE_COUNT) {
+            assertEquals(sample % TRACK_COUNT, mediaSource.sampleTrackIndex)
+            assertEquals(sample * SAMPLE_DURATION_US, mediaSource.sampleTime)
+            assertEquals(if (sample % 10 == 0) MediaExtractor.SAMPLE_FLAG_SYNC else 0, mediaSource.sampleFlags)
+
+            val size = mediaSource.readSampleData(buffer, 10)
+            assertEquals(getSampleSize(sample), size)
+            assertEquals(10, buffer.position())
+            assertEquals(10 + size, buffer.limit())
+            repeat(size) { index ->
+                assertEquals((sample + index).toByte(), buffer.get(10 + index))
+            }
+            mediaSource.advance()
+        }
+        assertEquals(-1, mediaSource.sampleTrackIndex)
+    }
+
+    private class FakeMediaSource(private val failingSample: Int = -1) : MediaSource {
+        private var sample = 0
+        var isReleased = false
+        var trackFormatRequestCount = 0
+
+        override fun getOrientationHint() = 0
+
+        override fun getTrackCount() = TRACK_COUNT
+
+        override fun getTrackFormat(track: Int): MediaFormat {
+            trackFormatRequestCount++
+            return mock()
+        }
+
+        override fun selectTrack(track: Int) {}
+
+        override fun seekTo(position: Long, mode: Int) {
+            sample = (position / SAMPLE_DURATION_US).toInt()
+        }
+
+        override fun getSampleTrackIndex() = if (sample < SAMPLE_COUNT) sample % TRACK_COUNT else -1
+
+        override fun readSampleData(buffer: ByteBuffer, offset: Int): Int {
+            if (sample >= SAMPLE_COUNT) {
+                return -1
+            }
+            if (sample == failingSample) {
+                throw IllegalStateException("Failed to read sample $sample")
+            }
+            val size = getSampleSize(sample)
+            buffer.clear()
+            buffer.position(offset)
+            repeat(size) { index ->
+                buffer.put((sample + index).toByte())
+            }
+            buffer.flip()
+            buffer.position(offset)
+            return size
+        }
+
+        override fun getSampleTime() = if (sample < SAMPLE_COUNT) sample * SAMPLE_DURATION_US else -1
+
+        override fun getSampleFlags() = if (sample < SAMPLE_COUNT && sample % 10 == 0) MediaExtractor.SAMPLE_FLAG_SYNC else 0
+
+        override fun advance() {
+            sample++
+        }
+
+        override fun release() {
+            isReleased = true
+        }
+
+        override fun getSize() = -1L
+    }
+}
+
+private fun getSampleSize(sample: Int) = (sample * 37) % MAX_SAMPLE_SIZE
@@ -0,0 +1,84 @@
+package com.linkedin.android.litr.io
+
+import android.media.AudioFormat
+import android.media.MediaCodec
+import android.media.MediaFormat
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.whenever
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import kotlin.test.assertEquals
+
+private const val CHANNEL_COUNT = 2
+private const val SAMPLE_RATE = 48000
+private const val SAMPLE_FRAME_COUNT = 1000
+private const val WRITE_BUFFER_SIZE = 1024
+private const val WRITE_SAMPLE_SIZE = 400
+private const val READ_SAMPLE_FRAME_COUNT = 256
+
+class WavMediaSourceShould {
+
+    @get:Rule val temporaryFolder = TemporaryFolder()
+
+    @Test
+    fun `read samples written by wav media target`() {
+        val path = temporaryFolder.newFile("test.wav").absolutePath
+        val data = ByteBuffer.allocateDirect(SAMPLE_FRAME_COUNT * CHANNEL_COUNT * 2).order(ByteOrder.LITTLE_ENDIAN)
+        repeat(SAMPLE_FRAME_COUNT * CHANNEL_COUNT) { index ->
+            data.putShort((index * 31).toShort())
+        }
+
+        val mediaTarget = WavMediaTarget(path, WRITE_BUFFER_SIZE)
+        assertEquals(0, mediaTarget.addTrack(createMediaFormat(), 0))
+        // mix of samples smaller and larger than write buffer, to exercise both buffered and gather writes
+        var offset = 0
+        var sampleSize = WRITE_SAMPLE_SIZE
+        while (offset < data.capacity()) {
+            val size = minOf(sampleSize, data.capacity() - offset)
+            val bufferInfo = MediaCodec.BufferInfo().apply {
+                this.offset = offset
+                this.size = size
+            }
+            mediaTarget.writeSampleData(0, data, bufferInfo)
+            offset += size
+            sampleSize = if (sampleSize == WRITE_SAMPLE_SIZE) WRITE_BUFFER_SIZE * 2 else WRITE_SAMPLE_SIZE
+        }
+        mediaTarget.release()
+
+        val mediaSource = WavMediaSource(path, READ_SAMPLE_FRAME_COUNT)
+        val readBuffer = ByteBuffer.allocate(READ_SAMPLE_FRAME_COUNT * CHANNEL_COUNT * 2).order(ByteOrder.LITTLE_ENDIAN)
+        var position = 0
+        var sampleFrame = 0L
+        while (mediaSource.sampleTrackIndex == 0) {
+            assertEquals(sampleFrame * 1_000_000L / SAMPLE_RATE, mediaSource.sampleTime)
+
+            val bytesRead = mediaSource.readSampleData(readBuffer, 0)
+            repeat(bytesRead / 2) { index ->
+                assertEquals(data.getShort(position), readBuffer.getShort(index * 2))
+                position += 2
+            }
+            sampleFrame += bytesRead / (CHANNEL_COUNT * 2)
+            mediaSource.advance()
+        }
+        mediaSource.release()
+
+        assertEquals(data.capacity(), position)
+        assertEquals(-1, mediaSource.sampleTrackIndex)
+    }
+
+    private fun createMediaFormat(): MediaFormat {
+        val mediaFormat = mock<MediaFormat>()
+        whenever(mediaFormat.containsKey(MediaFormat.KEY_MIME)).thenReturn(true)
+        whenever(mediaFormat.getString(MediaFormat.KEY_MIME)).thenReturn("audio/raw")
+        whenever(mediaFormat.containsKey(MediaFormat.KEY_CHANNEL_COUNT)).thenReturn(true)
+        whenever(mediaFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT)).thenReturn(CHANNEL_COUNT)
+        whenever(mediaFormat.containsKey(MediaFormat.KEY_SAMPLE_RATE)).thenReturn(true)
+        whenever(mediaFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE)).thenReturn(SAMPLE_RATE)
+        whenever(mediaFormat.containsKey(MediaFormat.KEY_PCM_ENCODING)).thenReturn(true)
+        whenever(mediaFormat.getInteger(MediaFormat.KEY_PCM_ENCODING)).thenReturn(AudioFormat.ENCODING_PCM_16BIT)
+        return mediaFormat
+    }
+}
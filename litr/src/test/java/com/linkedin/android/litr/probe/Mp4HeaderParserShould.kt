@@ -0,0 +1,246 @@
+package com.linkedin.android.litr.probe
+
+import android.media.MediaCodecInfo.CodecProfileLevel
+import com.linkedin.android.litr.MimeType
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.RandomAccessFile
+import kotlin.test.assertEquals
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+private const val VIDEO_TIMESCALE = 30_000
+private const val VIDEO_SAMPLE_COUNT = 300
+private const val VIDEO_SAMPLE_DELTA = 1000
+private const val VIDEO_SAMPLE_SIZE = 2500
+private const val AUDIO_TIMESCALE = 48_000
+private const val AUDIO_BITRATE = 128_000
+
+class Mp4HeaderParserShould {
+
+    private lateinit var file: File
+
+    @Before
+    fun setup() {
+        file = File.createTempFile("probe", ".mp4")
+    }
+
+    @After
+    fun cleanup() {
+        file.delete()
+    }
+
+    @Test
+    fun `summarize tracks from movie box placed after media data`() {
+        val syncSamples = intArrayOf(1, 31, 91, 121, 151, 181, 211, 241, 271)
+        file.writeBytes(ftyp() + box("mdat", ByteArray(1000)) + box("moov", mvhd(), videoTrack(syncSamples), audioTrack()))
+
+        val result = parse()
+
+        assertNotNull(result)
+        assertTrue(result.isHeaderOnly)
+        assertEquals(file.length(), result.size)
+        assertEquals(10_000_000L, result.durationUs)
+        assertEquals(90, result.orientationHint)
+        assertEquals(2, result.trackCount)
+
+        val videoTrack = result.getTrack(0)
+        assertEquals(MimeType.VIDEO_AVC, videoTrack.mimeType)
+        assertEquals(1280, videoTrack.width)
+        assertEquals(720, videoTrack.height)
+        assertEquals(90, videoTrack.rotation)
+        assertEquals(10_000_000L, videoTrack.durationUs)
+        assertEquals(30f, videoTrack.frameRate)
+        assertEquals(VIDEO_SAMPLE_COUNT * VIDEO_SAMPLE_SIZE * 8 / 10, videoTrack.bitrate)
+        assertEquals(CodecProfileLevel.AVCProfileHigh, videoTrack.profile)
+        assertEquals(CodecProfileLevel.AVCLevel31, videoTrack.level)
+        assertEquals(VIDEO_SAMPLE_COUNT, videoTrack.sampleCount)
+        assertEquals(syncSamples.size, videoTrack.keyFrameCount)
+        assertEquals(10_000_000L / syncSamples.size, videoTrack.keyFrameIntervalUs)
+        // longest gap is between samples 31 and 91
+        assertEquals(2_000_000L, videoTrack.maxKeyFrameIntervalUs)
+
+        val audioTrack = result.getTrack(1)
+        assertEquals(MimeType.AUDIO_AAC, audioTrack.mimeType)
+        assertEquals(AUDIO_TIMESCALE, audioTrack.sampleRate)
+        assertEquals(2, audioTrack.channelCount)
+        assertEquals(AUDIO_BITRATE, audioTrack.bitrate)
+        assertEquals(10_000_000L, audioTrack.durationUs)
+    }
+
+    @Test
+    fun `treat every sample as key frame when sync sample box is absent`() {
+        file.writeBytes(ftyp() + box("moov", mvhd(), videoTrack(null)) + box("mdat", ByteArray(100)))
+
+        val videoTrack = parse()!!.getTrack(0)
+
+        assertEquals(VIDEO_SAMPLE_COUNT, videoTrack.keyFrameCount)
+        assertEquals(0L, videoTrack.keyFrameIntervalUs)
+        assertEquals(0L, videoTrack.maxKeyFrameIntervalUs)
+    }
+
+    @Test
+    fun `give up on media which is not iso base media`() {
+        file.writeBytes("RIFF".toByteArray() + ByteArray(100))
+
+        assertNull(parse())
+    }
+
+    @Test
+    fun `give up on fragmented media`() {
+        file.writeBytes(ftyp() + box("moov", mvhd(), videoTrack(null), box("mvex")) + box("moof"))
+
+        assertNull(parse())
+    }
+
+    private fun parse(): MediaProbeResult? {
+        return RandomAccessFile(file, "r").use { Mp4HeaderParser.parse(it.channel) }
+    }
+
+    private fun ftyp() = box("ftyp", data {
+        writeBytes("isom")
+        writeInt(0)
+        writeBytes("isommp42")
+    })
+
+    private fun mvhd() = box("mvhd", data {
+        writeInt(0)
+        writeInt(0)
+        writeInt(0)
+        writeInt(1000)
+        writeInt(10_000)
+        write(ByteArray(80))
+    })
+
+    private fun videoTrack(syncSamples: IntArray?): ByteArray {
+        val tkhd = box("tkhd", data {
+            writeInt(3)
+            write(ByteArray(20))
+            write(ByteArray(16))
+            // rotation by 90 degrees
+            intArrayOf(0, 0x10000, 0, -0x10000, 0, 0, 0, 0, 0x40000000).forEach { writeInt(it) }
+            writeInt(1280 shl 16)
+            writeInt(720 shl 16)
+        })
+        val mdhd = box("mdhd", data {
+            writeInt(0)
+            writeInt(0)
+            writeInt(0)
+            writeInt(VIDEO_TIMESCALE)
+            writeInt(VIDEO_SAMPLE_COUNT * VIDEO_SAMPLE_DELTA)
+            writeInt(0)
+        })
+        val avc1 = box("avc1", data {
+            write(ByteArray(6))
+            writeShort(1)
+            write(ByteArray(16))
+            writeShort(1280)
+            writeShort(720)
+            write(ByteArray(46))
+            writeShort(24)
+            writeShort(-1)
+            // High profile, level 3.1
+            write(box("avcC", byteArrayOf(1, 100, 0, 31, -1, -31)))
+        })
+        val stsd = box("stsd", data {
+            writeInt(0)
+            writeInt(1)
+            write(avc1)
+        })
+        val stts = box("stts", data {
+            writeInt(0)
+            writeInt(2)
+            writeInt(100)
+            writeInt(VIDEO_SAMPLE_DELTA)
+            writeInt(VIDEO_SAMPLE_COUNT - 100)
+            writeInt(VIDEO_SAMPLE_DELTA)
+        })
+        val stsz = box("stsz", data {
+            writeInt(0)
+            writeInt(0)
+            writeInt(VIDEO_SAMPLE_COUNT)
+            repeat(VIDEO_SAMPLE_COUNT) { writeInt(VIDEO_SAMPLE_SIZE) }
+        })
+        val stss = syncSamples?.let {
+            box("stss", data {
+                writeInt(0)
+                writeInt(it.size)
+                it.forEach { sample -> writeInt(sample) }
+            })
+        } ?: ByteArray(0)
+
+        return box("trak", tkhd, box("mdia", mdhd, hdlr("vide"), box("minf", box("stbl", stsd, stts, stss, stsz))))
+    }
+
+    private fun audioTrack(): ByteArray {
+        val mdhd = box("mdhd", data {
+            writeInt(0)
+            writeInt(0)
+            writeInt(0)
+            writeInt(AUDIO_TIMESCALE)
+            writeInt(AUDIO_TIMESCALE * 10)
+            writeInt(0)
+        })
+        val esds = box("esds", data {
+            writeInt(0)
+            // ES descriptor, with a four byte length
+            write(byteArrayOf(0x03, 0x80.toByte(), 0x80.toByte(), 0x80.toByte(), 25))
+            writeShort(1)
+            writeByte(0)
+            // decoder config descriptor, AAC
+            write(byteArrayOf(0x04, 17, 0x40, 0x15, 0, 0, 0))
+            writeInt(140_000)
+            writeInt(AUDIO_BITRATE)
+            write(byteArrayOf(0x05, 2, 0x11, 0x90.toByte()))
+        })
+        val mp4a = box("mp4a", data {
+            write(ByteArray(6))
+            writeShort(1)
+            write(ByteArray(8))
+            writeShort(2)
+            writeShort(16)
+            writeInt(0)
+            writeInt(AUDIO_TIMESCALE shl 16)
+            write(esds)
+        })
+        val stsd = box("stsd", data {
+            writeInt(0)
+            writeInt(1)
+            write(mp4a)
+        })
+        val stsz = box("stsz", data {
+            writeInt(0)
+            writeInt(400)
+            writeInt(469)
+        })
+
+        return box("trak", box("mdia", mdhd, hdlr("soun"), box("minf", box("stbl", stsd, stsz))))
+    }
+
+    private fun hdlr(handler: String) = box("hdlr", data {
+        writeInt(0)
+        writeInt(0)
+        writeBytes(handler)
+        write(ByteArray(13))
+    })
+
+    private fun box(type: String, vararg children: ByteArray): ByteArray {
+        val content = children.fold(ByteArray(0)) { bytes, child -> bytes + child }
+        return data {
+            writeInt(8 + content.size)
+            writeBytes(type)
+            write(content)
+        }
+    }
+
+    private fun data(block: DataOutputStream.() -> Unit): ByteArray {
+        val outputStream = ByteArrayOutputStream()
+        DataOutputStream(outputStream).use(block)
+        return outputStream.toByteArray()
+    }
+}
@@ -0,0 +1,175 @@
+package com.linkedin.android.litr.probe
+
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.RandomAccessFile
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+private const val TIMESCALE = 30_000
+private const val SAMPLE_COUNT = 300
+private const val SAMPLE_DELTA = 1000
+private const val SAMPLE_SIZE = 100
+private const val SAMPLES_PER_CHUNK = 30
+private const val DURATION_US = 10_000_000L
+private const val TOLERANCE_US = 100_000L
+
+class Mp4StructureVerifierShould {
+
+    private lateinit var file: File
+
+    @Before
+    fun setup() {
+        file = File.createTempFile("verify", ".mp4")
+    }
+
+    @After
+    fun cleanup() {
+        file.delete()
+    }
+
+    @Test
+    fun `accept valid media`() {
+        writeMedia()
+
+        assertNull(verify())
+    }
+
+    @Test
+    fun `reject chunks which extend past end of file`() {
+        // media data is truncated, as if writing stopped early
+        writeMedia(mediaDataSize = SAMPLE_COUNT * SAMPLE_SIZE / 2)
+
+        assertFailure("extends past end of file")
+    }
+
+    @Test
+    fun `reject sample tables which disagree on sample count`() {
+        writeMedia(timeToSampleCount = SAMPLE_COUNT - 1)
+
+        assertFailure("time to sample box describes ${SAMPLE_COUNT - 1} samples")
+    }
+
+    @Test
+    fun `reject video which does not start with sync sample`() {
+        writeMedia(syncSamples = intArrayOf(31, 61))
+
+        assertFailure("first video sample is not a sync sample")
+    }
+
+    @Test
+    fun `reject track duration which differs from expected one`() {
+        writeMedia()
+
+        val reason = verify(DURATION_US * 2)
+
+        assertNotNull(reason)
+        assertTrue(reason.contains("differs from expected"), reason)
+    }
+
+    private fun assertFailure(expectedReason: String) {
+        val reason = verify()
+        assertNotNull(reason)
+        assertTrue(reason.startsWith("Track 0: ") && reason.contains(expectedReason), reason)
+    }
+
+    private fun verify(expectedDurationUs: Long = DURATION_US): String? {
+        return RandomAccessFile(file, "r").use {
+            Mp4StructureVerifier.verify(it.channel, longArrayOf(expectedDurationUs), TOLERANCE_US)
+        }
+    }
+
+    private fun writeMedia(mediaDataSize: Int = SAMPLE_COUNT * SAMPLE_SIZE,
+                           timeToSampleCount: Int = SAMPLE_COUNT,
+                           syncSamples: IntArray = intArrayOf(1, 151)) {
+        val ftyp = box("ftyp", data {
+            writeBytes("isom")
+            writeInt(0)
+            writeBytes("isommp42")
+        })
+        val mediaDataOffset = ftyp.size + 8
+        file.writeBytes(ftyp + box("mdat", ByteArray(mediaDataSize)) + moov(mediaDataOffset, timeToSampleCount, syncSamples))
+    }
+
+    private fun moov(mediaDataOffset: Int, timeToSampleCount: Int, syncSamples: IntArray): ByteArray {
+        val mvhd = box("mvhd", data {
+            writeInt(0)
+            writeInt(0)
+            writeInt(0)
+            writeInt(1000)
+            writeInt((DURATION_US / 1000).toInt())
+            write(ByteArray(80))
+        })
+        val mdhd = box("mdhd", data {
+            writeInt(0)
+            writeInt(0)
+            writeInt(0)
+            writeInt(TIMESCALE)
+            writeInt(SAMPLE_COUNT * SAMPLE_DELTA)
+            writeInt(0)
+        })
+        val hdlr = box("hdlr", data {
+            writeInt(0)
+            writeInt(0)
+            writeBytes("vide")
+            write(ByteArray(13))
+        })
+        val stsd = box("stsd", data {
+            writeInt(0)
+            writeInt(1)
+            write(box("avc1", ByteArray(78)))
+        })
+        val stts = box("stts", data {
+            writeInt(0)
+            writeInt(1)
+            writeInt(timeToSampleCount)
+            writeInt(SAMPLE_DELTA)
+        })
+        val stss = box("stss", data {
+            writeInt(0)
+            writeInt(syncSamples.size)
+            syncSamples.forEach { writeInt(it) }
+        })
+        val stsz = box("stsz", data {
+            writeInt(0)
+            writeInt(SAMPLE_SIZE)
+            writeInt(SAMPLE_COUNT)
+        })
+        val stsc = box("stsc", data {
+            writeInt(0)
+            writeInt(1)
+            writeInt(1)
+            writeInt(SAMPLES_PER_CHUNK)
+            writeInt(1)
+        })
+        val chunkCount = SAMPLE_COUNT / SAMPLES_PER_CHUNK
+        val stco = box("stco", data {
+            writeInt(0)
+            writeInt(chunkCount)
+            repeat(chunkCount) { chunk -> writeInt(mediaDataOffset + chunk * SAMPLES_PER_CHUNK * SAMPLE_SIZE) }
+        })
+
+        val stbl = box("stbl", stsd, stts, stss, stsz, stsc, stco)
+        return box("moov", mvhd, box("trak", box("mdia", mdhd, hdlr, box("minf", stbl))))
+    }
+
+    private fun box(type: String, vararg children: ByteArray): ByteArray {
+        val content = children.fold(ByteArray(0)) { bytes, child -> bytes + child }
+        return data {
+            writeInt(8 + content.size)
+            writeBytes(type)
+            write(content)
+        }
+    }
+
+    private fun data(block: DataOutputStream.() -> Unit): ByteArray {
+        val outputStream = ByteArrayOutputStream()
+        DataOutputStream(outputStream).use(block)
+        return outputStream.toByteArray()
+    }
+}
@@ -0,0 +1,58 @@
+package com.linkedin.android.litr.probe
+
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.RandomAccessFile
+import kotlin.random.Random
+import kotlin.test.assertEquals
+import kotlin.test.assertNotEquals
+
+private const val CONTENT_SIZE = 4 * SampleIndexCache.FINGERPRINT_SIZE
+
+class SampleIndexCacheShould {
+
+    @get:Rule val temporaryFolder = TemporaryFolder()
+
+    private val content = Random(0).nextBytes(CONTENT_SIZE)
+
+    @Test
+    fun `keep fingerprint of unchanged content`() {
+        assertEquals(getFingerprint(content), getFingerprint(content.copyOf()))
+    }
+
+    @Test
+    fun `change fingerprint when head of file changes`() {
+        // MP4 files optimized for streaming have movie box right after file type box
+        val changedContent = content.copyOf()
+        changedContent[100]++
+
+        assertNotEquals(getFingerprint(content), getFingerprint(changedContent))
+    }
+
+    @Test
+    fun `change fingerprint when tail of file changes`() {
+        // other MP4 files have movie box at the end
+        val changedContent = content.copyOf()
+        changedContent[CONTENT_SIZE - 100]++
+
+        assertNotEquals(getFingerprint(content), getFingerprint(changedContent))
+    }
+
+    @Test
+    fun `fingerprint file smaller than fingerprinted head and tail`() {
+        val smallContent = content.copyOf(SampleIndexCache.FINGERPRINT_SIZE + 100)
+        val changedContent = smallContent.copyOf()
+        changedContent[SampleIndexCache.FINGERPRINT_SIZE + 50]++
+
+        assertEquals(getFingerprint(smallContent), getFingerprint(smallContent.copyOf()))
+        assertNotEquals(getFingerprint(smallContent), getFingerprint(changedContent))
+        assertNotEquals(getFingerprint(content.copyOf(10)), getFingerprint(content.copyOf(20)))
+    }
+
+    private fun getFingerprint(bytes: ByteArray): Long {
+        val file = temporaryFolder.newFile()
+        file.writeBytes(bytes)
+        return RandomAccessFile(file, "r").use { SampleIndexCache.getFingerprint(it.channel, bytes.size.toLong()) }
+    }
+}
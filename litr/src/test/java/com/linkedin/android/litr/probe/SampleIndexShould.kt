@@ -0,0 +1,193 @@
+package com.linkedin.android.litr.probe
+
+import android.media.MediaExtractor
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.RandomAccessFile
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertNotNull
+import kotlin.test.assertTrue
+
+private const val TIMESCALE = 10_000
+private const val SAMPLE_COUNT = 10
+private const val SAMPLE_DELTA = 1000
+private const val SAMPLE_DURATION_US = 100_000L
+private const val SAMPLES_PER_CHUNK = 5
+private const val COMPOSITION_OFFSET = 2000
+private val SYNC_SAMPLES = intArrayOf(1, 6)
+
+class SampleIndexShould {
+
+    @Test
+    fun `index samples from sample tables`() {
+        val mediaDataOffset = createFileTypeBox().size + 8
+        val sampleIndex = parse(createMedia())
+
+        assertEquals(1, sampleIndex.trackCount)
+        val track = sampleIndex.getTrack(0)
+        assertEquals(SAMPLE_COUNT, track.sampleCount)
+        var offset = mediaDataOffset.toLong()
+        for (sample in 0 until SAMPLE_COUNT) {
+            // composition offset is cancelled out by edit list
+            assertEquals(sample * SAMPLE_DURATION_US, track.getSampleTimeUs(sample))
+            assertEquals(getSampleSize(sample), track.getSampleSize(sample))
+            assertEquals(offset, track.getSampleOffset(sample))
+            assertEquals(SYNC_SAMPLES.contains(sample + 1), track.isSyncSample(sample))
+            offset += getSampleSize(sample)
+        }
+    }
+
+    @Test
+    fun `find sync sample seek lands on`() {
+        val track = parse(createMedia()).getTrack(0)
+
+        assertEquals(5 * SAMPLE_DURATION_US, track.findSyncSampleTimeUs(550_000, MediaExtractor.SEEK_TO_PREVIOUS_SYNC))
+        assertEquals(0L, track.findSyncSampleTimeUs(400_000, MediaExtractor.SEEK_TO_PREVIOUS_SYNC))
+        assertEquals(5 * SAMPLE_DURATION_US, track.findSyncSampleTimeUs(100_000, MediaExtractor.SEEK_TO_NEXT_SYNC))
+        assertEquals(SampleIndex.UNKNOWN.toLong(), track.findSyncSampleTimeUs(600_000, MediaExtractor.SEEK_TO_NEXT_SYNC))
+        assertEquals(5 * SAMPLE_DURATION_US, track.findSyncSampleTimeUs(300_000, MediaExtractor.SEEK_TO_CLOSEST_SYNC))
+        assertEquals(0L, track.findSyncSampleTimeUs(200_000, MediaExtractor.SEEK_TO_CLOSEST_SYNC))
+    }
+
+    @Test
+    fun `persist and restore index`() {
+        val sampleIndex = SampleIndex.Builder(2)
+            .addSample(0, 0, 1000, MediaExtractor.SAMPLE_FLAG_SYNC)
+            .addSample(1, 0, 200, MediaExtractor.SAMPLE_FLAG_SYNC)
+            .addSample(0, 33_333, 300, 0)
+            .build()
+
+        val outputStream = ByteArrayOutputStream()
+        DataOutputStream(outputStream).use { sampleIndex.writeTo(it) }
+        val restoredIndex = SampleIndex.readFrom(DataInputStream(ByteArrayInputStream(outputStream.toByteArray())))
+
+        assertEquals(2, restoredIndex.trackCount)
+        val track = restoredIndex.getTrack(0)
+        assertEquals(2, track.sampleCount)
+        assertEquals(33_333L, track.getSampleTimeUs(1))
+        assertEquals(300, track.getSampleSize(1))
+        assertEquals(SampleIndex.UNKNOWN.toLong(), track.getSampleOffset(1))
+        assertTrue(track.isSyncSample(0))
+        assertFalse(track.isSyncSample(1))
+        assertEquals(1200L, restoredIndex.getSize(0, 33_333))
+    }
+
+    private fun parse(media: ByteArray): SampleIndex {
+        val file = File.createTempFile("index", ".mp4")
+        try {
+            file.writeBytes(media)
+            return RandomAccessFile(file, "r").use { assertNotNull(Mp4SampleIndexParser.parse(it.channel)) }
+        } finally {
+            file.delete()
+        }
+    }
+
+    private fun getSampleSize(sample: Int) = 100 + sample
+
+    private fun createFileTypeBox() = box("ftyp", data {
+        writeBytes("isom")
+        writeInt(0)
+        writeBytes("isommp42")
+    })
+
+    private fun createMedia(): ByteArray {
+        val ftyp = createFileTypeBox()
+        val mediaDataSize = (0 until SAMPLE_COUNT).sumOf { getSampleSize(it) }
+        val mediaDataOffset = ftyp.size + 8
+
+        val mvhd = box("mvhd", data {
+            writeInt(0)
+            writeInt(0)
+            writeInt(0)
+            writeInt(1000)
+            writeInt(1000)
+            write(ByteArray(80))
+        })
+        val elst = box("elst", data {
+            writeInt(0)
+            writeInt(1)
+            writeInt(1000)
+            writeInt(COMPOSITION_OFFSET)
+            writeInt(0x10000)
+        })
+        val mdhd = box("mdhd", data {
+            writeInt(0)
+            writeInt(0)
+            writeInt(0)
+            writeInt(TIMESCALE)
+            writeInt(SAMPLE_COUNT * SAMPLE_DELTA)
+            writeInt(0)
+        })
+        val hdlr = box("hdlr", data {
+            writeInt(0)
+            writeInt(0)
+            writeBytes("vide")
+            write(ByteArray(13))
+        })
+        val stsd = box("stsd", data {
+            writeInt(0)
+            writeInt(1)
+            write(box("avc1", ByteArray(78)))
+        })
+        val stts = box("stts", data {
+            writeInt(0)
+            writeInt(1)
+            writeInt(SAMPLE_COUNT)
+            writeInt(SAMPLE_DELTA)
+        })
+        val ctts = box("ctts", data {
+            writeInt(0)
+            writeInt(1)
+            writeInt(SAMPLE_COUNT)
+            writeInt(COMPOSITION_OFFSET)
+        })
+        val stss = box("stss", data {
+            writeInt(0)
+            writeInt(SYNC_SAMPLES.size)
+            SYNC_SAMPLES.forEach { writeInt(it) }
+        })
+        val stsz = box("stsz", data {
+            writeInt(0)
+            writeInt(0)
+            writeInt(SAMPLE_COUNT)
+            repeat(SAMPLE_COUNT) { writeInt(getSampleSize(it)) }
+        })
+        val stsc = box("stsc", data {
+            writeInt(0)
+            writeInt(1)
+            writeInt(1)
+            writeInt(SAMPLES_PER_CHUNK)
+            writeInt(1)
+        })
+        val stco = box("stco", data {
+            writeInt(0)
+            writeInt(SAMPLE_COUNT / SAMPLES_PER_CHUNK)
+            writeInt(mediaDataOffset)
+            writeInt(mediaDataOffset + (0 until SAMPLES_PER_CHUNK).sumOf { getSampleSize(it) })
+        })
+
+        val stbl = box("stbl", stsd, stts, ctts, stss, stsz, stsc, stco)
+        val trak = box("trak", box("edts", elst), box("mdia", mdhd, hdlr, box("minf", stbl)))
+        return ftyp + box("mdat", ByteArray(mediaDataSize)) + box("moov", mvhd, trak)
+    }
+
+    private fun box(type: String, vararg children: ByteArray): ByteArray {
+        val content = children.fold(ByteArray(0)) { bytes, child -> bytes + child }
+        return data {
+            writeInt(8 + content.size)
+            writeBytes(type)
+            write(content)
+        }
+    }
+
+    private fun data(block: DataOutputStream.() -> Unit): ByteArray {
+        val outputStream = ByteArrayOutputStream()
+        DataOutputStream(outputStream).use(block)
+        return outputStream.toByteArray()
+    }
+}
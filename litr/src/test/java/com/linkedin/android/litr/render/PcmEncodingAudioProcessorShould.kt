@@ -0,0 +1,89 @@
+package com.linkedin.android.litr.render
+
+import android.media.AudioFormat
+import android.media.MediaCodec
+import com.linkedin.android.litr.codec.Frame
+import org.junit.Test
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import kotlin.test.assertEquals
+
+private const val PRESENTATION_TIME_US = 100L
+private val SAMPLES = shortArrayOf(Short.MIN_VALUE, -12345, -1, 0, 1, 16384, Short.MAX_VALUE)
+
+class PcmEncodingAudioProcessorShould {
+
+    @Test
+    fun `convert 16 bit samples to float`() {
+        val targetFrame = process(createFrame(SAMPLES), AudioFormat.ENCODING_PCM_16BIT, AudioFormat.ENCODING_PCM_FLOAT)
+
+        assertEquals(SAMPLES.size * 4, targetFrame.bufferInfo.size)
+        assertEquals(PRESENTATION_TIME_US, targetFrame.bufferInfo.presentationTimeUs)
+        assertEquals(MediaCodec.BUFFER_FLAG_KEY_FRAME, targetFrame.bufferInfo.flags)
+        val buffer = targetFrame.buffer!!.order(ByteOrder.LITTLE_ENDIAN)
+        SAMPLES.forEachIndexed { index, sample ->
+            assertEquals(sample / 32768f, buffer.getFloat(index * 4))
+        }
+    }
+
+    @Test
+    fun `keep 16 bit samples intact when converting through wider encodings`() {
+        val encodings = listOf(AudioFormat.ENCODING_PCM_24BIT_PACKED, AudioFormat.ENCODING_PCM_32BIT, AudioFormat.ENCODING_PCM_FLOAT)
+
+        encodings.forEach { encoding ->
+            val convertedFrame = process(createFrame(SAMPLES), AudioFormat.ENCODING_PCM_16BIT, encoding)
+            val restoredFrame = process(convertedFrame, encoding, AudioFormat.ENCODING_PCM_16BIT)
+
+            assertEquals(SAMPLES.toList(), readSamples(restoredFrame), "Samples changed by conversion through encoding $encoding")
+        }
+    }
+
+    @Test
+    fun `clip float samples out of integer range`() {
+        val floatSamples = floatArrayOf(1.5f, -2f, 0.25f)
+        val buffer = ByteBuffer.allocate(floatSamples.size * 4).order(ByteOrder.LITTLE_ENDIAN)
+        floatSamples.forEach { buffer.putFloat(it) }
+        buffer.flip()
+
+        val targetFrame = process(Frame(0, buffer, createBufferInfo(0, buffer.limit())), AudioFormat.ENCODING_PCM_FLOAT, AudioFormat.ENCODING_PCM_16BIT)
+
+        assertEquals(listOf(Short.MAX_VALUE, Short.MIN_VALUE, 8192.toShort()), readSamples(targetFrame))
+    }
+
+    @Test
+    fun `read source samples from buffer offset`() {
+        val sourceFrame = createFrame(shortArrayOf(0) + SAMPLES)
+        sourceFrame.bufferInfo.offset = 2
+        sourceFrame.bufferInfo.size -= 2
+
+        val targetFrame = process(sourceFrame, AudioFormat.ENCODING_PCM_16BIT, AudioFormat.ENCODING_PCM_24BIT_PACKED)
+
+        assertEquals(SAMPLES.size * 3, targetFrame.bufferInfo.size)
+        assertEquals(SAMPLES.toList(), readSamples(process(targetFrame, AudioFormat.ENCODING_PCM_24BIT_PACKED, AudioFormat.ENCODING_PCM_16BIT)))
+    }
+
+    private fun process(sourceFrame: Frame, sourceEncoding: Int, targetEncoding: Int): Frame {
+        val targetFrame = Frame(1, ByteBuffer.allocate(SAMPLES.size * 4), MediaCodec.BufferInfo())
+        PcmEncodingAudioProcessor(sourceEncoding, targetEncoding).processFrame(sourceFrame, targetFrame)
+        return targetFrame
+    }
+
+    private fun createFrame(samples: ShortArray): Frame {
+        val buffer = ByteBuffer.allocate(samples.size * 2).order(ByteOrder.LITTLE_ENDIAN)
+        samples.forEach { buffer.putShort(it) }
+        buffer.flip()
+        return Frame(0, buffer, createBufferInfo(0, buffer.limit()))
+    }
+
+    private fun createBufferInfo(offset: Int, size: Int) = MediaCodec.BufferInfo().apply {
+        this.offset = offset
+        this.size = size
+        presentationTimeUs = PRESENTATION_TIME_US
+        flags = MediaCodec.BUFFER_FLAG_KEY_FRAME
+    }
+
+    private fun readSamples(frame: Frame): List<Short> {
+        val buffer = frame.buffer!!.order(ByteOrder.LITTLE_ENDIAN)
+        return List(frame.bufferInfo.size / 2) { buffer.getShort(frame.bufferInfo.offset + it * 2) }
+    }
+}
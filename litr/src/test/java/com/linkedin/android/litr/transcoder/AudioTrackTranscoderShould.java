@@ -23,6 +23,7 @@ import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import android.media.AudioFormat;
 import android.media.MediaCodec;
 import android.media.MediaFormat;
 
@@ -34,6 +35,7 @@ import com.linkedin.android.litr.io.MediaRange;
 import com.linkedin.android.litr.io.MediaSource;
 import com.linkedin.android.litr.io.MediaTarget;
 import com.linkedin.android.litr.render.Renderer;
+import com.linkedin.android.litr.utils.PcmUtils;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -435,6 +437,38 @@ public class AudioTrackTranscoderShould {
         assertThat(result, is(TrackTranscoder.RESULT_OUTPUT_MEDIA_FORMAT_CHANGED));
     }
 
+    @Test
+    public void keepRenderingToEncoderInputPcmEncodingWhenEncoderMediaFormatReceived() throws Exception {
+        MediaFormat floatTargetFormat = mock(MediaFormat.class);
+        when(floatTargetFormat.containsKey(MediaFormat.KEY_PCM_ENCODING)).thenReturn(true);
+        when(floatTargetFormat.getInteger(MediaFormat.KEY_PCM_ENCODING)).thenReturn(AudioFormat.ENCODING_PCM_FLOAT);
+
+        AudioTrackTranscoder audioTrackTranscoder = new AudioTrackTranscoder(
+                mediaSource, AUDIO_TRACK,
+                mediaTarget, AUDIO_TRACK,
+                floatTargetFormat,
+                renderer,
+                decoder,
+                encoder);
+        audioTrackTranscoder.start();
+        audioTrackTranscoder.lastExtractFrameResult = TrackTranscoder.RESULT_EOS_REACHED;
+        audioTrackTranscoder.lastDecodeFrameResult = TrackTranscoder.RESULT_EOS_REACHED;
+        audioTrackTranscoder.lastEncodeFrameResult = TrackTranscoder.RESULT_FRAME_PROCESSED;
+
+        // encoder output format does not describe encoder input, so it has no PCM encoding
+        MediaFormat encoderMediaFormat = mock(MediaFormat.class);
+        doReturn(MediaCodec.INFO_OUTPUT_FORMAT_CHANGED).when(encoder).dequeueOutputFrame(anyLong());
+        doReturn(encoderMediaFormat).when(encoder).getOutputFormat();
+        doReturn(AUDIO_TRACK).when(mediaTarget).addTrack(any(MediaFormat.class), anyInt());
+
+        audioTrackTranscoder.processNextFrame();
+
+        verify(mediaTarget).addTrack(encoderMediaFormat, AUDIO_TRACK);
+        ArgumentCaptor<MediaFormat> targetFormatCaptor = ArgumentCaptor.forClass(MediaFormat.class);
+        verify(renderer).onMediaFormatChanged(any(MediaFormat.class), targetFormatCaptor.capture());
+        assertThat(PcmUtils.getPcmEncoding(targetFormatCaptor.getValue()), is(AudioFormat.ENCODING_PCM_FLOAT));
+    }
+
     @Test
     public void writeWhenEncodedFrameReceived() throws Exception {
         audioTrackTranscoder.lastExtractFrameResult = TrackTranscoder.RESULT_EOS_REACHED;
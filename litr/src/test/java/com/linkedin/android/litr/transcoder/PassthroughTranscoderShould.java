@@ -12,6 +12,8 @@ import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
@@ -19,11 +21,13 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import android.media.MediaCodec;
+import android.media.MediaExtractor;
 import android.media.MediaFormat;
 
 import com.linkedin.android.litr.io.MediaRange;
 import com.linkedin.android.litr.io.MediaSource;
 import com.linkedin.android.litr.io.MediaTarget;
+import com.linkedin.android.litr.io.SampleBatch;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -42,6 +46,7 @@ public class PassthroughTranscoderShould {
     private static final int BUFFER_SIZE = 512;
 
     private final ByteBuffer outputBuffer = ByteBuffer.allocate(1);
+    private final SampleBatch sampleBatch = new SampleBatch(4, BUFFER_SIZE, 4 * BUFFER_SIZE);
 
     private static final long CURRENT_PRESENTATION_TIME = 42;
     private static final long SELECTION_START = 16;
@@ -74,6 +79,7 @@ public class PassthroughTranscoderShould {
 
         passthroughTranscoder.outputBufferInfo = outputBufferInfo;
         passthroughTranscoder.outputBuffer = outputBuffer;
+        passthroughTranscoder.sampleBatch = sampleBatch;
     }
 
     @Test
@@ -82,7 +88,7 @@ public class PassthroughTranscoderShould {
 
         int result = passthroughTranscoder.processNextFrame();
 
-        verify(mediaSource, never()).readSampleData(any(ByteBuffer.class), anyInt());
+        verify(mediaSource, never()).readSamples(anyInt(), any(SampleBatch.class));
 
         assertThat(result, is(TrackTranscoder.RESULT_EOS_REACHED));
     }
@@ -108,7 +114,7 @@ public class PassthroughTranscoderShould {
 
         int result = passthroughTranscoder.processNextFrame();
 
-        verify(mediaSource, never()).readSampleData(any(ByteBuffer.class), anyInt());
+        verify(mediaSource, never()).readSamples(anyInt(), any(SampleBatch.class));
         assertThat(result, is(TrackTranscoder.RESULT_FRAME_PROCESSED));
     }
 
@@ -121,15 +127,14 @@ public class PassthroughTranscoderShould {
         int outputFlags = 0;
 
         doReturn(0).when(mediaSource).getSampleTrackIndex();
-        doReturn(BUFFER_SIZE).when(mediaSource).readSampleData(outputBuffer, 0);
-        doReturn(SAMPLE_TIME).when(mediaSource).getSampleTime();
-        doReturn(outputFlags).when(mediaSource).getSampleFlags();
+        stubReadSamples(BUFFER_SIZE, SAMPLE_TIME, outputFlags);
 
         int result = passthroughTranscoder.processNextFrame();
 
-        verify(outputBufferInfo).set(0, BUFFER_SIZE, SAMPLE_TIME, outputFlags);
-        verify(mediaSource).advance();
-        verify(mediaTarget).writeSampleData(0, outputBuffer, outputBufferInfo);
+        verify(mediaTarget).writeSamples(0, sampleBatch, 0, 1);
+        assertThat(sampleBatch.getSize(0), is(BUFFER_SIZE));
+        assertThat(sampleBatch.getTime(0), is(SAMPLE_TIME));
+        assertThat(sampleBatch.getFlags(0), is(outputFlags));
 
         assertThat(passthroughTranscoder.progress, is((float) SAMPLE_TIME / DURATION));
         assertThat(result, is(TrackTranscoder.RESULT_FRAME_PROCESSED));
@@ -145,15 +150,14 @@ public class PassthroughTranscoderShould {
         int outputFlags = MediaCodec.BUFFER_FLAG_SYNC_FRAME;
 
         doReturn(0).when(mediaSource).getSampleTrackIndex();
-        doReturn(BUFFER_SIZE).when(mediaSource).readSampleData(outputBuffer, 0);
-        doReturn(SAMPLE_TIME).when(mediaSource).getSampleTime();
-        doReturn(outputFlags).when(mediaSource).getSampleFlags();
+        stubReadSamples(BUFFER_SIZE, SAMPLE_TIME, outputFlags);
 
         int result = passthroughTranscoder.processNextFrame();
 
-        verify(outputBufferInfo).set(0, BUFFER_SIZE, SAMPLE_TIME, outputFlags);
-        verify(mediaSource).advance();
-        verify(mediaTarget).writeSampleData(0, outputBuffer, outputBufferInfo);
+        verify(mediaTarget).writeSamples(0, sampleBatch, 0, 1);
+        assertThat(sampleBatch.getSize(0), is(BUFFER_SIZE));
+        assertThat(sampleBatch.getTime(0), is(SAMPLE_TIME));
+        assertThat(sampleBatch.getFlags(0), is(outputFlags));
 
         assertThat(passthroughTranscoder.progress, is((float) SAMPLE_TIME / DURATION));
         assertThat(result, is(TrackTranscoder.RESULT_FRAME_PROCESSED));
@@ -169,15 +173,14 @@ public class PassthroughTranscoderShould {
         int outputFlags = 0;
 
         doReturn(0).when(mediaSource).getSampleTrackIndex();
-        doReturn(0).when(mediaSource).readSampleData(outputBuffer, 0);
-        doReturn(SAMPLE_TIME).when(mediaSource).getSampleTime();
-        doReturn(outputFlags).when(mediaSource).getSampleFlags();
+        stubReadSamples(0, SAMPLE_TIME, outputFlags);
 
         int result = passthroughTranscoder.processNextFrame();
 
-        verify(outputBufferInfo).set(0, 0, SAMPLE_TIME, outputFlags);
-        verify(mediaSource).advance();
-        verify(mediaTarget).writeSampleData(0, outputBuffer, outputBufferInfo);
+        verify(mediaTarget).writeSamples(0, sampleBatch, 0, 1);
+        assertThat(sampleBatch.getSize(0), is(0));
+        assertThat(sampleBatch.getTime(0), is(SAMPLE_TIME));
+        assertThat(sampleBatch.getFlags(0), is(outputFlags));
 
         assertThat(passthroughTranscoder.progress, is((float) SAMPLE_TIME / DURATION));
         assertThat(result, is(TrackTranscoder.RESULT_FRAME_PROCESSED));
@@ -192,11 +195,11 @@ public class PassthroughTranscoderShould {
         passthroughTranscoder.targetTrackAdded = true;
 
         doReturn(0).when(mediaSource).getSampleTrackIndex();
-        doReturn(-1).when(mediaSource).readSampleData(outputBuffer, 0);
+        doReturn(0).when(mediaSource).readSamples(SOURCE_TRACK, sampleBatch);
 
         int result = passthroughTranscoder.processNextFrame();
 
-        verify(mediaSource, never()).advance();
+        verify(mediaTarget, never()).writeSamples(anyInt(), any(SampleBatch.class), anyInt(), anyInt());
         verify(mediaTarget, never()).writeSampleData(0, outputBuffer, outputBufferInfo);
 
         assertThat(passthroughTranscoder.progress, is(1.0f));
@@ -204,6 +207,40 @@ public class PassthroughTranscoderShould {
         assertThat(passthroughTranscoder.lastResult, is(TrackTranscoder.RESULT_EOS_REACHED));
     }
 
+    @Test
+    public void writeBatchOfSamplesWithinSelection() {
+        when(mediaSource.getSelection()).thenReturn(trimmedMediaRange);
+        when(mediaSource.getSampleTrackIndex()).thenReturn(SOURCE_TRACK);
+
+        PassthroughTranscoder passthroughTranscoder = new PassthroughTranscoder(
+                mediaSource,
+                SOURCE_TRACK,
+                mediaTarget,
+                TARGET_TRACK);
+        passthroughTranscoder.targetTrackAdded = true;
+        passthroughTranscoder.outputBufferInfo = outputBufferInfo;
+        passthroughTranscoder.outputBuffer = outputBuffer;
+        passthroughTranscoder.sampleBatch = sampleBatch;
+
+        doAnswer(invocation -> {
+            sampleBatch.clear();
+            sampleBatch.add(BUFFER_SIZE, SELECTION_START - 1, 0);
+            sampleBatch.add(BUFFER_SIZE, CURRENT_PRESENTATION_TIME, MediaExtractor.SAMPLE_FLAG_SYNC);
+            sampleBatch.add(BUFFER_SIZE, CURRENT_PRESENTATION_TIME + 1, 0);
+            return sampleBatch.getSampleCount();
+        }).when(mediaSource).readSamples(SOURCE_TRACK, sampleBatch);
+
+        int result = passthroughTranscoder.processNextFrame();
+
+        verify(mediaTarget).writeSamples(eq(TARGET_TRACK), eq(sampleBatch), eq(1), eq(3));
+        verify(mediaTarget, never()).writeSampleData(anyInt(), any(ByteBuffer.class), any(MediaCodec.BufferInfo.class));
+        assertThat(sampleBatch.getTime(1), is(CURRENT_PRESENTATION_TIME - SELECTION_START));
+        assertThat(sampleBatch.getTime(2), is(CURRENT_PRESENTATION_TIME + 1 - SELECTION_START));
+        assertThat(sampleBatch.getFlags(1), is(MediaCodec.BUFFER_FLAG_KEY_FRAME));
+        assertThat(passthroughTranscoder.getFramesWritten(), is(2L));
+        assertThat(result, is(TrackTranscoder.RESULT_FRAME_PROCESSED));
+    }
+
     @Test
     public void releaseBufferWhenStopped() {
         // since we cannot verify that final method clear() was called, let's test for its consequences
@@ -226,15 +263,14 @@ public class PassthroughTranscoderShould {
         int outputFlags = MediaCodec.BUFFER_FLAG_SYNC_FRAME;
 
         doReturn(0).when(mediaSource).getSampleTrackIndex();
-        doReturn(BUFFER_SIZE).when(mediaSource).readSampleData(outputBuffer, 0);
-        doReturn(SAMPLE_TIME).when(mediaSource).getSampleTime();
-        doReturn(outputFlags).when(mediaSource).getSampleFlags();
+        stubReadSamples(BUFFER_SIZE, SAMPLE_TIME, outputFlags);
 
         int result = passthroughTranscoder.processNextFrame();
 
-        verify(outputBufferInfo).set(0, BUFFER_SIZE, SAMPLE_TIME, outputFlags);
-        verify(mediaSource).advance();
-        verify(mediaTarget).writeSampleData(0, outputBuffer, outputBufferInfo);
+        verify(mediaTarget).writeSamples(0, sampleBatch, 0, 1);
+        assertThat(sampleBatch.getSize(0), is(BUFFER_SIZE));
+        assertThat(sampleBatch.getTime(0), is(SAMPLE_TIME));
+        assertThat(sampleBatch.getFlags(0), is(outputFlags));
 
         assertThat(passthroughTranscoder.progress, is(0f));
         assertThat(result, is(TrackTranscoder.RESULT_FRAME_PROCESSED));
@@ -270,9 +306,7 @@ public class PassthroughTranscoderShould {
     public void notWriteFrameBeforeSelectionStart() {
         when(mediaSource.getSelection()).thenReturn(trimmedMediaRange);
         when(mediaSource.getSampleTrackIndex()).thenReturn(SOURCE_TRACK);
-        when(mediaSource.readSampleData(outputBuffer, 0)).thenReturn(BUFFER_SIZE);
-        when(mediaSource.getSampleTime()).thenReturn(SELECTION_START - 1);
-        when(mediaSource.getSampleFlags()).thenReturn(0);
+        stubReadSamples(BUFFER_SIZE, SELECTION_START - 1, 0);
 
         PassthroughTranscoder passthroughTranscoder = new PassthroughTranscoder(
                 mediaSource,
@@ -282,20 +316,20 @@ public class PassthroughTranscoderShould {
         passthroughTranscoder.targetTrackAdded = true;
         passthroughTranscoder.outputBufferInfo = outputBufferInfo;
         passthroughTranscoder.outputBuffer = outputBuffer;
+        passthroughTranscoder.sampleBatch = sampleBatch;
 
         passthroughTranscoder.processNextFrame();
 
         verify(mediaTarget, never()).writeSampleData(anyInt(), any(ByteBuffer.class), any(MediaCodec.BufferInfo.class));
-        verify(mediaSource).advance();
+        verify(mediaTarget, never()).writeSamples(anyInt(), any(SampleBatch.class), anyInt(), anyInt());
+        verify(mediaSource).readSamples(SOURCE_TRACK, sampleBatch);
     }
 
     @Test
     public void writeTestWithinSelection() {
         when(mediaSource.getSelection()).thenReturn(trimmedMediaRange);
         when(mediaSource.getSampleTrackIndex()).thenReturn(SOURCE_TRACK);
-        when(mediaSource.readSampleData(outputBuffer, 0)).thenReturn(BUFFER_SIZE);
-        when(mediaSource.getSampleTime()).thenReturn(CURRENT_PRESENTATION_TIME);
-        when(mediaSource.getSampleFlags()).thenReturn(0);
+        stubReadSamples(BUFFER_SIZE, CURRENT_PRESENTATION_TIME, 0);
 
         PassthroughTranscoder passthroughTranscoder = new PassthroughTranscoder(
                 mediaSource,
@@ -305,20 +339,20 @@ public class PassthroughTranscoderShould {
         passthroughTranscoder.targetTrackAdded = true;
         passthroughTranscoder.outputBufferInfo = outputBufferInfo;
         passthroughTranscoder.outputBuffer = outputBuffer;
+        passthroughTranscoder.sampleBatch = sampleBatch;
 
         passthroughTranscoder.processNextFrame();
 
-        verify(mediaTarget).writeSampleData(TARGET_TRACK, outputBuffer, outputBufferInfo);
-        verify(outputBufferInfo).set(0, BUFFER_SIZE, CURRENT_PRESENTATION_TIME - SELECTION_START,0);
-        verify(mediaSource).advance();
+        verify(mediaTarget).writeSamples(TARGET_TRACK, sampleBatch, 0, 1);
+        assertThat(sampleBatch.getSize(0), is(BUFFER_SIZE));
+        assertThat(sampleBatch.getTime(0), is(CURRENT_PRESENTATION_TIME - SELECTION_START));
+        assertThat(sampleBatch.getFlags(0), is(0));
     }
 
     @Test
     public void writeEosAndAdvanceToOtherTrackAfterSelectionEnd() {
         when(mediaSource.getSelection()).thenReturn(trimmedMediaRange);
-        when(mediaSource.getSampleTrackIndex()).thenReturn(SOURCE_TRACK);
-        when(mediaSource.readSampleData(outputBuffer, 0)).thenReturn(BUFFER_SIZE);
-        when(mediaSource.getSampleTime()).thenReturn(SELECTION_END + 1);
+        stubReadSamples(BUFFER_SIZE, SELECTION_END + 1, 0);
         when(mediaSource.getSampleFlags()).thenReturn(0);
         when(mediaSource.getSampleTrackIndex())
                 .thenReturn(SOURCE_TRACK)
@@ -333,6 +367,7 @@ public class PassthroughTranscoderShould {
         passthroughTranscoder.targetTrackAdded = true;
         passthroughTranscoder.outputBufferInfo = outputBufferInfo;
         passthroughTranscoder.outputBuffer = outputBuffer;
+        passthroughTranscoder.sampleBatch = sampleBatch;
 
         passthroughTranscoder.processNextFrame();
 
@@ -346,12 +381,8 @@ public class PassthroughTranscoderShould {
     @Test
     public void writeEosAndAdvanceToEndOfTrackAfterSelectionEnd() {
         when(mediaSource.getSelection()).thenReturn(trimmedMediaRange);
-        when(mediaSource.getSampleTrackIndex()).thenReturn(SOURCE_TRACK);
-        when(mediaSource.readSampleData(outputBuffer, 0)).thenReturn(BUFFER_SIZE);
-        when(mediaSource.getSampleTime()).thenReturn(SELECTION_END + 1);
-        when(mediaSource.getSampleFlags())
-                .thenReturn(0)
-                .thenReturn(MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+        stubReadSamples(BUFFER_SIZE, SELECTION_END + 1, 0);
+        when(mediaSource.getSampleFlags()).thenReturn(MediaCodec.BUFFER_FLAG_END_OF_STREAM);
         when(mediaSource.getSampleTrackIndex())
                 .thenReturn(SOURCE_TRACK)
                 .thenReturn(SOURCE_TRACK);
@@ -364,6 +395,7 @@ public class PassthroughTranscoderShould {
         passthroughTranscoder.targetTrackAdded = true;
         passthroughTranscoder.outputBufferInfo = outputBufferInfo;
         passthroughTranscoder.outputBuffer = outputBuffer;
+        passthroughTranscoder.sampleBatch = sampleBatch;
 
         passthroughTranscoder.processNextFrame();
 
@@ -393,7 +425,7 @@ public class PassthroughTranscoderShould {
 
         int result = passthroughTranscoder.processNextFrame();
 
-        verify(mediaSource, never()).readSampleData(any(), anyInt());
+        verify(mediaSource, never()).readSamples(anyInt(), any());
         verify(mediaTarget, never()).writeSampleData(anyInt(), any(), any());
 
         assertThat(result, is(TrackTranscoder.RESULT_EOS_REACHED));
@@ -418,10 +450,22 @@ public class PassthroughTranscoderShould {
 
         int result = passthroughTranscoder.processNextFrame();
 
-        verify(mediaSource, never()).readSampleData(any(), anyInt());
+        verify(mediaSource, never()).readSamples(anyInt(), any());
         verify(mediaTarget, never()).writeSampleData(anyInt(), any(), any());
 
         assertThat(result, is(TrackTranscoder.RESULT_EOS_REACHED));
         assertThat(passthroughTranscoder.lastResult, is(TrackTranscoder.RESULT_EOS_REACHED));
     }
-}
\ No newline at end of file
+
+    /**
+     * Make media source read a single sample of source track into a sample batch
+     */
+    private void stubReadSamples(int size, long sampleTime, int sampleFlags) {
+        doAnswer(invocation -> {
+            SampleBatch batch = invocation.getArgument(1);
+            batch.clear();
+            batch.add(size, sampleTime, sampleFlags);
+            return batch.getSampleCount();
+        }).when(mediaSource).readSamples(eq(SOURCE_TRACK), any(SampleBatch.class));
+    }
+}
@@ -0,0 +1,80 @@
+package com.linkedin.android.litr.utils
+
+import android.graphics.Bitmap
+import org.junit.Test
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.mock
+import kotlin.test.assertEquals
+import kotlin.test.assertSame
+
+private const val WIDTH = 10
+private const val HEIGHT = 5
+private const val BITMAP_SIZE = WIDTH * HEIGHT * 4
+
+class BitmapPoolShould {
+
+    @Test
+    fun `reuse bitmap of requested size and config`() {
+        val bitmapPool = BitmapPool(10L * BITMAP_SIZE)
+        val bitmap = createBitmap(WIDTH, HEIGHT)
+        val otherBitmap = createBitmap(HEIGHT, WIDTH)
+
+        bitmapPool.put(bitmap)
+        bitmapPool.put(otherBitmap)
+        assertEquals(2L * BITMAP_SIZE, bitmapPool.sizeBytes)
+
+        assertSame(bitmap, bitmapPool.get(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888))
+        assertSame(otherBitmap, bitmapPool.get(HEIGHT, WIDTH, Bitmap.Config.ARGB_8888))
+        assertEquals(0L, bitmapPool.sizeBytes)
+    }
+
+    @Test
+    fun `ignore bitmaps which can not be reused`() {
+        val bitmapPool = BitmapPool(10L * BITMAP_SIZE)
+
+        bitmapPool.put(createBitmap(WIDTH, HEIGHT, isMutable = false))
+        bitmapPool.put(createBitmap(WIDTH, HEIGHT, isRecycled = true))
+        bitmapPool.put(createBitmap(WIDTH * 10, HEIGHT * 10))
+        assertEquals(0L, bitmapPool.sizeBytes)
+
+        // same bitmap returned twice is kept once
+        val bitmap = createBitmap(WIDTH, HEIGHT)
+        bitmapPool.put(bitmap)
+        bitmapPool.put(bitmap)
+        assertEquals(BITMAP_SIZE.toLong(), bitmapPool.sizeBytes)
+    }
+
+    @Test
+    fun `evict least recently used sizes when full`() {
+        val bitmapPool = BitmapPool(2L * BITMAP_SIZE)
+        val bitmaps = listOf(createBitmap(WIDTH, HEIGHT), createBitmap(HEIGHT, WIDTH), createBitmap(WIDTH * HEIGHT, 1))
+
+        bitmaps.forEach { bitmapPool.put(it) }
+        assertEquals(2L * BITMAP_SIZE, bitmapPool.sizeBytes)
+
+        // first size is evicted, bitmaps of other sizes are still available
+        assertSame(bitmaps[1], bitmapPool.get(HEIGHT, WIDTH, Bitmap.Config.ARGB_8888))
+        assertSame(bitmaps[2], bitmapPool.get(WIDTH * HEIGHT, 1, Bitmap.Config.ARGB_8888))
+        assertEquals(0L, bitmapPool.sizeBytes)
+    }
+
+    @Test
+    fun `clear all bitmaps`() {
+        val bitmapPool = BitmapPool(10L * BITMAP_SIZE)
+        bitmapPool.put(createBitmap(WIDTH, HEIGHT))
+        bitmapPool.put(createBitmap(WIDTH, HEIGHT))
+
+        bitmapPool.clear()
+
+        assertEquals(0L, bitmapPool.sizeBytes)
+    }
+
+    private fun createBitmap(width: Int, height: Int, isMutable: Boolean = true, isRecycled: Boolean = false) = mock<Bitmap> {
+        on { this.width } doReturn width
+        on { this.height } doReturn height
+        on { config } doReturn Bitmap.Config.ARGB_8888
+        on { allocationByteCount } doReturn width * height * 4
+        on { this.isMutable } doReturn isMutable
+        on { this.isRecycled } doReturn isRecycled
+    }
+}
@@ -0,0 +1,107 @@
+package com.linkedin.android.litr.utils
+
+import android.media.MediaCodecInfo
+import android.media.MediaFormat
+import org.junit.Test
+import org.mockito.kotlin.any
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.mock
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+import kotlin.test.assertSame
+
+private const val MIME_TYPE = MediaFormat.MIMETYPE_VIDEO_AVC
+
+class CodecCapabilityIndexShould {
+
+    @Test
+    fun `rank hardware codecs first then vendor codecs then codecs with more profiles`() {
+        // before Android Q, hardware acceleration and vendor are inferred from codec names
+        val index = CodecCapabilityIndex(arrayOf(
+            createCodecInfo("OMX.google.h264.encoder", profileCount = 5),
+            createCodecInfo("c2.android.avc.encoder", profileCount = 1),
+            createCodecInfo("OMX.vendor.h264.encoder.sw", profileCount = 1),
+            createCodecInfo("OMX.vendor.h264.encoder", profileCount = 1),
+            createCodecInfo("OMX.other.h264.encoder", profileCount = 3)
+        ))
+
+        val codecNames = index.getCodecs(MIME_TYPE, true).map { it.name }
+
+        assertEquals(
+            listOf(
+                "OMX.other.h264.encoder",
+                "OMX.vendor.h264.encoder",
+                "OMX.vendor.h264.encoder.sw",
+                "OMX.google.h264.encoder",
+                "c2.android.avc.encoder"
+            ),
+            codecNames
+        )
+    }
+
+    @Test
+    fun `keep platform order of equally ranked codecs`() {
+        val names = List(10) { "OMX.vendor$it.h264.encoder" }
+        val index = CodecCapabilityIndex(names.map { createCodecInfo(it) }.toTypedArray())
+
+        assertEquals(names, index.getCodecs(MIME_TYPE, true).map { it.name })
+    }
+
+    @Test
+    fun `look up codecs of requested direction and type only`() {
+        val index = CodecCapabilityIndex(arrayOf(
+            createCodecInfo("OMX.vendor.h264.encoder"),
+            createCodecInfo("OMX.vendor.h264.decoder", isEncoder = false),
+            createCodecInfo("OMX.vendor.hevc.encoder", mimeType = MediaFormat.MIMETYPE_VIDEO_HEVC)
+        ))
+
+        assertEquals(listOf("OMX.vendor.h264.encoder"), index.getCodecs(MIME_TYPE, true).map { it.name })
+        assertEquals(listOf("OMX.vendor.h264.decoder"), index.getCodecs(MIME_TYPE, false).map { it.name })
+        assertEquals(emptyList(), index.getCodecs(MediaFormat.MIMETYPE_VIDEO_VP9, true))
+        assertNull(index.getCodec("OMX.vendor.h264.decoder", MIME_TYPE, true))
+        assertEquals("OMX.vendor.h264.decoder", index.getCodec("OMX.vendor.h264.decoder", MIME_TYPE, false)?.name)
+    }
+
+    @Test
+    fun `serve repeated lookups from memory`() {
+        val index = CodecCapabilityIndex(arrayOf(createCodecInfo("OMX.vendor.h264.encoder")))
+
+        assertSame(index.getCodecs(MIME_TYPE, true), index.getCodecs(MIME_TYPE, true))
+    }
+
+    @Test
+    fun `find codecs supporting a format in ranked order`() {
+        val index = CodecCapabilityIndex(arrayOf(
+            createCodecInfo("OMX.google.h264.encoder"),
+            createCodecInfo("OMX.vendor.h264.encoder", isFormatSupported = false),
+            createCodecInfo("OMX.other.h264.encoder")
+        ))
+        val mediaFormat = mock<MediaFormat> {
+            on { getString(MediaFormat.KEY_MIME) } doReturn MIME_TYPE
+        }
+
+        assertEquals(
+            listOf("OMX.other.h264.encoder", "OMX.google.h264.encoder"),
+            index.getCodecNamesForFormat(mediaFormat, true)
+        )
+    }
+
+    private fun createCodecInfo(
+        name: String,
+        mimeType: String = MIME_TYPE,
+        isEncoder: Boolean = true,
+        profileCount: Int = 1,
+        isFormatSupported: Boolean = true
+    ): MediaCodecInfo {
+        val capabilities = mock<MediaCodecInfo.CodecCapabilities> {
+            on { isFormatSupported(any()) } doReturn isFormatSupported
+        }
+        capabilities.profileLevels = Array(profileCount) { MediaCodecInfo.CodecProfileLevel() }
+        return mock {
+            on { this.name } doReturn name
+            on { this.isEncoder } doReturn isEncoder
+            on { supportedTypes } doReturn arrayOf(mimeType)
+            on { getCapabilitiesForType(mimeType) } doReturn capabilities
+        }
+    }
+}
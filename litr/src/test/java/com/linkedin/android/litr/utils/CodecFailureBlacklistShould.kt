@@ -0,0 +1,110 @@
+package com.linkedin.android.litr.utils
+
+import android.media.MediaCodec
+import android.media.MediaFormat
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.mock
+import java.io.IOException
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+private const val CODEC_NAME = "OMX.vendor.audio.encoder.aac"
+private const val OTHER_CODEC_NAME = "c2.android.aac.encoder"
+
+class CodecFailureBlacklistShould {
+
+    private val mediaFormat = createFormat(44100)
+
+    @Before
+    fun setup() {
+        CodecFailureBlacklist.clear()
+    }
+
+    @After
+    fun tearDown() {
+        CodecFailureBlacklist.clear()
+    }
+
+    @Test
+    fun `blacklist codec only after repeated failures`() {
+        repeat(CodecFailureBlacklist.FAILURE_THRESHOLD - 1) {
+            CodecFailureBlacklist.recordFailure(CODEC_NAME, mediaFormat, true, IllegalStateException())
+        }
+        assertFalse(CodecFailureBlacklist.isBlacklisted(CODEC_NAME, mediaFormat, true))
+
+        CodecFailureBlacklist.recordFailure(CODEC_NAME, mediaFormat, true, IllegalStateException())
+
+        assertTrue(CodecFailureBlacklist.isBlacklisted(CODEC_NAME, mediaFormat, true))
+    }
+
+    @Test
+    fun `blacklist codec only for failed format shape and direction`() {
+        repeat(CodecFailureBlacklist.FAILURE_THRESHOLD) {
+            CodecFailureBlacklist.recordFailure(CODEC_NAME, mediaFormat, true, IllegalArgumentException())
+        }
+
+        assertTrue(CodecFailureBlacklist.isBlacklisted(CODEC_NAME, mediaFormat, true))
+        assertTrue(CodecFailureBlacklist.isBlacklisted(CODEC_NAME, createFormat(44100), true))
+        assertFalse(CodecFailureBlacklist.isBlacklisted(CODEC_NAME, createFormat(48000), true))
+        assertFalse(CodecFailureBlacklist.isBlacklisted(CODEC_NAME, mediaFormat, false))
+        assertFalse(CodecFailureBlacklist.isBlacklisted(OTHER_CODEC_NAME, mediaFormat, true))
+    }
+
+    @Test
+    fun `not blacklist codec which failed for lack of resources or temporarily`() {
+        val exceptions = listOf(
+            IOException(),
+            createCodecException(isTransient = true),
+            createCodecException(isRecoverable = true)
+        )
+
+        exceptions.forEach { exception ->
+            repeat(CodecFailureBlacklist.FAILURE_THRESHOLD) {
+                CodecFailureBlacklist.recordFailure(CODEC_NAME, mediaFormat, true, exception)
+            }
+        }
+
+        assertFalse(CodecFailureBlacklist.isBlacklisted(CODEC_NAME, mediaFormat, true))
+    }
+
+    @Test
+    fun `blacklist codec which failed with fatal codec error`() {
+        repeat(CodecFailureBlacklist.FAILURE_THRESHOLD) {
+            CodecFailureBlacklist.recordFailure(CODEC_NAME, mediaFormat, true, createCodecException())
+        }
+
+        assertTrue(CodecFailureBlacklist.isBlacklisted(CODEC_NAME, mediaFormat, true))
+    }
+
+    @Test
+    fun `forget failures when cleared`() {
+        repeat(CodecFailureBlacklist.FAILURE_THRESHOLD) {
+            CodecFailureBlacklist.recordFailure(CODEC_NAME, mediaFormat, true, IllegalStateException())
+        }
+        CodecFailureBlacklist.recordFailure(OTHER_CODEC_NAME, mediaFormat, true, IllegalStateException())
+
+        CodecFailureBlacklist.clear()
+
+        // pending failure count is dropped as well
+        CodecFailureBlacklist.recordFailure(OTHER_CODEC_NAME, mediaFormat, true, IllegalStateException())
+        assertFalse(CodecFailureBlacklist.isBlacklisted(CODEC_NAME, mediaFormat, true))
+        assertFalse(CodecFailureBlacklist.isBlacklisted(OTHER_CODEC_NAME, mediaFormat, true))
+    }
+
+    private fun createFormat(sampleRate: Int) = mock<MediaFormat> {
+        on { getString(MediaFormat.KEY_MIME) } doReturn MediaFormat.MIMETYPE_AUDIO_AAC
+        on { containsKey(MediaFormat.KEY_SAMPLE_RATE) } doReturn true
+        on { getInteger(MediaFormat.KEY_SAMPLE_RATE) } doReturn sampleRate
+        on { containsKey(MediaFormat.KEY_CHANNEL_COUNT) } doReturn true
+        on { getInteger(MediaFormat.KEY_CHANNEL_COUNT) } doReturn 2
+    }
+
+    private fun createCodecException(isTransient: Boolean = false, isRecoverable: Boolean = false) =
+        mock<MediaCodec.CodecException> {
+            on { this.isTransient } doReturn isTransient
+            on { this.isRecoverable } doReturn isRecoverable
+        }
+}